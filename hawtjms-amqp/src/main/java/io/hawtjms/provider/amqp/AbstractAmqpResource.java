@@ -27,6 +27,7 @@ import javax.jms.JMSSecurityException;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.transport.AmqpError;
 import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Endpoint;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.slf4j.Logger;
@@ -228,6 +229,11 @@ public abstract class AbstractAmqpResource<R extends JmsResource, E extends Endp
     public void processDeliveryUpdates() throws IOException {
     }
 
+    @Override
+    public void processDeliveryUpdate(Delivery delivery) throws IOException {
+        processDeliveryUpdates();
+    }
+
     @Override
     public void processFlowUpdates() throws IOException {
     }
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Credit controller that sizes the window to how fast the consumer is taking messages.
+ *
+ * The controller measures how long messages wait in the prefetch buffer before the
+ * consumer takes them and the average interval between those takes.  Once per window's
+ * worth of messages the window is adjusted, much like TCP adjusts its congestion window
+ * once per round trip:
+ *
+ * <ul>
+ *   <li>If messages waited longer than the target latency on average the consumer can't
+ *       keep up, the window shrinks to what the consumer gets through in the target
+ *       latency but by no more than half.</li>
+ *   <li>If the prefetch buffer ran dry the consumer was left waiting on the remote and the
+ *       window doubles.</li>
+ * </ul>
+ *
+ * The window always stays within the configured minimum and maximum.  Credit is topped back
+ * up to the window once it has dwindled to a fifth of it, taking into account the messages
+ * that have arrived but are still waiting in the prefetch buffer.
+ */
+public class AmqpAdaptiveCreditController implements AmqpCreditController {
+
+    private static final double REFILL_THRESHOLD = 0.2;
+    private static final int SMOOTHING_FACTOR = 8;
+    private static final int MAX_TRACKED_ARRIVALS = 4096;
+
+    private final int minWindow;
+    private final int maxWindow;
+    private final long targetLatency;
+
+    // Arrival times of the messages in the prefetch buffer, oldest first.
+    private final long[] arrivals;
+    private int head;
+    private int buffered;
+
+    private volatile int window;
+    private volatile double averageLatency;
+    private volatile double averageInterval;
+    private long lastRelease;
+    private int releasedInWindow;
+    private boolean starved;
+
+    /**
+     * Creates a new adaptive credit controller.
+     *
+     * @param initialWindow
+     *        the window to start from, usually the consumer's prefetch size.
+     * @param minWindow
+     *        the smallest window the controller will shrink to.
+     * @param maxWindow
+     *        the largest window the controller will grow to.
+     * @param targetLatency
+     *        the time in milliseconds a message should wait in the prefetch buffer at most.
+     */
+    public AmqpAdaptiveCreditController(int initialWindow, int minWindow, int maxWindow, long targetLatency) {
+        this.minWindow = Math.max(1, minWindow);
+        this.maxWindow = Math.max(this.minWindow, maxWindow);
+        this.targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatency);
+        this.window = clamp(initialWindow);
+        this.arrivals = new long[Math.min(this.maxWindow, MAX_TRACKED_ARRIVALS)];
+    }
+
+    @Override
+    public int getInitialCredit() {
+        return window;
+    }
+
+    @Override
+    public void onMessageArrived() {
+        if (buffered == arrivals.length) {
+            // Credit granted before the window shrank can overfill the buffer, the
+            // oldest arrival is dropped which only affects the latency estimate.
+            head = (head + 1) % arrivals.length;
+            buffered--;
+        }
+
+        arrivals[(head + buffered) % arrivals.length] = System.nanoTime();
+        buffered++;
+    }
+
+    @Override
+    public int onMessageReleased(int currentCredit) {
+        long now = System.nanoTime();
+
+        if (buffered > 0) {
+            long latency = now - arrivals[head];
+            head = (head + 1) % arrivals.length;
+            buffered--;
+            averageLatency += (latency - averageLatency) / SMOOTHING_FACTOR;
+        }
+
+        if (buffered == 0) {
+            starved = true;
+        }
+
+        if (lastRelease != 0) {
+            averageInterval += ((now - lastRelease) - averageInterval) / SMOOTHING_FACTOR;
+        }
+        lastRelease = now;
+
+        if (++releasedInWindow >= window) {
+            adjustWindow();
+        }
+
+        int outstanding = currentCredit + buffered;
+        if (currentCredit <= window * REFILL_THRESHOLD && outstanding < window) {
+            return window - outstanding;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the smoothed time in milliseconds that messages wait in the prefetch buffer.
+     */
+    public double getAverageLatency() {
+        return averageLatency / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the smoothed rate, in messages per second, at which the consumer takes messages.
+     */
+    public double getConsumptionRate() {
+        double interval = averageInterval;
+        return interval <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / interval;
+    }
+
+    private void adjustWindow() {
+        releasedInWindow = 0;
+
+        if (averageLatency > targetLatency) {
+            int sized = averageInterval > 0 ? (int) Math.min(targetLatency / averageInterval, Integer.MAX_VALUE) : minWindow;
+            window = clamp(Math.max(sized, window / 2));
+        } else if (starved) {
+            window = clamp((int) Math.min((long) window * 2, Integer.MAX_VALUE));
+        }
+
+        starved = false;
+    }
+
+    private int clamp(int value) {
+        return Math.min(maxWindow, Math.max(minWindow, value));
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpAdaptiveCreditController { window = " + getWindow() +
+               ", averageLatency = " + getAverageLatency() +
+               ", consumptionRate = " + getConsumptionRate() + " }";
+    }
+}
@@ -16,6 +16,7 @@
  */
 package io.hawtjms.provider.amqp;
 
+import io.hawtjms.jms.JmsDestination;
 import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
 import io.hawtjms.jms.meta.JmsProducerId;
 import io.hawtjms.jms.meta.JmsProducerInfo;
@@ -31,8 +32,12 @@ import org.slf4j.LoggerFactory;
 /**
  * Handles the case of anonymous JMS MessageProducers.
  *
- * In order to simulate the anonymous producer we must create a sender for each message
- * send attempt and close it following a successful send.
+ * When the remote peer offers the ANONYMOUS-RELAY capability all messages are sent on
+ * one shared sender link that has no target address and the peer routes them by their
+ * 'to' address.  Otherwise messages are sent on a sender link for their destination
+ * taken from a cache of open links kept by the session.  With the cache disabled we
+ * fall back to creating a sender for each message send attempt and closing it following
+ * a successful send.
  */
 public class AmqpAnonymousProducer extends AmqpProducer {
 
@@ -57,6 +62,21 @@ public class AmqpAnonymousProducer extends AmqpProducer {
     @Override
     public boolean send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException {
 
+        JmsDestination destination = envelope.getDestination();
+
+        // The relay routes on the message 'to' address which is the unqualified destination
+        // name, so it can only be used when no destination prefixes are configured.
+        if (connection.isAnonymousRelaySupported() &&
+            destination.getName().equals(session.getQualifiedName(destination))) {
+            LOG.trace("Anonymous producer {} sending via anonymous relay", getProducerId());
+            return session.getAnonymousRelaySender(getNextProducerId()).send(envelope, request);
+        }
+
+        if (connection.getProvider().getAnonymousProducerCacheSize() > 0) {
+            LOG.trace("Anonymous producer {} sending via cached sender", getProducerId());
+            return session.getSenderCache().getSender(destination).send(envelope, request);
+        }
+
         LOG.trace("Started send chain for anonymous producer: {}", getProducerId());
 
         // Create a new ProducerInfo for the short lived producer that's created to perform the
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how the AmqpProvider is batching its work, how many provider requests
+ * are handled per batch and how often the batches result in a write to the
+ * transport.  Useful when tuning the batch size and time limits.
+ */
+public class AmqpBatchStatistics {
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private volatile long startTime = System.nanoTime();
+
+    /**
+     * Records the completion of a batch.
+     *
+     * @param size
+     *        the number of requests that were handled in the batch.
+     */
+    public void onBatch(int size) {
+        batches.incrementAndGet();
+        requests.addAndGet(size);
+
+        long largest = largestBatch.get();
+        while (size > largest && !largestBatch.compareAndSet(largest, size)) {
+            largest = largestBatch.get();
+        }
+    }
+
+    /**
+     * Records a write of pending output to the transport.
+     */
+    public void onWrite() {
+        writes.incrementAndGet();
+    }
+
+    /**
+     * @return the number of batches processed since the last reset.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * @return the number of provider requests processed since the last reset.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the largest number of requests handled in one batch since the last reset.
+     */
+    public long getLargestBatchSize() {
+        return largestBatch.get();
+    }
+
+    /**
+     * @return the average number of requests handled per batch since the last reset.
+     */
+    public double getAverageBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) requests.get() / count;
+    }
+
+    /**
+     * @return the number of transport writes since the last reset.
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * @return the average number of transport writes per second since the last reset.
+     */
+    public double getWritesPerSecond() {
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed <= 0) {
+            return 0;
+        }
+
+        return (double) writes.get() * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Clears all the collected statistics.
+     */
+    public void reset() {
+        batches.set(0);
+        requests.set(0);
+        largestBatch.set(0);
+        writes.set(0);
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpBatchStatistics { batches = " + getBatchCount() +
+               ", averageBatchSize = " + getAverageBatchSize() +
+               ", largestBatchSize = " + getLargestBatchSize() +
+               ", writesPerSecond = " + getWritesPerSecond() + " }";
+    }
+}
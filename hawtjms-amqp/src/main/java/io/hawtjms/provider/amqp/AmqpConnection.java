@@ -31,6 +31,7 @@ import javax.jms.JMSSecurityException;
 import javax.jms.Session;
 
 import org.apache.qpid.proton.ProtonFactoryLoader;
+import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Sasl;
@@ -45,11 +46,14 @@ public class AmqpConnection extends AbstractAmqpResource<JmsConnectionInfo, Conn
     private static final ProtonFactoryLoader<MessageFactory> protonFactoryLoader =
         new ProtonFactoryLoader<MessageFactory>(MessageFactory.class);
 
+    private static final Symbol ANONYMOUS_RELAY = Symbol.valueOf("ANONYMOUS-RELAY");
+
     private final URI remoteURI;
     private final Map<JmsSessionId, AmqpSession> sessions = new HashMap<JmsSessionId, AmqpSession>();
     private final Map<JmsDestination, AmqpTemporaryDestination> tempDests = new HashMap<JmsDestination, AmqpTemporaryDestination>();
     private final AmqpProvider provider;
     private boolean connected;
+    private boolean anonymousRelaySupported;
     private AmqpSaslAuthenticator authenticator;
     private final AmqpSession connectionSession;
     private final MessageFactory messageFactory = protonFactoryLoader.loadFactory();
@@ -113,6 +117,7 @@ public class AmqpConnection extends AbstractAmqpResource<JmsConnectionInfo, Conn
 
         if (!connected && isOpen()) {
             connected = true;
+            anonymousRelaySupported = isRemoteCapabilityOffered(ANONYMOUS_RELAY);
             connectionSession.open(new AsyncResult<Void>() {
 
                 @Override
@@ -178,6 +183,19 @@ public class AmqpConnection extends AbstractAmqpResource<JmsConnectionInfo, Conn
         }
     }
 
+    private boolean isRemoteCapabilityOffered(Symbol capability) {
+        Symbol[] offered = endpoint.getRemoteOfferedCapabilities();
+        if (offered != null) {
+            for (Symbol symbol : offered) {
+                if (capability.equals(symbol)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
     void addTemporaryDestination(AmqpTemporaryDestination destination) {
         tempDests.put(destination.getJmsDestination(), destination);
     }
@@ -218,6 +236,13 @@ public class AmqpConnection extends AbstractAmqpResource<JmsConnectionInfo, Conn
         return this.provider;
     }
 
+    /**
+     * @return true if the remote peer offered the ANONYMOUS-RELAY capability on open.
+     */
+    public boolean isAnonymousRelaySupported() {
+        return anonymousRelaySupported;
+    }
+
     public String getQueuePrefix() {
         return queuePrefix;
     }
@@ -21,18 +21,16 @@ import io.hawtjms.jms.message.JmsInboundMessageDispatch;
 import io.hawtjms.jms.message.JmsMessage;
 import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsConsumerInfo;
-import io.hawtjms.jms.meta.JmsMessageId;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderListener;
+import io.hawtjms.provider.amqp.message.AmqpJmsMessageBuilder;
+import io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
-import javax.jms.JMSException;
-
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.DescribedType;
 import org.apache.qpid.proton.amqp.Symbol;
@@ -48,8 +46,6 @@ import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Receiver;
 import org.apache.qpid.proton.jms.EncodedMessage;
-import org.apache.qpid.proton.jms.InboundTransformer;
-import org.apache.qpid.proton.jms.JMSMappingInboundTransformer;
 import org.fusesource.hawtbuf.Buffer;
 import org.fusesource.hawtbuf.ByteArrayOutputStream;
 import org.slf4j.Logger;
@@ -67,10 +63,10 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
     protected static final Symbol JMS_SELECTOR_SYMBOL = Symbol.valueOf("jms-selector");
 
     protected final AmqpSession session;
-    protected final InboundTransformer inboundTransformer =
-        new JMSMappingInboundTransformer(AmqpJMSVendor.INSTANCE);;
-    protected final Map<JmsMessageId, Delivery> delivered = new LinkedHashMap<JmsMessageId, Delivery>();
+    protected final AmqpDeliveryIndex<Delivery> delivered = new AmqpDeliveryIndex<Delivery>();
+    protected long nextDeliverySequence;
     protected boolean presettle;
+    protected AmqpCreditController creditController;
 
     private final ByteArrayOutputStream streamBuffer = new ByteArrayOutputStream();
     private final byte incomingBuffer[] = new byte[1024 * 64];
@@ -78,16 +74,18 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
     public AmqpConsumer(AmqpSession session, JmsConsumerInfo info) {
         super(info);
         this.session = session;
+        this.creditController = new AmqpFixedCreditController(info.getPrefetchSize());
 
         // Add a shortcut back to this Consumer for quicker lookups
         this.info.getConsumerId().setProviderHint(this);
     }
 
     /**
-     * Starts the consumer by setting the link credit to the given prefetch value.
+     * Starts the consumer by setting the link credit to the initial credit given by the
+     * consumer's credit controller, by default the prefetch value.
      */
     public void start(AsyncResult<Void> request) {
-        this.endpoint.flow(info.getPrefetchSize());
+        this.endpoint.flow(creditController.getInitialCredit());
         request.onSuccess();
     }
 
@@ -163,16 +161,16 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      * client acknowledge session operation.
      *
      * Only messages that have already been acknowledged as delivered by the JMS
-     * framework will be in the delivered Map.  This means that the link credit
+     * framework will be in the delivered index.  This means that the link credit
      * would already have been given for these so we just need to settle them.
      */
     public void acknowledge() {
         LOG.trace("Session Acknowledge for consumer: {}", info.getConsumerId());
-        for (Delivery delivery : delivered.values()) {
+        Delivery delivery = null;
+        while ((delivery = delivered.poll()) != null) {
             delivery.disposition(Accepted.getInstance());
             delivery.settle();
         }
-        delivered.clear();
     }
 
     /**
@@ -186,21 +184,22 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      *        the type of acknowledgment to perform.
      */
     public void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) {
-        JmsMessageId messageId = envelope.getMessage().getFacade().getMessageId();
+        // The message id is not read here, doing so would decode the message headers.
+        long sequence = envelope.getDeliverySequence();
         Delivery delivery = null;
 
-        if (messageId.getProviderHint() instanceof Delivery) {
-            delivery = (Delivery) messageId.getProviderHint();
+        if (envelope.getProviderHint() instanceof Delivery) {
+            delivery = (Delivery) envelope.getProviderHint();
         } else {
-            delivery = delivered.get(messageId);
+            delivery = delivered.get(sequence);
             if (delivery == null) {
-                LOG.warn("Received Ack for unknown message: {}", messageId);
+                LOG.warn("Received Ack for unknown delivery: {}", sequence);
                 return;
             }
         }
 
         if (ackType.equals(ACK_TYPE.DELIVERED)) {
-            LOG.debug("Delivered Ack of message: {}", messageId);
+            LOG.debug("Delivered Ack of delivery: {}", sequence);
             if (session.isTransacted()) {
                 Binary txnId = session.getTransactionContext().getAmqpTransactionId();
                 if (txnId != null) {
@@ -212,20 +211,23 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
                 }
             }
             if (!isPresettle()) {
-                delivered.put(messageId, delivery);
+                delivered.put(sequence, delivery);
             }
             sendFlowIfNeeded();
         } else if (ackType.equals(ACK_TYPE.CONSUMED)) {
             // A Consumer may not always send a delivered ACK so we need to check to
             // ensure we don't add to much credit to the link.
-            if (isPresettle() || delivered.remove(messageId) == null) {
+            if (isPresettle() || delivered.remove(sequence) == null) {
                 sendFlowIfNeeded();
             }
-            LOG.debug("Consumed Ack of message: {}", messageId);
+            LOG.debug("Consumed Ack of delivery: {}", sequence);
             if (!delivery.isSettled()) {
                 delivery.disposition(Accepted.getInstance());
                 delivery.settle();
             }
+        } else if (ackType.equals(ACK_TYPE.CUMULATIVE)) {
+            LOG.debug("Cumulative Ack up to delivery: {}", sequence);
+            acknowledgeUpTo(sequence);
         } else if (ackType.equals(ACK_TYPE.REDELIVERED)) {
             Modified disposition = new Modified();
             disposition.setUndeliverableHere(false);
@@ -235,22 +237,40 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         } else if (ackType.equals(ACK_TYPE.POISONED)) {
             deliveryFailed(delivery, false);
         } else {
-            LOG.warn("Unsupporeted Ack Type for message: {}", messageId);
+            LOG.warn("Unsupporeted Ack Type for delivery: {}", sequence);
+        }
+    }
+
+    /**
+     * Settles, in delivery order, all the delivered messages up to and including the
+     * one with the given sequence.  Credit for these was already granted when they were
+     * acknowledged as delivered so there's no need to update the link credit here.
+     *
+     * @param sequence
+     *        the delivery sequence of the last message that should be settled.
+     */
+    private void acknowledgeUpTo(long sequence) {
+        Delivery delivery = null;
+        while ((delivery = delivered.pollUpTo(sequence)) != null) {
+            if (!delivery.isSettled()) {
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+            }
         }
     }
 
     /**
-     * We only send more credits as the credit window dwindles to a certain point and
-     * then we open the window back up to full prefetch size.
+     * Called as messages leave the prefetch buffer, the credit controller decides if and
+     * how much credit is sent to the remote.
      */
     private void sendFlowIfNeeded() {
         if (info.getPrefetchSize() == 0) {
             return;
         }
 
-        int currentCredit = endpoint.getCredit();
-        if (currentCredit <= info.getPrefetchSize() * 0.2) {
-            endpoint.flow(info.getPrefetchSize() - currentCredit);
+        int credit = creditController.onMessageReleased(endpoint.getCredit());
+        if (credit > 0) {
+            endpoint.flow(credit);
         }
     }
 
@@ -259,14 +279,14 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      */
     public void recover() {
         LOG.debug("Session Recover for consumer: {}", info.getConsumerId());
-        for (Delivery delivery : delivered.values()) {
+        Delivery delivery = null;
+        while ((delivery = delivered.poll()) != null) {
             // TODO - increment redelivery counter and apply connection redelivery policy
             //        to those messages that are past max redlivery.
             JmsInboundMessageDispatch envelope = (JmsInboundMessageDispatch) delivery.getContext();
             envelope.onMessageRedelivered();
             deliver(envelope);
         }
-        delivered.clear();
     }
 
     /**
@@ -302,7 +322,7 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         EncodedMessage encoded = readIncomingMessage(incoming);
         JmsMessage message = null;
         try {
-            message = (JmsMessage) inboundTransformer.transform(encoded);
+            message = AmqpJmsMessageBuilder.createJmsMessage(encoded);
         } catch (Exception e) {
             LOG.warn("Error on transform: {}", e.getMessage());
             // TODO - We could signal provider error but not sure we want to fail
@@ -311,27 +331,20 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
             return;
         }
 
-        try {
-            message.setJMSDestination(info.getDestination());
-        } catch (JMSException e) {
-            LOG.warn("Error on transform: {}", e.getMessage());
-            // TODO - We could signal provider error but not sure we want to fail
-            //        the connection just because we can't convert the message.
-            deliveryFailed(incoming, true);
-            return;
-        }
-
-        // Store link to delivery in the hint for use in acknowledge requests.
-        message.getFacade().getMessageId().setProviderHint(incoming);
+        // Set without decoding the headers, the link to the delivery is kept in the
+        // envelope for use in acknowledge requests.
+        ((AmqpJmsMessageFacade) message.getFacade()).setConsumerDestination(info.getDestination());
 
         JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
         envelope.setMessage(message);
         envelope.setConsumerId(info.getConsumerId());
         envelope.setProviderHint(incoming);
+        envelope.setDeliverySequence(nextDeliverySequence++);
 
         // Store reference to envelope in delivery context for recovery
         incoming.setContext(envelope);
 
+        creditController.onMessageArrived();
         deliver(envelope);
     }
 
@@ -359,6 +372,28 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         return presettle;
     }
 
+    public AmqpCreditController getCreditController() {
+        return creditController;
+    }
+
+    /**
+     * Sets the controller that decides how much link credit this consumer grants, must
+     * be set before the consumer is started.
+     *
+     * @param creditController
+     *        the credit controller to use for this consumer.
+     */
+    public void setCreditController(AmqpCreditController creditController) {
+        this.creditController = creditController;
+    }
+
+    /**
+     * @return the current size of this consumer's credit window.
+     */
+    public int getCreditWindow() {
+        return creditController.getWindow();
+    }
+
     public void setPresettle(boolean presettle) {
         this.presettle = presettle;
     }
@@ -383,7 +418,7 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
         ProviderListener listener = session.getProvider().getProviderListener();
         if (listener != null) {
             if (envelope.getMessage() != null) {
-                LOG.debug("Dispatching received message: {}", envelope.getMessage().getFacade().getMessageId());
+                LOG.debug("Dispatching received delivery: {}", envelope.getDeliverySequence());
             } else {
                 LOG.debug("Dispatching end of browse to: {}", envelope.getConsumerId());
             }
@@ -401,7 +436,9 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
             streamBuffer.write(incomingBuffer, 0, count);
         }
 
-        buffer = streamBuffer.toBuffer();
+        // The message facade reads from the encoded bytes lazily so it needs its own
+        // copy instead of a view of the reused stream buffer.
+        buffer = streamBuffer.toBuffer().deepCopy();
 
         try {
             return new EncodedMessage(incoming.getMessageFormat(), buffer.data, buffer.offset, buffer.length);
@@ -421,10 +458,10 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      * is cleared and the next TX started.
      */
     public void postCommit() {
-        for (Delivery delivery : delivered.values()) {
+        Delivery delivery = null;
+        while ((delivery = delivered.poll()) != null) {
             delivery.settle();
         }
-        this.delivered.clear();
     }
 
     /**
@@ -432,10 +469,10 @@ public class AmqpConsumer extends AbstractAmqpResource<JmsConsumerInfo, Receiver
      * the next TX to start.
      */
     public void postRollback() {
-        for (Delivery delivery : delivered.values()) {
+        Delivery delivery = null;
+        while ((delivery = delivered.poll()) != null) {
             JmsInboundMessageDispatch envelope = (JmsInboundMessageDispatch) delivery.getContext();
             acknowledge(envelope, ACK_TYPE.REDELIVERED);
         }
-        this.delivered.clear();
     }
 }
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+/**
+ * Decides how much link credit an AmqpConsumer grants to the remote peer.
+ *
+ * Each consumer has its own controller instance which is only called from the provider
+ * thread, apart from {@link #getWindow()} which may be read from any thread for use as a
+ * metric.  A message arrives when its transfer is received from the remote and is released
+ * once the JMS consumer has taken it from the prefetch buffer.
+ */
+public interface AmqpCreditController {
+
+    /**
+     * @return the credit to grant when the consumer is started.
+     */
+    int getInitialCredit();
+
+    /**
+     * Called when a new message arrives on the consumer's link.
+     */
+    void onMessageArrived();
+
+    /**
+     * Called when a message has been taken from the prefetch buffer by the consumer.
+     *
+     * @param currentCredit
+     *        the credit that the link currently has outstanding.
+     *
+     * @return the additional credit to grant to the link, zero if none.
+     */
+    int onMessageReleased(int currentCredit);
+
+    /**
+     * @return the current size of the credit window.
+     */
+    int getWindow();
+
+}
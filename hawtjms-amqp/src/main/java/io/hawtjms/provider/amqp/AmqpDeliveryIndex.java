@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+/**
+ * Index of the unsettled deliveries on a link keyed by the sequence number the link
+ * assigned to each delivery as it arrived.
+ *
+ * Entries are held in a ring of slots addressed by sequence so that adding, finding and
+ * removing an entry takes constant time without boxing or hashing the key, and entries
+ * can be taken back out in sequence order to settle a contiguous range in one pass.
+ * The ring grows to cover the span between the oldest and newest entry, which stays close
+ * to the credit window as long as deliveries are settled roughly in the order they arrive.
+ *
+ * @param <E> the type of object stored for each delivery.
+ */
+public final class AmqpDeliveryIndex<E> {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 64;
+
+    private Object[] slots;
+    private int mask;
+    private int size;
+
+    // Sequence of the oldest entry and one past the sequence of the newest entry.
+    private long head;
+    private long tail;
+
+    public AmqpDeliveryIndex() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public AmqpDeliveryIndex(int initialCapacity) {
+        int capacity = 1;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds or replaces the entry for the given sequence.
+     *
+     * @param sequence
+     *        the sequence the delivery was assigned on arrival.
+     * @param entry
+     *        the entry to store, must not be null.
+     */
+    public void put(long sequence, E entry) {
+        if (entry == null) {
+            throw new IllegalArgumentException("Cannot index a null entry");
+        }
+
+        if (size == 0) {
+            head = sequence;
+            tail = sequence + 1;
+        } else if (sequence < head) {
+            ensureCapacity(tail - sequence);
+            head = sequence;
+        } else if (sequence >= tail) {
+            ensureCapacity(sequence + 1 - head);
+            tail = sequence + 1;
+        }
+
+        int index = (int) sequence & mask;
+        if (slots[index] == null) {
+            size++;
+        }
+        slots[index] = entry;
+    }
+
+    /**
+     * @param sequence
+     *        the sequence of the entry to look up.
+     *
+     * @return the entry stored for the given sequence or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        if (size == 0 || sequence < head || sequence >= tail) {
+            return null;
+        }
+
+        return (E) slots[(int) sequence & mask];
+    }
+
+    /**
+     * Removes the entry for the given sequence.
+     *
+     * @param sequence
+     *        the sequence of the entry to remove.
+     *
+     * @return the entry that was removed or null if there was none.
+     */
+    public E remove(long sequence) {
+        E entry = get(sequence);
+        if (entry == null) {
+            return null;
+        }
+
+        slots[(int) sequence & mask] = null;
+        if (--size == 0) {
+            head = tail = 0;
+        } else {
+            while (slots[(int) head & mask] == null) {
+                head++;
+            }
+            while (slots[(int) (tail - 1) & mask] == null) {
+                tail--;
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Removes and returns the entry with the lowest sequence.
+     *
+     * @return the oldest entry or null if the index is empty.
+     */
+    public E poll() {
+        return size == 0 ? null : remove(head);
+    }
+
+    /**
+     * Removes and returns the entry with the lowest sequence provided that sequence is not
+     * greater than the given one, repeated calls drain a range in sequence order.
+     *
+     * @param sequence
+     *        the highest sequence that may be removed.
+     *
+     * @return the oldest entry at or below the given sequence or null if there is none.
+     */
+    public E pollUpTo(long sequence) {
+        return size == 0 || head > sequence ? null : remove(head);
+    }
+
+    /**
+     * Removes all entries from the index.
+     */
+    public void clear() {
+        for (long sequence = head; size > 0 && sequence < tail; ++sequence) {
+            slots[(int) sequence & mask] = null;
+        }
+
+        size = 0;
+        head = tail = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void ensureCapacity(long span) {
+        if (span <= slots.length) {
+            return;
+        }
+
+        if (span > Integer.MAX_VALUE / 2) {
+            throw new IllegalStateException("Too many outstanding deliveries to index: " + span);
+        }
+
+        int capacity = slots.length;
+        while (capacity < span) {
+            capacity <<= 1;
+        }
+
+        Object[] resized = new Object[capacity];
+        int resizedMask = capacity - 1;
+        for (long sequence = head; sequence < tail; ++sequence) {
+            resized[(int) sequence & resizedMask] = slots[(int) sequence & mask];
+        }
+
+        slots = resized;
+        mask = resizedMask;
+    }
+}
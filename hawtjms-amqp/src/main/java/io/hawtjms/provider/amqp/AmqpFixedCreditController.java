@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+/**
+ * Credit controller that keeps the window fixed at the consumer's prefetch size.
+ *
+ * Credit is only sent once the window has dwindled to a fifth of its size, at which
+ * point it is opened back up to the full prefetch size.
+ */
+public class AmqpFixedCreditController implements AmqpCreditController {
+
+    private static final double REFILL_THRESHOLD = 0.2;
+
+    private final int prefetch;
+
+    public AmqpFixedCreditController(int prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    @Override
+    public int getInitialCredit() {
+        return prefetch;
+    }
+
+    @Override
+    public void onMessageArrived() {
+    }
+
+    @Override
+    public int onMessageReleased(int currentCredit) {
+        if (currentCredit <= prefetch * REFILL_THRESHOLD) {
+            return prefetch - currentCredit;
+        }
+
+        return 0;
+    }
+
+    @Override
+    public int getWindow() {
+        return prefetch;
+    }
+
+    @Override
+    public String toString() {
+        return "AmqpFixedCreditController { window = " + prefetch + " }";
+    }
+}
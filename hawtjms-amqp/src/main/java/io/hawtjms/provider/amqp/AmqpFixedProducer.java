@@ -21,13 +21,13 @@ import io.hawtjms.jms.message.JmsMessage;
 import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
 import io.hawtjms.jms.meta.JmsProducerInfo;
 import io.hawtjms.provider.AsyncResult;
+import io.hawtjms.provider.amqp.message.AmqpJmsMessageEncoder;
 import io.hawtjms.util.IOExceptionSupport;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 import org.apache.qpid.proton.amqp.Binary;
@@ -41,10 +41,6 @@ import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
 import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
 import org.apache.qpid.proton.engine.Delivery;
 import org.apache.qpid.proton.engine.Sender;
-import org.apache.qpid.proton.jms.AutoOutboundTransformer;
-import org.apache.qpid.proton.jms.EncodedMessage;
-import org.apache.qpid.proton.jms.OutboundTransformer;
-import org.fusesource.hawtbuf.Buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,11 +55,10 @@ public class AmqpFixedProducer extends AmqpProducer {
     private static final byte[] EMPTY_BYTE_ARRAY = new byte[] {};
 
     private final AmqpTransferTagGenerator tagGenerator = new AmqpTransferTagGenerator(true);
-    private final Set<Delivery> pending = new LinkedHashSet<Delivery>();
+    private final Set<Delivery> pending = new HashSet<Delivery>();
     private final LinkedList<PendingSend> pendingSends = new LinkedList<PendingSend>();
 
-    private final OutboundTransformer outboundTransformer = new AutoOutboundTransformer(AmqpJMSVendor.INSTANCE);
-    private final String MESSAGE_FORMAT_KEY = outboundTransformer.getPrefixVendor() + "MESSAGE_FORMAT";
+    private final AmqpJmsMessageEncoder encoder = new AmqpJmsMessageEncoder();
     private boolean presettle = false;
 
     public AmqpFixedProducer(AmqpSession session, JmsProducerInfo info) {
@@ -92,12 +87,12 @@ public class AmqpFixedProducer extends AmqpProducer {
     private void doSend(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException {
         LOG.trace("Producer sending message: {}", envelope.getMessage().getFacade().getMessageId());
 
-        byte[] tag = tagGenerator.getNextTag();
         Delivery delivery = null;
 
         if (presettle) {
             delivery = endpoint.delivery(EMPTY_BYTE_ARRAY, 0, 0);
         } else {
+            byte[] tag = tagGenerator.getNextTag();
             delivery = endpoint.delivery(tag, 0, tag.length);
         }
 
@@ -113,35 +108,29 @@ public class AmqpFixedProducer extends AmqpProducer {
         JmsMessage message = envelope.getMessage();
         message.setReadOnlyBody(true);
 
-        if (!message.getProperties().containsKey(MESSAGE_FORMAT_KEY)) {
-            message.setProperty(MESSAGE_FORMAT_KEY, 0);
-        }
-
-        Buffer sendBuffer = null;
-        EncodedMessage amqp = null;
-
+        int length = 0;
         try {
-            amqp = outboundTransformer.transform(message);
+            length = encoder.encode(message);
         } catch (Exception e) {
             throw IOExceptionSupport.create(e);
         }
 
-        if (amqp != null && amqp.getLength() > 0) {
-            sendBuffer = new Buffer(amqp.getArray(), amqp.getArrayOffset(), amqp.getLength());
-        }
+        // The encoder reuses its buffer for the next message, which is safe since the
+        // sender copies the data into the delivery.
+        byte[] encoded = encoder.getArray();
+        int offset = 0;
 
-        while (sendBuffer != null) {
-            int sent = endpoint.send(sendBuffer.data, sendBuffer.offset, sendBuffer.length);
+        while (offset < length) {
+            int sent = endpoint.send(encoded, offset, length - offset);
             if (sent > 0) {
-                sendBuffer.moveHead(sent);
-                if (sendBuffer.length == 0) {
+                offset += sent;
+                if (offset == length) {
                     if (presettle) {
                         delivery.settle();
                     } else {
                         pending.add(delivery);
                         endpoint.advance();
                     }
-                    sendBuffer = null;
 
                     if (envelope.isSendAsync() || presettle) {
                         request.onSuccess();
@@ -164,43 +153,65 @@ public class AmqpFixedProducer extends AmqpProducer {
         }
     }
 
+    /**
+     * Checks every unsettled delivery for a remote state update, only needed when an
+     * update arrives without the delivery it applies to.
+     */
     @Override
     public void processDeliveryUpdates() {
-        List<Delivery> toRemove = new ArrayList<Delivery>();
-
-        for (Delivery delivery : pending) {
-            DeliveryState state = delivery.getRemoteState();
-            if (state == null) {
-                continue;
+        Iterator<Delivery> deliveries = pending.iterator();
+        while (deliveries.hasNext()) {
+            Delivery delivery = deliveries.next();
+            if (delivery.getRemoteState() != null && processRemoteState(delivery)) {
+                deliveries.remove();
             }
+        }
+    }
 
-            @SuppressWarnings("unchecked")
-            AsyncResult<Void> request = (AsyncResult<Void>) delivery.getContext();
+    @Override
+    public void processDeliveryUpdate(Delivery delivery) {
+        if (delivery.getRemoteState() == null || !pending.contains(delivery)) {
+            return;
+        }
 
-            if (state instanceof Accepted) {
-                toRemove.add(delivery);
-                LOG.trace("State of delivery accepted: {}", delivery);
-                tagGenerator.returnTag(delivery.getTag());
-                if (request != null && !request.isComplete()) {
-                    request.onSuccess();
-                }
-            } else if (state instanceof Rejected) {
-                Exception remoteError = getRemoteError();
-                toRemove.add(delivery);
-                tagGenerator.returnTag(delivery.getTag());
-                if (request != null && !request.isComplete()) {
-                    request.onFailure(remoteError);
-                } else {
-                    connection.getProvider().fireProviderException(remoteError);
-                }
-            } else if (state instanceof TransactionalState) {
-                LOG.info("State of delivery is Transacted: {}", state);
+        if (processRemoteState(delivery)) {
+            pending.remove(delivery);
+        }
+    }
+
+    /*
+     * Completes the send request for a delivery the remote has updated, returns true
+     * if the delivery reached a final state and is no longer pending.
+     */
+    private boolean processRemoteState(Delivery delivery) {
+        DeliveryState state = delivery.getRemoteState();
+
+        @SuppressWarnings("unchecked")
+        AsyncResult<Void> request = (AsyncResult<Void>) delivery.getContext();
+
+        if (state instanceof Accepted) {
+            LOG.trace("State of delivery accepted: {}", delivery);
+            tagGenerator.returnTag(delivery.getTag());
+            if (request != null && !request.isComplete()) {
+                request.onSuccess();
+            }
+            return true;
+        } else if (state instanceof Rejected) {
+            Exception remoteError = getRemoteError();
+            tagGenerator.returnTag(delivery.getTag());
+            if (request != null && !request.isComplete()) {
+                request.onFailure(remoteError);
             } else {
-                LOG.warn("Message send updated with unsupported state: {}", state);
+                connection.getProvider().fireProviderException(remoteError);
             }
+            return true;
+        } else if (state instanceof TransactionalState) {
+            LOG.info("State of delivery is Transacted: {}", state);
+        } else {
+            LOG.warn("Message send updated with unsupported state: {}", state);
         }
 
-        pending.removeAll(toRemove);
+        return false;
     }
 
     @Override
@@ -214,7 +225,7 @@ public class AmqpFixedProducer extends AmqpProducer {
         Target target = new Target();
         target.setAddress(destnationName);
 
-        String senderName = sourceAddress + ":" + destnationName != null ? destnationName : "Anonymous";
+        String senderName = sourceAddress + ":" + (destnationName != null ? destnationName : "Anonymous");
         endpoint = session.getProtonSession().sender(senderName);
         endpoint.setSource(source);
         endpoint.setTarget(target);
@@ -230,6 +241,27 @@ public class AmqpFixedProducer extends AmqpProducer {
     protected void doClose() {
     }
 
+    /**
+     * Fails any sends that were held waiting for credit along with the open request,
+     * they can never be sent once the link has failed to open.
+     */
+    @Override
+    public void failed(Exception cause) {
+        super.failed(cause);
+
+        while (!pendingSends.isEmpty()) {
+            PendingSend held = pendingSends.pop();
+            held.request.onFailure(cause);
+        }
+    }
+
+    /**
+     * @return true if this producer has sends that are held or not yet settled by the remote.
+     */
+    public boolean hasOutstandingSends() {
+        return !pending.isEmpty() || !pendingSends.isEmpty();
+    }
+
     public AmqpSession getSession() {
         return this.session;
     }
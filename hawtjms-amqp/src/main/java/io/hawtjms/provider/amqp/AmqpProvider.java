@@ -26,17 +26,24 @@ import io.hawtjms.provider.AbstractAsyncProvider;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.transports.NioTransport;
+import io.hawtjms.transports.NioTransportListener;
 import io.hawtjms.transports.TcpTransport;
-import io.hawtjms.transports.TransportListener;
 import io.hawtjms.util.IOExceptionSupport;
 import io.hawtjms.util.PropertyUtil;
+import io.netty.buffer.ByteBuf;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.jms.JMSException;
 
@@ -68,13 +75,23 @@ import org.vertx.java.core.buffer.Buffer;
  * All work within this Provider is serialized to a single Thread.  Any asynchronous exceptions
  * will be dispatched from that Thread and all in-bound requests are handled there as well.
  */
-public class AmqpProvider extends AbstractAsyncProvider implements TransportListener {
+public class AmqpProvider extends AbstractAsyncProvider implements NioTransportListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(AmqpProvider.class);
 
     private static final Logger TRACE_BYTES = LoggerFactory.getLogger(AmqpConnection.class.getPackage().getName() + ".BYTES");
     private static final Logger TRACE_FRAMES = LoggerFactory.getLogger(AmqpConnection.class.getPackage().getName() + ".FRAMES");
     private static final int DEFAULT_MAX_FRAME_SIZE = 1024 * 1024 * 1;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    private static final long DEFAULT_MAX_BATCH_TIME = 1;
+    private static final int DEFAULT_ANONYMOUS_PRODUCER_CACHE_SIZE = 10;
+    private static final long DEFAULT_ANONYMOUS_PRODUCER_IDLE_TIMEOUT = 30000;
+    private static final int DEFAULT_MIN_CREDIT_WINDOW = 1;
+    private static final int DEFAULT_MAX_CREDIT_WINDOW = 10000;
+    private static final long DEFAULT_CREDIT_TARGET_LATENCY = 100;
+
+    public static final String FIXED_CREDIT_STRATEGY = "fixed";
+    public static final String ADAPTIVE_CREDIT_STRATEGY = "adaptive";
 
     private AmqpConnection connection;
     private io.hawtjms.transports.Transport transport;
@@ -86,12 +103,35 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     private long closeTimeout = JmsConnectionInfo.DEFAULT_CLOSE_TIMEOUT;
     private long requestTimeout = JmsConnectionInfo.DEFAULT_REQUEST_TIMEOUT;
     private long sendTimeout = JmsConnectionInfo.DEFAULT_SEND_TIMEOUT;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private long maxBatchTime = DEFAULT_MAX_BATCH_TIME;
+    private int anonymousProducerCacheSize = DEFAULT_ANONYMOUS_PRODUCER_CACHE_SIZE;
+    private long anonymousProducerIdleTimeout = DEFAULT_ANONYMOUS_PRODUCER_IDLE_TIMEOUT;
+    private String creditStrategy = FIXED_CREDIT_STRATEGY;
+    private int minCreditWindow = DEFAULT_MIN_CREDIT_WINDOW;
+    private int maxCreditWindow = DEFAULT_MAX_CREDIT_WINDOW;
+    private long creditTargetLatency = DEFAULT_CREDIT_TARGET_LATENCY;
+    private ScheduledExecutorService scheduler;
 
     private final JmsDefaultMessageFactory messageFactory = new JmsDefaultMessageFactory();
     private final EngineFactory engineFactory = new EngineFactoryImpl();
     private final Transport protonTransport = engineFactory.createTransport();
     private final Collector protonCollector = new CollectorImpl();
 
+    private final ConcurrentLinkedQueue<Runnable> pendingWork = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean batchScheduled = new AtomicBoolean();
+    private final AmqpBatchStatistics batchStatistics = new AmqpBatchStatistics();
+    private boolean processingBatch;
+    private boolean pumpRequested;
+
+    private final Runnable batchProcessor = new Runnable() {
+
+        @Override
+        public void run() {
+            processBatch();
+        }
+    };
+
     /**
      * Create a new instance of an AmqpProvider bonded to the given remote URI.
      *
@@ -143,7 +183,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     public void close() {
         if (closed.compareAndSet(false, true)) {
             final ProviderRequest<Void> request = new ProviderRequest<Void>();
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
 
                 @Override
                 public void run() {
@@ -183,6 +223,13 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
                     }
                 }
 
+                synchronized (this) {
+                    if (scheduler != null) {
+                        scheduler.shutdownNow();
+                        scheduler = null;
+                    }
+                }
+
                 if (serializer != null) {
                     serializer.shutdown();
                 }
@@ -193,7 +240,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void create(final JmsResource resource, final AsyncResult<Void> request) throws IOException, JMSException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -268,7 +315,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void start(final JmsResource resource, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -295,7 +342,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void destroy(final JmsResource resource, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -346,7 +393,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void send(final JmsOutboundMessageDispatch envelope, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -378,7 +425,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void acknowledge(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -398,7 +445,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void acknowledge(final JmsInboundMessageDispatch envelope, final ACK_TYPE ackType, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -434,7 +481,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void commit(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -453,7 +500,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void rollback(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -472,7 +519,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void recover(final JmsSessionId sessionId, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -492,7 +539,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void unsubscribe(final String subscription, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -510,7 +557,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void pull(final JmsConsumerId consumerId, final long timeout, final AsyncResult<Void> request) throws IOException {
         checkClosed();
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
@@ -567,29 +614,71 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void onData(Buffer input) {
 
-        // Create our own copy since we will process later.
-        final ByteBuffer source = ByteBuffer.wrap(input.getBytes());
+        // Hold a reference to the IO buffer itself instead of copying it, it is released
+        // once its contents have been fed into the proton transport.
+        final ByteBuf incoming = input.getByteBuf().retain();
 
-        serializer.execute(new Runnable() {
+        execute(new Runnable() {
 
             @Override
             public void run() {
-                LOG.trace("Received from Broker {} bytes:", source.remaining());
+                try {
+                    ByteBuffer source = incoming.nioBuffer();
+                    LOG.trace("Received from Broker {} bytes:", source.remaining());
+
+                    while (source.hasRemaining()) {
+                        ByteBuffer buffer = protonTransport.getInputBuffer();
+                        int limit = Math.min(buffer.remaining(), source.remaining());
+                        int oldLimit = source.limit();
+                        source.limit(source.position() + limit);
+                        buffer.put(source);
+                        source.limit(oldLimit);
+                        protonTransport.processInput();
+                    }
+                } finally {
+                    incoming.release();
+                }
+
+                // Process the state changes from the latest data and then answer back
+                // any pending updates to the Broker.
+                processUpdates();
+                pumpToProtonTransport();
+            }
+        });
+    }
 
+    /**
+     * Callback method for the NioTransport to indicate that incoming data is ready.  The
+     * data is read straight from the channel into the proton transport input buffer on
+     * the provider thread and reading is then resumed once all available data is consumed.
+     *
+     * @param source
+     *        the NioTransport that has data available to read.
+     */
+    @Override
+    public void onDataAvailable(final NioTransport source) {
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                int read = 0;
                 do {
                     ByteBuffer buffer = protonTransport.getInputBuffer();
-                    int limit = Math.min(buffer.remaining(), source.remaining());
-                    ByteBuffer duplicate = source.duplicate();
-                    duplicate.limit(source.position() + limit);
-                    buffer.put(duplicate);
-                    protonTransport.processInput();
-                    source.position(source.position() + limit);
-                } while (source.hasRemaining());
+                    read = source.read(buffer);
+                    if (read > 0) {
+                        LOG.trace("Received from Broker {} bytes:", read);
+                        protonTransport.processInput();
+                    }
+                } while (read > 0);
 
                 // Process the state changes from the latest data and then answer back
                 // any pending updates to the Broker.
                 processUpdates();
                 pumpToProtonTransport();
+
+                if (read == 0) {
+                    source.resumeReading();
+                }
             }
         });
     }
@@ -604,7 +693,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void onTransportError(final Throwable error) {
         if (!closed.get()) {
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
                 @Override
                 public void run() {
                     LOG.info("Transport failed: {}", error.getMessage());
@@ -625,7 +714,7 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
     @Override
     public void onTransportClosed() {
         if (!closed.get()) {
-            serializer.execute(new Runnable() {
+            execute(new Runnable() {
                 @Override
                 public void run() {
                     LOG.debug("Transport connection remotely closed:");
@@ -665,7 +754,11 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
                         break;
                     case DELIVERY:
                         amqpResource = (AmqpResource) protonEvent.getLink().getContext();
-                        amqpResource.processDeliveryUpdates();
+                        if (protonEvent.getDelivery() != null) {
+                            amqpResource.processDeliveryUpdate(protonEvent.getDelivery());
+                        } else {
+                            amqpResource.processDeliveryUpdates();
+                        }
                         break;
                     default:
                         break;
@@ -681,8 +774,103 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         }
     }
 
+    /**
+     * Runs the given task on the provider thread once the given delay has passed.  Tasks
+     * scheduled after the provider is closed are dropped.
+     *
+     * @param task
+     *        the work to perform on the provider thread.
+     * @param delay
+     *        the time in milliseconds to wait before running the task.
+     */
+    synchronized void schedule(final Runnable task, long delay) {
+        if (closed.get()) {
+            return;
+        }
+
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runner) {
+                    Thread thread = new Thread(runner, "AmqpProvider Timer: " + getRemoteURI().getHost());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                if (!closed.get()) {
+                    execute(task);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues work to be run on the provider thread.  Work is handled in batches that
+     * run to completion and are followed by a single write of any output that the
+     * work in the batch produced.
+     *
+     * @param work
+     *        the work to perform on the provider thread.
+     */
+    private void execute(Runnable work) {
+        pendingWork.add(work);
+        if (batchScheduled.compareAndSet(false, true)) {
+            serializer.execute(batchProcessor);
+        }
+    }
+
+    private void processBatch() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchTime);
+        int processed = 0;
+
+        processingBatch = true;
+        try {
+            Runnable work = null;
+            while ((work = pendingWork.poll()) != null) {
+                try {
+                    work.run();
+                } catch (Throwable error) {
+                    LOG.warn("Caught unexpected error while processing provider work: {}", error.getMessage());
+                }
+
+                if (++processed >= maxBatchSize || (maxBatchTime > 0 && System.nanoTime() - deadline >= 0)) {
+                    break;
+                }
+            }
+        } finally {
+            processingBatch = false;
+        }
+
+        if (pumpRequested) {
+            pumpRequested = false;
+            pumpToProtonTransport();
+        }
+
+        batchStatistics.onBatch(processed);
+
+        // Allow new work to schedule a batch, then check for work that arrived after
+        // we stopped draining or that didn't fit in this batch.
+        batchScheduled.set(false);
+        if (!pendingWork.isEmpty() && batchScheduled.compareAndSet(false, true)) {
+            serializer.execute(batchProcessor);
+        }
+    }
+
     private void pumpToProtonTransport() {
+        if (processingBatch) {
+            pumpRequested = true;
+            return;
+        }
+
         try {
+            boolean wrote = false;
             boolean done = false;
             while (!done) {
                 ByteBuffer toWrite = protonTransport.getOutputBuffer();
@@ -693,10 +881,16 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
                     }
                     transport.send(toWrite);
                     protonTransport.outputConsumed();
+                    wrote = true;
                 } else {
                     done = true;
                 }
             }
+
+            if (wrote) {
+                transport.flush();
+                batchStatistics.onWrite();
+            }
         } catch (IOException e) {
             fireProviderException(e);
         }
@@ -778,6 +972,157 @@ public class AmqpProvider extends AbstractAsyncProvider implements TransportList
         this.presettleProducers = presettle;
     }
 
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of provider requests that are processed in one batch
+     * before any output they generated is written to the transport.
+     *
+     * @param maxBatchSize
+     *        the maximum number of requests handled per batch.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+
+    public long getMaxBatchTime() {
+        return maxBatchTime;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that a batch of provider requests can run
+     * for before any output they generated is written to the transport, a value of zero
+     * or less means there is no time limit.
+     *
+     * @param maxBatchTime
+     *        the maximum time to spend processing a single batch.
+     */
+    public void setMaxBatchTime(long maxBatchTime) {
+        this.maxBatchTime = maxBatchTime;
+    }
+
+    public int getAnonymousProducerCacheSize() {
+        return anonymousProducerCacheSize;
+    }
+
+    /**
+     * Sets the number of sender links that each session keeps open for anonymous
+     * producers, once full the least recently used link is closed to make room for a
+     * new one.  A value of zero or less disables the cache and an anonymous producer
+     * then opens and closes a link for every message it sends.
+     *
+     * @param anonymousProducerCacheSize
+     *        the maximum number of cached sender links per session.
+     */
+    public void setAnonymousProducerCacheSize(int anonymousProducerCacheSize) {
+        this.anonymousProducerCacheSize = anonymousProducerCacheSize;
+    }
+
+    public long getAnonymousProducerIdleTimeout() {
+        return anonymousProducerIdleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds that a cached anonymous producer sender link can go
+     * unused before it is closed, a value of zero or less keeps links open until they
+     * are evicted or the session closes.
+     *
+     * @param anonymousProducerIdleTimeout
+     *        the idle time after which a cached sender link is closed.
+     */
+    public void setAnonymousProducerIdleTimeout(long anonymousProducerIdleTimeout) {
+        this.anonymousProducerIdleTimeout = anonymousProducerIdleTimeout;
+    }
+
+    public String getCreditStrategy() {
+        return creditStrategy;
+    }
+
+    /**
+     * Sets the strategy consumers use to grant link credit.  The "fixed" strategy keeps
+     * the window at the consumer's prefetch size while the "adaptive" strategy sizes it
+     * to how fast the consumer takes messages, within the min and max credit window.
+     *
+     * @param creditStrategy
+     *        the name of the credit strategy, either fixed or adaptive.
+     */
+    public void setCreditStrategy(String creditStrategy) {
+        if (!FIXED_CREDIT_STRATEGY.equalsIgnoreCase(creditStrategy) &&
+            !ADAPTIVE_CREDIT_STRATEGY.equalsIgnoreCase(creditStrategy)) {
+            throw new IllegalArgumentException("Unknown credit strategy: " + creditStrategy);
+        }
+        this.creditStrategy = creditStrategy;
+    }
+
+    public int getMinCreditWindow() {
+        return minCreditWindow;
+    }
+
+    /**
+     * Sets the smallest credit window the adaptive credit strategy will shrink to.
+     *
+     * @param minCreditWindow
+     *        the minimum credit window for each consumer.
+     */
+    public void setMinCreditWindow(int minCreditWindow) {
+        this.minCreditWindow = minCreditWindow;
+    }
+
+    public int getMaxCreditWindow() {
+        return maxCreditWindow;
+    }
+
+    /**
+     * Sets the largest credit window the adaptive credit strategy will grow to.
+     *
+     * @param maxCreditWindow
+     *        the maximum credit window for each consumer.
+     */
+    public void setMaxCreditWindow(int maxCreditWindow) {
+        this.maxCreditWindow = maxCreditWindow;
+    }
+
+    public long getCreditTargetLatency() {
+        return creditTargetLatency;
+    }
+
+    /**
+     * Sets the time in milliseconds that the adaptive credit strategy aims to keep a
+     * message waiting in the prefetch buffer under, the window shrinks when messages
+     * wait longer than this.
+     *
+     * @param creditTargetLatency
+     *        the target time a message waits before the consumer takes it.
+     */
+    public void setCreditTargetLatency(long creditTargetLatency) {
+        this.creditTargetLatency = creditTargetLatency;
+    }
+
+    /**
+     * Creates the credit controller for a new consumer based on the configured strategy.
+     *
+     * @param prefetch
+     *        the prefetch size of the consumer.
+     *
+     * @return a new credit controller for the consumer.
+     */
+    public AmqpCreditController createCreditController(int prefetch) {
+        if (ADAPTIVE_CREDIT_STRATEGY.equalsIgnoreCase(creditStrategy)) {
+            return new AmqpAdaptiveCreditController(prefetch, minCreditWindow, maxCreditWindow, creditTargetLatency);
+        }
+
+        return new AmqpFixedCreditController(prefetch);
+    }
+
+    /**
+     * @return the statistics collected on request batching and transport writes.
+     */
+    public AmqpBatchStatistics getBatchStatistics() {
+        return batchStatistics;
+    }
+
     /**
      * @return the currently set Max Frame Size value.
      */
@@ -43,7 +43,7 @@ public class AmqpProviderFactory extends ProviderFactory {
 
         remoteURI = PropertyUtil.replaceQuery(remoteURI, map);
 
-        AsyncProvider result = new AmqpProvider(remoteURI);
+        AsyncProvider result = createAmqpProvider(remoteURI);
 
         if (!PropertyUtil.setProperties(result, providerOptions)) {
             String msg = ""
@@ -57,6 +57,21 @@ public class AmqpProviderFactory extends ProviderFactory {
         return result;
     }
 
+    /**
+     * Creates the AmqpProvider instance that the configured provider options are applied
+     * to, subclasses can override this to supply an AmqpProvider variant.
+     *
+     * @param remoteURI
+     *        the URI of the remote peer with the provider options removed.
+     *
+     * @return a new AmqpProvider instance.
+     *
+     * @throws Exception if an error occurs while creating the provider.
+     */
+    protected AmqpProvider createAmqpProvider(URI remoteURI) throws Exception {
+        return new AmqpProvider(remoteURI);
+    }
+
     @Override
     public String getName() {
         return "AMQP";
@@ -20,6 +20,8 @@ import io.hawtjms.provider.AsyncResult;
 
 import java.io.IOException;
 
+import org.apache.qpid.proton.engine.Delivery;
+
 /**
  * AmqpResource specification.
  *
@@ -109,6 +111,18 @@ public interface AmqpResource {
      */
     void processDeliveryUpdates() throws IOException;
 
+    /**
+     * Called when the Proton Engine signals that the given Delivery on this resource's
+     * link has been updated, allows a resource to handle just that delivery instead of
+     * checking all of its deliveries.
+     *
+     * @param delivery
+     *        the Delivery that was updated.
+     *
+     * @throws IOException if an error occurs while processing the update.
+     */
+    void processDeliveryUpdate(Delivery delivery) throws IOException;
+
     /**
      * Called when the Proton Engine signals an Flow related event has been triggered
      * for the given endpoint.
@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+import io.hawtjms.jms.JmsDestination;
+import io.hawtjms.jms.meta.JmsProducerId;
+import io.hawtjms.jms.meta.JmsProducerInfo;
+import io.hawtjms.provider.AsyncResult;
+import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.util.IdGenerator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.qpid.proton.engine.EndpointState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of open sender links used by the anonymous producers of a session.
+ *
+ * Links are keyed by their target address and evicted in least recently used order
+ * once the cache is full, links that go unused for longer than the configured idle
+ * timeout are closed.  A link with sends still awaiting an outcome is never closed
+ * so the cache may briefly hold more links than its configured size.
+ *
+ * All methods must be called from the provider thread.
+ */
+public class AmqpSenderCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpSenderCache.class);
+    private static final IdGenerator producerIdGenerator = new IdGenerator();
+
+    private final AmqpSession session;
+    private final String producerIdKey = producerIdGenerator.generateId();
+    private final LinkedHashMap<String, CachedSender> senders =
+        new LinkedHashMap<String, CachedSender>(16, 0.75f, true);
+    private long producerIdCount;
+    private boolean purgeScheduled;
+
+    private final Runnable purgeTask = new Runnable() {
+
+        @Override
+        public void run() {
+            purgeScheduled = false;
+            purgeIdleSenders();
+        }
+    };
+
+    public AmqpSenderCache(AmqpSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Gets an open, or opening, sender link for the given destination creating one if
+     * none is cached.  Sends made before the link has opened are held by the producer
+     * until the remote grants credit.
+     *
+     * @param destination
+     *        the destination that the returned sender targets.
+     *
+     * @return a sender link for the given destination.
+     */
+    public AmqpFixedProducer getSender(JmsDestination destination) {
+        String address = session.getQualifiedName(destination);
+
+        CachedSender cached = senders.get(address);
+        if (cached != null && isClosed(cached.producer)) {
+            LOG.debug("Cached sender for {} was closed, replacing it.", address);
+            senders.remove(address);
+            cached = null;
+        }
+
+        if (cached == null) {
+            JmsProducerInfo info = new JmsProducerInfo(new JmsProducerId(producerIdKey, -1, producerIdCount++));
+            info.setDestination(destination);
+
+            AmqpFixedProducer producer = new AmqpFixedProducer(session, info);
+            producer.setPresettle(session.getConnection().isPresettleProducers());
+
+            cached = new CachedSender(address, producer);
+            senders.put(address, cached);
+            producer.open(new SenderOpenRequest(cached));
+            evictIfNeeded();
+        }
+
+        cached.lastUsed = System.currentTimeMillis();
+        schedulePurge();
+
+        return cached.producer;
+    }
+
+    /**
+     * @return the number of sender links currently held in the cache.
+     */
+    public int size() {
+        return senders.size();
+    }
+
+    /**
+     * Forgets all cached senders, used when the parent session closes which also closes
+     * all of its links.
+     */
+    public void clear() {
+        senders.clear();
+    }
+
+    private void evictIfNeeded() {
+        int maxSize = session.getProvider().getAnonymousProducerCacheSize();
+        Iterator<CachedSender> iterator = senders.values().iterator();
+        while (senders.size() > maxSize && iterator.hasNext()) {
+            CachedSender candidate = iterator.next();
+            if (!candidate.producer.hasOutstandingSends()) {
+                LOG.trace("Evicting least recently used sender for: {}", candidate.address);
+                iterator.remove();
+                closeSender(candidate);
+            }
+        }
+    }
+
+    private void purgeIdleSenders() {
+        long idleTimeout = session.getProvider().getAnonymousProducerIdleTimeout();
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, CachedSender>> iterator = senders.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CachedSender candidate = iterator.next().getValue();
+            if (now - candidate.lastUsed >= idleTimeout && !candidate.producer.hasOutstandingSends()) {
+                LOG.trace("Closing idle sender for: {}", candidate.address);
+                iterator.remove();
+                closeSender(candidate);
+            }
+        }
+
+        schedulePurge();
+    }
+
+    private void schedulePurge() {
+        long idleTimeout = session.getProvider().getAnonymousProducerIdleTimeout();
+        if (!purgeScheduled && idleTimeout > 0 && !senders.isEmpty()) {
+            purgeScheduled = true;
+            session.getProvider().schedule(purgeTask, idleTimeout);
+        }
+    }
+
+    private void closeSender(CachedSender cached) {
+        if (!isClosed(cached.producer)) {
+            cached.producer.close(new ProviderRequest<Void>());
+        }
+    }
+
+    private boolean isClosed(AmqpFixedProducer producer) {
+        return producer.getLocalState() == EndpointState.CLOSED ||
+               producer.getRemoteState() == EndpointState.CLOSED;
+    }
+
+    private static final class CachedSender {
+
+        private final String address;
+        private final AmqpFixedProducer producer;
+        private long lastUsed;
+
+        public CachedSender(String address, AmqpFixedProducer producer) {
+            this.address = address;
+            this.producer = producer;
+        }
+    }
+
+    /*
+     * A sender that fails to open is dropped from the cache, the producer itself fails
+     * any sends that were waiting on it.
+     */
+    private final class SenderOpenRequest implements AsyncResult<Void> {
+
+        private final CachedSender cached;
+        private boolean complete;
+
+        public SenderOpenRequest(CachedSender cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            complete = true;
+            LOG.debug("Failed to open sender for {}: {}", cached.address, result.getMessage());
+            if (senders.get(cached.address) == cached) {
+                senders.remove(cached.address);
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            complete = true;
+            LOG.trace("Opened cached sender for: {}", cached.address);
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+}
@@ -25,12 +25,14 @@ import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.jms.meta.JmsSessionInfo;
 import io.hawtjms.jms.meta.JmsTransactionId;
 import io.hawtjms.provider.AsyncResult;
+import io.hawtjms.provider.ProviderRequest;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import javax.jms.IllegalStateException;
 
+import org.apache.qpid.proton.engine.EndpointState;
 import org.apache.qpid.proton.engine.Session;
 import org.apache.qpid.proton.message.MessageFactory;
 import org.slf4j.Logger;
@@ -46,6 +48,9 @@ public class AmqpSession extends AbstractAmqpResource<JmsSessionInfo, Session> {
     private final Map<JmsConsumerId, AmqpConsumer> consumers = new HashMap<JmsConsumerId, AmqpConsumer>();
     private final Map<JmsProducerId, AmqpProducer> producers = new HashMap<JmsProducerId, AmqpProducer>();
 
+    private AmqpSenderCache senderCache;
+    private AmqpFixedProducer anonymousRelaySender;
+
     public AmqpSession(AmqpConnection connection, JmsSessionInfo info) {
         super(info, connection.getProtonConnection().session());
         this.connection = connection;
@@ -75,6 +80,10 @@ public class AmqpSession extends AbstractAmqpResource<JmsSessionInfo, Session> {
 
     @Override
     protected void doClose() {
+        if (senderCache != null) {
+            senderCache.clear();
+        }
+        anonymousRelaySender = null;
         this.connection.removeSession(this);
     }
 
@@ -117,6 +126,36 @@ public class AmqpSession extends AbstractAmqpResource<JmsSessionInfo, Session> {
         return producer;
     }
 
+    /**
+     * @return the cache of sender links shared by the anonymous producers of this session.
+     */
+    public AmqpSenderCache getSenderCache() {
+        if (senderCache == null) {
+            senderCache = new AmqpSenderCache(this);
+        }
+        return senderCache;
+    }
+
+    /**
+     * Gets the single sender link with no target address that the anonymous producers
+     * of this session share when the remote peer supports the ANONYMOUS-RELAY capability,
+     * messages sent on it are routed using their 'to' address.
+     *
+     * @param producerId
+     *        the Id to assign to the relay sender should it need to be created.
+     *
+     * @return the anonymous relay sender for this session.
+     */
+    public AmqpFixedProducer getAnonymousRelaySender(JmsProducerId producerId) {
+        if (anonymousRelaySender == null || anonymousRelaySender.getRemoteState() == EndpointState.CLOSED) {
+            JmsProducerInfo info = new JmsProducerInfo(producerId);
+            anonymousRelaySender = new AmqpFixedProducer(this, info);
+            anonymousRelaySender.setPresettle(connection.isPresettleProducers());
+            anonymousRelaySender.open(new ProviderRequest<Void>());
+        }
+        return anonymousRelaySender;
+    }
+
     public AmqpProducer getProducer(JmsProducerInfo producerInfo) {
         return getProducer(producerInfo.getProducerId());
     }
@@ -138,6 +177,9 @@ public class AmqpSession extends AbstractAmqpResource<JmsSessionInfo, Session> {
         }
 
         result.setPresettle(connection.isPresettleConsumers());
+        if (!consumerInfo.isBrowser() && consumerInfo.getPrefetchSize() > 0) {
+            result.setCreditController(getProvider().createCreditController(consumerInfo.getPrefetchSize()));
+        }
         return result;
     }
 
@@ -17,13 +17,14 @@
 package io.hawtjms.provider.amqp;
 
 import java.io.UnsupportedEncodingException;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayDeque;
 
 /**
  * Utility class that can generate and if enabled pool the binary tag values
  * used to identify transfers over an AMQP link.
+ *
+ * Pooled tags are kept on a stack so the most recently returned tag is reused first,
+ * callers must not return a tag that is still in use or return a tag twice.
  */
 public final class AmqpTransferTagGenerator {
 
@@ -32,7 +33,7 @@ public final class AmqpTransferTagGenerator {
     private long nextTagId;
     private int maxPoolSize = DEFAULT_TAG_POOL_SIZE;
 
-    private final Set<byte[]> tagPool;
+    private final ArrayDeque<byte[]> tagPool;
 
     public AmqpTransferTagGenerator() {
         this(false);
@@ -40,7 +41,7 @@ public final class AmqpTransferTagGenerator {
 
     public AmqpTransferTagGenerator(boolean pool) {
         if (pool) {
-            this.tagPool = new LinkedHashSet<byte[]>();
+            this.tagPool = new ArrayDeque<byte[]>();
         } else {
             this.tagPool = null;
         }
@@ -52,12 +53,12 @@ public final class AmqpTransferTagGenerator {
      * @return a new or unused tag depending on the pool option.
      */
     public byte[] getNextTag() {
-        byte[] rc;
-        if (tagPool != null && !tagPool.isEmpty()) {
-            final Iterator<byte[]> iterator = tagPool.iterator();
-            rc = iterator.next();
-            iterator.remove();
-        } else {
+        byte[] rc = null;
+        if (tagPool != null) {
+            rc = tagPool.pollFirst();
+        }
+
+        if (rc == null) {
             try {
                 rc = Long.toHexString(nextTagId++).getBytes("UTF-8");
             } catch (UnsupportedEncodingException e) {
@@ -77,7 +78,7 @@ public final class AmqpTransferTagGenerator {
      */
     public void returnTag(byte[] data) {
         if (tagPool != null && tagPool.size() < maxPoolSize) {
-            tagPool.add(data);
+            tagPool.addFirst(data);
         }
     }
 
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsMessage;
+
+import javax.jms.JMSException;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.fusesource.hawtbuf.Buffer;
+
+/**
+ * AMQP JmsBytesMessage extension that decodes the bytes from the data or amqp-value
+ * body of the incoming message the first time the content is read.
+ */
+public class AmqpJmsBytesMessage extends JmsBytesMessage {
+
+    private boolean bodyDecoded;
+
+    public AmqpJmsBytesMessage(AmqpJmsMessageFacade facade) {
+        super(facade);
+    }
+
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        if (bodyDecoded) {
+            return super.copyOnWrite();
+        }
+
+        AmqpJmsBytesMessage other = new AmqpJmsBytesMessage((AmqpJmsMessageFacade) facade);
+        other.copy((JmsMessage) this);
+        shareFacadeWith(other);
+        return other;
+    }
+
+    @Override
+    public void clearBody() throws JMSException {
+        super.clearBody();
+        setContent(null);
+    }
+
+    @Override
+    public Buffer getContent() {
+        if (!bodyDecoded) {
+            Section body = ((AmqpJmsMessageFacade) facade).getBody();
+            if (body instanceof Data) {
+                setContent(AmqpJmsMessageFacade.toBuffer(((Data) body).getValue()));
+            } else if (body instanceof AmqpValue) {
+                setContent(AmqpJmsMessageFacade.toBuffer((Binary) ((AmqpValue) body).getValue()));
+            } else {
+                setContent(null);
+            }
+        }
+
+        return super.getContent();
+    }
+
+    @Override
+    protected void setContent(Buffer content) {
+        bodyDecoded = true;
+        super.setContent(content);
+    }
+}
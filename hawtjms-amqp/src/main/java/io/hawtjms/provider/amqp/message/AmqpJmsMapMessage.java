@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.message.JmsMapMessage;
+import io.hawtjms.jms.message.JmsMessage;
+
+import java.util.Map;
+
+import javax.jms.JMSException;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+/**
+ * AMQP JmsMapMessage extension that fills in the map from the amqp-value body of the
+ * incoming message the first time an entry is read.
+ */
+public class AmqpJmsMapMessage extends JmsMapMessage {
+
+    private boolean bodyDecoded;
+
+    public AmqpJmsMapMessage(AmqpJmsMessageFacade facade) {
+        super(facade);
+    }
+
+    @Override
+    public JmsMessage copy() throws JMSException {
+        initializeReading();
+        return super.copy();
+    }
+
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        if (bodyDecoded) {
+            return super.copyOnWrite();
+        }
+
+        AmqpJmsMapMessage other = new AmqpJmsMapMessage((AmqpJmsMessageFacade) facade);
+        other.copy((JmsMessage) this);
+        shareFacadeWith(other);
+        return other;
+    }
+
+    @Override
+    public void clearBody() throws JMSException {
+        super.clearBody();
+        bodyDecoded = true;
+    }
+
+    @Override
+    protected void initializeReading() throws JMSException {
+        if (!bodyDecoded) {
+            bodyDecoded = true;
+            Section body = ((AmqpJmsMessageFacade) facade).getBody();
+            if (body instanceof AmqpValue && ((AmqpValue) body).getValue() instanceof Map) {
+                Map<?, ?> entries = (Map<?, ?>) ((AmqpValue) body).getValue();
+                for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                    map.put(entry.getKey().toString(), AmqpJmsMessageFacade.toJmsValue(entry.getValue()));
+                }
+            }
+        }
+    }
+}
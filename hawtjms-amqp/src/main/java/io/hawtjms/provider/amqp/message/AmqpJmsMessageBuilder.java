@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsStreamMessage;
+
+import java.util.List;
+
+import javax.jms.JMSException;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpSequence;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.jms.EncodedMessage;
+
+/**
+ * Creates the JMS message for an incoming AMQP message.
+ *
+ * The JMS message type is chosen by looking at the body section descriptor and the
+ * constructor of the value it holds, nothing in the message is decoded up front apart
+ * from the properties of a data body, whose content-type decides if it holds a
+ * serialized Java object.  The resulting message reads its values lazily from an
+ * {@link AmqpJmsMessageFacade}.
+ */
+public final class AmqpJmsMessageBuilder {
+
+    private AmqpJmsMessageBuilder() {
+    }
+
+    /**
+     * Create a new JmsMessage backed by the given encoded AMQP message.
+     *
+     * @param encoded
+     *        the encoded AMQP message.
+     *
+     * @return a new JmsMessage instance for the encoded message.
+     *
+     * @throws JMSException if the message sections cannot be read.
+     */
+    public static JmsMessage createJmsMessage(EncodedMessage encoded) throws JMSException {
+        AmqpJmsMessageFacade facade = null;
+        try {
+            facade = new AmqpJmsMessageFacade(
+                encoded.getMessageFormat(), encoded.getArray(), encoded.getArrayOffset(), encoded.getLength());
+        } catch (RuntimeException e) {
+            throw new JMSException("Could not read incoming AMQP message: " + e.getMessage());
+        }
+
+        switch (facade.getBodySection()) {
+            case AmqpJmsMessageFacade.DATA:
+                if (AmqpJmsObjectMessage.SERIALIZED_JAVA_OBJECT_CONTENT_TYPE.equals(facade.getContentType())) {
+                    return new AmqpJmsObjectMessage(facade);
+                }
+                return new AmqpJmsBytesMessage(facade);
+            case AmqpJmsMessageFacade.AMQP_SEQUENCE:
+                return createStreamMessage(facade);
+            case AmqpJmsMessageFacade.AMQP_VALUE:
+                return createAmqpValueMessage(facade);
+            default:
+                return new JmsMessage(facade);
+        }
+    }
+
+    private static JmsMessage createAmqpValueMessage(AmqpJmsMessageFacade facade) throws JMSException {
+        switch (facade.getBodyValueConstructor()) {
+            case 0xa1:  // str8-utf8
+            case 0xb1:  // str32-utf8
+                return new AmqpJmsTextMessage(facade);
+            case 0xa0:  // vbin8
+            case 0xb0:  // vbin32
+                return new AmqpJmsBytesMessage(facade);
+            case 0x45:  // list0
+            case 0xc0:  // list8
+            case 0xd0:  // list32
+                return createStreamMessage(facade);
+            case 0xc1:  // map8
+            case 0xd1:  // map32
+                return new AmqpJmsMapMessage(facade);
+            default:
+                return new AmqpJmsObjectMessage(facade);
+        }
+    }
+
+    /*
+     * Stream messages are read through a position that is private to the core message so
+     * the body is decoded right away instead of lazily.
+     */
+    private static JmsMessage createStreamMessage(AmqpJmsMessageFacade facade) throws JMSException {
+        JmsStreamMessage message = new JmsStreamMessage(facade);
+
+        List<?> values = null;
+        Section body = facade.getBody();
+        if (body instanceof AmqpSequence) {
+            values = ((AmqpSequence) body).getValue();
+        } else if (body instanceof AmqpValue) {
+            values = (List<?>) ((AmqpValue) body).getValue();
+        }
+
+        if (values != null) {
+            for (Object value : values) {
+                message.writeObject(AmqpJmsMessageFacade.toJmsValue(value));
+            }
+        }
+
+        message.reset();
+        return message;
+    }
+}
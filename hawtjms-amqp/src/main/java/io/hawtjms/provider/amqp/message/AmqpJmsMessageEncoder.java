@@ -0,0 +1,705 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.AMQP_SEQUENCE;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.AMQP_VALUE;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.APPLICATION_PROPERTIES;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.CONTENT_ENCODING;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.CONTENT_TYPE;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.DATA;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.DELIVERY_ANNOTATIONS;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.DELIVERY_ANNOTATION_PREFIX;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.FIRST_ACQUIRER;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.FOOTER;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.FOOTER_PREFIX;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.HEADER;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.JMS_AMQP_PREFIX;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.MESSAGE_ANNOTATIONS;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.MESSAGE_ANNOTATION_PREFIX;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.PROPERTIES;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.REPLY_TO_GROUP_ID;
+import static io.hawtjms.provider.amqp.message.AmqpJmsMessageFacade.SUBJECT;
+import io.hawtjms.jms.JmsDestination;
+import io.hawtjms.jms.exceptions.JmsExceptionSupport;
+import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsMapMessage;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFacade;
+import io.hawtjms.jms.message.JmsObjectMessage;
+import io.hawtjms.jms.message.JmsStreamMessage;
+import io.hawtjms.jms.message.JmsTextMessage;
+import io.hawtjms.jms.meta.JmsMessageId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageEOFException;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedByte;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.apache.qpid.proton.amqp.UnsignedShort;
+import org.fusesource.hawtbuf.Buffer;
+
+/**
+ * Encodes outbound JMS messages straight into the AMQP wire format.
+ *
+ * Each section of the message is written directly from the values held in the message
+ * facade, there is no intermediate proton Message built along the way.  Values are written
+ * into a byte array that is reused from one message to the next, so an encoder instance
+ * must only be used by one producer at a time and the encoded bytes must be consumed
+ * before the next message is encoded.  Sending a Text or Bytes message that carries only
+ * primitive properties does not allocate anything beyond iterating the property map.
+ *
+ * The JMS_AMQP_ prefixed properties that the {@link AmqpJmsMessageFacade} creates for
+ * incoming messages are written back to the AMQP sections they came from, all other
+ * properties become application properties.  The message itself is never modified.
+ */
+public class AmqpJmsMessageEncoder {
+
+    public static final String SERIALIZED_JAVA_OBJECT_CONTENT_TYPE =
+        AmqpJmsObjectMessage.SERIALIZED_JAVA_OBJECT_CONTENT_TYPE;
+
+    private static final String JMS_TYPE = AmqpJmsMessageFacade.JMS_TYPE.toString();
+    private static final String TO_TYPE = AmqpJmsMessageFacade.TO_TYPE.toString();
+    private static final String REPLY_TO_TYPE = AmqpJmsMessageFacade.REPLY_TO_TYPE.toString();
+
+    private static final String QUEUE_TYPE = "queue";
+    private static final String TOPIC_TYPE = "topic";
+    private static final String TEMP_QUEUE_TYPE = "temporary,queue";
+    private static final String TEMP_TOPIC_TYPE = "temporary,topic";
+
+    private static final String ID_PREFIX = "ID:";
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    private int position;
+
+    // Tracks the fields of the header or properties list being written so that
+    // trailing null fields can be dropped once the list is complete.
+    private int fieldIndex;
+    private int fieldsEnd;
+    private int fieldsCount;
+
+    /**
+     * Encodes the given message, the result is held in the array returned from
+     * {@link #getArray()} until the next call to encode.
+     *
+     * @param message
+     *        the message to encode.
+     *
+     * @return the number of encoded bytes.
+     *
+     * @throws JMSException if the message contains values that cannot be encoded.
+     */
+    public int encode(JmsMessage message) throws JMSException {
+        if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = new byte[DEFAULT_BUFFER_SIZE];
+        }
+        position = 0;
+
+        JmsMessageFacade facade = message.getFacade();
+
+        try {
+            Map<String, Object> properties = facade.getProperties();
+
+            writeHeader(facade, properties);
+            writePrefixedMap(DELIVERY_ANNOTATIONS, DELIVERY_ANNOTATION_PREFIX, properties);
+            writeMessageAnnotations(facade, properties);
+            writeProperties(message, facade, properties);
+            writeApplicationProperties(properties);
+            writeBody(message);
+            writePrefixedMap(FOOTER, FOOTER_PREFIX, properties);
+        } catch (IOException e) {
+            throw JmsExceptionSupport.create(e);
+        } catch (IllegalArgumentException e) {
+            throw JmsExceptionSupport.createMessageFormatException(e);
+        }
+
+        return position;
+    }
+
+    /**
+     * @return the array that holds the last encoded message, starting at index zero.
+     */
+    public byte[] getArray() {
+        return buffer;
+    }
+
+    //----- Message sections -------------------------------------------------//
+
+    private void writeHeader(JmsMessageFacade facade, Map<String, Object> properties) {
+        long ttl = 0;
+        if (facade.getExpiration() > 0) {
+            ttl = Math.min(Math.max(facade.getExpiration() - System.currentTimeMillis(), 1), 0xFFFFFFFFL);
+        }
+
+        Object firstAcquirer = properties.get(FIRST_ACQUIRER);
+
+        writeSectionDescriptor(HEADER);
+        int list = beginFields();
+
+        writeField(facade.isPersistent() ? Boolean.TRUE : null);
+        if (facade.getPriority() != Message.DEFAULT_PRIORITY) {
+            writeByte(0x50);
+            writeByte(facade.getPriority());
+            markField(true);
+        } else {
+            writeField(null);
+        }
+        writeUnsignedIntField(ttl);
+        writeField(firstAcquirer instanceof Boolean ? firstAcquirer : null);
+        writeUnsignedIntField(facade.getRedeliveryCounter());
+
+        endFields(list);
+    }
+
+    private void writeMessageAnnotations(JmsMessageFacade facade, Map<String, Object> properties) throws JMSException {
+        int start = position;
+        writeSectionDescriptor(MESSAGE_ANNOTATIONS);
+        int map = beginCompound(0xd1);
+        int count = 0;
+
+        if (facade.getType() != null) {
+            writeSymbol(JMS_TYPE, 0);
+            writeString(facade.getType());
+            count++;
+        }
+
+        if (facade.getDestination() != null) {
+            writeSymbol(TO_TYPE, 0);
+            writeString(destinationType(facade.getDestination()));
+            count++;
+        }
+        if (facade.getReplyTo() != null) {
+            writeSymbol(REPLY_TO_TYPE, 0);
+            writeString(destinationType(facade.getReplyTo()));
+            count++;
+        }
+
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(MESSAGE_ANNOTATION_PREFIX)) {
+                writeSymbol(entry.getKey(), MESSAGE_ANNOTATION_PREFIX.length());
+                writeValue(entry.getValue());
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            position = start;
+        } else {
+            endCompound(map, count * 2);
+        }
+    }
+
+    private void writeProperties(JmsMessage message, JmsMessageFacade facade, Map<String, Object> properties) throws JMSException {
+        writeSectionDescriptor(PROPERTIES);
+        int list = beginFields();
+
+        // message-id
+        JmsMessageId messageId = facade.getMessageId();
+        if (messageId != null && messageId.getValue() != null) {
+            String value = messageId.getValue();
+            writeUtf8(0xa1, 0xb1, value.startsWith(ID_PREFIX) ? null : ID_PREFIX, value, 0);
+            markField(true);
+        } else {
+            writeField(null);
+        }
+
+        // user-id
+        if (facade.getUserId() != null) {
+            writeUtf8(0xa0, 0xb0, null, facade.getUserId(), 0);
+            markField(true);
+        } else {
+            writeField(null);
+        }
+
+        // to, subject and reply-to
+        JmsDestination destination = facade.getDestination();
+        writeField(destination != null ? destination.getName() : null);
+        writeStringField(properties.get(SUBJECT));
+        JmsDestination replyTo = facade.getReplyTo();
+        writeField(replyTo != null ? replyTo.getName() : null);
+
+        // correlation-id
+        writeField(facade.getCorrelationId());
+
+        // content-type and content-encoding
+        Object contentType = properties.get(CONTENT_TYPE);
+        if (message instanceof JmsObjectMessage) {
+            contentType = SERIALIZED_JAVA_OBJECT_CONTENT_TYPE;
+        }
+        writeSymbolField(contentType);
+        writeSymbolField(properties.get(CONTENT_ENCODING));
+
+        // absolute-expiry-time and creation-time
+        writeTimestampField(facade.getExpiration());
+        writeTimestampField(facade.getTimestamp());
+
+        // group-id, group-sequence and reply-to-group-id
+        writeField(facade.getGroupId());
+        writeUnsignedIntField(facade.getGroupSequence());
+        writeStringField(properties.get(REPLY_TO_GROUP_ID));
+
+        endFields(list);
+    }
+
+    private void writeApplicationProperties(Map<String, Object> properties) {
+        int start = position;
+        writeSectionDescriptor(APPLICATION_PROPERTIES);
+        int map = beginCompound(0xd1);
+        int count = 0;
+
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!entry.getKey().startsWith(JMS_AMQP_PREFIX)) {
+                writeString(entry.getKey());
+                writeValue(entry.getValue());
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            position = start;
+        } else {
+            endCompound(map, count * 2);
+        }
+    }
+
+    private void writePrefixedMap(int section, String prefix, Map<String, Object> properties) {
+        int start = position;
+        writeSectionDescriptor(section);
+        int map = beginCompound(0xd1);
+        int count = 0;
+
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                writeSymbol(entry.getKey(), prefix.length());
+                writeValue(entry.getValue());
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            position = start;
+        } else {
+            endCompound(map, count * 2);
+        }
+    }
+
+    private void writeBody(JmsMessage message) throws JMSException, IOException {
+        if (message instanceof JmsTextMessage) {
+            writeSectionDescriptor(AMQP_VALUE);
+            writeValue(((JmsTextMessage) message).getText());
+        } else if (message instanceof JmsBytesMessage) {
+            Buffer content = ((JmsBytesMessage) message).getContent();
+            writeSectionDescriptor(DATA);
+            if (content != null) {
+                writeBinary(content.data, content.offset, content.length);
+            } else {
+                writeBinary(null, 0, 0);
+            }
+        } else if (message instanceof JmsMapMessage) {
+            JmsMapMessage mapMessage = (JmsMapMessage) message;
+            writeSectionDescriptor(AMQP_VALUE);
+            int map = beginCompound(0xd1);
+            int count = 0;
+            Enumeration<String> names = mapMessage.getMapNames();
+            while (names.hasMoreElements()) {
+                String name = names.nextElement();
+                writeString(name);
+                writeValue(mapMessage.getObject(name));
+                count++;
+            }
+            endCompound(map, count * 2);
+        } else if (message instanceof JmsStreamMessage) {
+            JmsStreamMessage streamMessage = (JmsStreamMessage) message;
+            writeSectionDescriptor(AMQP_SEQUENCE);
+            int list = beginCompound(0xd0);
+            int count = 0;
+            streamMessage.reset();
+            try {
+                while (true) {
+                    writeValue(streamMessage.readObject());
+                    count++;
+                }
+            } catch (MessageEOFException eof) {
+            } finally {
+                streamMessage.reset();
+            }
+            endCompound(list, count);
+        } else if (message instanceof JmsObjectMessage) {
+            Serializable object = ((JmsObjectMessage) message).getObject();
+            writeSectionDescriptor(DATA);
+            if (object != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream output = new ObjectOutputStream(bytes);
+                output.writeObject(object);
+                output.close();
+                byte[] serialized = bytes.toByteArray();
+                writeBinary(serialized, 0, serialized.length);
+            } else {
+                writeBinary(null, 0, 0);
+            }
+        }
+    }
+
+    private static String destinationType(JmsDestination destination) {
+        if (destination.isTopic()) {
+            return destination.isTemporary() ? TEMP_TOPIC_TYPE : TOPIC_TYPE;
+        } else {
+            return destination.isTemporary() ? TEMP_QUEUE_TYPE : QUEUE_TYPE;
+        }
+    }
+
+    //----- Described list fields --------------------------------------------//
+
+    private int beginFields() {
+        fieldIndex = 0;
+        fieldsCount = 0;
+        int list = beginCompound(0xd0);
+        fieldsEnd = position;
+        return list;
+    }
+
+    private void writeField(Object value) {
+        writeValue(value);
+        markField(value != null);
+    }
+
+    private void writeStringField(Object value) {
+        writeField(value != null ? value.toString() : null);
+    }
+
+    private void writeUnsignedIntField(long value) {
+        if (value > 0) {
+            writeByte(0x70);
+            writeInt((int) value);
+            markField(true);
+        } else {
+            writeField(null);
+        }
+    }
+
+    private void writeSymbolField(Object value) {
+        if (value != null) {
+            writeSymbol(value.toString(), 0);
+            markField(true);
+        } else {
+            writeField(null);
+        }
+    }
+
+    private void writeTimestampField(long value) {
+        if (value > 0) {
+            writeByte(0x83);
+            writeLong(value);
+            markField(true);
+        } else {
+            writeField(null);
+        }
+    }
+
+    private void markField(boolean present) {
+        fieldIndex++;
+        if (present) {
+            fieldsEnd = position;
+            fieldsCount = fieldIndex;
+        }
+    }
+
+    /*
+     * Drops the trailing null fields, and the section itself if every field was null.
+     */
+    private void endFields(int list) {
+        position = fieldsEnd;
+        if (fieldsCount == 0) {
+            position = list - 4;
+        } else {
+            endCompound(list, fieldsCount);
+        }
+    }
+
+    //----- AMQP type encodings ----------------------------------------------//
+
+    private void writeSectionDescriptor(int code) {
+        ensureCapacity(3);
+        buffer[position++] = 0x00;
+        buffer[position++] = 0x53;
+        buffer[position++] = (byte) code;
+    }
+
+    /*
+     * Writes the constructor of a 32 bit list or map and leaves room for its size and
+     * count, returns the position of the size for use in endCompound.
+     */
+    private int beginCompound(int constructor) {
+        ensureCapacity(9);
+        buffer[position++] = (byte) constructor;
+        int marker = position;
+        position += 8;
+        return marker;
+    }
+
+    private void endCompound(int marker, int count) {
+        putInt(marker, position - marker - 4);
+        putInt(marker + 4, count);
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            writeByte(0x40);
+        } else if (value instanceof String) {
+            writeString((String) value);
+        } else if (value instanceof Boolean) {
+            writeByte(((Boolean) value).booleanValue() ? 0x41 : 0x42);
+        } else if (value instanceof Integer) {
+            int intValue = ((Integer) value).intValue();
+            if (intValue >= Byte.MIN_VALUE && intValue <= Byte.MAX_VALUE) {
+                writeByte(0x54);
+                writeByte(intValue);
+            } else {
+                writeByte(0x71);
+                writeInt(intValue);
+            }
+        } else if (value instanceof Long) {
+            long longValue = ((Long) value).longValue();
+            if (longValue >= Byte.MIN_VALUE && longValue <= Byte.MAX_VALUE) {
+                writeByte(0x55);
+                writeByte((int) longValue);
+            } else {
+                writeByte(0x81);
+                writeLong(longValue);
+            }
+        } else if (value instanceof Byte) {
+            writeByte(0x51);
+            writeByte(((Byte) value).byteValue());
+        } else if (value instanceof Short) {
+            writeByte(0x61);
+            writeShort(((Short) value).shortValue());
+        } else if (value instanceof Float) {
+            writeByte(0x72);
+            writeInt(Float.floatToRawIntBits(((Float) value).floatValue()));
+        } else if (value instanceof Double) {
+            writeByte(0x82);
+            writeLong(Double.doubleToRawLongBits(((Double) value).doubleValue()));
+        } else if (value instanceof Character) {
+            writeByte(0x73);
+            writeInt(((Character) value).charValue());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            writeBinary(bytes, 0, bytes.length);
+        } else if (value instanceof Binary) {
+            Binary binary = (Binary) value;
+            writeBinary(binary.getArray(), binary.getArrayOffset(), binary.getLength());
+        } else if (value instanceof Symbol) {
+            writeSymbol(value.toString(), 0);
+        } else if (value instanceof UnsignedByte) {
+            writeByte(0x50);
+            writeByte(((UnsignedByte) value).byteValue());
+        } else if (value instanceof UnsignedShort) {
+            writeByte(0x60);
+            writeShort(((UnsignedShort) value).shortValue());
+        } else if (value instanceof UnsignedInteger) {
+            writeByte(0x70);
+            writeInt(((UnsignedInteger) value).intValue());
+        } else if (value instanceof UnsignedLong) {
+            writeByte(0x80);
+            writeLong(((UnsignedLong) value).longValue());
+        } else if (value instanceof Date) {
+            writeByte(0x83);
+            writeLong(((Date) value).getTime());
+        } else if (value instanceof UUID) {
+            writeByte(0x98);
+            writeLong(((UUID) value).getMostSignificantBits());
+            writeLong(((UUID) value).getLeastSignificantBits());
+        } else if (value instanceof Map) {
+            int map = beginCompound(0xd1);
+            int count = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+                count++;
+            }
+            endCompound(map, count * 2);
+        } else if (value instanceof List) {
+            int list = beginCompound(0xd0);
+            int count = 0;
+            for (Object element : (List<?>) value) {
+                writeValue(element);
+                count++;
+            }
+            endCompound(list, count);
+        } else {
+            throw new IllegalArgumentException("Cannot encode value of type " + value.getClass().getName());
+        }
+    }
+
+    private void writeString(String value) {
+        writeUtf8(0xa1, 0xb1, null, value, 0);
+    }
+
+    private void writeSymbol(String value, int from) {
+        writeUtf8(0xa3, 0xb3, null, value, from);
+    }
+
+    private void writeBinary(byte[] data, int offset, int length) {
+        if (length <= 255) {
+            ensureCapacity(2 + length);
+            buffer[position++] = (byte) 0xa0;
+            buffer[position++] = (byte) length;
+        } else {
+            ensureCapacity(5 + length);
+            buffer[position++] = (byte) 0xb0;
+            writeInt(length);
+        }
+
+        if (length > 0) {
+            System.arraycopy(data, offset, buffer, position, length);
+            position += length;
+        }
+    }
+
+    /*
+     * Writes the UTF-8 bytes of the optional prefix followed by the value from the given
+     * index onward, as one variable width value of the given type.
+     */
+    private void writeUtf8(int smallType, int largeType, String prefix, String value, int from) {
+        int length = utf8Length(prefix, 0) + utf8Length(value, from);
+        if (length <= 255) {
+            ensureCapacity(2 + length);
+            buffer[position++] = (byte) smallType;
+            buffer[position++] = (byte) length;
+        } else {
+            ensureCapacity(5 + length);
+            buffer[position++] = (byte) largeType;
+            writeInt(length);
+        }
+
+        putUtf8(prefix, 0);
+        putUtf8(value, from);
+    }
+
+    private static int utf8Length(String value, int from) {
+        if (value == null) {
+            return 0;
+        }
+
+        int length = 0;
+        int count = value.length();
+        for (int i = from; i < count; ++i) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+
+        return length;
+    }
+
+    /*
+     * Must be called after ensuring the buffer can hold the result of utf8Length.
+     */
+    private void putUtf8(String value, int from) {
+        if (value == null) {
+            return;
+        }
+
+        int count = value.length();
+        for (int i = from; i < count; ++i) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // Unpaired surrogates have no UTF-8 form, replaced the same way String.getBytes does.
+                buffer[position++] = (byte) '?';
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        putInt(position, value);
+        position += 4;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void putInt(int index, int value) {
+        buffer[index] = (byte) (value >>> 24);
+        buffer[index + 1] = (byte) (value >>> 16);
+        buffer[index + 2] = (byte) (value >>> 8);
+        buffer[index + 3] = (byte) value;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (position + needed > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, position + needed)];
+            System.arraycopy(buffer, 0, grown, 0, position);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,770 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.JmsDestination;
+import io.hawtjms.jms.message.JmsDefaultMessageFacade;
+import io.hawtjms.jms.meta.JmsMessageId;
+import io.hawtjms.provider.amqp.AmqpJMSVendor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.Topic;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.DeliveryAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Footer;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.fusesource.hawtbuf.Buffer;
+
+/**
+ * A JmsMessageFacade that is backed by the encoded bytes of an incoming AMQP message.
+ *
+ * When the facade is created the encoded message is only scanned for the position of
+ * each of its sections, a section is decoded the first time a value it holds is needed.
+ * The header, annotations and properties sections are decoded together when any JMS
+ * header is accessed, the application-properties and footer sections when any message
+ * property is accessed and the body only when the message that wraps this facade reads
+ * its content.  A consumer that only looks at the JMSMessageID or a few properties of
+ * a message never pays for decoding the body.
+ *
+ * The facade can be shared by the message held in the consumer and the copy of it that
+ * is given to the application, so the lazy decoding of the sections is synchronized.
+ * Once decoded the values are held in the fields of the default facade and can be
+ * updated in the usual way.
+ */
+public class AmqpJmsMessageFacade extends JmsDefaultMessageFacade {
+
+    public static final String JMS_AMQP_PREFIX = "JMS_AMQP_";
+    public static final String MESSAGE_FORMAT = JMS_AMQP_PREFIX + "MESSAGE_FORMAT";
+    public static final String FIRST_ACQUIRER = JMS_AMQP_PREFIX + "FirstAcquirer";
+    public static final String SUBJECT = JMS_AMQP_PREFIX + "Subject";
+    public static final String CONTENT_TYPE = JMS_AMQP_PREFIX + "ContentType";
+    public static final String CONTENT_ENCODING = JMS_AMQP_PREFIX + "ContentEncoding";
+    public static final String REPLY_TO_GROUP_ID = JMS_AMQP_PREFIX + "ReplyToGroupID";
+    public static final String DELIVERY_ANNOTATION_PREFIX = JMS_AMQP_PREFIX + "DA_";
+    public static final String MESSAGE_ANNOTATION_PREFIX = JMS_AMQP_PREFIX + "MA_";
+    public static final String FOOTER_PREFIX = JMS_AMQP_PREFIX + "FT_";
+
+    public static final Symbol JMS_TYPE = Symbol.valueOf("x-opt-jms-type");
+    public static final Symbol TO_TYPE = Symbol.valueOf("x-opt-to-type");
+    public static final Symbol REPLY_TO_TYPE = Symbol.valueOf("x-opt-reply-type");
+
+    // Descriptor codes of the message sections, in the order they appear in a message.
+    static final int HEADER = 0x70;
+    static final int DELIVERY_ANNOTATIONS = 0x71;
+    static final int MESSAGE_ANNOTATIONS = 0x72;
+    static final int PROPERTIES = 0x73;
+    static final int APPLICATION_PROPERTIES = 0x74;
+    static final int DATA = 0x75;
+    static final int AMQP_SEQUENCE = 0x76;
+    static final int AMQP_VALUE = 0x77;
+    static final int FOOTER = 0x78;
+
+    private static final String[] SECTION_NAMES = new String[] {
+        "amqp:header:list",
+        "amqp:delivery-annotations:map",
+        "amqp:message-annotations:map",
+        "amqp:properties:list",
+        "amqp:application-properties:map",
+        "amqp:data:binary",
+        "amqp:amqp-sequence:list",
+        "amqp:amqp-value:*",
+        "amqp:footer:map"
+    };
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<DecoderImpl> DECODER = new ThreadLocal<DecoderImpl>() {
+
+        @Override
+        protected DecoderImpl initialValue() {
+            DecoderImpl decoder = new DecoderImpl();
+            AMQPDefinedTypes.registerAllTypes(decoder, new EncoderImpl(decoder));
+            return decoder;
+        }
+    };
+
+    private final long messageFormat;
+    private final byte[] encoded;
+    private final int[] sectionStart;
+    private final int[] sectionEnd;
+    private final int bodySection;
+    private final long arrivalTime;
+
+    private String contentType;
+    private JmsDestination consumerDestination;
+
+    private volatile boolean headersDecoded;
+    private volatile boolean propertiesDecoded;
+
+    /**
+     * Creates a facade for the given encoded AMQP message, the bytes are referenced and
+     * not copied so they must not be modified for the lifetime of the facade.
+     *
+     * @param messageFormat
+     *        the message format value of the incoming transfer.
+     * @param encoded
+     *        the array that holds the encoded message.
+     * @param offset
+     *        the offset into the array where the message begins.
+     * @param length
+     *        the length of the encoded message.
+     *
+     * @throws IllegalArgumentException if the message sections cannot be read.
+     */
+    public AmqpJmsMessageFacade(long messageFormat, byte[] encoded, int offset, int length) {
+        this.messageFormat = messageFormat;
+        this.encoded = encoded;
+        this.sectionStart = new int[FOOTER - HEADER + 1];
+        this.sectionEnd = new int[FOOTER - HEADER + 1];
+        this.bodySection = scanSections(offset, length);
+        this.arrivalTime = System.currentTimeMillis();
+    }
+
+    private AmqpJmsMessageFacade(AmqpJmsMessageFacade source) {
+        this.messageFormat = source.messageFormat;
+        this.encoded = source.encoded;
+        this.sectionStart = source.sectionStart;
+        this.sectionEnd = source.sectionEnd;
+        this.bodySection = source.bodySection;
+        this.arrivalTime = source.arrivalTime;
+    }
+
+    @Override
+    public synchronized AmqpJmsMessageFacade copy() {
+        AmqpJmsMessageFacade copy = new AmqpJmsMessageFacade(this);
+        copyInto(copy);
+        copy.contentType = this.contentType;
+        copy.consumerDestination = this.consumerDestination;
+        copy.headersDecoded = this.headersDecoded;
+        copy.propertiesDecoded = this.propertiesDecoded;
+        return copy;
+    }
+
+    /**
+     * @return the message format value of the transfer that carried this message.
+     */
+    public long getMessageFormat() {
+        return messageFormat;
+    }
+
+    /**
+     * @return the value of the content-type property of the message, or null if not set.
+     */
+    public String getContentType() {
+        lazyDecodeHeaders();
+        return contentType;
+    }
+
+    /**
+     * Decodes the body section of the message.  The section is decoded again on each call
+     * so callers should hold on to the result.
+     *
+     * @return the decoded body section, or null if the message has no body.
+     */
+    public Section getBody() {
+        if (bodySection < 0) {
+            return null;
+        }
+        return (Section) decodeSection(bodySection);
+    }
+
+    /**
+     * @return the descriptor code of the body section, or -1 if there is no body.
+     */
+    int getBodySection() {
+        return bodySection;
+    }
+
+    /**
+     * @return the type constructor of the value held in an amqp-value body section.
+     */
+    int getBodyValueConstructor() {
+        int value = skip(sectionStart[AMQP_VALUE - HEADER] + 1);
+        return encoded[value] & 0xff;
+    }
+
+    //----- Message properties, decoded on first use -------------------------//
+
+    @Override
+    public Map<String, Object> getProperties() throws IOException {
+        lazyDecodeProperties();
+        return super.getProperties();
+    }
+
+    @Override
+    public boolean propertyExists(String key) throws IOException {
+        lazyDecodeProperties();
+        return super.propertyExists(key);
+    }
+
+    @Override
+    public Object getProperty(String key) throws IOException {
+        lazyDecodeProperties();
+        return super.getProperty(key);
+    }
+
+    @Override
+    public void setProperty(String key, Object value) throws IOException {
+        lazyDecodeProperties();
+        super.setProperty(key, value);
+    }
+
+    @Override
+    public void clearProperties() {
+        lazyDecodeProperties();
+        super.clearProperties();
+    }
+
+    //----- Message headers, decoded on first use ----------------------------//
+
+    @Override
+    public JmsMessageId getMessageId() {
+        lazyDecodeHeaders();
+        return super.getMessageId();
+    }
+
+    @Override
+    public void setMessageId(JmsMessageId messageId) {
+        lazyDecodeHeaders();
+        super.setMessageId(messageId);
+    }
+
+    @Override
+    public long getTimestamp() {
+        lazyDecodeHeaders();
+        return super.getTimestamp();
+    }
+
+    @Override
+    public void setTimestamp(long timestamp) {
+        lazyDecodeHeaders();
+        super.setTimestamp(timestamp);
+    }
+
+    @Override
+    public String getCorrelationId() {
+        lazyDecodeHeaders();
+        return super.getCorrelationId();
+    }
+
+    @Override
+    public void setCorrelationId(String correlationId) {
+        lazyDecodeHeaders();
+        super.setCorrelationId(correlationId);
+    }
+
+    @Override
+    public boolean isPersistent() {
+        lazyDecodeHeaders();
+        return super.isPersistent();
+    }
+
+    @Override
+    public void setPersistent(boolean value) {
+        lazyDecodeHeaders();
+        super.setPersistent(value);
+    }
+
+    @Override
+    public int getRedeliveryCounter() {
+        lazyDecodeHeaders();
+        return super.getRedeliveryCounter();
+    }
+
+    @Override
+    public void setRedeliveryCounter(int redeliveryCount) {
+        lazyDecodeHeaders();
+        super.setRedeliveryCounter(redeliveryCount);
+    }
+
+    @Override
+    public String getType() {
+        lazyDecodeHeaders();
+        return super.getType();
+    }
+
+    @Override
+    public void setType(String type) {
+        lazyDecodeHeaders();
+        super.setType(type);
+    }
+
+    @Override
+    public byte getPriority() {
+        lazyDecodeHeaders();
+        return super.getPriority();
+    }
+
+    @Override
+    public void setPriority(byte priority) {
+        lazyDecodeHeaders();
+        super.setPriority(priority);
+    }
+
+    @Override
+    public long getExpiration() {
+        lazyDecodeHeaders();
+        return super.getExpiration();
+    }
+
+    @Override
+    public void setExpiration(long expiration) {
+        lazyDecodeHeaders();
+        super.setExpiration(expiration);
+    }
+
+    @Override
+    public JmsDestination getDestination() throws JMSException {
+        lazyDecodeHeaders();
+        return super.getDestination();
+    }
+
+    @Override
+    public void setDestination(JmsDestination destination) {
+        lazyDecodeHeaders();
+        super.setDestination(destination);
+    }
+
+    /**
+     * Sets the destination of the consumer that received this message.  Unlike a call to
+     * setDestination this does not decode the message headers, the destination replaces
+     * the one read from the To address when the headers are decoded.
+     *
+     * @param destination
+     *        the destination of the consumer that received the message.
+     */
+    public synchronized void setConsumerDestination(JmsDestination destination) {
+        if (headersDecoded) {
+            super.setDestination(destination);
+        } else {
+            consumerDestination = destination;
+        }
+    }
+
+    @Override
+    public JmsDestination getReplyTo() throws JMSException {
+        lazyDecodeHeaders();
+        return super.getReplyTo();
+    }
+
+    @Override
+    public void setReplyTo(JmsDestination replyTo) {
+        lazyDecodeHeaders();
+        super.setReplyTo(replyTo);
+    }
+
+    @Override
+    public String getUserId() {
+        lazyDecodeHeaders();
+        return super.getUserId();
+    }
+
+    @Override
+    public void setUserId(String userId) {
+        lazyDecodeHeaders();
+        super.setUserId(userId);
+    }
+
+    @Override
+    public String getGroupId() {
+        lazyDecodeHeaders();
+        return super.getGroupId();
+    }
+
+    @Override
+    public void setGroupId(String groupId) {
+        lazyDecodeHeaders();
+        super.setGroupId(groupId);
+    }
+
+    @Override
+    public int getGroupSequence() {
+        lazyDecodeHeaders();
+        return super.getGroupSequence();
+    }
+
+    @Override
+    public void setGroupSequence(int groupSequence) {
+        lazyDecodeHeaders();
+        super.setGroupSequence(groupSequence);
+    }
+
+    //----- Section decoding -------------------------------------------------//
+
+    boolean isHeadersDecoded() {
+        return headersDecoded;
+    }
+
+    boolean isPropertiesDecoded() {
+        return propertiesDecoded;
+    }
+
+    private void lazyDecodeHeaders() {
+        if (!headersDecoded) {
+            decodeHeaders();
+        }
+    }
+
+    private void lazyDecodeProperties() {
+        if (!propertiesDecoded) {
+            decodeProperties();
+        }
+    }
+
+    private synchronized void decodeHeaders() {
+        if (headersDecoded) {
+            return;
+        }
+
+        long ttl = 0;
+        String toType = null;
+        String replyToType = null;
+
+        Header header = (Header) decodeSection(HEADER);
+        if (header != null) {
+            if (header.getDurable() != null) {
+                persistent = header.getDurable().booleanValue();
+            }
+            if (header.getPriority() != null) {
+                priority = (byte) Math.min(header.getPriority().intValue(), 9);
+            }
+            if (header.getTtl() != null) {
+                ttl = header.getTtl().longValue();
+            }
+            if (header.getFirstAcquirer() != null) {
+                properties.put(FIRST_ACQUIRER, header.getFirstAcquirer());
+            }
+            if (header.getDeliveryCount() != null) {
+                redeliveryCount = header.getDeliveryCount().intValue();
+            }
+        }
+
+        DeliveryAnnotations deliveryAnnotations = (DeliveryAnnotations) decodeSection(DELIVERY_ANNOTATIONS);
+        if (deliveryAnnotations != null && deliveryAnnotations.getValue() != null) {
+            for (Map.Entry<?, ?> entry : deliveryAnnotations.getValue().entrySet()) {
+                properties.put(DELIVERY_ANNOTATION_PREFIX + entry.getKey(), entry.getValue());
+            }
+        }
+
+        MessageAnnotations messageAnnotations = (MessageAnnotations) decodeSection(MESSAGE_ANNOTATIONS);
+        if (messageAnnotations != null && messageAnnotations.getValue() != null) {
+            for (Map.Entry<?, ?> entry : messageAnnotations.getValue().entrySet()) {
+                if (JMS_TYPE.equals(entry.getKey())) {
+                    type = String.valueOf(entry.getValue());
+                } else if (TO_TYPE.equals(entry.getKey())) {
+                    toType = String.valueOf(entry.getValue());
+                } else if (REPLY_TO_TYPE.equals(entry.getKey())) {
+                    replyToType = String.valueOf(entry.getValue());
+                } else {
+                    properties.put(MESSAGE_ANNOTATION_PREFIX + entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        Properties amqpProperties = (Properties) decodeSection(PROPERTIES);
+        if (amqpProperties != null) {
+            if (amqpProperties.getMessageId() != null) {
+                messageId = new JmsMessageId(amqpProperties.getMessageId().toString());
+            }
+            if (amqpProperties.getUserId() != null) {
+                Binary user = amqpProperties.getUserId();
+                userId = new String(user.getArray(), user.getArrayOffset(), user.getLength(), UTF8);
+            }
+            if (amqpProperties.getTo() != null) {
+                destination = createDestination(amqpProperties.getTo(), toType);
+            }
+            if (amqpProperties.getSubject() != null) {
+                properties.put(SUBJECT, amqpProperties.getSubject());
+            }
+            if (amqpProperties.getReplyTo() != null) {
+                replyTo = createDestination(amqpProperties.getReplyTo(), replyToType);
+            }
+            if (amqpProperties.getCorrelationId() != null) {
+                correlationId = amqpProperties.getCorrelationId().toString();
+            }
+            if (amqpProperties.getContentType() != null) {
+                contentType = amqpProperties.getContentType().toString();
+                properties.put(CONTENT_TYPE, contentType);
+            }
+            if (amqpProperties.getContentEncoding() != null) {
+                properties.put(CONTENT_ENCODING, amqpProperties.getContentEncoding().toString());
+            }
+            if (amqpProperties.getCreationTime() != null) {
+                timestamp = amqpProperties.getCreationTime().getTime();
+            }
+            if (amqpProperties.getGroupId() != null) {
+                groupId = amqpProperties.getGroupId();
+            }
+            if (amqpProperties.getGroupSequence() != null) {
+                groupSequence = amqpProperties.getGroupSequence().intValue();
+            }
+            if (amqpProperties.getReplyToGroupId() != null) {
+                properties.put(REPLY_TO_GROUP_ID, amqpProperties.getReplyToGroupId());
+            }
+            if (amqpProperties.getAbsoluteExpiryTime() != null) {
+                expiration = amqpProperties.getAbsoluteExpiryTime().getTime();
+            }
+        }
+
+        if (expiration == 0 && ttl > 0) {
+            expiration = arrivalTime + ttl;
+        }
+
+        properties.put(MESSAGE_FORMAT, Long.valueOf(messageFormat));
+
+        if (consumerDestination != null) {
+            destination = consumerDestination;
+            consumerDestination = null;
+        }
+
+        headersDecoded = true;
+    }
+
+    private synchronized void decodeProperties() {
+        if (propertiesDecoded) {
+            return;
+        }
+
+        // Headers add their own entries to the properties so must be decoded first.
+        lazyDecodeHeaders();
+
+        ApplicationProperties applicationProperties = (ApplicationProperties) decodeSection(APPLICATION_PROPERTIES);
+        if (applicationProperties != null && applicationProperties.getValue() != null) {
+            for (Object entry : applicationProperties.getValue().entrySet()) {
+                Map.Entry<?, ?> property = (Map.Entry<?, ?>) entry;
+                properties.put(property.getKey().toString(), property.getValue());
+            }
+        }
+
+        Footer footer = (Footer) decodeSection(FOOTER);
+        if (footer != null && footer.getValue() != null) {
+            for (Object entry : footer.getValue().entrySet()) {
+                Map.Entry<?, ?> property = (Map.Entry<?, ?>) entry;
+                properties.put(FOOTER_PREFIX + property.getKey(), property.getValue());
+            }
+        }
+
+        propertiesDecoded = true;
+    }
+
+    private Object decodeSection(int code) {
+        int index = code - HEADER;
+        if (sectionStart[index] < 0) {
+            return null;
+        }
+
+        DecoderImpl decoder = DECODER.get();
+        decoder.setByteBuffer(ByteBuffer.wrap(encoded, sectionStart[index], sectionEnd[index] - sectionStart[index]));
+        try {
+            return decoder.readObject();
+        } finally {
+            decoder.setByteBuffer(null);
+        }
+    }
+
+    private JmsDestination createDestination(String address, String typeAnnotation) {
+        Class<? extends Destination> kind = Destination.class;
+        if (typeAnnotation != null) {
+            boolean temporary = typeAnnotation.contains("temporary");
+            if (typeAnnotation.contains("topic")) {
+                kind = temporary ? TemporaryTopic.class : Topic.class;
+            } else if (typeAnnotation.contains("queue")) {
+                kind = temporary ? TemporaryQueue.class : Queue.class;
+            }
+        }
+
+        return (JmsDestination) AmqpJMSVendor.INSTANCE.createDestination(address, kind);
+    }
+
+    //----- Section scanning -------------------------------------------------//
+
+    /*
+     * Records where each section of the message starts and ends without decoding any
+     * of them, every section is a described type so it is enough to read the descriptor
+     * and then step over the encoded value using the size information in its encoding.
+     */
+    private int scanSections(int offset, int length) {
+        for (int i = 0; i < sectionStart.length; ++i) {
+            sectionStart[i] = -1;
+        }
+
+        int body = -1;
+        int position = offset;
+        int limit = offset + length;
+
+        while (position < limit) {
+            int start = position;
+            if (encoded[position] != 0x00) {
+                throw new IllegalArgumentException("Message section is not a described type");
+            }
+
+            int code = sectionCode(position + 1);
+            position = skip(skip(position + 1));
+
+            if (code < HEADER || code > FOOTER) {
+                throw new IllegalArgumentException("Unknown message section found in encoded message");
+            }
+
+            // Only the first of several body sections is used for the JMS body.
+            if (code == DATA || code == AMQP_SEQUENCE || code == AMQP_VALUE) {
+                if (body >= 0) {
+                    continue;
+                }
+                body = code;
+            }
+
+            sectionStart[code - HEADER] = start;
+            sectionEnd[code - HEADER] = position;
+        }
+
+        if (position != limit) {
+            throw new IllegalArgumentException("Encoded message sections overrun the message length");
+        }
+
+        return body;
+    }
+
+    private int sectionCode(int position) {
+        int constructor = encoded[position] & 0xff;
+        switch (constructor) {
+            case 0x53:
+                return encoded[position + 1] & 0xff;
+            case 0x80:
+                long code = 0;
+                for (int i = 1; i <= 8; ++i) {
+                    code = (code << 8) | (encoded[position + i] & 0xff);
+                }
+                return code <= FOOTER ? (int) code : -1;
+            case 0xa3:
+                return sectionCode(position + 2, encoded[position + 1] & 0xff);
+            case 0xb3:
+                return sectionCode(position + 5, readInt(position + 1));
+            default:
+                return -1;
+        }
+    }
+
+    private int sectionCode(int position, int length) {
+        String name = new String(encoded, position, length, UTF8);
+        for (int i = 0; i < SECTION_NAMES.length; ++i) {
+            if (SECTION_NAMES[i].equals(name)) {
+                return HEADER + i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the position that follows the value whose encoding starts at the given
+     * position, the width of each type is given by the subcategory of its constructor.
+     */
+    private int skip(int position) {
+        int constructor = encoded[position] & 0xff;
+        if (constructor == 0x00) {
+            // Described type, skip the descriptor and then the value it describes.
+            return skip(skip(position + 1));
+        }
+
+        switch (constructor >> 4) {
+            case 0x4:
+                return position + 1;
+            case 0x5:
+                return position + 2;
+            case 0x6:
+                return position + 3;
+            case 0x7:
+                return position + 5;
+            case 0x8:
+                return position + 9;
+            case 0x9:
+                return position + 17;
+            case 0xa:
+            case 0xc:
+            case 0xe:
+                return position + 2 + (encoded[position + 1] & 0xff);
+            case 0xb:
+            case 0xd:
+            case 0xf:
+                return position + 5 + readInt(position + 1);
+            default:
+                throw new IllegalArgumentException("Unknown AMQP type constructor: 0x" + Integer.toHexString(constructor));
+        }
+    }
+
+    private int readInt(int position) {
+        return ((encoded[position] & 0xff) << 24) |
+               ((encoded[position + 1] & 0xff) << 16) |
+               ((encoded[position + 2] & 0xff) << 8) |
+               (encoded[position + 3] & 0xff);
+    }
+
+    //----- Body value conversions -------------------------------------------//
+
+    /**
+     * Converts an AMQP Binary into a Buffer that shares the same bytes.
+     *
+     * @param binary
+     *        the binary value to convert, can be null.
+     *
+     * @return a Buffer that wraps the bytes of the given binary.
+     */
+    static Buffer toBuffer(Binary binary) {
+        if (binary == null) {
+            return null;
+        }
+        return new Buffer(binary.getArray(), binary.getArrayOffset(), binary.getLength());
+    }
+
+    /**
+     * Converts values decoded from an AMQP map or list body into the types that a JMS
+     * Map or Stream message holds.
+     *
+     * @param value
+     *        the decoded AMQP value.
+     *
+     * @return the value as a JMS message body type.
+     */
+    static Object toJmsValue(Object value) {
+        if (value instanceof Binary) {
+            Binary binary = (Binary) value;
+            byte[] bytes = new byte[binary.getLength()];
+            System.arraycopy(binary.getArray(), binary.getArrayOffset(), bytes, 0, bytes.length);
+            return bytes;
+        } else if (value instanceof Symbol) {
+            return value.toString();
+        }
+        return value;
+    }
+}
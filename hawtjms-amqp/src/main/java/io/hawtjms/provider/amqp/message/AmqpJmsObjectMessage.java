@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.exceptions.JmsExceptionSupport;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsObjectMessage;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.fusesource.hawtbuf.Buffer;
+import org.fusesource.hawtbuf.ByteArrayInputStream;
+
+/**
+ * AMQP JmsObjectMessage extension that decodes the object from the body of the incoming
+ * message the first time it is read.  The body is either an amqp-value holding the object
+ * or a data section holding a serialized Java object.
+ */
+public class AmqpJmsObjectMessage extends JmsObjectMessage {
+
+    public static final String SERIALIZED_JAVA_OBJECT_CONTENT_TYPE = "application/x-java-serialized-object";
+
+    private boolean bodyDecoded;
+
+    public AmqpJmsObjectMessage(AmqpJmsMessageFacade facade) {
+        super(facade);
+    }
+
+    @Override
+    public JmsMessage copy() throws JMSException {
+        getObject();
+        return super.copy();
+    }
+
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        if (bodyDecoded) {
+            return super.copyOnWrite();
+        }
+
+        AmqpJmsObjectMessage other = new AmqpJmsObjectMessage((AmqpJmsMessageFacade) facade);
+        other.copy((JmsMessage) this);
+        shareFacadeWith(other);
+        return other;
+    }
+
+    @Override
+    public void clearBody() throws JMSException {
+        super.clearBody();
+        bodyDecoded = true;
+    }
+
+    @Override
+    public void setObject(Serializable newObject) throws JMSException {
+        super.setObject(newObject);
+        bodyDecoded = true;
+    }
+
+    @Override
+    public Serializable getObject() throws JMSException {
+        if (!bodyDecoded) {
+            Section body = ((AmqpJmsMessageFacade) facade).getBody();
+            if (body instanceof Data) {
+                this.object = deserialize(AmqpJmsMessageFacade.toBuffer(((Data) body).getValue()));
+            } else if (body instanceof AmqpValue) {
+                Object value = ((AmqpValue) body).getValue();
+                if (value != null && !(value instanceof Serializable)) {
+                    throw new MessageFormatException("Message body of type " + value.getClass().getName() + " is not Serializable");
+                }
+                this.object = (Serializable) value;
+            }
+            bodyDecoded = true;
+        }
+
+        return super.getObject();
+    }
+
+    private Serializable deserialize(Buffer buffer) throws JMSException {
+        if (buffer == null || buffer.length == 0) {
+            return null;
+        }
+
+        try {
+            ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer));
+            try {
+                return (Serializable) input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw JmsExceptionSupport.create(e);
+        } catch (ClassNotFoundException e) {
+            throw JmsExceptionSupport.create(e);
+        }
+    }
+}
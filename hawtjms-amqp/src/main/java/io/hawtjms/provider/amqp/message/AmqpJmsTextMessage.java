@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsTextMessage;
+
+import javax.jms.JMSException;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Section;
+
+/**
+ * AMQP JmsTextMessage extension that decodes the text from the amqp-value body of
+ * the incoming message the first time it is read.
+ */
+public class AmqpJmsTextMessage extends JmsTextMessage {
+
+    private boolean bodyDecoded;
+
+    public AmqpJmsTextMessage(AmqpJmsMessageFacade facade) {
+        super(facade);
+    }
+
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        if (bodyDecoded) {
+            return super.copyOnWrite();
+        }
+
+        AmqpJmsTextMessage other = new AmqpJmsTextMessage((AmqpJmsMessageFacade) facade);
+        other.copy((JmsMessage) this);
+        shareFacadeWith(other);
+        return other;
+    }
+
+    @Override
+    protected void internalSetText(String text) {
+        bodyDecoded = true;
+        super.internalSetText(text);
+    }
+
+    @Override
+    protected String internalGetText() {
+        if (!bodyDecoded) {
+            Section body = ((AmqpJmsMessageFacade) facade).getBody();
+            if (body instanceof AmqpValue) {
+                internalSetText((String) ((AmqpValue) body).getValue());
+            } else {
+                internalSetText(null);
+            }
+        }
+
+        return super.internalGetText();
+    }
+}
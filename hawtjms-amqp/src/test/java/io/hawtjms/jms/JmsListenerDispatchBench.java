@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Measure MessageListener throughput along with the depth of the session's dispatch
+ * executor queue while a producer offers messages at a fixed rate.  Lives in the jms
+ * package so it can look at the session executor directly.
+ */
+@Ignore
+public class JmsListenerDispatchBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 200 * 1000;
+    private final int NUM_RUNS = 5;
+    private final int TARGET_RATE = 100 * 1000;
+    private final int SEND_SLICE = TARGET_RATE / 1000;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Override
+    protected boolean isSendAcksAsync() {
+        return true;
+    }
+
+    @Override
+    public String getAmqpConnectionURIOptions() {
+        return "provider.presettleProducers=true&provider.presettleConsumers=true";
+    }
+
+    @Test
+    public void testListenerDispatchAtFixedRate() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        // Warm Up the broker.
+        runOnce();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            cumulative += runOnce();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed time for {} listener deliveries at {} msg/s offered: {} ms",
+            new Object[] { MSG_COUNT, TARGET_RATE, smoothed });
+    }
+
+    protected long runOnce() throws Exception {
+        JmsSession session = (JmsSession) connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(getDestinationName());
+
+        final CountDownLatch done = new CountDownLatch(MSG_COUNT);
+        MessageConsumer consumer = session.createConsumer(queue);
+        consumer.setMessageListener(new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                done.countDown();
+            }
+        });
+
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) session.getExecutor();
+        final AtomicBoolean sampling = new AtomicBoolean(true);
+        final long[] depth = new long[3];
+        Thread sampler = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (sampling.get()) {
+                    int size = executor.getQueue().size();
+                    depth[0] = Math.max(depth[0], size);
+                    depth[1] += size;
+                    depth[2]++;
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        sampler.start();
+
+        long startTime = System.currentTimeMillis();
+        produceMessages(queue);
+        assertTrue("Listener did not receive all messages", done.await(5, TimeUnit.MINUTES));
+        long result = System.currentTimeMillis() - startTime;
+
+        sampling.set(false);
+        sampler.join();
+
+        LOG.info("Listener received {} messages in {} ms, {} msg/s, executor queue depth max: {}, mean: {}",
+            new Object[] { MSG_COUNT, result, result == 0 ? 0 : (MSG_COUNT * 1000L) / result,
+                           depth[0], depth[2] == 0 ? 0 : depth[1] / depth[2] });
+
+        consumer.close();
+        session.close();
+        return result;
+    }
+
+    /*
+     * Sends from a second connection in one millisecond slices to hold the offered
+     * rate near the target, falling behind if the broker can't keep up.
+     */
+    protected void produceMessages(Queue queue) throws Exception {
+        Connection producerConnection = createAmqpConnection();
+        Session session = producerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        TextMessage message = session.createTextMessage();
+        message.setText("hello");
+
+        long sliceStart = System.nanoTime();
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(message);
+            if ((i + 1) % SEND_SLICE == 0) {
+                long sliceEnd = sliceStart + TimeUnit.MILLISECONDS.toNanos(1);
+                while (System.nanoTime() < sliceEnd) {
+                    Thread.yield();
+                }
+                sliceStart = sliceEnd;
+            }
+        }
+
+        producerConnection.close();
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
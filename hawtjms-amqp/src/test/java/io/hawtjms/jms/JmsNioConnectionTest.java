@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.net.URI;
+
+import javax.jms.BytesMessage;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.junit.Test;
+
+/**
+ * Test that we can connect and exchange messages using the java.nio based transport.
+ */
+public class JmsNioConnectionTest extends AmqpTestSupport {
+
+    public URI getBrokerNioConnectionURI() throws Exception {
+        URI connectionURI = getBrokerAmqpConnectionURI();
+        return new URI("amqp+nio://" + connectionURI.getHost() + ":" + connectionURI.getPort());
+    }
+
+    @Test(timeout=30000)
+    public void testCreateConnection() throws Exception {
+        JmsConnectionFactory factory = new JmsConnectionFactory(getBrokerNioConnectionURI());
+        JmsConnection connection = (JmsConnection) factory.createConnection();
+        assertNotNull(connection);
+        connection.close();
+    }
+
+    @Test(timeout=30000)
+    public void testCreateConnectionAndStart() throws Exception {
+        JmsConnectionFactory factory = new JmsConnectionFactory(getBrokerNioConnectionURI());
+        JmsConnection connection = (JmsConnection) factory.createConnection();
+        assertNotNull(connection);
+        connection.start();
+        connection.close();
+    }
+
+    @Test(timeout=30000)
+    public void testSendAndReceive() throws Exception {
+        connection = createAmqpConnection(getBrokerNioConnectionURI());
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        producer.send(session.createTextMessage("Hello NIO"));
+
+        TextMessage received = (TextMessage) consumer.receive(5000);
+        assertNotNull(received);
+        assertEquals("Hello NIO", received.getText());
+    }
+
+    @Test(timeout=60000)
+    public void testSendAndReceiveLargeMessage() throws Exception {
+        connection = createAmqpConnection(getBrokerNioConnectionURI());
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        // Larger than the default IO buffer size so writes span several buffers.
+        byte[] payload = new byte[512 * 1024];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(payload);
+        producer.send(message);
+
+        BytesMessage received = (BytesMessage) consumer.receive(10000);
+        assertNotNull(received);
+        assertEquals(payload.length, received.getBodyLength());
+
+        byte[] result = new byte[payload.length];
+        received.readBytes(result);
+        for (int i = 0; i < payload.length; ++i) {
+            assertEquals(payload[i], result[i]);
+        }
+    }
+}
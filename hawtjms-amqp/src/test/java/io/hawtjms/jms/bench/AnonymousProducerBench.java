@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.net.URI;
+
+import javax.jms.DeliveryMode;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare send rates of an anonymous producer spread over a set of queues against
+ * a fixed producer, with and without the provider's anonymous sender cache.
+ */
+@Ignore
+public class AnonymousProducerBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 20 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int NUM_QUEUES = 5;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Test
+    public void testFixedProducerSendRate() throws Exception {
+        doTestSendRate("provider.presettleProducers=true", false);
+    }
+
+    @Test
+    public void testCachedAnonymousProducerSendRate() throws Exception {
+        doTestSendRate("provider.presettleProducers=true", true);
+    }
+
+    @Test
+    public void testUncachedAnonymousProducerSendRate() throws Exception {
+        doTestSendRate("provider.presettleProducers=true&provider.anonymousProducerCacheSize=0", true);
+    }
+
+    protected void doTestSendRate(String options, boolean anonymous) throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?" + options);
+        connection = createAmqpConnection(brokerURI);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue[] queues = new Queue[NUM_QUEUES];
+        for (int i = 0; i < NUM_QUEUES; ++i) {
+            queues[i] = session.createQueue(getDestinationName() + i);
+        }
+
+        // Warm Up the broker.
+        produceMessages(session, queues, anonymous);
+        purgeQueues();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long result = produceMessages(session, queues, anonymous);
+            cumulative += result;
+            LOG.info("Time to send {} messages with anonymous={}: {} ms",
+                new Object[] { MSG_COUNT, anonymous, result });
+            purgeQueues();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed send time for {} messages with options {}, anonymous={}: {} ms, {} msg/s",
+            new Object[] { MSG_COUNT, options, anonymous, smoothed,
+                           smoothed == 0 ? 0 : (MSG_COUNT * 1000L) / smoothed });
+    }
+
+    protected long produceMessages(Session session, Queue[] queues, boolean anonymous) throws Exception {
+        MessageProducer[] producers = new MessageProducer[queues.length];
+        if (anonymous) {
+            MessageProducer producer = session.createProducer(null);
+            producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            for (int i = 0; i < queues.length; ++i) {
+                producers[i] = producer;
+            }
+        } else {
+            for (int i = 0; i < queues.length; ++i) {
+                producers[i] = session.createProducer(queues[i]);
+                producers[i].setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            }
+        }
+
+        TextMessage message = session.createTextMessage();
+        message.setText("hello");
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            int index = i % queues.length;
+            if (anonymous) {
+                producers[index].send(queues[index], message);
+            } else {
+                producers[index].send(message);
+            }
+        }
+        long result = (System.currentTimeMillis() - startTime);
+
+        if (anonymous) {
+            producers[0].close();
+        } else {
+            for (MessageProducer producer : producers) {
+                producer.close();
+            }
+        }
+
+        return result;
+    }
+
+    protected void purgeQueues() throws Exception {
+        for (int i = 0; i < NUM_QUEUES; ++i) {
+            QueueViewMBean queueView = getProxyToQueue(getDestinationName() + i);
+            queueView.purge();
+        }
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Collect thread count and connect latency data when a large number of
+ * connections are opened from the same JVM.
+ */
+@Ignore
+public class ConnectionScalingBench extends AmqpTestSupport {
+
+    private final int CONNECTION_COUNT = 1000;
+
+    @Override
+    protected boolean isAdvisorySupport() {
+        return false;
+    }
+
+    @Test
+    public void testConnectWithSharedEventLoops() throws Exception {
+        doTestConnectionScaling("transport.shareEventLoops=true");
+    }
+
+    @Test
+    public void testConnectWithBoundedSharedEventLoops() throws Exception {
+        doTestConnectionScaling("transport.shareEventLoops=true&transport.eventLoopThreads=4");
+    }
+
+    @Test
+    public void testConnectWithPrivateEventLoops() throws Exception {
+        doTestConnectionScaling("transport.shareEventLoops=false");
+    }
+
+    protected void doTestConnectionScaling(String options) throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?" + options);
+        ConnectionFactory factory = createAmqpConnectionFactory(brokerURI);
+
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        List<Connection> connections = new ArrayList<Connection>(CONNECTION_COUNT);
+
+        long maxConnectTime = 0;
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < CONNECTION_COUNT; ++i) {
+            long connectStart = System.nanoTime();
+            Connection connection = factory.createConnection();
+            connection.start();
+            maxConnectTime = Math.max(maxConnectTime, System.nanoTime() - connectStart);
+            connections.add(connection);
+        }
+        long totalTime = System.currentTimeMillis() - startTime;
+
+        int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        LOG.info("Options: {}", options);
+        LOG.info("Time to open {} connections: {} ms, average: {} us, max: {} us",
+            new Object[] { CONNECTION_COUNT, totalTime,
+                           (totalTime * 1000) / CONNECTION_COUNT, maxConnectTime / 1000 });
+        LOG.info("Threads before: {}, threads after: {}, added per connection: {}",
+            new Object[] { threadsBefore, threadsAfter,
+                           (double) (threadsAfter - threadsBefore) / CONNECTION_COUNT });
+
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare consumer throughput with acknowledgments sent synchronously against
+ * fire and forget acknowledgments.  Consumers are not presettled so that every
+ * message results in an acknowledgment going through the provider.
+ */
+@Ignore
+public class ConsumeAckModeBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 20 * 1000;
+    private final int NUM_RUNS = 10;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Override
+    public String getAmqpConnectionURIOptions() {
+        return "provider.presettleProducers=true";
+    }
+
+    @Test
+    public void testConsumeRateWithSyncAcks() throws Exception {
+        doTestConsumeRate(false);
+    }
+
+    @Test
+    public void testConsumeRateWithAsyncAcks() throws Exception {
+        doTestConsumeRate(true);
+    }
+
+    protected void doTestConsumeRate(boolean sendAcksAsync) throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).setSendAcksAsync(sendAcksAsync);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(getDestinationName());
+
+        // Warm Up the broker.
+        produceMessages(queue, MSG_COUNT);
+        consumeMessages(queue, MSG_COUNT);
+
+        QueueViewMBean queueView = getProxyToQueue(getDestinationName());
+        queueView.purge();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            produceMessages(queue, MSG_COUNT);
+            long result = consumeMessages(queue, MSG_COUNT);
+            cumulative += result;
+            LOG.info("Time to consume {} messages with async acks={}: {} ms",
+                new Object[] { MSG_COUNT, sendAcksAsync, result });
+            queueView.purge();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed consume time for {} messages with async acks={}: {} ms, {} msg/s",
+            new Object[] { MSG_COUNT, sendAcksAsync, smoothed,
+                           smoothed == 0 ? 0 : (MSG_COUNT * 1000L) / smoothed });
+    }
+
+    protected void produceMessages(Destination destination, int msgCount) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(destination);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        TextMessage message = session.createTextMessage();
+        message.setText("hello");
+
+        for (int i = 0; i < msgCount; ++i) {
+            producer.send(message);
+        }
+
+        producer.close();
+        session.close();
+    }
+
+    protected long consumeMessages(Destination destination, int msgCount) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(destination);
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < msgCount; ++i) {
+            Message message = consumer.receive(7000);
+            assertNotNull("Failed to receive message " + i, message);
+        }
+        long result = (System.currentTimeMillis() - startTime);
+
+        consumer.close();
+        session.close();
+        return result;
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import java.util.Enumeration;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.MapMessage;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Compare consumer throughput when the application reads only the JMS headers, the
+ * headers and properties, or the whole message, which shows what the lazy decoding
+ * of incoming AMQP messages saves for consumers that don't look at the body.
+ */
+@Ignore
+public class ConsumeLazyDecodeBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 20 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int NUM_ENTRIES = 50;
+
+    private static final int READ_HEADERS = 0;
+    private static final int READ_PROPERTIES = 1;
+    private static final int READ_ALL = 2;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Override
+    protected boolean isSendAcksAsync() {
+        return true;
+    }
+
+    @Override
+    public String getAmqpConnectionURIOptions() {
+        return "provider.presettleProducers=true&provider.presettleConsumers=true";
+    }
+
+    @Test
+    public void testConsumeReadingHeaders() throws Exception {
+        doTestConsumeRate("headers", READ_HEADERS);
+    }
+
+    @Test
+    public void testConsumeReadingProperties() throws Exception {
+        doTestConsumeRate("properties", READ_PROPERTIES);
+    }
+
+    @Test
+    public void testConsumeReadingWholeMessage() throws Exception {
+        doTestConsumeRate("whole message", READ_ALL);
+    }
+
+    protected void doTestConsumeRate(String name, int readMode) throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(getDestinationName());
+
+        // Warm Up the broker.
+        produceMessages(queue);
+        consumeMessages(queue, readMode);
+
+        QueueViewMBean queueView = getProxyToQueue(getDestinationName());
+        queueView.purge();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            produceMessages(queue);
+            long result = consumeMessages(queue, readMode);
+            cumulative += result;
+            LOG.info("Time to consume {} messages reading {}: {} ms",
+                new Object[] { MSG_COUNT, name, result });
+            queueView.purge();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed consume time for {} messages reading {}: {} ms, {} msg/s",
+            new Object[] { MSG_COUNT, name, smoothed, smoothed == 0 ? 0 : (MSG_COUNT * 1000L) / smoothed });
+    }
+
+    protected void produceMessages(Destination destination) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(destination);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        MapMessage message = session.createMapMessage();
+        for (int i = 0; i < NUM_ENTRIES; ++i) {
+            message.setString("entry-" + i, "value-" + i);
+            message.setIntProperty("property" + i, i);
+        }
+
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(message);
+        }
+
+        producer.close();
+        session.close();
+    }
+
+    protected long consumeMessages(Destination destination, int readMode) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(destination);
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            MapMessage message = (MapMessage) consumer.receive(15000);
+            assertNotNull("Failed to receive message " + i, message);
+            assertNotNull(message.getJMSMessageID());
+
+            if (readMode >= READ_PROPERTIES) {
+                Enumeration<?> names = message.getPropertyNames();
+                while (names.hasMoreElements()) {
+                    message.getObjectProperty((String) names.nextElement());
+                }
+            }
+
+            if (readMode >= READ_ALL) {
+                Enumeration<?> names = message.getMapNames();
+                while (names.hasMoreElements()) {
+                    message.getObject((String) names.nextElement());
+                }
+            }
+        }
+        long result = (System.currentTimeMillis() - startTime);
+
+        consumer.close();
+        session.close();
+        return result;
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
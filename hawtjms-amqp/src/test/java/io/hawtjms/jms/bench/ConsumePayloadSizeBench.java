@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import static org.junit.Assert.assertNotNull;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Collect consumer throughput data for a range of payload sizes, this mostly
+ * measures the cost of moving inbound bytes into the proton transport.
+ */
+@Ignore
+public class ConsumePayloadSizeBench extends AmqpTestSupport {
+
+    private final int NUM_RUNS = 10;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Override
+    protected boolean isSendAcksAsync() {
+        return true;
+    }
+
+    @Override
+    public String getAmqpConnectionURIOptions() {
+        return "provider.presettleProducers=true&provider.presettleConsumers=true";
+    }
+
+    @Test
+    public void testConsumeRate1KPayload() throws Exception {
+        doTestConsumeRate(1024, 20 * 1000);
+    }
+
+    @Test
+    public void testConsumeRate64KPayload() throws Exception {
+        doTestConsumeRate(64 * 1024, 2 * 1000);
+    }
+
+    @Test
+    public void testConsumeRate1MPayload() throws Exception {
+        doTestConsumeRate(1024 * 1024, 200);
+    }
+
+    protected void doTestConsumeRate(int payloadSize, int msgCount) throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(getDestinationName());
+        byte[] payload = new byte[payloadSize];
+
+        // Warm Up the broker.
+        produceMessages(queue, payload, msgCount);
+        consumeMessages(queue, msgCount);
+
+        QueueViewMBean queueView = getProxyToQueue(getDestinationName());
+        queueView.purge();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            produceMessages(queue, payload, msgCount);
+            long result = consumeMessages(queue, msgCount);
+            cumulative += result;
+            LOG.info("Time to consume {} messages of {} bytes: {} ms, {} MB/s",
+                new Object[] { msgCount, payloadSize, result,
+                               result == 0 ? 0 : (((long) msgCount * payloadSize) / result) / 1000 });
+            queueView.purge();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed consume time for {} messages of {} bytes: {}",
+            new Object[] { msgCount, payloadSize, smoothed });
+    }
+
+    protected void produceMessages(Destination destination, byte[] payload, int msgCount) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(destination);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(payload);
+
+        for (int i = 0; i < msgCount; ++i) {
+            producer.send(message);
+        }
+
+        producer.close();
+        session.close();
+    }
+
+    protected long consumeMessages(Destination destination, int msgCount) throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(destination);
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < msgCount; ++i) {
+            Message message = consumer.receive(15000);
+            assertNotNull("Failed to receive message " + i, message);
+        }
+        long result = (System.currentTimeMillis() - startTime);
+
+        consumer.close();
+        session.close();
+        return result;
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.net.URI;
+
+import javax.jms.DeliveryMode;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.apache.activemq.broker.region.policy.PolicyEntry;
+import org.apache.activemq.broker.region.policy.PolicyMap;
+import org.apache.activemq.broker.region.policy.VMPendingQueueMessageStoragePolicy;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Measure the cost of settling a large burst of asynchronous sends that are all in
+ * flight at once, unsettled sends against presettled ones as the baseline.  How many
+ * sends are actually unsettled at any moment is bounded by the credit the broker grants.
+ */
+@Ignore
+public class ProducerInFlightBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 10 * 1000;
+    private final int NUM_RUNS = 10;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Test
+    public void testUnsettledSendRate() throws Exception {
+        doTestSendRate("provider.presettleProducers=false");
+    }
+
+    @Test
+    public void testPresettledSendRate() throws Exception {
+        doTestSendRate("provider.presettleProducers=true");
+    }
+
+    protected void doTestSendRate(String options) throws Exception {
+        URI brokerURI = new URI(getBrokerAmqpConnectionURI() + "?" + options);
+        connection = createAmqpConnection(brokerURI);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(getDestinationName());
+        QueueViewMBean queueView = getProxyToQueue(getDestinationName());
+
+        // Warm Up the broker.
+        produceMessages(session, queue, queueView);
+        queueView.purge();
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long result = produceMessages(session, queue, queueView);
+            cumulative += result;
+            LOG.info("Time to send and enqueue {} messages: {} ms", MSG_COUNT, result);
+            queueView.purge();
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed send time for {} messages with options {}: {} ms, {} msg/s",
+            new Object[] { MSG_COUNT, options, smoothed,
+                           smoothed == 0 ? 0 : (MSG_COUNT * 1000L) / smoothed });
+    }
+
+    protected long produceMessages(Session session, Queue queue, final QueueViewMBean queueView) throws Exception {
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        TextMessage message = session.createTextMessage();
+        message.setText("hello");
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(message);
+        }
+
+        assertTrue("Not all messages were enqueued", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return queueView.getQueueSize() == MSG_COUNT;
+            }
+        }, 60000, 1));
+        long result = (System.currentTimeMillis() - startTime);
+
+        producer.close();
+        return result;
+    }
+
+    @Override
+    protected void configureBrokerPolicies(BrokerService broker) {
+        PolicyEntry policyEntry = new PolicyEntry();
+        policyEntry.setPendingQueuePolicy(new VMPendingQueueMessageStoragePolicy());
+        policyEntry.setPrioritizedMessages(false);
+        policyEntry.setExpireMessagesPeriod(0);
+        policyEntry.setEnableAudit(false);
+        policyEntry.setOptimizedDispatch(true);
+        policyEntry.setQueuePrefetch(100);
+
+        PolicyMap policyMap = new PolicyMap();
+        policyMap.setDefaultEntry(policyEntry);
+        broker.setDestinationPolicy(policyMap);
+    }
+}
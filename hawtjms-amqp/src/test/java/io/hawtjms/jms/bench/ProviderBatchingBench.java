@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.bench;
+
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.provider.DefaultBlockingProvider;
+import io.hawtjms.provider.amqp.AmqpBatchStatistics;
+import io.hawtjms.provider.amqp.AmqpProvider;
+import io.hawtjms.test.support.AmqpTestSupport;
+
+import javax.jms.DeliveryMode;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Collect data on how the AMQP provider batches requests and writes for a range
+ * of batch size limits while producing at full rate.
+ */
+@Ignore
+public class ProviderBatchingBench extends AmqpTestSupport {
+
+    private final int MSG_COUNT = 50 * 1000;
+
+    private String batchOptions = "";
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Override
+    protected boolean isAlwaysSyncSend() {
+        return false;
+    }
+
+    @Override
+    protected String getAmqpTransformer() {
+        return "raw";
+    }
+
+    @Override
+    public String getAmqpConnectionURIOptions() {
+        return "provider.presettle=true" + batchOptions;
+    }
+
+    @Test
+    public void testBatchSizeOne() throws Exception {
+        doTestBatching("&provider.maxBatchSize=1");
+    }
+
+    @Test
+    public void testBatchSizeSixteen() throws Exception {
+        doTestBatching("&provider.maxBatchSize=16");
+    }
+
+    @Test
+    public void testBatchSizeDefault() throws Exception {
+        doTestBatching("");
+    }
+
+    @Test
+    public void testBatchSizeUnboundedTime() throws Exception {
+        doTestBatching("&provider.maxBatchSize=4096&provider.maxBatchTime=0");
+    }
+
+    protected void doTestBatching(String options) throws Exception {
+        batchOptions = options;
+        connection = createAmqpConnection();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Topic topic = session.createTopic(getDestinationName());
+        MessageProducer producer = session.createProducer(topic);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        TextMessage message = session.createTextMessage();
+        message.setText("hello");
+
+        AmqpBatchStatistics statistics = getBatchStatistics();
+
+        // Warm up then measure.
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(message);
+        }
+        statistics.reset();
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(message);
+        }
+        long result = System.currentTimeMillis() - startTime;
+
+        LOG.info("Options [{}]: time to send {} messages: {} ms", new Object[] { options, MSG_COUNT, result });
+        LOG.info("Options [{}]: {}", options, statistics);
+    }
+
+    private AmqpBatchStatistics getBatchStatistics() {
+        DefaultBlockingProvider blocking = (DefaultBlockingProvider) ((JmsConnection) connection).getProvider();
+        return ((AmqpProvider) blocking.getNext()).getBatchStatistics();
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionConsumer;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.ServerSession;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+
+/**
+ * Test for JMS ConnectionConsumer delivery through a ServerSessionPool.
+ */
+public class JmsConnectionConsumerTest extends AmqpTestSupport {
+
+    private static final int POOL_SIZE = 4;
+
+    @Test(timeout = 60000)
+    public void testMessagesAreSpreadOverServerSessions() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        final int msgCount = 200;
+        final CountDownLatch received = new CountDownLatch(msgCount);
+        final Set<Thread> threads = new CopyOnWriteArraySet<Thread>();
+        TestServerSessionPool pool = new TestServerSessionPool(connection, POOL_SIZE, new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                threads.add(Thread.currentThread());
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                }
+                received.countDown();
+            }
+        });
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        ConnectionConsumer consumer = connection.createConnectionConsumer(queue, null, pool, 10);
+        assertSame(pool, consumer.getServerSessionPool());
+
+        sendMessages(connection, queue, msgCount);
+        assertTrue("Not all messages delivered", received.await(30, TimeUnit.SECONDS));
+        assertTrue("Expected more than one delivery thread", threads.size() > 1);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+
+        consumer.close();
+        pool.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testNoDeliveryWhileConnectionStopped() throws Exception {
+        connection = createAmqpConnection();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        TestServerSessionPool pool = new TestServerSessionPool(connection, 1, new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                received.countDown();
+            }
+        });
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        ConnectionConsumer consumer = connection.createConnectionConsumer(queue, null, pool, 1);
+
+        sendMessages(connection, queue, 1);
+        assertEquals(1, received.getCount());
+        assertTrue(!received.await(500, TimeUnit.MILLISECONDS));
+
+        connection.start();
+        assertTrue("Message not delivered after start", received.await(10, TimeUnit.SECONDS));
+
+        consumer.close();
+        pool.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testDurableConnectionConsumerRequiresSubscriptionName() throws Exception {
+        connection = createAmqpConnection();
+        connection.setClientID("test");
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Topic topic = session.createTopic(name.getMethodName());
+        TestServerSessionPool pool = new TestServerSessionPool(connection, 1, null);
+
+        try {
+            connection.createDurableConnectionConsumer(topic, null, null, pool, 1);
+            fail("Should not be able to create without a subscription name");
+        } catch (JMSException ex) {
+        }
+
+        ConnectionConsumer consumer = connection.createDurableConnectionConsumer(topic, "sub", null, pool, 1);
+        assertNotNull(consumer);
+        consumer.close();
+        pool.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testServerSessionFromAnotherConnectionIsRefused() throws Exception {
+        connection = createAmqpConnection();
+        Connection other = createAmqpConnection();
+
+        final CountDownLatch refused = new CountDownLatch(1);
+        connection.setExceptionListener(new ExceptionListener() {
+
+            @Override
+            public void onException(JMSException exception) {
+                refused.countDown();
+            }
+        });
+        connection.start();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        TestServerSessionPool pool = new TestServerSessionPool(other, 1, new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                received.countDown();
+            }
+        });
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        ConnectionConsumer consumer = connection.createConnectionConsumer(queue, null, pool, 1);
+
+        sendMessages(connection, queue, 1);
+        assertTrue("Foreign ServerSession should be reported", refused.await(10, TimeUnit.SECONDS));
+        assertFalse("Message should not reach a foreign Session", received.await(500, TimeUnit.MILLISECONDS));
+
+        consumer.close();
+        pool.close();
+        other.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testTransactedServerSessionIsRefused() throws Exception {
+        connection = createAmqpConnection();
+
+        final CountDownLatch refused = new CountDownLatch(1);
+        connection.setExceptionListener(new ExceptionListener() {
+
+            @Override
+            public void onException(JMSException exception) {
+                refused.countDown();
+            }
+        });
+        connection.start();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        TestServerSessionPool pool = new TestServerSessionPool(connection, 1, true, new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                received.countDown();
+            }
+        });
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        ConnectionConsumer consumer = connection.createConnectionConsumer(queue, null, pool, 1);
+
+        sendMessages(connection, queue, 1);
+        assertTrue("Transacted ServerSession should be reported", refused.await(10, TimeUnit.SECONDS));
+        assertFalse("Message should not reach a transacted Session", received.await(500, TimeUnit.MILLISECONDS));
+
+        consumer.close();
+        pool.close();
+    }
+
+    @Test(timeout = 60000)
+    public void testMessagesRedeliveredWhenServerSessionFailsToStart() throws Exception {
+        connection = createAmqpConnection();
+        connection.start();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        TestServerSessionPool pool = new TestServerSessionPool(connection, 1, new MessageListener() {
+
+            @Override
+            public void onMessage(Message message) {
+                received.countDown();
+            }
+        });
+        pool.failNextStarts(1);
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        ConnectionConsumer consumer = connection.createConnectionConsumer(queue, null, pool, 1);
+
+        sendMessages(connection, queue, 1);
+        assertTrue("Message not redelivered after failed start", received.await(30, TimeUnit.SECONDS));
+        assertEquals(0, pool.getRemainingFailedStarts());
+
+        consumer.close();
+        pool.close();
+    }
+
+    /**
+     * Minimal ServerSessionPool in the style of an application server, each ServerSession
+     * runs its Session on a thread from a shared executor and returns itself to the pool
+     * when done.
+     */
+    private static class TestServerSessionPool implements ServerSessionPool {
+
+        private final BlockingQueue<ServerSession> idle;
+        private final ExecutorService executor;
+        private final AtomicInteger failedStarts = new AtomicInteger();
+
+        public TestServerSessionPool(Connection connection, int size, MessageListener listener) throws JMSException {
+            this(connection, size, false, listener);
+        }
+
+        public TestServerSessionPool(Connection connection, int size, boolean transacted, MessageListener listener) throws JMSException {
+            this.idle = new ArrayBlockingQueue<ServerSession>(size);
+            this.executor = Executors.newFixedThreadPool(size);
+            for (int i = 0; i < size; ++i) {
+                Session session = connection.createSession(transacted, transacted ? Session.SESSION_TRANSACTED : Session.AUTO_ACKNOWLEDGE);
+                if (listener != null) {
+                    session.setMessageListener(listener);
+                }
+                idle.add(new TestServerSession(session));
+            }
+        }
+
+        @Override
+        public ServerSession getServerSession() throws JMSException {
+            try {
+                return idle.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JMSException("Interrupted waiting for a ServerSession");
+            }
+        }
+
+        public void close() {
+            executor.shutdownNow();
+        }
+
+        /**
+         * Makes the next given number of ServerSession starts fail.
+         */
+        public void failNextStarts(int count) {
+            failedStarts.set(count);
+        }
+
+        public int getRemainingFailedStarts() {
+            return failedStarts.get();
+        }
+
+        private class TestServerSession implements ServerSession {
+
+            private final Session session;
+
+            public TestServerSession(Session session) {
+                this.session = session;
+            }
+
+            @Override
+            public Session getSession() throws JMSException {
+                return session;
+            }
+
+            @Override
+            public void start() throws JMSException {
+                // Only the ConnectionConsumer's dispatcher thread starts sessions.
+                if (failedStarts.get() > 0) {
+                    failedStarts.decrementAndGet();
+                    idle.add(this);
+                    throw new JMSException("Simulated ServerSession start failure");
+                }
+
+                executor.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            session.run();
+                        } finally {
+                            idle.add(TestServerSession.this);
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+
+/**
+ * Test that consumers in a DUPS_OK_ACKNOWLEDGE session acknowledge messages in batches.
+ */
+public class JmsDupsOkAckTest extends AmqpTestSupport {
+
+    @Test(timeout = 60000)
+    public void testMessagesAckedOnceBatchIsFull() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).setDupsOkAckBatchSize(10);
+        ((JmsConnection) connection).setDupsOkAckTimeout(0);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(10);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(10, proxy.getQueueSize());
+
+        for (int i = 0; i < 9; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        assertFalse("Messages should not be acked before the batch fills.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() < 10;
+            }
+        }, 1000, 100));
+
+        assertNotNull("Failed to receive last message.", consumer.receive(2000));
+
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testPartialBatchAckedAfterTimeout() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).setDupsOkAckBatchSize(100);
+        ((JmsConnection) connection).setDupsOkAckTimeout(100);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(5);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(5, proxy.getQueueSize());
+
+        for (int i = 0; i < 5; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+
+    @Test(timeout = 60000)
+    public void testPartialBatchAckedOnClose() throws Exception {
+        connection = createAmqpConnection();
+        ((JmsConnection) connection).setDupsOkAckBatchSize(100);
+        ((JmsConnection) connection).setDupsOkAckTimeout(0);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.DUPS_OK_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+
+        sendToAmqQueue(5);
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertEquals(5, proxy.getQueueSize());
+
+        for (int i = 0; i < 5; ++i) {
+            assertNotNull("Failed to receive message: " + i, consumer.receive(2000));
+        }
+
+        consumer.close();
+
+        assertTrue("Queued messages not consumed.", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == 0;
+            }
+        }));
+    }
+}
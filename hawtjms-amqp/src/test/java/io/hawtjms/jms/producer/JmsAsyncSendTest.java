@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.producer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.jms.JmsSendCompletionListener;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.junit.Test;
+
+/**
+ * Test the non-blocking asynchronous send path.
+ */
+public class JmsAsyncSendTest extends AmqpTestSupport {
+
+    private static final int MSG_COUNT = 1000;
+
+    @Override
+    protected boolean isForceAsyncSends() {
+        return true;
+    }
+
+    @Test(timeout = 60000)
+    public void testAsyncSendsNotifyCompletionListener() throws Exception {
+        doTestAsyncSendsComplete(JmsConnection.DEFAULT_ASYNC_SEND_WINDOW);
+    }
+
+    @Test(timeout = 60000)
+    public void testAsyncSendsWithWindowOfOne() throws Exception {
+        doTestAsyncSendsComplete(1);
+    }
+
+    @Test(timeout = 60000)
+    public void testAsyncSendsWithUnboundedWindow() throws Exception {
+        doTestAsyncSendsComplete(0);
+    }
+
+    private void doTestAsyncSendsComplete(int window) throws Exception {
+        connection = createAmqpConnection();
+        JmsConnection jmsConnection = (JmsConnection) connection;
+        jmsConnection.setAsyncSendWindow(window);
+
+        final CountDownLatch completed = new CountDownLatch(MSG_COUNT);
+        final AtomicInteger failed = new AtomicInteger();
+        jmsConnection.setSendCompletionListener(new JmsSendCompletionListener() {
+
+            @Override
+            public void onSendComplete(Message message) {
+                completed.countDown();
+            }
+
+            @Override
+            public void onSendFailed(Message message, JMSException error) {
+                failed.incrementAndGet();
+            }
+        });
+
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            producer.send(session.createTextMessage("Message: " + i));
+        }
+
+        assertTrue("Not all sends completed", completed.await(30, TimeUnit.SECONDS));
+        assertEquals(0, failed.get());
+
+        final QueueViewMBean proxy = getProxyToQueue(name.getMethodName());
+        assertTrue("Not all messages arrived", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return proxy.getQueueSize() == MSG_COUNT;
+            }
+        }));
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the window sizing done by the AMQP consumer credit controllers.
+ */
+public class AmqpCreditControllerTest {
+
+    @Test
+    public void testFixedControllerRefillsAtThreshold() {
+        AmqpFixedCreditController controller = new AmqpFixedCreditController(100);
+        assertEquals(100, controller.getInitialCredit());
+
+        assertEquals(0, controller.onMessageReleased(50));
+        assertEquals(0, controller.onMessageReleased(21));
+        assertEquals(80, controller.onMessageReleased(20));
+        assertEquals(100, controller.getWindow());
+    }
+
+    @Test
+    public void testAdaptiveControllerStartsWithinBounds() {
+        assertEquals(10, new AmqpAdaptiveCreditController(5, 10, 100, 100).getInitialCredit());
+        assertEquals(100, new AmqpAdaptiveCreditController(500, 10, 100, 100).getInitialCredit());
+        assertEquals(50, new AmqpAdaptiveCreditController(50, 10, 100, 100).getInitialCredit());
+    }
+
+    @Test
+    public void testAdaptiveControllerGrowsWhenConsumerIsStarved() {
+        AmqpAdaptiveCreditController controller = new AmqpAdaptiveCreditController(10, 1, 100, 1000);
+
+        // Every message is taken as soon as it arrives so the buffer keeps running dry.
+        int credit = controller.getInitialCredit();
+        for (int i = 0; i < 10; ++i) {
+            controller.onMessageArrived();
+            credit--;
+            credit += controller.onMessageReleased(credit);
+        }
+
+        assertEquals(20, controller.getWindow());
+        assertEquals(8, credit);
+
+        for (int i = 0; i < 200; ++i) {
+            controller.onMessageArrived();
+            credit--;
+            credit += controller.onMessageReleased(credit);
+        }
+
+        assertEquals(100, controller.getWindow());
+    }
+
+    @Test
+    public void testAdaptiveControllerShrinksForSlowConsumer() throws Exception {
+        AmqpAdaptiveCreditController controller = new AmqpAdaptiveCreditController(16, 2, 100, 1);
+
+        // The whole window arrives at once and the consumer takes a message every 5ms.
+        int credit = controller.getInitialCredit();
+        for (int i = 0; i < 16; ++i) {
+            controller.onMessageArrived();
+            credit--;
+        }
+
+        for (int i = 0; i < 16; ++i) {
+            Thread.sleep(5);
+            credit += controller.onMessageReleased(credit);
+        }
+
+        assertEquals(8, controller.getWindow());
+        assertTrue(controller.getAverageLatency() > 1);
+        assertTrue(controller.getConsumptionRate() > 0);
+        assertTrue(credit <= controller.getWindow());
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the sequence keyed index of unsettled consumer deliveries.
+ */
+public class AmqpDeliveryIndexTest {
+
+    @Test
+    public void testPutGetRemove() {
+        AmqpDeliveryIndex<String> index = new AmqpDeliveryIndex<String>(4);
+        assertTrue(index.isEmpty());
+        assertNull(index.get(0));
+
+        index.put(10, "10");
+        index.put(11, "11");
+        index.put(12, "12");
+        assertEquals(3, index.size());
+        assertEquals("11", index.get(11));
+        assertNull(index.get(9));
+        assertNull(index.get(13));
+
+        assertEquals("11", index.remove(11));
+        assertNull(index.remove(11));
+        assertNull(index.get(11));
+        assertEquals(2, index.size());
+
+        assertEquals("10", index.remove(10));
+        assertEquals("12", index.remove(12));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testGrowsToCoverSpan() {
+        AmqpDeliveryIndex<String> index = new AmqpDeliveryIndex<String>(2);
+        for (int i = 0; i < 1000; ++i) {
+            index.put(i, String.valueOf(i));
+        }
+
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(String.valueOf(i), index.get(i));
+        }
+
+        // An entry older than the current head also widens the span.
+        index.remove(0);
+        index.remove(1);
+        index.put(0, "0");
+        assertEquals("0", index.get(0));
+        assertNull(index.get(1));
+        assertEquals("999", index.get(999));
+    }
+
+    @Test
+    public void testPollReturnsSequenceOrder() {
+        AmqpDeliveryIndex<String> index = new AmqpDeliveryIndex<String>(4);
+        index.put(7, "7");
+        index.put(5, "5");
+        index.put(9, "9");
+        index.put(6, "6");
+        index.remove(6);
+
+        assertEquals("5", index.poll());
+        assertEquals("7", index.poll());
+        assertEquals("9", index.poll());
+        assertNull(index.poll());
+    }
+
+    @Test
+    public void testPollUpToSettlesRange() {
+        AmqpDeliveryIndex<String> index = new AmqpDeliveryIndex<String>();
+        for (int i = 0; i < 10; ++i) {
+            index.put(i, String.valueOf(i));
+        }
+        index.remove(3);
+
+        int count = 0;
+        while (index.pollUpTo(5) != null) {
+            count++;
+        }
+
+        assertEquals(5, count);
+        assertEquals(4, index.size());
+        assertEquals("6", index.poll());
+    }
+
+    @Test
+    public void testClear() {
+        AmqpDeliveryIndex<String> index = new AmqpDeliveryIndex<String>(4);
+        for (int i = 100; i < 110; ++i) {
+            index.put(i, String.valueOf(i));
+        }
+
+        index.clear();
+        assertTrue(index.isEmpty());
+        assertNull(index.get(105));
+
+        index.put(3, "3");
+        assertEquals("3", index.get(3));
+        assertEquals(1, index.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullEntryIsRejected() {
+        new AmqpDeliveryIndex<String>().put(1, null);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.message.JmsDefaultMessageFactory;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.meta.JmsMessageId;
+import io.hawtjms.provider.amqp.AmqpJMSVendor;
+
+import java.lang.management.ManagementFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.TextMessage;
+
+import org.apache.qpid.proton.jms.AutoOutboundTransformer;
+import org.apache.qpid.proton.jms.EncodedMessage;
+import org.apache.qpid.proton.jms.OutboundTransformer;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare encode time and bytes allocated per message for the proton-jms outbound
+ * transformer and the direct AmqpJmsMessageEncoder.  Relies on the HotSpot specific
+ * ThreadMXBean extension to read per thread allocation counts.
+ */
+@Ignore
+public class AmqpJmsMessageEncoderBench {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AmqpJmsMessageEncoderBench.class);
+
+    private final int MSG_COUNT = 1000 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int NUM_PROPERTIES = 10;
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+
+    @Test
+    public void testTransformTextMessage() throws Exception {
+        doTestEncode(createTextMessage(), false);
+    }
+
+    @Test
+    public void testEncodeTextMessage() throws Exception {
+        doTestEncode(createTextMessage(), true);
+    }
+
+    @Test
+    public void testTransformBytesMessage() throws Exception {
+        doTestEncode(createBytesMessage(), false);
+    }
+
+    @Test
+    public void testEncodeBytesMessage() throws Exception {
+        doTestEncode(createBytesMessage(), true);
+    }
+
+    protected void doTestEncode(JmsMessage message, boolean direct) throws Exception {
+        String type = message instanceof TextMessage ? "TextMessage" : "BytesMessage";
+        Encoder encoder = direct ? new DirectEncoder() : new TransformingEncoder();
+
+        // Warm up the JIT.
+        encodeMessages(encoder, message);
+
+        long cumulativeBytes = 0;
+        long cumulativeTime = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long startBytes = getAllocatedBytes();
+            long startTime = System.currentTimeMillis();
+            encodeMessages(encoder, message);
+            long time = System.currentTimeMillis() - startTime;
+            long bytes = getAllocatedBytes() - startBytes;
+
+            cumulativeBytes += bytes;
+            cumulativeTime += time;
+            LOG.info("Encoded {} {} instances with direct={} in {} ms, {} bytes per message",
+                new Object[] { MSG_COUNT, type, direct, time, bytes / MSG_COUNT });
+        }
+
+        LOG.info("Smoothed results for {} with direct={}: {} ms per {} messages, {} bytes per message",
+            new Object[] { type, direct, cumulativeTime / NUM_RUNS, MSG_COUNT,
+                           cumulativeBytes / NUM_RUNS / MSG_COUNT });
+    }
+
+    private long encodeMessages(Encoder encoder, JmsMessage message) throws Exception {
+        long checksum = 0;
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            checksum += encoder.encode(message);
+        }
+        return checksum;
+    }
+
+    private JmsMessage createTextMessage() throws Exception {
+        JmsMessage message = factory.createTextMessage("hello");
+        populate(message);
+        return message;
+    }
+
+    private JmsMessage createBytesMessage() throws Exception {
+        JmsMessage message = factory.createBytesMessage();
+        ((BytesMessage) message).writeBytes(new byte[1024]);
+        populate(message);
+        message.onSend();
+        return message;
+    }
+
+    private void populate(JmsMessage message) throws Exception {
+        message.setJMSMessageID(new JmsMessageId("ID:bench:1:1:1", 1));
+        message.setJMSDestination(new JmsQueue("bench"));
+        message.setJMSTimestamp(System.currentTimeMillis());
+        for (int i = 0; i < NUM_PROPERTIES; ++i) {
+            message.setIntProperty("property" + i, i);
+        }
+        // The proton-jms transformer fails on messages without a message format.
+        message.setLongProperty(AmqpJmsMessageFacade.MESSAGE_FORMAT, 0);
+        message.setReadOnlyBody(true);
+    }
+
+    private long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private interface Encoder {
+        int encode(JmsMessage message) throws Exception;
+    }
+
+    private static class DirectEncoder implements Encoder {
+
+        private final AmqpJmsMessageEncoder encoder = new AmqpJmsMessageEncoder();
+
+        @Override
+        public int encode(JmsMessage message) throws Exception {
+            return encoder.encode(message);
+        }
+    }
+
+    private static class TransformingEncoder implements Encoder {
+
+        private final OutboundTransformer transformer = new AutoOutboundTransformer(AmqpJMSVendor.INSTANCE);
+
+        @Override
+        public int encode(JmsMessage message) throws Exception {
+            EncodedMessage encoded = transformer.transform(message);
+            return encoded.getLength();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.JmsTemporaryTopic;
+import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsDefaultMessageFactory;
+import io.hawtjms.jms.message.JmsMapMessage;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.message.JmsStreamMessage;
+import io.hawtjms.jms.message.JmsTextMessage;
+import io.hawtjms.jms.meta.JmsMessageId;
+
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.DeliveryMode;
+import javax.jms.MapMessage;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.jms.EncodedMessage;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.junit.Test;
+
+/**
+ * Checks that messages written by the AmqpJmsMessageEncoder can be read by proton
+ * and are read back to the same values by the AmqpJmsMessageFacade.
+ */
+public class AmqpJmsMessageEncoderTest {
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+    private final AmqpJmsMessageEncoder encoder = new AmqpJmsMessageEncoder();
+
+    @Test
+    public void testTextMessageDecodedByProton() throws Exception {
+        JmsTextMessage message = factory.createTextMessage("hello \u00e9\u4e16\ud83d\ude00");
+        message.setJMSMessageID(new JmsMessageId("ID:test:1:1:1", 1));
+        message.setJMSDestination(new JmsQueue("queue"));
+        message.setJMSCorrelationID("correlation");
+        message.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+        message.setJMSPriority(7);
+        message.setJMSTimestamp(1000);
+        message.setStringProperty("string", "value");
+        message.setIntProperty("int", 42);
+
+        MessageImpl amqp = decode(message);
+
+        assertTrue(amqp.isDurable());
+        assertEquals(7, amqp.getPriority());
+        assertEquals("ID:test:1:1:1-1", amqp.getMessageId());
+        assertEquals("queue", amqp.getAddress());
+        assertEquals("correlation", amqp.getCorrelationId());
+        assertEquals(1000, amqp.getCreationTime());
+        assertEquals("value", amqp.getApplicationProperties().getValue().get("string"));
+        assertEquals(42, amqp.getApplicationProperties().getValue().get("int"));
+        assertEquals("hello \u00e9\u4e16\ud83d\ude00", ((AmqpValue) amqp.getBody()).getValue());
+    }
+
+    @Test
+    public void testBytesMessageDecodedByProton() throws Exception {
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < payload.length; ++i) {
+            payload[i] = (byte) i;
+        }
+
+        JmsBytesMessage message = factory.createBytesMessage();
+        message.writeBytes(payload);
+        message.onSend();
+
+        MessageImpl amqp = decode(message);
+
+        assertNull(amqp.getHeader());
+        assertEquals(new Binary(payload), ((Data) amqp.getBody()).getValue());
+    }
+
+    @Test
+    public void testTextMessageRoundTrip() throws Exception {
+        JmsTextMessage message = factory.createTextMessage("hello");
+        message.setJMSMessageID(new JmsMessageId("ID:test:1:1:1", 1));
+        message.setJMSDestination(new JmsQueue("queue"));
+        message.setJMSReplyTo(new JmsTemporaryTopic("reply"));
+        message.setJMSType("type");
+        message.setJMSExpiration(System.currentTimeMillis() + 60000);
+        message.setBooleanProperty("boolean", true);
+        message.setLongProperty("long", Long.MAX_VALUE);
+        message.setDoubleProperty("double", 1.5);
+
+        JmsMessage received = roundTrip(message);
+
+        assertTrue(received instanceof TextMessage);
+        assertEquals("ID:test:1:1:1-1", received.getJMSMessageID());
+        assertEquals("queue", ((JmsQueue) received.getJMSDestination()).getQueueName());
+        assertTrue(received.getJMSReplyTo() instanceof TemporaryTopic);
+        assertEquals("type", received.getJMSType());
+        assertEquals(message.getJMSExpiration(), received.getJMSExpiration());
+        assertFalse(received.getJMSRedelivered());
+        assertEquals(true, received.getBooleanProperty("boolean"));
+        assertEquals(Long.MAX_VALUE, received.getLongProperty("long"));
+        assertEquals(1.5, received.getDoubleProperty("double"), 0.0);
+        assertEquals("hello", ((TextMessage) received).getText());
+    }
+
+    @Test
+    public void testMapMessageRoundTrip() throws Exception {
+        JmsMapMessage message = factory.createMapMessage();
+        message.setString("string", "value");
+        message.setInt("int", 1);
+        message.setBytes("bytes", new byte[] { 1, 2, 3 });
+
+        JmsMessage received = roundTrip(message);
+
+        assertTrue(received instanceof MapMessage);
+        MapMessage map = (MapMessage) received;
+        assertEquals("value", map.getString("string"));
+        assertEquals(1, map.getInt("int"));
+        assertArrayEquals(new byte[] { 1, 2, 3 }, map.getBytes("bytes"));
+    }
+
+    @Test
+    public void testStreamMessageRoundTrip() throws Exception {
+        JmsStreamMessage message = factory.createStreamMessage();
+        message.writeString("value");
+        message.writeLong(10);
+        message.writeBytes(new byte[] { 1, 2, 3 });
+        message.onSend();
+
+        JmsMessage received = roundTrip(message);
+
+        assertTrue(received instanceof StreamMessage);
+        StreamMessage stream = (StreamMessage) received;
+        assertEquals("value", stream.readString());
+        assertEquals(10, stream.readLong());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) stream.readObject());
+    }
+
+    @Test
+    public void testBytesMessageRoundTrip() throws Exception {
+        JmsBytesMessage message = factory.createBytesMessage();
+        message.writeInt(42);
+        message.writeUTF("value");
+        message.onSend();
+
+        JmsMessage received = roundTrip(message);
+
+        assertTrue(received instanceof BytesMessage);
+        BytesMessage bytes = (BytesMessage) received;
+        assertEquals(42, bytes.readInt());
+        assertEquals("value", bytes.readUTF());
+    }
+
+    @Test
+    public void testEncodeDoesNotModifyMessage() throws Exception {
+        JmsTextMessage message = factory.createTextMessage("hello");
+        message.setStringProperty("string", "value");
+
+        encoder.encode(message);
+
+        Map<String, Object> properties = message.getFacade().getProperties();
+        assertEquals(1, properties.size());
+        assertEquals("value", properties.get("string"));
+    }
+
+    private MessageImpl decode(JmsMessage message) throws Exception {
+        int length = encoder.encode(message);
+        MessageImpl amqp = new MessageImpl();
+        amqp.decode(encoder.getArray(), 0, length);
+        return amqp;
+    }
+
+    private JmsMessage roundTrip(JmsMessage message) throws Exception {
+        int length = encoder.encode(message);
+        byte[] encoded = new byte[length];
+        System.arraycopy(encoder.getArray(), 0, encoded, 0, length);
+        JmsMessage received = AmqpJmsMessageBuilder.createJmsMessage(new EncodedMessage(0, encoded, 0, length));
+        received.setReadOnlyBody(true);
+        return received;
+    }
+}
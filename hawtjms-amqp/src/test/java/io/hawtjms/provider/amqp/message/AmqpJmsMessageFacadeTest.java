@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.amqp.message;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.JmsTopic;
+import io.hawtjms.jms.message.JmsDefaultMessageFactory;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.message.JmsTextMessage;
+import io.hawtjms.jms.meta.JmsMessageId;
+
+import org.apache.qpid.proton.jms.EncodedMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the AmqpJmsMessageFacade only decodes the sections of a message when a
+ * value they hold is asked for.
+ */
+public class AmqpJmsMessageFacadeTest {
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+    private final AmqpJmsMessageEncoder encoder = new AmqpJmsMessageEncoder();
+
+    private AmqpJmsMessageFacade facade;
+
+    @Before
+    public void setUp() throws Exception {
+        JmsTextMessage message = factory.createTextMessage("hello");
+        message.setJMSMessageID(new JmsMessageId("ID:test:1:1:1", 1));
+        message.setJMSDestination(new JmsQueue("queue"));
+        message.setStringProperty("string", "value");
+
+        int length = encoder.encode(message);
+        byte[] encoded = new byte[length];
+        System.arraycopy(encoder.getArray(), 0, encoded, 0, length);
+        JmsMessage received = AmqpJmsMessageBuilder.createJmsMessage(new EncodedMessage(0, encoded, 0, length));
+        facade = (AmqpJmsMessageFacade) received.getFacade();
+    }
+
+    @Test
+    public void testNothingDecodedWhenCreated() throws Exception {
+        assertFalse(facade.isHeadersDecoded());
+        assertFalse(facade.isPropertiesDecoded());
+    }
+
+    @Test
+    public void testHeaderGetterOnlyDecodesHeaders() throws Exception {
+        assertEquals("ID:test:1:1:1-1", facade.getMessageId().toString());
+        assertTrue(facade.isHeadersDecoded());
+        assertFalse(facade.isPropertiesDecoded());
+    }
+
+    @Test
+    public void testPropertyGetterDecodesProperties() throws Exception {
+        assertEquals("value", facade.getProperties().get("string"));
+        assertTrue(facade.isHeadersDecoded());
+        assertTrue(facade.isPropertiesDecoded());
+    }
+
+    @Test
+    public void testConsumerDestinationDoesNotDecode() throws Exception {
+        JmsTopic topic = new JmsTopic("topic");
+        facade.setConsumerDestination(topic);
+        assertFalse(facade.isHeadersDecoded());
+
+        AmqpJmsMessageFacade copy = facade.copy();
+        assertEquals(topic, facade.getDestination());
+        assertTrue(facade.isHeadersDecoded());
+        assertEquals(topic, copy.getDestination());
+    }
+}
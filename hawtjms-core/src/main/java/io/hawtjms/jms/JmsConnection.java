@@ -21,6 +21,7 @@ import io.hawtjms.jms.exceptions.JmsExceptionSupport;
 import io.hawtjms.jms.message.JmsInboundMessageDispatch;
 import io.hawtjms.jms.message.JmsMessage;
 import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.message.JmsMessageTransformation;
 import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
 import io.hawtjms.jms.meta.JmsConnectionId;
 import io.hawtjms.jms.meta.JmsConnectionInfo;
@@ -28,6 +29,7 @@ import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsResource;
 import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.jms.meta.JmsTransactionId;
+import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.BlockingProvider;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderListener;
@@ -42,7 +44,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -78,13 +83,24 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
 
     private static final Logger LOG = LoggerFactory.getLogger(JmsConnection.class);
 
+    public static final int DEFAULT_ASYNC_SEND_WINDOW = 1000;
+    public static final int DEFAULT_DUPS_OK_ACK_BATCH_SIZE = 100;
+    public static final long DEFAULT_DUPS_OK_ACK_TIMEOUT = 100;
+
     private JmsConnectionInfo connectionInfo;
 
     private final IdGenerator clientIdGenerator;
     private boolean clientIdSet;
     private boolean sendAcksAsync;
     private ExceptionListener exceptionListener;
+    private JmsSendCompletionListener sendCompletionListener;
+    private int asyncSendWindow = DEFAULT_ASYNC_SEND_WINDOW;
+    private Semaphore asyncSendPermits = new Semaphore(DEFAULT_ASYNC_SEND_WINDOW);
+    private final AsyncAckResult asyncAckResult = new AsyncAckResult();
+    private int dupsOkAckBatchSize = DEFAULT_DUPS_OK_ACK_BATCH_SIZE;
+    private long dupsOkAckTimeout = DEFAULT_DUPS_OK_ACK_TIMEOUT;
     private final List<JmsSession> sessions = new CopyOnWriteArrayList<JmsSession>();
+    private final List<JmsConnectionConsumer> connectionConsumers = new CopyOnWriteArrayList<JmsConnectionConsumer>();
     private final Map<JmsConsumerId, JmsMessageDispatcher> dispatchers =
         new ConcurrentHashMap<JmsConsumerId, JmsMessageDispatcher>();
     private final AtomicBoolean connected = new AtomicBoolean();
@@ -96,8 +112,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
     private IOException firstFailureError;
     private JmsPrefetchPolicy prefetchPolicy = new JmsPrefetchPolicy();
     private boolean messagePrioritySupported;
+    private boolean lockFreeMessageQueue;
 
     private final ThreadPoolExecutor executor;
+    private ScheduledExecutorService scheduler;
 
     private URI brokerURI;
     private URI localURI;
@@ -165,7 +183,12 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                     session.shutdown();
                 }
 
+                for (JmsConnectionConsumer connectionConsumer : this.connectionConsumers) {
+                    connectionConsumer.shutdown();
+                }
+
                 this.sessions.clear();
+                this.connectionConsumers.clear();
                 this.tempDestinations.clear();
 
                 if (isConnected() && !failed.get()) {
@@ -188,6 +211,13 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                 LOG.warn("Error shutting down thread pool: " + executor + ". This exception will be ignored.", e);
             }
 
+            synchronized (this) {
+                if (scheduler != null) {
+                    scheduler.shutdownNow();
+                    scheduler = null;
+                }
+            }
+
             if (provider != null) {
                 provider.close();
                 provider = null;
@@ -204,12 +234,15 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
      */
     protected void shutdown() throws JMSException {
 
-        // TODO - Once ConnectionConsumer is added we must shutdown those as well.
-
         for (JmsSession session : this.sessions) {
             session.shutdown();
         }
 
+        for (JmsConnectionConsumer connectionConsumer : this.connectionConsumers) {
+            connectionConsumer.shutdown();
+        }
+        this.connectionConsumers.clear();
+
         if (isConnected() && !failed.get() && !closing.get()) {
             destroyResource(connectionInfo);
             connected.set(false);
@@ -239,7 +272,9 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                                                        ServerSessionPool sessionPool, int maxMessages) throws JMSException {
         checkClosedOrFailed();
         connect();
-        throw new JMSException("Not supported");
+        JmsSession.checkDestination(destination);
+        JmsDestination dest = JmsMessageTransformation.transformDestination(this, destination);
+        return createConnectionConsumer(dest, null, messageSelector, sessionPool, maxMessages);
     }
 
     /**
@@ -259,7 +294,26 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                                                               String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
         checkClosedOrFailed();
         connect();
-        throw new JMSException("Not supported");
+        JmsSession.checkDestination(topic);
+        if (subscriptionName == null || subscriptionName.trim().isEmpty()) {
+            throw new JMSException("A durable ConnectionConsumer requires a subscription name");
+        }
+        JmsDestination dest = JmsMessageTransformation.transformDestination(this, topic);
+        return createConnectionConsumer(dest, subscriptionName, messageSelector, sessionPool, maxMessages);
+    }
+
+    private ConnectionConsumer createConnectionConsumer(JmsDestination destination, String subscriptionName,
+                                                        String messageSelector, ServerSessionPool sessionPool,
+                                                        int maxMessages) throws JMSException {
+        messageSelector = JmsSession.checkSelector(messageSelector);
+        JmsConnectionConsumer result = new JmsConnectionConsumer(
+            this, destination, subscriptionName, messageSelector, sessionPool, maxMessages);
+        result.init();
+        addConnectionConsumer(result);
+        if (started.get()) {
+            result.start();
+        }
+        return result;
     }
 
     /**
@@ -338,6 +392,9 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                 for (JmsSession s : this.sessions) {
                     s.start();
                 }
+                for (JmsConnectionConsumer connectionConsumer : this.connectionConsumers) {
+                    connectionConsumer.start();
+                }
             } catch (Exception e) {
                 throw JmsExceptionSupport.create(e);
             }
@@ -370,6 +427,9 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
                     s.stop();
                 }
             }
+            for (JmsConnectionConsumer connectionConsumer : this.connectionConsumers) {
+                connectionConsumer.stop();
+            }
         }
     }
 
@@ -386,9 +446,7 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
     @Override
     public ConnectionConsumer createConnectionConsumer(Topic topic, String messageSelector,
                                                        ServerSessionPool sessionPool, int maxMessages) throws JMSException {
-        checkClosedOrFailed();
-        connect();
-        return null;
+        return createConnectionConsumer((Destination) topic, messageSelector, sessionPool, maxMessages);
     }
 
     /**
@@ -424,9 +482,7 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
     @Override
     public ConnectionConsumer createConnectionConsumer(Queue queue, String messageSelector,
                                                        ServerSessionPool sessionPool, int maxMessages) throws JMSException {
-        checkClosedOrFailed();
-        connect();
-        return null;
+        return createConnectionConsumer((Destination) queue, messageSelector, sessionPool, maxMessages);
     }
 
     /**
@@ -485,6 +541,14 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         this.sessions.add(s);
     }
 
+    protected void removeConnectionConsumer(JmsConnectionConsumer connectionConsumer) {
+        this.connectionConsumers.remove(connectionConsumer);
+    }
+
+    protected void addConnectionConsumer(JmsConnectionConsumer connectionConsumer) {
+        this.connectionConsumers.add(connectionConsumer);
+    }
+
     protected void addDispatcher(JmsConsumerId consumerId, JmsMessageDispatcher dispatcher) {
         dispatchers.put(consumerId, dispatcher);
     }
@@ -628,26 +692,52 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         checkClosedOrFailed();
         connect();
 
-        // TODO - We don't currently have a way to say that an operation
-        //        should be done asynchronously.  A send can be done async
-        //        in many cases, such as non-persistent delivery.
         try {
-            provider.send(envelope);
+            if (envelope.isSendAsync()) {
+                sendAsync(envelope);
+            } else {
+                provider.send(envelope);
+            }
         } catch (Exception ioe) {
             throw JmsExceptionSupport.create(ioe);
         }
     }
 
+    /**
+     * Hands the envelope to the provider without waiting for the outcome.  The number
+     * of outstanding asynchronous sends is bounded by the async send window, once the
+     * window is full the caller blocks until an earlier send completes.
+     */
+    private void sendAsync(JmsOutboundMessageDispatch envelope) throws Exception {
+        Semaphore permits = this.asyncSendPermits;
+        if (permits != null) {
+            while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                checkClosedOrFailed();
+            }
+        }
+
+        try {
+            provider.send(envelope, new AsyncSendResult(envelope.getMessage(), permits));
+        } catch (Exception error) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw error;
+        }
+    }
+
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws JMSException {
         checkClosedOrFailed();
         connect();
 
-        // TODO - We don't currently have a way to say that an operation
-        //        should be done asynchronously.  For a some acknowledgments
-        //        we only care that the request hits the wire, not that
-        //        any response comes back.
+        // When acks are sent async we only care that the request is queued with the
+        // provider, any failure is reported later through the ExceptionListener.
         try {
-            provider.acknowledge(envelope, ackType);
+            if (isSendAcksAsync()) {
+                provider.acknowledge(envelope, ackType, asyncAckResult);
+            } else {
+                provider.acknowledge(envelope, ackType);
+            }
         } catch (Exception ioe) {
             throw JmsExceptionSupport.create(ioe);
         }
@@ -747,6 +837,96 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         this.exceptionListener = listener;
     }
 
+    /**
+     * @return the listener notified of the outcome of asynchronous sends, or null if none set.
+     */
+    public JmsSendCompletionListener getSendCompletionListener() {
+        return sendCompletionListener;
+    }
+
+    /**
+     * Sets a listener that is notified of the outcome of each asynchronous send.  When
+     * no listener is set failed asynchronous sends are reported to the ExceptionListener.
+     *
+     * @param listener
+     *        the listener to notify of asynchronous send outcomes.
+     */
+    public void setSendCompletionListener(JmsSendCompletionListener listener) {
+        this.sendCompletionListener = listener;
+    }
+
+    /**
+     * @return the maximum number of asynchronous sends that can be outstanding at once.
+     */
+    public int getAsyncSendWindow() {
+        return asyncSendWindow;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous sends that can be awaiting completion at
+     * any one time, once reached further sends block until an earlier one completes.  A
+     * value of zero or less removes the limit.  This should be configured before any
+     * messages are sent.
+     *
+     * @param asyncSendWindow
+     *        the maximum number of outstanding asynchronous sends.
+     */
+    public void setAsyncSendWindow(int asyncSendWindow) {
+        this.asyncSendWindow = asyncSendWindow;
+        this.asyncSendPermits = asyncSendWindow > 0 ? new Semaphore(asyncSendWindow) : null;
+    }
+
+    public int getDupsOkAckBatchSize() {
+        return dupsOkAckBatchSize;
+    }
+
+    /**
+     * Sets the number of messages a consumer in a DUPS_OK_ACKNOWLEDGE session receives
+     * before it acknowledges them all at once.  The consumer caps this at half of its
+     * prefetch so the remote peer never stalls waiting on acknowledgments.  A value of
+     * one or less acknowledges each message as it is consumed.
+     *
+     * @param dupsOkAckBatchSize
+     *        the number of messages to acknowledge together.
+     */
+    public void setDupsOkAckBatchSize(int dupsOkAckBatchSize) {
+        this.dupsOkAckBatchSize = dupsOkAckBatchSize;
+    }
+
+    public long getDupsOkAckTimeout() {
+        return dupsOkAckTimeout;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that a consumer in a DUPS_OK_ACKNOWLEDGE
+     * session holds onto acknowledgments before sending them even though the batch
+     * is not yet full.  A value of zero or less waits for the batch to fill.
+     *
+     * @param dupsOkAckTimeout
+     *        the time to wait before acknowledging a partial batch.
+     */
+    public void setDupsOkAckTimeout(long dupsOkAckTimeout) {
+        this.dupsOkAckTimeout = dupsOkAckTimeout;
+    }
+
+    /**
+     * @return a scheduler for timed tasks of this Connection's resources, created on first use.
+     */
+    synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runner) {
+                    Thread thread = new Thread(runner, "hawtjms Connection Scheduler: " + connectionInfo.getConnectionId());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
     /**
      * Adds a JmsConnectionListener so that a client can be notified of events in
      * the underlying protocol provider.
@@ -840,6 +1020,22 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         this.messagePrioritySupported = messagePrioritySupported;
     }
 
+    public boolean isLockFreeMessageQueue() {
+        return lockFreeMessageQueue;
+    }
+
+    /**
+     * When enabled MessageConsumer instances store prefetched messages in a lock free
+     * ring buffer instead of the default lock guarded queues.  The ring delivers messages
+     * in the order they arrive so this overrides the messagePrioritySupported option.
+     *
+     * @param lockFreeMessageQueue
+     *        true to have consumers use the lock free message queue.
+     */
+    public void setLockFreeMessageQueue(boolean lockFreeMessageQueue) {
+        this.lockFreeMessageQueue = lockFreeMessageQueue;
+    }
+
     public long getCloseTimeout() {
         return connectionInfo.getCloseTimeout();
     }
@@ -981,6 +1177,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
             session.onConnectionInterrupted();
         }
 
+        for (JmsConnectionConsumer connectionConsumer : connectionConsumers) {
+            connectionConsumer.onConnectionInterrupted();
+        }
+
         for (JmsConnectionListener listener : connectionListeners) {
             listener.onConnectionInterrupted();
         }
@@ -1001,6 +1201,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         for (JmsSession session : sessions) {
             session.onConnectionRecovery(provider);
         }
+
+        for (JmsConnectionConsumer connectionConsumer : connectionConsumers) {
+            connectionConsumer.onConnectionRecovery(provider);
+        }
     }
 
     @Override
@@ -1012,6 +1216,10 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         for (JmsSession session : sessions) {
             session.onConnectionRecovered(provider);
         }
+
+        for (JmsConnectionConsumer connectionConsumer : connectionConsumers) {
+            connectionConsumer.onConnectionRecovered(provider);
+        }
     }
 
     @Override
@@ -1025,6 +1233,11 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         }
     }
 
+    @Override
+    public void onProviderException(IOException ex) {
+        onAsyncException(ex);
+    }
+
     @Override
     public void onConnectionFailure(final IOException ex) {
         onAsyncException(ex);
@@ -1085,6 +1298,103 @@ public class JmsConnection implements Connection, TopicConnection, QueueConnecti
         }
     }
 
+    /*
+     * Shared by all fire and forget acknowledgments, nothing waits on the outcome so
+     * the only thing to do is report any failure to the ExceptionListener.
+     */
+    private final class AsyncAckResult implements AsyncResult<Void> {
+
+        @Override
+        public void onFailure(Throwable result) {
+            LOG.debug("Async acknowledgment failed: {}", result.getMessage());
+            onAsyncException(result);
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+        }
+
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public boolean isComplete() {
+            return false;
+        }
+    }
+
+    /*
+     * Tracks a single asynchronous send, returns its slot in the send window and reports
+     * the outcome to the send completion listener or the ExceptionListener.
+     */
+    private final class AsyncSendResult implements AsyncResult<Void> {
+
+        private final JmsMessage message;
+        private final Semaphore permits;
+        private final AtomicBoolean complete = new AtomicBoolean();
+
+        public AsyncSendResult(JmsMessage message, Semaphore permits) {
+            this.message = message;
+            this.permits = permits;
+        }
+
+        @Override
+        public void onFailure(Throwable result) {
+            if (complete.compareAndSet(false, true)) {
+                releasePermit();
+
+                final JmsSendCompletionListener listener = sendCompletionListener;
+                if (listener == null) {
+                    onAsyncException(result);
+                } else if (!closed.get() && !closing.get()) {
+                    final JMSException error = JmsExceptionSupport.create(result);
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            listener.onSendFailed(message, error);
+                        }
+                    });
+                }
+            }
+        }
+
+        @Override
+        public void onSuccess(Void result) {
+            if (complete.compareAndSet(false, true)) {
+                releasePermit();
+
+                final JmsSendCompletionListener listener = sendCompletionListener;
+                if (listener != null && !closed.get() && !closing.get()) {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            listener.onSendComplete(message);
+                        }
+                    });
+                }
+            }
+        }
+
+        @Override
+        public void onSuccess() {
+            onSuccess(null);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete.get();
+        }
+
+        private void releasePermit() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
     protected void providerFailed(IOException error) {
         failed.set(true);
         if (firstFailureError == null) {
@@ -0,0 +1,288 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+import io.hawtjms.jms.meta.JmsConsumerId;
+import io.hawtjms.jms.meta.JmsConsumerInfo;
+import io.hawtjms.jms.meta.JmsSessionInfo;
+import io.hawtjms.provider.BlockingProvider;
+import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
+import io.hawtjms.util.FifoMessageQueue;
+import io.hawtjms.util.MessageQueue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.jms.ConnectionConsumer;
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.ServerSession;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JMS ConnectionConsumer implementation.
+ *
+ * The ConnectionConsumer owns a single subscription on the remote peer and hands the
+ * messages it receives to ServerSessions taken from the application server's pool, up
+ * to maxMessages at a time, so that consumption can be spread over as many threads as
+ * the pool has sessions.  The sessions in the pool must have been created by the same
+ * Connection as the ConnectionConsumer, as that is where their acknowledgements go.
+ *
+ * The link credit is taken from the connection's prefetch policy and is never less
+ * than one full batch of maxMessages.  It should be configured to cover the number of
+ * sessions in the pool times maxMessages to keep all of them busy.
+ *
+ * Messages are acknowledged as they are handed to the ServerSession's listener unless
+ * that Session is in CLIENT_ACKNOWLEDGE mode.  The subscription belongs to the session
+ * of the ConnectionConsumer and cannot be enlisted in the transaction of a ServerSession,
+ * so a ServerSession whose Session is transacted is refused and reported through the
+ * Connection's ExceptionListener.
+ */
+public class JmsConnectionConsumer implements ConnectionConsumer, JmsMessageDispatcher, Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmsConnectionConsumer.class);
+
+    private static final long POOL_FAILURE_DELAY = 100;
+
+    private final JmsConnection connection;
+    private final JmsSessionInfo sessionInfo;
+    private final JmsConsumerInfo consumerInfo;
+    private final ServerSessionPool sessionPool;
+    private final int maxMessages;
+    private final MessageQueue messageQueue = new FifoMessageQueue();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private Thread dispatcher;
+
+    protected JmsConnectionConsumer(JmsConnection connection, JmsDestination destination, String subscriptionName,
+                                    String selector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+        if (sessionPool == null) {
+            throw new JMSException("A ServerSessionPool is required to create a ConnectionConsumer");
+        }
+        if (maxMessages <= 0) {
+            throw new JMSException("The maxMessages value must be greater than zero: " + maxMessages);
+        }
+
+        this.connection = connection;
+        this.sessionPool = sessionPool;
+        this.maxMessages = maxMessages;
+
+        this.sessionInfo = new JmsSessionInfo(connection.getNextSessionId());
+        this.sessionInfo.setAcknowledgementMode(Session.AUTO_ACKNOWLEDGE);
+        this.sessionInfo.setSendAcksAsync(connection.isSendAcksAsync());
+
+        this.consumerInfo = new JmsConsumerInfo(sessionInfo, 1);
+        this.consumerInfo.setClientId(connection.getClientID());
+        this.consumerInfo.setDestination(destination);
+        this.consumerInfo.setSelector(selector);
+        this.consumerInfo.setSubscriptionName(subscriptionName);
+        this.consumerInfo.setAcknowledgementMode(Session.AUTO_ACKNOWLEDGE);
+        this.consumerInfo.setPrefetchSize(Math.max(maxMessages,
+            getConfiguredPrefetch(destination, subscriptionName != null, connection.getPrefetchPolicy())));
+    }
+
+    /**
+     * Creates the subscription on the remote peer and starts the thread that hands
+     * messages to the ServerSessionPool.
+     *
+     * @throws JMSException if the subscription cannot be created.
+     */
+    void init() throws JMSException {
+        connection.createResource(sessionInfo);
+        try {
+            connection.createResource(consumerInfo);
+            connection.addDispatcher(consumerInfo.getConsumerId(), this);
+            connection.startResource(consumerInfo);
+        } catch (JMSException ex) {
+            connection.removeDispatcher(consumerInfo.getConsumerId());
+            connection.destroyResource(sessionInfo);
+            throw ex;
+        }
+
+        dispatcher = new Thread(this, "hawtjms ConnectionConsumer [" + consumerInfo.getConsumerId() + "] dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public ServerSessionPool getServerSessionPool() throws JMSException {
+        checkClosed();
+        return sessionPool;
+    }
+
+    @Override
+    public void close() throws JMSException {
+        if (!closed.get()) {
+            shutdown();
+            connection.removeConnectionConsumer(this);
+            connection.destroyResource(consumerInfo);
+            connection.destroyResource(sessionInfo);
+        }
+    }
+
+    /**
+     * Stops dispatching without destroying the subscription on the remote peer, used when
+     * the parent Connection is closing.
+     */
+    protected void shutdown() {
+        if (closed.compareAndSet(false, true)) {
+            connection.removeDispatcher(consumerInfo.getConsumerId());
+            messageQueue.close();
+            if (dispatcher != null && dispatcher != Thread.currentThread()) {
+                dispatcher.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(JmsInboundMessageDispatch envelope) {
+        messageQueue.enqueue(envelope);
+    }
+
+    /**
+     * Takes messages from the queue and hands them to ServerSessions from the pool, each
+     * ServerSession is given as many waiting messages as it can take before being started.
+     */
+    @Override
+    public void run() {
+        while (!closed.get()) {
+            try {
+                JmsInboundMessageDispatch envelope = messageQueue.dequeue(-1);
+                if (envelope != null) {
+                    dispatch(envelope);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        LOG.debug("ConnectionConsumer {} dispatcher stopped", consumerInfo.getConsumerId());
+    }
+
+    private void dispatch(JmsInboundMessageDispatch envelope) throws InterruptedException {
+        ServerSession serverSession = null;
+        JmsSession session = null;
+        try {
+            serverSession = sessionPool.getServerSession();
+            Session candidate = serverSession.getSession();
+            if (!(candidate instanceof JmsSession) || ((JmsSession) candidate).getConnection() != connection) {
+                throw new JMSException("ServerSession must provide a Session created by this Connection");
+            }
+            session = (JmsSession) candidate;
+            if (session.isTransacted()) {
+                throw new JMSException("ServerSession must not provide a transacted Session, " +
+                                       "a ConnectionConsumer cannot enlist its messages in the Session's transaction");
+            }
+        } catch (JMSException ex) {
+            if (!closed.get()) {
+                messageQueue.enqueueFirst(envelope);
+                connection.onException(ex);
+                Thread.sleep(POOL_FAILURE_DELAY);
+            }
+            return;
+        }
+
+        session.loadServerSessionMessage(envelope);
+        int count = 1;
+        while (count < maxMessages && (envelope = messageQueue.dequeueNoWait()) != null) {
+            session.loadServerSessionMessage(envelope);
+            count++;
+        }
+
+        try {
+            serverSession.start();
+        } catch (JMSException ex) {
+            // Nothing will run the Session now, give the messages back so they are redelivered.
+            List<JmsInboundMessageDispatch> loaded = session.unloadServerSessionMessages();
+            for (JmsInboundMessageDispatch unstarted : loaded) {
+                try {
+                    connection.acknowledge(unstarted, ACK_TYPE.REDELIVERED);
+                } catch (JMSException ackError) {
+                    LOG.debug("Failed to release message from unstarted ServerSession: {}", ackError.getMessage());
+                }
+            }
+            connection.onException(ex);
+        }
+    }
+
+    protected void start() {
+        messageQueue.start();
+    }
+
+    protected void stop() {
+        messageQueue.stop();
+    }
+
+    protected void onConnectionInterrupted() {
+        messageQueue.clear();
+    }
+
+    protected void onConnectionRecovery(BlockingProvider provider) throws Exception {
+        provider.create(sessionInfo);
+        provider.create(consumerInfo);
+    }
+
+    protected void onConnectionRecovered(BlockingProvider provider) throws Exception {
+        provider.start(consumerInfo);
+    }
+
+    public JmsConsumerId getConsumerId() {
+        return consumerInfo.getConsumerId();
+    }
+
+    /**
+     * @return the number of messages this ConnectionConsumer hands to a ServerSession at once.
+     */
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * @return the link credit granted for the subscription.
+     */
+    public int getPrefetchSize() {
+        return consumerInfo.getPrefetchSize();
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    protected void checkClosed() throws IllegalStateException {
+        if (closed.get()) {
+            throw new IllegalStateException("The ConnectionConsumer is closed");
+        }
+    }
+
+    private static int getConfiguredPrefetch(JmsDestination destination, boolean durable, JmsPrefetchPolicy policy) {
+        if (destination.isTopic()) {
+            return durable ? policy.getDurableTopicPrefetch() : policy.getTopicPrefetch();
+        } else {
+            return policy.getQueuePrefetch();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JmsConnectionConsumer { " + consumerInfo.getConsumerId() + " }";
+    }
+}
@@ -58,8 +58,12 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
     private boolean forceAsyncSend;
     private boolean alwaysSyncSend;
     private boolean sendAcksAsync;
+    private int asyncSendWindow = JmsConnection.DEFAULT_ASYNC_SEND_WINDOW;
+    private int dupsOkAckBatchSize = JmsConnection.DEFAULT_DUPS_OK_ACK_BATCH_SIZE;
+    private long dupsOkAckTimeout = JmsConnection.DEFAULT_DUPS_OK_ACK_TIMEOUT;
     private boolean omitHost;
     private boolean messagePrioritySupported = true;
+    private boolean lockFreeMessageQueue;
     private String queuePrefix = "queue://";
     private String topicPrefix = "topic://";
     private String tempQueuePrefix = "temp-queue://";
@@ -419,6 +423,26 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
         this.messagePrioritySupported = messagePrioritySupported;
     }
 
+    /**
+     * @return the lockFreeMessageQueue configuration option.
+     */
+    public boolean isLockFreeMessageQueue() {
+        return this.lockFreeMessageQueue;
+    }
+
+    /**
+     * Has MessageConsumer instances hold their prefetched messages in a lock free ring
+     * buffer so that the arrival of new messages never contends with the thread that
+     * is receiving them.  Messages are dispatched in arrival order so enabling this
+     * overrides the messagePrioritySupported option.
+     *
+     * @param lockFreeMessageQueue
+     *        true to have consumers use the lock free message queue.
+     */
+    public void setLockFreeMessageQueue(boolean lockFreeMessageQueue) {
+        this.lockFreeMessageQueue = lockFreeMessageQueue;
+    }
+
     /**
      * Returns the prefix applied to Queues that are created by the client.
      *
@@ -654,7 +678,8 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
      * Should the message acknowledgments from a consumer be sent synchronously or
      * asynchronously.  Sending the acknowledgments asynchronously can increase the
      * performance of a consumer but opens up the possibility of a missed message
-     * acknowledge should the connection be unstable.
+     * acknowledge should the connection be unstable.  Any error from an asynchronous
+     * acknowledgment is reported to the Connection's ExceptionListener.
      *
      * @param sendAcksAsync
      *        true to have the client send all message acknowledgments asynchronously.
@@ -662,4 +687,63 @@ public class JmsConnectionFactory extends JNDIStorable implements ConnectionFact
     public void setSendAcksAsync(boolean sendAcksAsync) {
         this.sendAcksAsync = sendAcksAsync;
     }
+
+    /**
+     * @return the maximum number of asynchronous sends that can be outstanding at once.
+     */
+    public int getAsyncSendWindow() {
+        return asyncSendWindow;
+    }
+
+    /**
+     * Sets the maximum number of asynchronous sends that a Connection allows to be
+     * awaiting completion at any one time.  Once the window is full a send blocks until
+     * an earlier one completes, which keeps a fast producer from queuing an unbounded
+     * number of messages in the client.  A value of zero or less removes the limit.
+     *
+     * @param asyncSendWindow
+     *        the maximum number of outstanding asynchronous sends per Connection.
+     */
+    public void setAsyncSendWindow(int asyncSendWindow) {
+        this.asyncSendWindow = asyncSendWindow;
+    }
+
+    /**
+     * @return the number of messages acknowledged together by DUPS_OK_ACKNOWLEDGE consumers.
+     */
+    public int getDupsOkAckBatchSize() {
+        return dupsOkAckBatchSize;
+    }
+
+    /**
+     * Sets the number of messages a consumer in a DUPS_OK_ACKNOWLEDGE session receives
+     * before acknowledging them with a single cumulative acknowledgment.  Larger batches
+     * cut down the acknowledgment traffic at the cost of more duplicates should the
+     * connection fail.  A value of one or less acknowledges every message.
+     *
+     * @param dupsOkAckBatchSize
+     *        the number of messages to acknowledge together.
+     */
+    public void setDupsOkAckBatchSize(int dupsOkAckBatchSize) {
+        this.dupsOkAckBatchSize = dupsOkAckBatchSize;
+    }
+
+    /**
+     * @return the time in milliseconds a partial batch of DUPS_OK acknowledgments is held.
+     */
+    public long getDupsOkAckTimeout() {
+        return dupsOkAckTimeout;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds that a DUPS_OK_ACKNOWLEDGE consumer waits
+     * for its batch of acknowledgments to fill before sending what it has.  A value of
+     * zero or less only acknowledges once the batch is full.
+     *
+     * @param dupsOkAckTimeout
+     *        the time to wait before acknowledging a partial batch.
+     */
+    public void setDupsOkAckTimeout(long dupsOkAckTimeout) {
+        this.dupsOkAckTimeout = dupsOkAckTimeout;
+    }
 }
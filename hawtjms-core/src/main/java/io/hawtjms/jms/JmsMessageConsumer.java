@@ -26,9 +26,12 @@ import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.util.FifoMessageQueue;
 import io.hawtjms.util.MessageQueue;
 import io.hawtjms.util.PriorityMessageQueue;
+import io.hawtjms.util.RingBufferMessageQueue;
 
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -56,6 +59,12 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
     protected final Lock lock = new ReentrantLock();
     protected final AtomicBoolean suspendedConnection = new AtomicBoolean();
     protected final AtomicBoolean delivered = new AtomicBoolean();
+    protected final AtomicBoolean dispatchPending = new AtomicBoolean();
+
+    private final Object dupsOkLock = new Object();
+    private JmsInboundMessageDispatch lastDupsOkDelivery;
+    private int pendingDupsOkAcks;
+    private ScheduledFuture<?> dupsOkFlushTask;
 
     /**
      * Create a non-durable MessageConsumer
@@ -89,14 +98,16 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         this.connection = session.getConnection();
         this.acknowledgementMode = session.acknowledgementMode();
 
-        if (connection.isMessagePrioritySupported()) {
+        JmsPrefetchPolicy policy = this.connection.getPrefetchPolicy();
+
+        if (connection.isLockFreeMessageQueue()) {
+            this.messageQueue = new RingBufferMessageQueue(getConfiguredPrefetch(destination, policy));
+        } else if (connection.isMessagePrioritySupported()) {
             this.messageQueue = new PriorityMessageQueue();
         } else {
             this.messageQueue = new FifoMessageQueue();
         }
 
-        JmsPrefetchPolicy policy = this.connection.getPrefetchPolicy();
-
         this.consumerInfo = new JmsConsumerInfo(consumerId);
         this.consumerInfo.setClientId(connection.getClientID());
         this.consumerInfo.setSelector(selector);
@@ -156,6 +167,11 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
      * @throws JMSException
      */
     protected void doClose() throws JMSException {
+        try {
+            flushDupsOkAcks();
+        } catch (JMSException ex) {
+            // Already reported, the unacknowledged messages will be redelivered.
+        }
         shutdown();
         this.connection.destroyResource(consumerInfo);
     }
@@ -169,6 +185,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
      */
     protected void shutdown() throws JMSException {
         if (closed.compareAndSet(false, true)) {
+            cancelDupsOkFlush();
             this.session.remove(this);
         }
     }
@@ -238,7 +255,7 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         if (envelope == null || envelope.getMessage() == null) {
             return null;
         }
-        return envelope.getMessage().copy();
+        return envelope.getMessage().copyOnWrite();
     }
 
     JmsInboundMessageDispatch ack(final JmsInboundMessageDispatch envelope) throws JMSException {
@@ -248,6 +265,8 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
                 // Message has been received by the app.. expand the credit
                 // window so that we receive more messages.
                 session.acknowledge(envelope, ACK_TYPE.DELIVERED);
+            } else if (session.isDupsOkAcknowledge()) {
+                doDupsOkAck(envelope);
             } else {
                 doAck(envelope);
             }
@@ -267,6 +286,98 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
         }
     }
 
+    /*
+     * DUPS_OK acknowledgments are lazy, each message is only acknowledged as delivered so
+     * the credit window keeps moving and the delivered messages are consumed together by
+     * one cumulative acknowledgment once the batch fills or the flush timeout expires.
+     */
+    private void doDupsOkAck(final JmsInboundMessageDispatch envelope) throws JMSException {
+        checkClosed();
+        int batchSize = getDupsOkAckBatchSize();
+        if (batchSize <= 1) {
+            doAck(envelope);
+            return;
+        }
+
+        try {
+            session.acknowledge(envelope, ACK_TYPE.DELIVERED);
+        } catch (JMSException ex) {
+            session.onException(ex);
+            throw ex;
+        }
+
+        boolean flush = false;
+        synchronized (dupsOkLock) {
+            lastDupsOkDelivery = envelope;
+            if (++pendingDupsOkAcks >= batchSize) {
+                flush = true;
+            } else if (dupsOkFlushTask == null && connection.getDupsOkAckTimeout() > 0) {
+                dupsOkFlushTask = connection.getScheduler().schedule(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            flushDupsOkAcks();
+                        } catch (JMSException e) {
+                            // Already reported to the connection.
+                        }
+                    }
+                }, connection.getDupsOkAckTimeout(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (flush) {
+            flushDupsOkAcks();
+        }
+    }
+
+    /**
+     * Sends a single cumulative acknowledgment for any DUPS_OK acknowledgments that this
+     * consumer is holding onto.
+     *
+     * @throws JMSException if the acknowledgment fails.
+     */
+    void flushDupsOkAcks() throws JMSException {
+        synchronized (dupsOkLock) {
+            cancelDupsOkFlush();
+            JmsInboundMessageDispatch envelope = lastDupsOkDelivery;
+            lastDupsOkDelivery = null;
+            pendingDupsOkAcks = 0;
+
+            // Held under the lock so cumulative acks always reach the provider in order.
+            if (envelope != null && !closed.get()) {
+                try {
+                    session.acknowledge(envelope, ACK_TYPE.CUMULATIVE);
+                } catch (JMSException ex) {
+                    session.onException(ex);
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void cancelDupsOkFlush() {
+        synchronized (dupsOkLock) {
+            if (dupsOkFlushTask != null) {
+                dupsOkFlushTask.cancel(false);
+                dupsOkFlushTask = null;
+            }
+        }
+    }
+
+    /*
+     * The batch is capped at half the prefetch so that a peer which only grants more
+     * messages once earlier ones are acknowledged never stalls the consumer.
+     */
+    private int getDupsOkAckBatchSize() {
+        int batchSize = connection.getDupsOkAckBatchSize();
+        int prefetch = consumerInfo.getPrefetchSize();
+        if (prefetch <= 1) {
+            return 1;
+        }
+        return Math.min(batchSize, prefetch / 2);
+    }
+
     /**
      * Called from the session when a new Message has been dispatched to this Consumer
      * from the connection.
@@ -295,23 +406,60 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
             lock.unlock();
         }
 
-        if (this.messageListener != null && this.started) {
-            session.getExecutor().execute(new Runnable() {
-                @Override
-                public void run() {
-                    JmsInboundMessageDispatch envelope;
-                    while (session.isStarted() && (envelope = messageQueue.dequeueNoWait()) != null) {
-                        try {
-                            messageListener.onMessage(copy(ack(envelope)));
-                        } catch (Exception e) {
-                            session.getConnection().onException(e);
-                        }
-                    }
-                }
-            });
+        if (this.messageListener != null && this.started && dispatchPending.compareAndSet(false, true)) {
+            session.scheduleDispatch(this);
         }
     }
 
+    /**
+     * Called from the session's dispatch task to hand queued messages to the
+     * MessageListener, at most the given number are dispatched per call so that
+     * other consumers on the session get their turn.
+     *
+     * @param limit
+     *        the maximum number of messages to dispatch.
+     *
+     * @return true if more messages are waiting and the consumer should stay scheduled.
+     */
+    boolean dispatchToListener(int limit) {
+        MessageListener listener = null;
+        JmsInboundMessageDispatch envelope = null;
+        int count = 0;
+
+        while (count < limit && (listener = this.messageListener) != null && canDispatch() &&
+               (envelope = messageQueue.dequeueNoWait()) != null) {
+            try {
+                listener.onMessage(copy(ack(envelope)));
+            } catch (Exception e) {
+                session.getConnection().onException(e);
+            }
+            count++;
+        }
+
+        if (count == limit) {
+            return true;
+        }
+
+        dispatchPending.set(false);
+
+        // A message may have been queued after the queue was found empty but before
+        // the pending flag was cleared, its arrival would not have scheduled us again.
+        return this.messageListener != null && canDispatch() && !messageQueue.isEmpty() &&
+               dispatchPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Called from the session's dispatch task when it drops this consumer from its
+     * ready list without dispatching, e.g. because the session was stopped.
+     */
+    void cancelDispatch() {
+        dispatchPending.set(false);
+    }
+
+    private boolean canDispatch() {
+        return this.started && !closed.get() && session.isStarted();
+    }
+
     public void start() {
         lock.lock();
         try {
@@ -435,6 +583,11 @@ public class JmsMessageConsumer implements MessageConsumer, JmsMessageListener,
 
     protected void onConnectionInterrupted() {
         messageQueue.clear();
+        synchronized (dupsOkLock) {
+            cancelDupsOkFlush();
+            lastDupsOkDelivery = null;
+            pendingDupsOkAcks = 0;
+        }
     }
 
     protected void onConnectionRecovery(BlockingProvider provider) throws Exception {
@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Listener interface for clients that want to be notified of the outcome of
+ * messages that are sent asynchronously.
+ *
+ * The callbacks are made from the Connection's executor thread and should not
+ * block for long periods as that delays other Connection events.
+ */
+public interface JmsSendCompletionListener {
+
+    /**
+     * Called once an asynchronous send has completed successfully.
+     *
+     * @param message
+     *        the message that was sent.
+     */
+    void onSendComplete(Message message);
+
+    /**
+     * Called when an asynchronous send fails.
+     *
+     * @param message
+     *        the message that could not be sent.
+     * @param error
+     *        the error that caused the send to fail.
+     */
+    void onSendFailed(Message message, JMSException error);
+
+}
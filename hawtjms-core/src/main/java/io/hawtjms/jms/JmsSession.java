@@ -33,13 +33,16 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
@@ -81,6 +84,8 @@ import org.apache.activemq.apollo.selector.SelectorParser;
 @SuppressWarnings("static-access")
 public class JmsSession implements Session, QueueSession, TopicSession, JmsMessageListener, JmsMessageDispatcher {
 
+    private static final int DISPATCH_BATCH_SIZE = 100;
+
     private final JmsConnection connection;
     private final int acknowledgementMode;
     private final List<JmsMessageProducer> producers = new CopyOnWriteArrayList<JmsMessageProducer>();
@@ -93,6 +98,18 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
     private JmsPrefetchPolicy prefetchPolicy;
     private JmsSessionInfo sessionInfo;
     private ExecutorService executor;
+    private final ConcurrentLinkedQueue<JmsMessageConsumer> readyConsumers = new ConcurrentLinkedQueue<JmsMessageConsumer>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+    private final ConcurrentLinkedQueue<JmsInboundMessageDispatch> serverSessionMessages =
+        new ConcurrentLinkedQueue<JmsInboundMessageDispatch>();
+    private final List<JmsInboundMessageDispatch> serverSessionDelivered = new ArrayList<JmsInboundMessageDispatch>();
+    private final Runnable dispatchTask = new Runnable() {
+
+        @Override
+        public void run() {
+            dispatchToReadyConsumers();
+        }
+    };
     private final ReentrantLock sendLock = new ReentrantLock();
 
     private final AtomicLong consumerIdGenerator = new AtomicLong();
@@ -154,6 +171,12 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
             throw new javax.jms.IllegalStateException("Cannot call recover() on a transacted session");
         }
 
+        if (isDupsOkAcknowledge()) {
+            for (JmsMessageConsumer consumer : consumers.values()) {
+                consumer.flushDupsOkAcks();
+            }
+        }
+
         this.connection.recover(getSessionId());
     }
 
@@ -187,6 +210,11 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
         });
     }
 
+    /**
+     * Delivers the messages a ConnectionConsumer loaded into this Session to the Session's
+     * MessageListener, called by the application server when the owning ServerSession
+     * is started.
+     */
     @Override
     public void run() {
         try {
@@ -195,7 +223,10 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
             throw new RuntimeException(e);
         }
 
-        throw new UnsupportedOperationException();
+        JmsInboundMessageDispatch envelope = null;
+        while ((envelope = serverSessionMessages.poll()) != null) {
+            deliverServerSessionMessage(envelope);
+        }
     }
 
     @Override
@@ -213,6 +244,15 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
      */
     protected void doClose() throws JMSException {
         boolean interrupted = Thread.interrupted();
+        if (isDupsOkAcknowledge()) {
+            for (JmsMessageConsumer consumer : consumers.values()) {
+                try {
+                    consumer.flushDupsOkAcks();
+                } catch (JMSException ex) {
+                    // Already reported, the unacknowledged messages will be redelivered.
+                }
+            }
+        }
         shutdown();
         this.connection.removeSession(this);
         this.connection.destroyResource(sessionInfo);
@@ -690,6 +730,7 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
             }
 
             boolean isJmsMessageType = original instanceof JmsMessage;
+            boolean isNativeMessage = isJmsMessageType && ((JmsMessage) original).getConnection() == connection;
             if (isJmsMessageType) {
                 ((JmsMessage) original).setConnection(connection);
                 if (!disableMsgId) {
@@ -698,7 +739,14 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
                 original.setJMSDestination(destination);
             }
 
-            JmsMessage copy = JmsMessageTransformation.transformMessage(connection, original);
+            // Messages created by this connection share their contents with the sent copy
+            // until either one is modified, all others are copied or converted up front.
+            JmsMessage copy = null;
+            if (isNativeMessage) {
+                copy = ((JmsMessage) original).copyOnWrite();
+            } else {
+                copy = JmsMessageTransformation.transformMessage(connection, original);
+            }
 
             // Ensure original message gets the destination and message ID as per spec.
             if (!isJmsMessageType) {
@@ -863,7 +911,8 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
 
     Executor getExecutor() {
         if (executor == null) {
-            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
 
                 @Override
                 public Thread newThread(Runnable runner) {
@@ -877,6 +926,39 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
         return executor;
     }
 
+    /**
+     * Queues a consumer that has messages waiting for its MessageListener.  The session
+     * keeps at most one dispatch task on its executor which serves all the ready consumers
+     * in turn, so a burst of messages doesn't turn into a burst of executor tasks.
+     *
+     * @param consumer
+     *        the consumer that has messages to dispatch.
+     */
+    void scheduleDispatch(JmsMessageConsumer consumer) {
+        readyConsumers.add(consumer);
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            getExecutor().execute(dispatchTask);
+        }
+    }
+
+    private void dispatchToReadyConsumers() {
+        do {
+            JmsMessageConsumer consumer = null;
+            while ((consumer = readyConsumers.poll()) != null) {
+                if (!isStarted()) {
+                    consumer.cancelDispatch();
+                } else if (consumer.dispatchToListener(DISPATCH_BATCH_SIZE)) {
+                    readyConsumers.add(consumer);
+                }
+            }
+
+            dispatchScheduled.set(false);
+
+            // A consumer could have been queued after the last poll but before the
+            // scheduled flag was cleared, in which case no new task was submitted for it.
+        } while (!readyConsumers.isEmpty() && dispatchScheduled.compareAndSet(false, true));
+    }
+
     protected JmsSessionInfo getSessionInfo() {
         return this.sessionInfo;
     }
@@ -998,6 +1080,83 @@ public class JmsSession implements Session, QueueSession, TopicSession, JmsMessa
         }
     }
 
+    /**
+     * Queues a message from a ConnectionConsumer for delivery on the next call to run().
+     *
+     * @param envelope
+     *        the message dispatch to deliver.
+     */
+    void loadServerSessionMessage(JmsInboundMessageDispatch envelope) {
+        serverSessionMessages.add(envelope);
+    }
+
+    /**
+     * Removes the messages a ConnectionConsumer loaded that have not been delivered yet,
+     * used when the owning ServerSession could not be started.
+     *
+     * @return the messages that were waiting for delivery.
+     */
+    List<JmsInboundMessageDispatch> unloadServerSessionMessages() {
+        List<JmsInboundMessageDispatch> unloaded = new ArrayList<JmsInboundMessageDispatch>();
+        JmsInboundMessageDispatch envelope = null;
+        while ((envelope = serverSessionMessages.poll()) != null) {
+            unloaded.add(envelope);
+        }
+        return unloaded;
+    }
+
+    /*
+     * The subscription belongs to the ConnectionConsumer so acknowledgements go straight to
+     * the connection, in CLIENT_ACKNOWLEDGE mode the messages are remembered until the
+     * application acknowledges and otherwise they are consumed as they are delivered.
+     */
+    private void deliverServerSessionMessage(JmsInboundMessageDispatch envelope) {
+        MessageListener listener = this.messageListener;
+        try {
+            if (listener == null) {
+                connection.acknowledge(envelope, ACK_TYPE.REDELIVERED);
+                onException(new IllegalStateException("No MessageListener set on the ServerSession's Session"));
+                return;
+            }
+
+            JmsMessage message = envelope.getMessage();
+            if (isClientAcknowledge()) {
+                message.setAcknowledgeCallback(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        if (isClosed()) {
+                            throw new javax.jms.IllegalStateException("Session closed.");
+                        }
+                        acknowledgeServerSessionMessages();
+                        return null;
+                    }
+                });
+                synchronized (serverSessionDelivered) {
+                    serverSessionDelivered.add(envelope);
+                }
+                connection.acknowledge(envelope, ACK_TYPE.DELIVERED);
+            } else {
+                connection.acknowledge(envelope, ACK_TYPE.CONSUMED);
+            }
+
+            listener.onMessage(message.copyOnWrite());
+        } catch (Exception e) {
+            onException(e);
+        }
+    }
+
+    private void acknowledgeServerSessionMessages() throws JMSException {
+        List<JmsInboundMessageDispatch> delivered = null;
+        synchronized (serverSessionDelivered) {
+            delivered = new ArrayList<JmsInboundMessageDispatch>(serverSessionDelivered);
+            serverSessionDelivered.clear();
+        }
+
+        for (JmsInboundMessageDispatch envelope : delivered) {
+            connection.acknowledge(envelope, ACK_TYPE.CONSUMED);
+        }
+    }
+
     private void deliver(JmsInboundMessageDispatch envelope) {
         JmsConsumerId id = envelope.getConsumerId();
         if (id == null) {
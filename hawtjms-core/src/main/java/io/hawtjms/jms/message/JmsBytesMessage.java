@@ -101,6 +101,16 @@ public class JmsBytesMessage extends JmsMessage implements BytesMessage {
         return other;
     }
 
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        storeContent();
+        JmsBytesMessage other = new JmsBytesMessage(facade);
+        other.copy((JmsMessage) this);
+        other.setContent(getContent());
+        shareFacadeWith(other);
+        return other;
+    }
+
     private void copy(JmsBytesMessage other) throws JMSException {
         other.storeContent();
         super.copy(other);
@@ -120,11 +130,12 @@ public class JmsBytesMessage extends JmsMessage implements BytesMessage {
     }
 
     /**
-     * Returns the message's byte buffer content.
+     * Returns the message's byte buffer content.  Bytes that are still being written
+     * are only included once the message has been reset or sent.
      *
      * @return a Buffer object containing the content of the message.
      */
-    protected Buffer getContent() {
+    public Buffer getContent() {
         return content;
     }
 
@@ -75,6 +75,18 @@ public class JmsDefaultMessageFacade implements JmsMessageFacade {
     @Override
     public JmsDefaultMessageFacade copy() {
         JmsDefaultMessageFacade copy = new JmsDefaultMessageFacade();
+        copyInto(copy);
+        return copy;
+    }
+
+    /**
+     * Copies the message headers and properties held by this facade into the given
+     * facade, allows a subclass to reuse the copy logic when creating its own copies.
+     *
+     * @param copy
+     *        the facade that receives a copy of this facade's values.
+     */
+    protected void copyInto(JmsDefaultMessageFacade copy) {
         copy.priority = this.priority;
         copy.groupSequence = this.groupSequence;
         copy.groupId = this.groupId;
@@ -97,8 +109,6 @@ public class JmsDefaultMessageFacade implements JmsMessageFacade {
         } else {
             copy.properties = null;
         }
-
-        return copy;
     }
 
     @Override
@@ -26,6 +26,7 @@ public class JmsInboundMessageDispatch {
     private JmsConsumerId consumerId;
     private JmsMessage message;
     private Object providerHint;
+    private long deliverySequence;
 
     public JmsMessage getMessage() {
         return message;
@@ -51,6 +52,21 @@ public class JmsInboundMessageDispatch {
         this.providerHint = hint;
     }
 
+    public long getDeliverySequence() {
+        return deliverySequence;
+    }
+
+    /**
+     * Sets the sequence number the provider assigned to this dispatch on its consumer,
+     * allows the provider to find the delivery again quickly when it is acknowledged.
+     *
+     * @param deliverySequence
+     *        the provider assigned sequence of this dispatch.
+     */
+    public void setDeliverySequence(long deliverySequence) {
+        this.deliverySequence = deliverySequence;
+    }
+
     public void onMessageRedelivered() {
         this.message.incrementRedeliveryCount();
     }
@@ -96,6 +96,18 @@ public class JmsMapMessage extends JmsMessage implements MapMessage {
         return other;
     }
 
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        JmsMapMessage other = new JmsMapMessage(facade);
+        other.copy(this);
+        if (!readOnlyBody) {
+            // A writable body can still change, so the copy needs its own.
+            other.map = new HashMap<String, Object>(map);
+        }
+        shareFacadeWith(other);
+        return other;
+    }
+
     public void copy(JmsMapMessage other) throws JMSException {
         super.copy(other);
         this.map = other.map;
@@ -112,7 +124,7 @@ public class JmsMapMessage extends JmsMessage implements MapMessage {
     @Override
     public void clearBody() throws JMSException {
         super.clearBody();
-        map.clear();
+        map = new HashMap<String, Object>();
     }
 
     /**
@@ -47,9 +47,10 @@ public class JmsMessage implements javax.jms.Message {
     protected transient Callable<Void> acknowledgeCallback;
     protected transient JmsConnection connection;
 
-    protected final JmsMessageFacade facade;
+    protected JmsMessageFacade facade;
     protected boolean readOnlyBody;
     protected boolean readOnlyProperties;
+    private transient boolean facadeShared;
 
     public JmsMessage(JmsMessageFacade facade) {
         this.facade = facade;
@@ -68,6 +69,37 @@ public class JmsMessage implements javax.jms.Message {
         this.connection = other.connection;
     }
 
+    /**
+     * Creates a lightweight copy of this message that shares its facade and body with
+     * this message instead of duplicating them.  The facade is only copied by whichever
+     * instance first modifies it.  A read-only body can only be modified after a call
+     * to clearBody which gives the modifying instance a body of its own, body types that
+     * could change a writable body in place give the copy its own body instead.  Either
+     * way neither instance sees changes made to the other.
+     *
+     * @return a copy of this message that shares its contents until modified.
+     *
+     * @throws JMSException if an error occurs while creating the copy.
+     */
+    public JmsMessage copyOnWrite() throws JMSException {
+        JmsMessage other = new JmsMessage(facade);
+        other.copy(this);
+        shareFacadeWith(other);
+        return other;
+    }
+
+    /**
+     * Marks the facade of this message as shared with the given message, after which
+     * both will copy the facade before their first modification of it.
+     *
+     * @param other
+     *        the message that was given this message's facade.
+     */
+    protected void shareFacadeWith(JmsMessage other) {
+        this.facadeShared = true;
+        other.facadeShared = true;
+    }
+
     @Override
     public int hashCode() {
         String id = getJMSMessageID();
@@ -131,6 +163,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSMessageID(String value) {
+        copyFacadeIfShared();
         if (value != null) {
             JmsMessageId id = new JmsMessageId(value);
             facade.setMessageId(id);
@@ -140,6 +173,7 @@ public class JmsMessage implements javax.jms.Message {
     }
 
     public void setJMSMessageID(JmsMessageId messageId) {
+        copyFacadeIfShared();
         facade.setMessageId(messageId);
     }
 
@@ -150,6 +184,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSTimestamp(long timestamp) {
+        copyFacadeIfShared();
         facade.setTimestamp(timestamp);
     }
 
@@ -160,6 +195,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSCorrelationID(String correlationId) {
+        copyFacadeIfShared();
         facade.setCorrelationId(correlationId);
     }
 
@@ -170,6 +206,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSCorrelationIDAsBytes(byte[] correlationId) throws JMSException {
+        copyFacadeIfShared();
         facade.setCorrelationId(decodeString(correlationId));
     }
 
@@ -180,6 +217,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSReplyTo(Destination destination) throws JMSException {
+        copyFacadeIfShared();
         facade.setReplyTo(JmsMessageTransformation.transformDestination(connection, destination));
     }
 
@@ -190,6 +228,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSDestination(Destination destination) throws JMSException {
+        copyFacadeIfShared();
         facade.setDestination(JmsMessageTransformation.transformDestination(connection, destination));
     }
 
@@ -200,6 +239,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSDeliveryMode(int mode) {
+        copyFacadeIfShared();
         facade.setPersistent(mode == DeliveryMode.PERSISTENT);
     }
 
@@ -220,6 +260,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSType(String type) {
+        copyFacadeIfShared();
         facade.setType(type);
     }
 
@@ -230,6 +271,7 @@ public class JmsMessage implements javax.jms.Message {
 
     @Override
     public void setJMSExpiration(long expiration) {
+        copyFacadeIfShared();
         facade.setExpiration(expiration);
     }
 
@@ -250,11 +292,13 @@ public class JmsMessage implements javax.jms.Message {
             scaled = (byte) priority;
         }
 
+        copyFacadeIfShared();
         facade.setPriority(scaled);
     }
 
     @Override
     public void clearProperties() {
+        copyFacadeIfShared();
         facade.clearProperties();
     }
 
@@ -292,6 +336,7 @@ public class JmsMessage implements javax.jms.Message {
      * @throws IOException if an error occurs while accessing the Message properties.
      */
     public void setProperty(String key, Object value) throws IOException {
+        copyFacadeIfShared();
         this.facade.setProperty(key, value);
     }
 
@@ -487,6 +532,7 @@ public class JmsMessage implements javax.jms.Message {
         }
 
         checkValidObject(value);
+        copyFacadeIfShared();
         PropertySetter setter = JMS_PROPERTY_SETERS.get(name);
 
         if (setter != null && value != null) {
@@ -686,6 +732,9 @@ public class JmsMessage implements javax.jms.Message {
     /**
      * Send operation event listener. Used to get the message ready to be sent.
      *
+     * The facade is not copied here even when shared, facade onSend only changes
+     * how the contents are held and not any value that the sharing message can see.
+     *
      * @throws JMSException
      */
     public void onSend() throws JMSException {
@@ -708,7 +757,8 @@ public class JmsMessage implements javax.jms.Message {
     }
 
     public void incrementRedeliveryCount() {
-         facade.setRedeliveryCounter(facade.getRedeliveryCounter() + 1);
+        copyFacadeIfShared();
+        facade.setRedeliveryCounter(facade.getRedeliveryCounter() + 1);
     }
 
     public JmsMessageFacade getFacade() {
@@ -720,6 +770,7 @@ public class JmsMessage implements javax.jms.Message {
     }
 
     public void setRedelivered(boolean redelivered) {
+        copyFacadeIfShared();
         if (redelivered) {
             if (!isRedelivered()) {
                 facade.setRedeliveryCounter(1);
@@ -753,6 +804,17 @@ public class JmsMessage implements javax.jms.Message {
         }
     }
 
+    /**
+     * Must be called before any change is made to the facade, if the facade is shared
+     * with another message it is replaced by a private copy first.
+     */
+    protected void copyFacadeIfShared() {
+        if (facadeShared) {
+            facade = facade.copy();
+            facadeShared = false;
+        }
+    }
+
     protected void checkReadOnlyProperties() throws MessageNotWriteableException {
         if (readOnlyProperties) {
             throw new MessageNotWriteableException("Message properties are read-only");
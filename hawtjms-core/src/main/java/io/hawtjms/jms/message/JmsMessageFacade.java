@@ -75,6 +75,9 @@ public interface JmsMessageFacade {
     /**
      * Called when a message is sent to allow a Message instance to move the
      * contents from a logical data structure to a binary form for transmission.
+     *
+     * The facade may still be shared with the message the application sent so
+     * this method must not change any of the values held in the facade.
      */
     void onSend() throws JMSException;
 
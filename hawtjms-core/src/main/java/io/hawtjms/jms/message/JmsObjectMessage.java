@@ -60,6 +60,14 @@ public class JmsObjectMessage extends JmsMessage implements ObjectMessage {
         return other;
     }
 
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        JmsObjectMessage other = new JmsObjectMessage(facade);
+        other.copy(this);
+        shareFacadeWith(other);
+        return other;
+    }
+
     private void copy(JmsObjectMessage other) throws JMSException {
         super.copy(other);
         this.object = other.object;
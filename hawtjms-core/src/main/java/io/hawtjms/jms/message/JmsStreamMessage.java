@@ -108,7 +108,7 @@ import org.fusesource.hawtbuf.Buffer;
  */
 public class JmsStreamMessage extends JmsMessage implements StreamMessage {
 
-    private final List<Object> content = new ArrayList<Object>(20);
+    private List<Object> content = new ArrayList<Object>(20);
 
     private Buffer bytes;
     private int remainingBytes;
@@ -127,6 +127,20 @@ public class JmsStreamMessage extends JmsMessage implements StreamMessage {
         return other;
     }
 
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        JmsStreamMessage other = new JmsStreamMessage(facade);
+        other.copy((JmsMessage) this);
+        if (readOnlyBody) {
+            other.content = this.content;
+        } else {
+            // A writable body can still change, so the copy needs its own.
+            other.content.addAll(this.content);
+        }
+        shareFacadeWith(other);
+        return other;
+    }
+
     private void copy(JmsStreamMessage other) throws JMSException {
         super.copy(other);
         this.content.clear();
@@ -155,7 +169,8 @@ public class JmsStreamMessage extends JmsMessage implements StreamMessage {
     @Override
     public void clearBody() throws JMSException {
         super.clearBody();
-        content.clear();
+        content = new ArrayList<Object>(20);
+        stream = null;
         index = 0;
         bytes = null;
         remainingBytes = -1;
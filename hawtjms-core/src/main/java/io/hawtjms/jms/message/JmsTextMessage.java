@@ -35,6 +35,14 @@ public class JmsTextMessage extends JmsMessage implements TextMessage {
         return other;
     }
 
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        JmsTextMessage other = new JmsTextMessage(facade);
+        other.copy(this);
+        shareFacadeWith(other);
+        return other;
+    }
+
     private void copy(JmsTextMessage other) throws JMSException {
         super.copy(other);
         this.internalSetText(other.internalGetText());
@@ -48,7 +56,7 @@ public class JmsTextMessage extends JmsMessage implements TextMessage {
 
     @Override
     public String getText() throws JMSException {
-        return text;
+        return internalGetText();
     }
 
     /**
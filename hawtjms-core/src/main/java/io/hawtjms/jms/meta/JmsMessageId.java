@@ -55,6 +55,13 @@ public class JmsMessageId extends JmsAbstractResourceId implements Comparable<Jm
         this.messageId = messageId;
     }
 
+    /**
+     * @return the value as it was given, without the ID: prefix that toString adds.
+     */
+    public String getValue() {
+        return messageId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -19,11 +19,11 @@ package io.hawtjms.provider;
 import io.hawtjms.jms.meta.JmsConsumerId;
 import io.hawtjms.jms.meta.JmsSessionId;
 import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.SerialExecutor;
+import io.hawtjms.util.WaitStrategy;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -39,14 +39,14 @@ public abstract class AbstractAsyncProvider implements AsyncProvider {
 
     protected final URI remoteURI;
     protected final AtomicBoolean closed = new AtomicBoolean();
-    protected final ScheduledExecutorService serializer;
+    protected final SerialExecutor serializer;
 
     protected ProviderListener listener;
 
     public AbstractAsyncProvider(URI remoteURI) {
         this.remoteURI = remoteURI;
 
-        this.serializer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        this.serializer = new SerialExecutor(new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable runner) {
@@ -102,6 +102,21 @@ public abstract class AbstractAsyncProvider implements AsyncProvider {
         return remoteURI;
     }
 
+    public String getWaitStrategy() {
+        return serializer.getWaitStrategy().name();
+    }
+
+    /**
+     * Sets how the provider thread waits for new work when idle, one of PARK,
+     * SPIN_THEN_PARK or BUSY_SPIN.
+     *
+     * @param waitStrategy
+     *        the name of the wait strategy to use.
+     */
+    public void setWaitStrategy(String waitStrategy) {
+        serializer.setWaitStrategy(WaitStrategy.valueOf(waitStrategy.toUpperCase()));
+    }
+
     public void fireProviderException(Throwable ex) {
         ProviderListener listener = this.listener;
         if (listener != null) {
@@ -170,6 +170,11 @@ public class AsyncProviderWrapper<E extends AsyncProvider> implements AsyncProvi
         this.listener.onConnectionInterrupted();
     }
 
+    @Override
+    public void onProviderException(IOException ex) {
+        this.listener.onProviderException(ex);
+    }
+
     /**
      * @return the wrapped AsyncProvider.
      */
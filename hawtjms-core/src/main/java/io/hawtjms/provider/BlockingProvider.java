@@ -149,6 +149,21 @@ public interface BlockingProvider {
      */
     void send(JmsOutboundMessageDispatch envelope) throws IOException, JMSException;
 
+    /**
+     * Sends the JmsMessage contained in the out-bound dispatch envelope without waiting
+     * for the outcome, the method returns once the send has been handed to the Provider
+     * and the result is reported to the given AsyncResult.
+     *
+     * @param envelope
+     *        the message envelope containing the JmsMessage to send.
+     * @param request
+     *        the AsyncResult that is notified of the outcome of the send.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error that maps to JMS occurs such as not authorized.
+     */
+    void send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException, JMSException;
+
     /**
      * Called to acknowledge all messages that have been delivered in a given session.
      *
@@ -180,6 +195,23 @@ public interface BlockingProvider {
      */
     void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType) throws IOException, JMSException;
 
+    /**
+     * Acknowledges a JmsMessage without waiting for the outcome, the method returns once
+     * the acknowledgment has been handed to the Provider and the result is reported to the
+     * given AsyncResult.
+     *
+     * @param envelope
+     *        The message dispatch envelope containing the Message delivery information.
+     * @param ackType
+     *        The type of acknowledgment being done.
+     * @param request
+     *        the AsyncResult that is notified of the outcome of the acknowledgment.
+     *
+     * @throws IOException if an error occurs or the Provider is already closed.
+     * @throws JMSException if an error occurs due to JMS violation such unmatched ack.
+     */
+    void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException;
+
     /**
      * Called to commit an open transaction.
      *
@@ -90,6 +90,11 @@ public class DefaultBlockingProvider implements BlockingProvider {
         request.getResponse();
     }
 
+    @Override
+    public void send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException, JMSException {
+        next.send(envelope, request);
+    }
+
     @Override
     public void acknowledge(JmsSessionId sessionId) throws IOException, JMSException {
         ProviderRequest<Void> request = new ProviderRequest<Void>();
@@ -104,6 +109,11 @@ public class DefaultBlockingProvider implements BlockingProvider {
         request.getResponse();
     }
 
+    @Override
+    public void acknowledge(JmsInboundMessageDispatch envelope, ACK_TYPE ackType, AsyncResult<Void> request) throws IOException, JMSException {
+        next.acknowledge(envelope, ackType, request);
+    }
+
     @Override
     public void commit(JmsSessionId sessionId) throws IOException, JMSException, UnsupportedOperationException {
         ProviderRequest<Void> request = new ProviderRequest<Void>();
@@ -48,4 +48,8 @@ public class DefaultProviderListener implements ProviderListener {
     @Override
     public void onConnectionRestored() {
     }
+
+    @Override
+    public void onProviderException(IOException ex) {
+    }
 }
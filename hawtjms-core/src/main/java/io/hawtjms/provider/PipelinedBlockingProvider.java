@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider;
+
+import io.hawtjms.jms.meta.JmsConnectionInfo;
+import io.hawtjms.jms.meta.JmsResource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jms.JMSException;
+
+/**
+ * BlockingProvider facade used while recovering the state of a connection.  Resource
+ * create and start requests are passed on to the provider without waiting for their
+ * responses so that the re-creation of many sessions, producers and consumers costs
+ * about one round trip instead of one per resource, the caller then waits for all of
+ * them with {@link #awaitCompletion()}.
+ *
+ * Requests are handed to the provider in the order they are made, resources must be
+ * created after the resource they belong to as the provider relies on this order.  The
+ * connection itself is always created synchronously since everything else depends on
+ * its being open.  All other operations block as they do in DefaultBlockingProvider.
+ */
+public class PipelinedBlockingProvider extends DefaultBlockingProvider {
+
+    private final List<ProviderRequest<Void>> outstanding = new ArrayList<ProviderRequest<Void>>();
+
+    public PipelinedBlockingProvider(AsyncProvider protocol) {
+        super(protocol);
+    }
+
+    @Override
+    public void create(JmsResource resource) throws IOException, JMSException, UnsupportedOperationException {
+        if (resource instanceof JmsConnectionInfo) {
+            awaitCompletion();
+            super.create(resource);
+            return;
+        }
+
+        ProviderRequest<Void> request = new ProviderRequest<Void>();
+        getNext().create(resource, request);
+        outstanding.add(request);
+    }
+
+    @Override
+    public void start(JmsResource resource) throws IOException, JMSException {
+        ProviderRequest<Void> request = new ProviderRequest<Void>();
+        getNext().start(resource, request);
+        outstanding.add(request);
+    }
+
+    /**
+     * Waits for a response to every create or start request made since the last call.
+     *
+     * @throws IOException if any of the requests failed, the first failure is thrown.
+     */
+    public void awaitCompletion() throws IOException {
+        IOException failure = null;
+        try {
+            for (ProviderRequest<Void> request : outstanding) {
+                try {
+                    request.getResponse();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        } finally {
+            outstanding.clear();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the number of requests that have been made but not yet waited on.
+     */
+    public int getOutstandingCount() {
+        return outstanding.size();
+    }
+}
@@ -27,7 +27,10 @@ public final class ProviderConstants {
         DELIVERED(0),
         CONSUMED(1),
         REDELIVERED(2),
-        POISONED(3);
+        POISONED(3),
+        // Marks consumed the given message and all earlier messages already acknowledged
+        // as delivered by the same consumer, used for lazy DUPS_OK acknowledgments.
+        CUMULATIVE(4);
 
         private final int value;
 
@@ -93,4 +93,17 @@ public interface ProviderListener {
      */
     void onConnectionFailure(IOException ex);
 
+    /**
+     * Called to report an error that does not affect the state of the connection, such
+     * as the remote peer refusing a message that the Provider sent on its own after the
+     * original send had already completed.
+     *
+     * It is considered a programming error to allow any exceptions to be thrown from
+     * this notification method.
+     *
+     * @param ex
+     *        The exception that describes the error.
+     */
+    void onProviderException(IOException ex);
+
 }
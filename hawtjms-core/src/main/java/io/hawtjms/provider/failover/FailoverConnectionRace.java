@@ -0,0 +1,191 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import io.hawtjms.jms.JmsSslContext;
+import io.hawtjms.provider.AsyncProvider;
+import io.hawtjms.provider.ProviderFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Races connection attempts to a set of candidate URIs against each other.  Attempts
+ * are started one after another in the order given, each one a fixed stagger delay after
+ * the last unless the previous attempt fails first in which case the next is started
+ * immediately.  The first attempt to connect wins, any attempt that connects after that
+ * point is closed.  A single race instance is used for only one round of attempts.
+ */
+public class FailoverConnectionRace {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FailoverConnectionRace.class);
+
+    private final Executor executor;
+    private final FailoverUriPool uris;
+    private final JmsSslContext sslContext;
+    private final long stagger;
+    private final BlockingQueue<Attempt> completed = new LinkedBlockingQueue<Attempt>();
+
+    private boolean decided;
+    private Throwable failureCause;
+
+    /**
+     * Creates a new race whose attempts are run on the given executor.
+     *
+     * @param executor
+     *        the executor used to run each attempt, must be able to run them all at once.
+     * @param uris
+     *        the pool the targets are taken from, told the outcome of each attempt.
+     * @param sslContext
+     *        the SSL context that should be applied to each attempt thread.
+     * @param stagger
+     *        the time in milliseconds to wait on an attempt before starting the next.
+     */
+    public FailoverConnectionRace(Executor executor, FailoverUriPool uris, JmsSslContext sslContext, long stagger) {
+        this.executor = executor;
+        this.uris = uris;
+        this.sslContext = sslContext;
+        this.stagger = Math.max(0, stagger);
+    }
+
+    /**
+     * Attempts to connect to each of the given targets, blocking until one of them
+     * connects or all of them have failed.
+     *
+     * @param targets
+     *        the candidate URIs in the order they should be attempted.
+     *
+     * @return the connected provider of the winning attempt or null if none connected.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public AsyncProvider connect(List<URI> targets) throws InterruptedException {
+        int started = 0;
+        int finished = 0;
+
+        try {
+            while (finished < targets.size()) {
+                if (started == finished) {
+                    start(targets.get(started++));
+                }
+
+                Attempt attempt = null;
+                if (started < targets.size()) {
+                    attempt = completed.poll(stagger, TimeUnit.MILLISECONDS);
+                    if (attempt == null) {
+                        start(targets.get(started++));
+                        continue;
+                    }
+                } else {
+                    attempt = completed.take();
+                }
+
+                finished++;
+                uris.connectAttempted(attempt.target, attempt.elapsed, attempt.provider != null);
+                if (attempt.provider != null) {
+                    LOG.debug("Connection attempt to: {} won after {} attempt(s) started", attempt.target, started);
+                    return attempt.provider;
+                }
+
+                failureCause = attempt.error;
+            }
+
+            return null;
+        } finally {
+            synchronized (this) {
+                decided = true;
+            }
+
+            List<Attempt> leftovers = new ArrayList<Attempt>();
+            completed.drainTo(leftovers);
+            for (Attempt attempt : leftovers) {
+                attempt.discard();
+            }
+        }
+    }
+
+    /**
+     * @return the error from the most recent failed attempt, or null if none failed.
+     */
+    public Throwable getFailureCause() {
+        return failureCause;
+    }
+
+    private void start(final URI target) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                Attempt attempt = new Attempt(target);
+                long startTime = System.currentTimeMillis();
+                try {
+                    LOG.debug("Attempting connection to: {}", target);
+                    JmsSslContext.setCurrentSslContext(sslContext);
+                    attempt.provider = ProviderFactory.createAsync(target);
+                } catch (Throwable e) {
+                    LOG.info("Connection attempt to: {} failed.", target);
+                    attempt.error = e;
+                }
+                attempt.elapsed = System.currentTimeMillis() - startTime;
+
+                completed(attempt);
+            }
+        });
+    }
+
+    private void completed(Attempt attempt) {
+        synchronized (this) {
+            if (!decided) {
+                completed.add(attempt);
+                return;
+            }
+        }
+
+        attempt.discard();
+    }
+
+    private static class Attempt {
+
+        private final URI target;
+        private AsyncProvider provider;
+        private Throwable error;
+        private long elapsed;
+
+        public Attempt(URI target) {
+            this.target = target;
+        }
+
+        public void discard() {
+            if (provider != null) {
+                LOG.debug("Closing connection to: {} which lost the connect race", target);
+                try {
+                    provider.close();
+                } catch (Throwable e) {
+                    LOG.trace("Error while closing losing connection: ", e);
+                }
+            }
+        }
+    }
+}
@@ -23,24 +23,34 @@ import io.hawtjms.jms.message.JmsMessageFactory;
 import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
 import io.hawtjms.jms.meta.JmsConnectionInfo;
 import io.hawtjms.jms.meta.JmsConsumerId;
+import io.hawtjms.jms.meta.JmsProducerInfo;
 import io.hawtjms.jms.meta.JmsResource;
 import io.hawtjms.jms.meta.JmsSessionId;
+import io.hawtjms.jms.meta.JmsSessionInfo;
 import io.hawtjms.provider.AsyncProvider;
 import io.hawtjms.provider.AsyncResult;
 import io.hawtjms.provider.DefaultBlockingProvider;
 import io.hawtjms.provider.DefaultProviderListener;
+import io.hawtjms.provider.PipelinedBlockingProvider;
 import io.hawtjms.provider.ProviderConstants.ACK_TYPE;
 import io.hawtjms.provider.ProviderFactory;
 import io.hawtjms.provider.ProviderListener;
 import io.hawtjms.provider.ProviderRequest;
+import io.hawtjms.provider.failover.FailoverSendSpool.SpooledSend;
 import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.SerialExecutor;
+import io.hawtjms.util.WaitStrategy;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -67,12 +77,16 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
 
     private static final int UNLIMITED = -1;
 
+    private static final long SPOOL_SESSION_ID = Long.MAX_VALUE;
+    private static final int SPOOL_DRAIN_WINDOW = 64;
+
     private ProviderListener listener;
     private AsyncProvider provider;
     private final FailoverUriPool uris;
 
-    private final ExecutorService serializer;
+    private final SerialExecutor serializer;
     private final ScheduledExecutorService connectionHub;
+    private final ExecutorService connectionAttempts;
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicBoolean failed = new AtomicBoolean();
     private final AtomicLong requestId = new AtomicLong();
@@ -87,6 +101,11 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     private long reconnectDelay = TimeUnit.SECONDS.toMillis(5);
     private IOException failureCause;
     private URI connectedURI;
+    private JmsConnectionInfo connectionInfo;
+    private StandbyConnection standby;
+    private FailoverSendSpool spool;
+    private SpoolDrain spoolDrain;
+    private final Set<JmsSessionId> transactedSessions = new HashSet<JmsSessionId>();
 
     // Timeout values configured via JmsConnectionInfo
     private long connectTimeout = JmsConnectionInfo.DEFAULT_CONNECT_TIMEOUT;
@@ -102,6 +121,12 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     private int maxReconnectAttempts = UNLIMITED;
     private int startupMaxReconnectAttempts = UNLIMITED;
     private int warnAfterReconnectAttempts = 10;
+    private boolean pipelineRecovery = true;
+    private int parallelConnectAttempts = 1;
+    private long connectAttemptStagger = 250;
+    private boolean hotStandby;
+    private String spoolFile;
+    private long maxSpoolSize = 64 * 1024 * 1024;
 
     public FailoverProvider(Map<String, String> nestedOptions) {
         this(null, nestedOptions);
@@ -115,7 +140,7 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         this.uris = new FailoverUriPool(uris, nestedOptions);
         this.sslContext = JmsSslContext.getCurrentSslContext();
 
-        this.serializer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        this.serializer = new SerialExecutor(new ThreadFactory() {
 
             @Override
             public Thread newThread(Runnable runner) {
@@ -139,11 +164,29 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                 return serial;
             }
         });
+
+        // When racing connection attempts each candidate is connected from its own
+        // thread so that one hanging connect cannot hold up the others.
+        this.connectionAttempts = Executors.newCachedThreadPool(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runner) {
+                Thread serial = new Thread(runner);
+                serial.setDaemon(true);
+                serial.setName("FailoverProvider: connect attempt thread");
+                return serial;
+            }
+        });
     }
 
     @Override
     public void connect() throws IOException {
         checkClosed();
+
+        if (spoolFile != null && spool == null) {
+            spool = new FailoverSendSpool(new File(spoolFile), maxSpoolSize, defaultMessageFactory);
+        }
+
         LOG.debug("Performing initial connection attempt");
         triggerReconnectionAttempt();
     }
@@ -175,6 +218,12 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                         if (provider != null) {
                             provider.close();
                         }
+
+                        discardStandby();
+
+                        if (spool != null) {
+                            spool.close();
+                        }
                     } catch (Exception e) {
                         LOG.debug("Caught exception while closing connection");
                     } finally {
@@ -183,6 +232,10 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                             connectionHub.shutdown();
                         }
 
+                        if (connectionAttempts != null) {
+                            connectionAttempts.shutdown();
+                        }
+
                         if (serializer != null) {
                             serializer.shutdown();
                         }
@@ -208,10 +261,18 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     public void create(final JmsResource resource, AsyncResult<Void> request) throws IOException, JMSException, UnsupportedOperationException {
         checkClosed();
         final FailoverRequest<Void> pending = new FailoverRequest<Void>(request) {
+            @Override
+            public void run() {
+                if (resource instanceof JmsSessionInfo && ((JmsSessionInfo) resource).isTransacted()) {
+                    transactedSessions.add(((JmsSessionInfo) resource).getSessionId());
+                }
+                super.run();
+            }
+
             @Override
             public void doTask() throws Exception {
                 if (resource instanceof JmsConnectionInfo) {
-                    JmsConnectionInfo connectionInfo = (JmsConnectionInfo) resource;
+                    connectionInfo = (JmsConnectionInfo) resource;
                     connectTimeout = connectionInfo.getConnectTimeout();
                     closeTimeout = connectionInfo.getCloseTimeout();
                     sendTimeout = connectionInfo.getSendTimeout();
@@ -219,6 +280,23 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                 }
 
                 provider.create(resource, this);
+
+                if (resource instanceof JmsConnectionInfo) {
+                    startStandby();
+                }
+            }
+
+            @Override
+            public void onSuccess(Void result) {
+                super.onSuccess(result);
+                if (resource instanceof JmsConnectionInfo) {
+                    serializer.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            startSpoolDrain();
+                        }
+                    });
+                }
             }
         };
 
@@ -242,6 +320,14 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     public void destroy(final JmsResource resourceId, AsyncResult<Void> request) throws IOException, JMSException, UnsupportedOperationException {
         checkClosed();
         final FailoverRequest<Void> pending = new FailoverRequest<Void>(request) {
+            @Override
+            public void run() {
+                if (resourceId instanceof JmsSessionInfo) {
+                    transactedSessions.remove(((JmsSessionInfo) resourceId).getSessionId());
+                }
+                super.run();
+            }
+
             @Override
             public void doTask() throws IOException, JMSException, UnsupportedOperationException {
                 provider.destroy(resourceId, this);
@@ -261,8 +347,35 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
     public void send(final JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException, JMSException {
         checkClosed();
         final FailoverRequest<Void> pending = new FailoverRequest<Void>(request) {
+
+            private boolean attempted;
+
+            @Override
+            public void run() {
+                // Sends that already went out to a provider before a failure are replayed
+                // as usual, they were made before anything now in the spool.
+                if (attempted || !isSpoolable(envelope)) {
+                    super.run();
+                    return;
+                }
+
+                try {
+                    if (spool.append(envelope)) {
+                        LOG.trace("Spooled send of message: {}", envelope.getMessage().getFacade().getMessageId());
+                        onSuccess(null);
+                        startSpoolDrain();
+                    } else {
+                        LOG.debug("Send spool is full, failing send: {}", spool);
+                        watcher.onFailure(new IOException("The send spool is full"));
+                    }
+                } catch (IOException e) {
+                    watcher.onFailure(e);
+                }
+            }
+
             @Override
             public void doTask() throws Exception {
+                attempted = true;
                 provider.send(envelope, this);
             }
         };
@@ -429,14 +542,22 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
             LOG.trace("Caught exception while closing failed provider: {}", error.getMessage());
         }
         this.provider = null;
+        this.spoolDrain = null;
 
         if (reconnectAllowed()) {
             ProviderListener listener = this.listener;
             if (listener != null) {
                 listener.onConnectionInterrupted();
             }
-            triggerReconnectionAttempt();
+
+            AsyncProvider promoted = promoteStandby();
+            if (promoted != null) {
+                initializeNewConnection(promoted, true);
+            } else {
+                triggerReconnectionAttempt();
+            }
         } else {
+            discardStandby();
             ProviderListener listener = this.listener;
             if (listener != null) {
                 listener.onConnectionFailure(cause);
@@ -452,8 +573,10 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
      *
      * @param provider
      *        The newly connect Provider instance that will become active.
+     * @param opened
+     *        true if the Provider has already opened the connection, as a standby does.
      */
-    private void initializeNewConnection(final AsyncProvider provider) {
+    private void initializeNewConnection(final AsyncProvider provider, final boolean opened) {
         this.serializer.execute(new Runnable() {
             @Override
             public void run() {
@@ -472,11 +595,42 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                         FailoverProvider.this.provider = provider;
                         provider.setProviderListener(FailoverProvider.this);
 
-                        // Stage 1: Recovery all JMS Framework resources
-                        listener.onConnectionRecovery(new DefaultBlockingProvider(provider));
-
-                        // Stage 2: Restart consumers, send pull commands, etc.
-                        listener.onConnectionRecovered(new DefaultBlockingProvider(provider));
+                        if (pipelineRecovery) {
+                            PipelinedBlockingProvider recovery = new PipelinedBlockingProvider(provider) {
+
+                                @Override
+                                public void create(JmsResource resource) throws IOException, JMSException {
+                                    if (!opened || !(resource instanceof JmsConnectionInfo)) {
+                                        super.create(resource);
+                                    }
+                                }
+                            };
+
+                            // Stage 1: Recovery all JMS Framework resources, the links are
+                            // created behind their sessions without waiting on each one.
+                            listener.onConnectionRecovery(recovery);
+                            recovery.awaitCompletion();
+
+                            // Stage 2: Restart consumers, send pull commands, etc.
+                            listener.onConnectionRecovered(recovery);
+                            recovery.awaitCompletion();
+                        } else {
+                            DefaultBlockingProvider recovery = new DefaultBlockingProvider(provider) {
+
+                                @Override
+                                public void create(JmsResource resource) throws IOException, JMSException {
+                                    if (!opened || !(resource instanceof JmsConnectionInfo)) {
+                                        super.create(resource);
+                                    }
+                                }
+                            };
+
+                            // Stage 1: Recovery all JMS Framework resources
+                            listener.onConnectionRecovery(recovery);
+
+                            // Stage 2: Restart consumers, send pull commands, etc.
+                            listener.onConnectionRecovered(recovery);
+                        }
 
                         listener.onConnectionRestored();
 
@@ -489,6 +643,8 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
                         reconnectAttempts = 0;
                         connectedURI = provider.getRemoteURI();
                         uris.connected();
+                        startStandby();
+                        startSpoolDrain();
                     }
                 } catch (Throwable error) {
                     handleProviderFailure(IOExceptionSupport.create(error));
@@ -519,18 +675,42 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
 
                 reconnectAttempts++;
                 Throwable failure = null;
-                URI target = uris.getNext();
-                if (target != null) {
+                if (parallelConnectAttempts > 1) {
+                    List<URI> targets = new ArrayList<URI>();
+                    int candidates = Math.min(parallelConnectAttempts, uris.size());
+                    for (int i = 0; i < candidates; ++i) {
+                        targets.add(uris.getNext());
+                    }
+
+                    FailoverConnectionRace race =
+                        new FailoverConnectionRace(connectionAttempts, uris, sslContext, connectAttemptStagger);
                     try {
-                        LOG.debug("Attempting connection to: {}", target);
-                        JmsSslContext.setCurrentSslContext(sslContext);
-                        AsyncProvider provider = ProviderFactory.createAsync(target);
-                        initializeNewConnection(provider);
-                        return;
+                        AsyncProvider provider = race.connect(targets);
+                        if (provider != null) {
+                            initializeNewConnection(provider, false);
+                            return;
+                        }
+                        failure = race.getFailureCause();
                     } catch (Throwable e) {
-                        LOG.info("Connection attempt to: {} failed.", target);
                         failure = e;
                     }
+                } else {
+                    URI target = uris.getNext();
+                    if (target != null) {
+                        long startTime = System.currentTimeMillis();
+                        try {
+                            LOG.debug("Attempting connection to: {}", target);
+                            JmsSslContext.setCurrentSslContext(sslContext);
+                            AsyncProvider provider = ProviderFactory.createAsync(target);
+                            uris.connectAttempted(target, System.currentTimeMillis() - startTime, true);
+                            initializeNewConnection(provider, false);
+                            return;
+                        } catch (Throwable e) {
+                            LOG.info("Connection attempt to: {} failed.", target);
+                            uris.connectAttempted(target, System.currentTimeMillis() - startTime, false);
+                            failure = e;
+                        }
+                    }
                 }
 
                 int reconnectLimit = reconnectAttemptLimit();
@@ -557,6 +737,96 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         });
     }
 
+    /**
+     * Called on the serializer thread to begin opening a standby connection to the next
+     * URI in the pool that differs from the active one, if hot standby is enabled and
+     * there is not already a standby.  The connect and open are done on a connect
+     * attempt thread so that normal operations are not held up.
+     */
+    private void startStandby() {
+        if (!hotStandby || standby != null || connectionInfo == null || provider == null ||
+            closed.get() || failed.get()) {
+            return;
+        }
+
+        URI target = uris.peekNext(provider.getRemoteURI());
+        if (target == null) {
+            LOG.debug("No URI other than the active one is available for a standby connection");
+            return;
+        }
+
+        standby = new StandbyConnection(target, connectionInfo);
+        connectionAttempts.execute(standby);
+    }
+
+    /**
+     * Called on the serializer thread to take over the standby connection, if one is
+     * open and ready, in place of the failed provider.
+     *
+     * @return the open standby Provider or null if there is none ready.
+     */
+    private AsyncProvider promoteStandby() {
+        StandbyConnection standby = this.standby;
+        if (standby == null || !standby.ready) {
+            discardStandby();
+            return null;
+        }
+
+        this.standby = null;
+        LOG.info("Promoting standby connection to: {}", standby.target);
+        return standby.provider;
+    }
+
+    private void discardStandby() {
+        StandbyConnection standby = this.standby;
+        this.standby = null;
+        if (standby != null) {
+            standby.discard();
+        }
+    }
+
+    /**
+     * Determines on the serializer thread whether a send should go to the spool rather
+     * than the provider.  Sends are spooled while offline and for as long as the spool
+     * holds earlier sends, so that sends are forwarded in the order they were made.
+     * Sends from transacted sessions are never spooled as they belong to a transaction
+     * on the remote peer.
+     */
+    private boolean isSpoolable(JmsOutboundMessageDispatch envelope) {
+        if (spool == null || transactedSessions.contains(envelope.getProducerId().getParentId())) {
+            return false;
+        }
+
+        return provider == null || !spool.isEmpty();
+    }
+
+    /**
+     * Called on the serializer thread to begin forwarding the contents of the spool to
+     * the connected provider, unless it is empty or already being forwarded.
+     */
+    private void startSpoolDrain() {
+        if (spool == null || spoolDrain != null || provider == null || connectionInfo == null ||
+            closed.get() || failed.get() || spool.isEmpty()) {
+            return;
+        }
+
+        LOG.info("Forwarding {} spooled sends to: {}", spool.getCount(), provider.getRemoteURI());
+        spoolDrain = new SpoolDrain(provider);
+        spoolDrain.start();
+    }
+
+    /**
+     * Reports a spooled send that had to be dropped.  The send completed when it was
+     * spooled so the only place left to report it is the asynchronous error path.
+     */
+    private void reportSpoolFailure(IOException error) {
+        LOG.warn("Send spool {}: {}", spool.getFile(), error.getMessage());
+        ProviderListener listener = this.listener;
+        if (listener != null) {
+            listener.onProviderException(error);
+        }
+    }
+
     private boolean reconnectAllowed() {
         return reconnectAttemptLimit() != 0;
     }
@@ -620,6 +890,21 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         });
     }
 
+    @Override
+    public void onProviderException(final IOException ex) {
+        if (closed.get() || failed.get()) {
+            return;
+        }
+        serializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed.get()) {
+                    listener.onProviderException(ex);
+                }
+            }
+        });
+    }
+
     //--------------- URI update and rebalance methods -----------------------//
 
     public void add(final URI uri) {
@@ -669,6 +954,109 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         this.uris.setRandomize(value);
     }
 
+    /**
+     * @return the path of the file used to spool sends while offline, or null if not spooling.
+     */
+    public String getSpoolFile() {
+        return spoolFile;
+    }
+
+    /**
+     * Sets the file used to spool sends while the provider is not connected, which
+     * turns spooling on.  Instead of blocking until the connection is recovered, sends
+     * that are not part of a transaction are written to a memory mapped journal in the
+     * file and completed at once.  Once connected the spooled sends are forwarded in
+     * order ahead of any later sends.  Sends left in the spool when the process exits
+     * are forwarded by the next connection to open the same file.  A spooled send is
+     * forwarded at least once, it may be sent again if the connection drops before the
+     * remote peer confirms it.  The file is locked while in use, a connection fails to
+     * connect when another connection already uses the same file.
+     *
+     * @param spoolFile
+     *        the path of the spool file, created if it does not exist.
+     */
+    public void setSpoolFile(String spoolFile) {
+        this.spoolFile = spoolFile;
+    }
+
+    /**
+     * @return the maximum number of bytes of encoded sends the spool holds.
+     */
+    public long getMaxSpoolSize() {
+        return maxSpoolSize;
+    }
+
+    /**
+     * Sets the maximum size of a newly created spool file.  Sends that do not fit in the
+     * remaining space fail rather than waiting for the connection to recover.
+     *
+     * @param maxSpoolSize
+     *        the maximum number of bytes of encoded sends the spool holds.
+     */
+    public void setMaxSpoolSize(long maxSpoolSize) {
+        this.maxSpoolSize = maxSpoolSize;
+    }
+
+    /**
+     * @return the number of sends waiting in the spool, zero if not spooling.
+     */
+    public long getSpoolCount() {
+        FailoverSendSpool spool = this.spool;
+        return spool != null ? spool.getCount() : 0;
+    }
+
+    /**
+     * @return the fraction of the spool in use from 0 to 1, zero if not spooling.
+     */
+    public double getSpoolFillLevel() {
+        FailoverSendSpool spool = this.spool;
+        return spool != null ? spool.getFillLevel() : 0;
+    }
+
+    /**
+     * @return the name of the strategy used to order reconnect attempts, fifo or latency.
+     */
+    public String getSelectionStrategy() {
+        return uris.getSelector() instanceof LatencyAwareUriSelector ? "latency" : "fifo";
+    }
+
+    /**
+     * Sets how the URIs in the pool are ordered for connection attempts.  The default
+     * of fifo attempts them in the configured order, or shuffled when randomize is set.
+     * With latency the URIs are attempted in order of their smoothed connect latency,
+     * penalized by their recent failure rate, so that the client lands on the closest
+     * healthy peer.  This applies to URIs added through discovery as well.
+     *
+     * @param strategy
+     *        the name of the strategy, fifo or latency.
+     */
+    public void setSelectionStrategy(String strategy) {
+        if ("latency".equalsIgnoreCase(strategy)) {
+            uris.setSelector(new LatencyAwareUriSelector());
+        } else if ("fifo".equalsIgnoreCase(strategy)) {
+            uris.setSelector(null);
+        } else {
+            throw new IllegalArgumentException("Unknown URI selection strategy: " + strategy);
+        }
+    }
+
+    /**
+     * @return the selector used to order the URIs in the pool, or null if none is set.
+     */
+    public FailoverUriSelector getSelector() {
+        return uris.getSelector();
+    }
+
+    /**
+     * Sets a custom selector used to order the URIs in the pool for connection attempts.
+     *
+     * @param selector
+     *        the selector to use, or null for FIFO or random order.
+     */
+    public void setSelector(FailoverUriSelector selector) {
+        uris.setSelector(selector);
+    }
+
     public long getInitialReconnectDealy() {
         return initialReconnectDelay;
     }
@@ -712,6 +1100,68 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         return warnAfterReconnectAttempts;
     }
 
+    /**
+     * @return the number of candidate URIs that are raced against each other on each connect attempt.
+     */
+    public int getParallelConnectAttempts() {
+        return parallelConnectAttempts;
+    }
+
+    /**
+     * Sets the number of URIs from the pool that are attempted concurrently on each connect
+     * or reconnect attempt.  Attempts are started in pool order, each one staggered from the
+     * last, and the first to connect is used while the others are closed.  This keeps one
+     * unresponsive host from holding up the reconnect while a healthy one is available.  A
+     * value of one or less attempts each URI in turn.  A round of parallel attempts counts as
+     * a single reconnect attempt against the configured limits.
+     *
+     * @param parallelConnectAttempts
+     *        the maximum number of connection attempts that may be in flight at once.
+     */
+    public void setParallelConnectAttempts(int parallelConnectAttempts) {
+        this.parallelConnectAttempts = parallelConnectAttempts;
+    }
+
+    /**
+     * @return the time in milliseconds between starting each parallel connection attempt.
+     */
+    public long getConnectAttemptStagger() {
+        return connectAttemptStagger;
+    }
+
+    /**
+     * Sets how long a parallel connection attempt is given on its own before the attempt to
+     * the next candidate URI is started.  When an attempt fails the next one is started right
+     * away without waiting out the remaining delay.
+     *
+     * @param connectAttemptStagger
+     *        the time in milliseconds to wait between starting parallel connection attempts.
+     */
+    public void setConnectAttemptStagger(long connectAttemptStagger) {
+        this.connectAttemptStagger = connectAttemptStagger;
+    }
+
+    /**
+     * @return true if a standby connection is kept open to the next URI in the pool.
+     */
+    public boolean isHotStandby() {
+        return hotStandby;
+    }
+
+    /**
+     * Sets whether a second connection is kept open and authenticated to the next URI in
+     * the pool, with no sessions or links attached, while the active connection is up.  On
+     * failure the standby connection is promoted immediately in place of connecting to a
+     * new peer and another standby is then opened in the background.  If the standby itself
+     * fails it is reopened after the max reconnect delay.
+     *
+     * @param hotStandby
+     *        true to keep a standby connection open.
+     */
+    public void setHotStandby(boolean hotStandby) {
+        this.hotStandby = hotStandby;
+    }
+
     /**
      * Sets the number of Connect / Reconnect attempts that must occur before a warn message
      * is logged indicating that the transport is not connected.  This can be useful when the
@@ -742,6 +1192,38 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
         this.useExponentialBackOff = useExponentialBackOff;
     }
 
+    public boolean isPipelineRecovery() {
+        return pipelineRecovery;
+    }
+
+    /**
+     * Controls whether the resources of a recovered connection are re-created without
+     * waiting for each request to complete before sending the next.  When disabled each
+     * session, producer and consumer costs a round trip to the remote before the next one
+     * is sent, which can add up to a long delay for connections with many resources.
+     *
+     * @param pipelineRecovery
+     *        true to pipeline the requests made while recovering a connection.
+     */
+    public void setPipelineRecovery(boolean pipelineRecovery) {
+        this.pipelineRecovery = pipelineRecovery;
+    }
+
+    public String getWaitStrategy() {
+        return serializer.getWaitStrategy().name();
+    }
+
+    /**
+     * Sets how the provider thread waits for new work when idle, one of PARK,
+     * SPIN_THEN_PARK or BUSY_SPIN.
+     *
+     * @param waitStrategy
+     *        the name of the wait strategy to use.
+     */
+    public void setWaitStrategy(String waitStrategy) {
+        serializer.setWaitStrategy(WaitStrategy.valueOf(waitStrategy.toUpperCase()));
+    }
+
     public long getConnectTimeout() {
         return this.connectTimeout;
     }
@@ -853,4 +1335,325 @@ public class FailoverProvider extends DefaultProviderListener implements AsyncPr
             return false;
         }
     }
+
+    /**
+     * A connection to a peer other than the active one that has been opened but has no
+     * sessions or links, held ready to take over when the active connection fails.  The
+     * ready and provider state is only acted on from the serializer thread.
+     */
+    private final class StandbyConnection extends DefaultProviderListener implements Runnable {
+
+        private final URI target;
+        private final JmsConnectionInfo connectionInfo;
+        private volatile AsyncProvider provider;
+        private boolean ready;
+
+        public StandbyConnection(URI target, JmsConnectionInfo connectionInfo) {
+            this.target = target;
+            this.connectionInfo = connectionInfo;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+            try {
+                LOG.debug("Opening standby connection to: {}", target);
+                JmsSslContext.setCurrentSslContext(sslContext);
+                provider = ProviderFactory.createAsync(target);
+                provider.setProviderListener(this);
+
+                ProviderRequest<Void> request = new ProviderRequest<Void>();
+                provider.create(connectionInfo, request);
+                if (connectTimeout > 0) {
+                    request.getResponse(connectTimeout, TimeUnit.MILLISECONDS);
+                    if (!request.isComplete()) {
+                        throw new IOException("Timed out while opening standby connection");
+                    }
+                } else {
+                    request.getResponse();
+                }
+                uris.connectAttempted(target, System.currentTimeMillis() - startTime, true);
+            } catch (Throwable error) {
+                uris.connectAttempted(target, System.currentTimeMillis() - startTime, false);
+                onConnectionFailure(IOExceptionSupport.create(error));
+                return;
+            }
+
+            serializer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (standby == StandbyConnection.this) {
+                        LOG.debug("Standby connection to: {} is ready", target);
+                        ready = true;
+                    } else {
+                        discard();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onConnectionFailure(final IOException ex) {
+            serializer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (standby != StandbyConnection.this) {
+                        discard();
+                        return;
+                    }
+
+                    LOG.debug("Standby connection to: {} failed: {}", target, ex.getMessage());
+                    discardStandby();
+                    if (!closed.get() && !failed.get()) {
+                        connectionHub.schedule(new Runnable() {
+                            @Override
+                            public void run() {
+                                serializer.execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        startStandby();
+                                    }
+                                });
+                            }
+                        }, maxReconnectDelay, TimeUnit.MILLISECONDS);
+                    }
+                }
+            });
+        }
+
+        public void discard() {
+            AsyncProvider provider = this.provider;
+            if (provider != null) {
+                provider.setProviderListener(closedListener);
+                try {
+                    provider.close();
+                } catch (Throwable error) {
+                    LOG.trace("Caught exception while closing standby provider: {}", error.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forwards the contents of the spool to one connected provider.  The sends go out
+     * from a session and anonymous producer of its own, as the producers that made them
+     * may since have closed, or belong to an earlier run of the process.  A window of
+     * sends is kept in flight and each is only released from the spool once it and all
+     * those before it are confirmed.  A send the remote peer refuses, or a record that can
+     * not be read back, is reported and released so that it does not hold back those after
+     * it.  All state is handled on the serializer thread.
+     */
+    private final class SpoolDrain {
+
+        private final AsyncProvider target;
+        private final JmsSessionInfo sessionInfo;
+        private final JmsProducerInfo producerInfo;
+        private final LinkedList<SpoolDrainSend> inFlight = new LinkedList<SpoolDrainSend>();
+        private long nextPosition;
+        private boolean ready;
+
+        public SpoolDrain(AsyncProvider target) {
+            this.target = target;
+            this.sessionInfo = new JmsSessionInfo(new JmsSessionId(connectionInfo.getConnectionId(), SPOOL_SESSION_ID));
+            this.producerInfo = new JmsProducerInfo(sessionInfo, 1);
+            this.nextPosition = spool.getReadPosition();
+        }
+
+        public void start() {
+            try {
+                target.create(sessionInfo, new DrainResult() {
+
+                    @Override
+                    protected void onDrainSuccess() throws Exception {
+                        target.create(producerInfo, new DrainResult() {
+
+                            @Override
+                            protected void onDrainSuccess() throws Exception {
+                                ready = true;
+                                pump();
+                            }
+                        });
+                    }
+                });
+            } catch (Exception e) {
+                onDrainFailure(e);
+            }
+        }
+
+        private void pump() throws Exception {
+            while (ready && inFlight.size() < SPOOL_DRAIN_WINDOW) {
+                SpooledSend next = null;
+                try {
+                    next = spool.read(nextPosition);
+                } catch (IOException e) {
+                    // The unreadable records have been dropped, forward those before them.
+                    reportSpoolFailure(e);
+                    break;
+                }
+
+                if (next == null) {
+                    break;
+                }
+
+                final SpoolDrainSend send = new SpoolDrainSend(next.getNextPosition());
+                inFlight.add(send);
+                nextPosition = next.getNextPosition();
+
+                if (next.getFailure() != null) {
+                    reportSpoolFailure(new IOException("Dropped a spooled send that could not be decoded: " +
+                                                       next.getFailure().getMessage(), next.getFailure()));
+                    send.confirmed = true;
+                    continue;
+                }
+
+                final JmsOutboundMessageDispatch envelope = next.getEnvelope();
+                envelope.setProducerId(producerInfo.getProducerId());
+                envelope.setSendAsync(false);
+                target.send(envelope, new DrainResult() {
+
+                    @Override
+                    protected void onDrainSuccess() throws Exception {
+                        confirm(send);
+                    }
+
+                    @Override
+                    protected void onDrainError(Throwable error) throws Exception {
+                        // A refusal of this one message by the remote peer must not hold
+                        // back those after it, anything else is a failure of the link.
+                        if (error instanceof JMSException) {
+                            reportSpoolFailure(new IOException("Dropped a spooled send of message " +
+                                envelope.getMessage().getFacade().getMessageId() +
+                                " that was refused: " + error.getMessage(), error));
+                            confirm(send);
+                        } else {
+                            super.onDrainError(error);
+                        }
+                    }
+                });
+            }
+
+            releaseConfirmed();
+
+            if (inFlight.isEmpty() && spool.isEmpty()) {
+                LOG.info("All spooled sends have been forwarded to: {}", target.getRemoteURI());
+                finish();
+            }
+        }
+
+        private void confirm(SpoolDrainSend send) throws Exception {
+            send.confirmed = true;
+            releaseConfirmed();
+            pump();
+        }
+
+        private void releaseConfirmed() {
+            while (!inFlight.isEmpty() && inFlight.getFirst().confirmed) {
+                spool.release(inFlight.removeFirst().nextPosition);
+            }
+        }
+
+        private boolean isActive() {
+            return spoolDrain == this && provider == target && !closed.get();
+        }
+
+        private void finish() {
+            spoolDrain = null;
+            try {
+                target.destroy(sessionInfo, new ProviderRequest<Void>());
+            } catch (Exception e) {
+                LOG.debug("Error while closing spool session: {}", e.getMessage());
+            }
+        }
+
+        private void onDrainFailure(Throwable error) {
+            LOG.warn("Failed to forward spooled sends, retrying in {} ms: {}", maxReconnectDelay, error.getMessage());
+            finish();
+            if (!closed.get() && !failed.get()) {
+                connectionHub.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        serializer.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                startSpoolDrain();
+                            }
+                        });
+                    }
+                }, maxReconnectDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Hands the outcome of a drain request back to the serializer thread where it
+         * is ignored if the drain has since been stopped.
+         */
+        private abstract class DrainResult implements AsyncResult<Void> {
+
+            private volatile boolean complete;
+
+            protected abstract void onDrainSuccess() throws Exception;
+
+            /**
+             * Called with the cause of a failed request, by default the drain is stopped
+             * and tried again later.
+             */
+            protected void onDrainError(Throwable error) throws Exception {
+                onDrainFailure(error);
+            }
+
+            @Override
+            public void onSuccess(Void result) {
+                complete = true;
+                serializer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isActive()) {
+                            try {
+                                onDrainSuccess();
+                            } catch (Throwable error) {
+                                onDrainFailure(error);
+                            }
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                onSuccess(null);
+            }
+
+            @Override
+            public void onFailure(final Throwable error) {
+                complete = true;
+                serializer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isActive()) {
+                            try {
+                                onDrainError(error);
+                            } catch (Throwable failure) {
+                                onDrainFailure(failure);
+                            }
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public boolean isComplete() {
+                return complete;
+            }
+        }
+    }
+
+    private static final class SpoolDrainSend {
+
+        private final long nextPosition;
+        private boolean confirmed;
+
+        public SpoolDrainSend(long nextPosition) {
+            this.nextPosition = nextPosition;
+        }
+    }
 }
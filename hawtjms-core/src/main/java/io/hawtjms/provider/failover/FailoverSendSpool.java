@@ -0,0 +1,803 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import io.hawtjms.jms.JmsDestination;
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.JmsTemporaryQueue;
+import io.hawtjms.jms.JmsTemporaryTopic;
+import io.hawtjms.jms.JmsTopic;
+import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsMapMessage;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFacade;
+import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.message.JmsObjectMessage;
+import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
+import io.hawtjms.jms.message.JmsStreamMessage;
+import io.hawtjms.jms.message.JmsTextMessage;
+import io.hawtjms.jms.meta.JmsMessageId;
+import io.hawtjms.util.ClassLoadingAwareObjectInputStream;
+import io.hawtjms.util.IOExceptionSupport;
+import io.hawtjms.util.MarshallingSupport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.jms.JMSException;
+import javax.jms.MessageEOFException;
+
+import org.fusesource.hawtbuf.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, memory mapped journal of message sends that is used to hold on to the
+ * sends made while the FailoverProvider is not connected so they can be forwarded in
+ * order once it is.
+ *
+ * The file holds a small header followed by a fixed size data region used as a ring,
+ * records are only ever appended at the write position and released from the read
+ * position so that the sends are drained in the order they were spooled.  Each record
+ * is an encoded JmsOutboundMessageDispatch preceded by its length and a CRC32 of its
+ * contents.  Both positions are kept in the header so a spool that was not drained
+ * before the process exits is picked up again when the file is next opened, a record
+ * whose checksum does not match, as left by a write that was cut short, ends the spool.
+ *
+ * Records are written to the mapping which the operating system writes back to the
+ * file on its own, the spool therefore survives the process exiting but not a crash
+ * of the host unless the journal is synced.
+ *
+ * The file is locked for as long as the spool is open, only one spool at a time, in
+ * this or any other process, can use a given file.
+ *
+ * All methods are synchronized, the FailoverProvider only uses the spool from its
+ * serializer thread but the fill level can be read from any thread.
+ */
+public class FailoverSendSpool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FailoverSendSpool.class);
+
+    private static final int MAGIC = 0x484A5350;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int READ_POSITION_OFFSET = 16;
+    private static final int WRITE_POSITION_OFFSET = 24;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int WRAP_MARKER = -1;
+
+    private static final byte MESSAGE_TYPE = 0;
+    private static final byte TEXT_MESSAGE_TYPE = 1;
+    private static final byte BYTES_MESSAGE_TYPE = 2;
+    private static final byte MAP_MESSAGE_TYPE = 3;
+    private static final byte STREAM_MESSAGE_TYPE = 4;
+    private static final byte OBJECT_MESSAGE_TYPE = 5;
+
+    private static final byte NO_DESTINATION = 0;
+    private static final byte QUEUE_DESTINATION = 1;
+    private static final byte TOPIC_DESTINATION = 2;
+    private static final byte TEMP_QUEUE_DESTINATION = 3;
+    private static final byte TEMP_TOPIC_DESTINATION = 4;
+
+    private static final Set<String> OPEN_SPOOLS = new HashSet<String>();
+
+    private final File file;
+    private final String path;
+    private final JmsMessageFactory messageFactory;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final MappedByteBuffer journal;
+    private final int capacity;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final CRC32 checksum = new CRC32();
+
+    private long readPosition;
+    private long writePosition;
+    private long count;
+    private boolean closed;
+
+    /**
+     * A spooled send read back from the journal.
+     */
+    public static class SpooledSend {
+
+        private final JmsOutboundMessageDispatch envelope;
+        private final IOException failure;
+        private final long nextPosition;
+
+        public SpooledSend(JmsOutboundMessageDispatch envelope, long nextPosition) {
+            this(envelope, null, nextPosition);
+        }
+
+        public SpooledSend(IOException failure, long nextPosition) {
+            this(null, failure, nextPosition);
+        }
+
+        private SpooledSend(JmsOutboundMessageDispatch envelope, IOException failure, long nextPosition) {
+            this.envelope = envelope;
+            this.failure = failure;
+            this.nextPosition = nextPosition;
+        }
+
+        /**
+         * @return the decoded send, with no producer assigned, or null if it could not be decoded.
+         */
+        public JmsOutboundMessageDispatch getEnvelope() {
+            return envelope;
+        }
+
+        /**
+         * @return the error that prevented the send from being decoded, or null if it was.
+         */
+        public IOException getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return the position of the record that follows this one.
+         */
+        public long getNextPosition() {
+            return nextPosition;
+        }
+    }
+
+    /**
+     * Opens the spool in the given file, creating the file if it does not exist.  If the
+     * file already holds a spool its unreleased sends are recovered and its existing size
+     * is kept regardless of the size requested.
+     *
+     * @param file
+     *        the file that holds the spool.
+     * @param maxSize
+     *        the maximum number of bytes of encoded sends the spool can hold.
+     * @param messageFactory
+     *        the factory used to create the messages that are read back from the spool.
+     *
+     * @throws IOException if the file cannot be opened, is in use by another spool or does
+     *         not hold a valid spool.
+     */
+    public FailoverSendSpool(File file, long maxSize, JmsMessageFactory messageFactory) throws IOException {
+        if (maxSize <= RECORD_HEADER_SIZE || maxSize > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid spool size: " + maxSize);
+        }
+
+        this.file = file;
+        this.messageFactory = messageFactory;
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create spool directory: " + parent);
+        }
+
+        // Checked ahead of the file lock as closing a second channel on a file can drop
+        // the lock another channel in the same process holds on it.
+        this.path = file.getCanonicalPath();
+        synchronized (OPEN_SPOOLS) {
+            if (!OPEN_SPOOLS.add(path)) {
+                throw new IOException("Send spool " + file + " is already in use by another connection");
+            }
+        }
+
+        boolean existing = file.exists() && file.length() >= HEADER_SIZE;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            this.raf = raf;
+            this.channel = raf.getChannel();
+            this.lock = lock(channel, file);
+
+            int size = (int) maxSize;
+            if (existing) {
+                raf.seek(0);
+                if (raf.readInt() != MAGIC || raf.readInt() != VERSION) {
+                    throw new IOException("File is not a send spool: " + file);
+                }
+                long existingSize = raf.readLong();
+                if (existingSize <= RECORD_HEADER_SIZE || existingSize > Integer.MAX_VALUE - HEADER_SIZE) {
+                    throw new IOException("Send spool " + file + " has an invalid size: " + existingSize);
+                }
+                size = (int) existingSize;
+                if (size != maxSize) {
+                    LOG.info("Existing spool {} has a size of {} bytes, keeping it in place of {}",
+                        new Object[] { file, size, maxSize });
+                }
+            }
+
+            this.capacity = size;
+            this.journal = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity);
+
+            if (existing) {
+                recover();
+            } else {
+                journal.putInt(0, MAGIC);
+                journal.putInt(4, VERSION);
+                journal.putLong(CAPACITY_OFFSET, capacity);
+                storePositions();
+            }
+        } catch (IOException e) {
+            if (raf != null) {
+                raf.close();
+            }
+            unregister(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a send to the end of the spool.
+     *
+     * @param envelope
+     *        the send to append.
+     *
+     * @return true if the send was spooled, false if there is not enough room left for it.
+     *
+     * @throws IOException if the send cannot be encoded or the spool is closed.
+     */
+    public synchronized boolean append(JmsOutboundMessageDispatch envelope) throws IOException {
+        checkClosed();
+
+        encoded.reset();
+        try {
+            encode(envelope, new DataOutputStream(encoded));
+        } catch (JMSException e) {
+            throw IOExceptionSupport.create(e);
+        }
+
+        byte[] payload = encoded.toByteArray();
+        int size = RECORD_HEADER_SIZE + payload.length;
+        if (size > capacity) {
+            return false;
+        }
+
+        long position = writePosition;
+        int offset = offsetOf(position);
+        int remaining = capacity - offset;
+        int skip = remaining < size ? remaining : 0;
+
+        if (position + skip + size - readPosition > capacity) {
+            return false;
+        }
+
+        if (skip > 0) {
+            if (remaining >= 4) {
+                journal.putInt(HEADER_SIZE + offset, WRAP_MARKER);
+            }
+            position += skip;
+            offset = 0;
+        }
+
+        checksum.reset();
+        checksum.update(payload, 0, payload.length);
+
+        journal.position(HEADER_SIZE + offset);
+        journal.putInt(payload.length);
+        journal.putInt((int) checksum.getValue());
+        journal.put(payload);
+
+        // The record is in place before the header says so.
+        writePosition = position + size;
+        count++;
+        storePositions();
+        return true;
+    }
+
+    /**
+     * Reads the send stored at the given position without releasing it.
+     *
+     * @param position
+     *        the position of the record, the first is at {@link #getReadPosition()} and
+     *        each following one at the next position of the one before.
+     *
+     * @return the send at the position or null if there are no records from that point.
+     *         A record that is intact but cannot be decoded is returned with the cause of
+     *         the failure in place of the send so that it can be released like any other.
+     *
+     * @throws IOException if the spool is closed or the record is corrupt, in which case
+     *         the record and all those after it can no longer be found and are dropped.
+     */
+    public synchronized SpooledSend read(long position) throws IOException {
+        checkClosed();
+
+        if (position < readPosition || position >= writePosition) {
+            return null;
+        }
+
+        int offset = offsetOf(position);
+        int remaining = capacity - offset;
+        if (remaining < RECORD_HEADER_SIZE || journal.getInt(HEADER_SIZE + offset) == WRAP_MARKER) {
+            position += remaining;
+            offset = 0;
+        }
+
+        byte[] payload = readRecord(offset);
+        if (payload == null) {
+            long dropped = count;
+            scan(readPosition, position);
+            dropped -= count;
+            storePositions();
+            throw new IOException("Corrupt record in send spool " + file + " at position " + position +
+                                  ", dropped " + dropped + " spooled sends from that point");
+        }
+
+        long nextPosition = position + RECORD_HEADER_SIZE + payload.length;
+        try {
+            return new SpooledSend(decode(new DataInputStream(new ByteArrayInputStream(payload))), nextPosition);
+        } catch (Exception e) {
+            return new SpooledSend(IOExceptionSupport.create(e), nextPosition);
+        }
+    }
+
+    /**
+     * Releases the record at the head of the spool once it no longer needs to be kept.
+     *
+     * @param nextPosition
+     *        the next position of the record being released.
+     */
+    public synchronized void release(long nextPosition) {
+        if (closed || nextPosition <= readPosition || nextPosition > writePosition) {
+            return;
+        }
+
+        readPosition = nextPosition;
+        count--;
+        storePositions();
+    }
+
+    /**
+     * Forces the content of the spool out to the storage device so that it survives
+     * a crash of the host as well as of the process.
+     */
+    public synchronized void sync() {
+        if (!closed) {
+            journal.force();
+        }
+    }
+
+    /**
+     * Syncs and closes the spool, unreleased sends stay in the file.
+     */
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                journal.force();
+                lock.release();
+                channel.close();
+                raf.close();
+            } catch (IOException e) {
+                LOG.debug("Error while closing send spool {}: {}", file, e.getMessage());
+            } finally {
+                unregister(path);
+            }
+        }
+    }
+
+    /**
+     * @return the position of the oldest unreleased record.
+     */
+    public synchronized long getReadPosition() {
+        return readPosition;
+    }
+
+    /**
+     * @return true if there are no unreleased sends in the spool.
+     */
+    public synchronized boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    /**
+     * @return the number of unreleased sends in the spool.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of bytes of the spool in use by unreleased sends.
+     */
+    public synchronized long getSize() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * @return the total number of bytes the spool can hold.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the fraction of the spool in use, from 0 when empty to 1 when full.
+     */
+    public synchronized double getFillLevel() {
+        return (double) getSize() / capacity;
+    }
+
+    /**
+     * @return the file that holds the spool.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "FailoverSendSpool { file = " + file + ", count = " + getCount() +
+               ", size = " + getSize() + ", capacity = " + capacity + " }";
+    }
+
+    //----- Journal handling -------------------------------------------------//
+
+    private void recover() throws IOException {
+        long read = journal.getLong(READ_POSITION_OFFSET);
+        long write = journal.getLong(WRITE_POSITION_OFFSET);
+        if (read < 0 || write < read || write - read > capacity) {
+            throw new IOException("Send spool " + file + " has invalid positions: " + read + ", " + write);
+        }
+
+        // Walk the records to count them and to drop any that were never fully written.
+        this.readPosition = read;
+        if (!scan(read, write)) {
+            LOG.warn("Send spool {} ends in an incomplete record, dropping it", file);
+        }
+        storePositions();
+
+        if (count > 0) {
+            LOG.info("Recovered {} spooled sends from {}", count, file);
+        }
+    }
+
+    /*
+     * Walks the records from one position up to another, ending the spool at the first
+     * record that is not intact.  Returns false if such a record was found.
+     */
+    private boolean scan(long from, long to) {
+        long position = from;
+        long records = 0;
+        boolean intact = true;
+        while (position < to) {
+            int offset = offsetOf(position);
+            int remaining = capacity - offset;
+            if (remaining < RECORD_HEADER_SIZE || journal.getInt(HEADER_SIZE + offset) == WRAP_MARKER) {
+                position += remaining;
+                offset = 0;
+                if (position >= to) {
+                    break;
+                }
+            }
+
+            byte[] payload = readRecord(offset);
+            if (payload == null || position + RECORD_HEADER_SIZE + payload.length > to) {
+                intact = false;
+                break;
+            }
+
+            position += RECORD_HEADER_SIZE + payload.length;
+            records++;
+        }
+
+        this.writePosition = Math.min(position, to);
+        this.count = records;
+        return intact;
+    }
+
+    private byte[] readRecord(int offset) {
+        int length = journal.getInt(HEADER_SIZE + offset);
+        if (length < 0 || length > capacity - offset - RECORD_HEADER_SIZE) {
+            return null;
+        }
+
+        int expected = journal.getInt(HEADER_SIZE + offset + 4);
+        byte[] payload = new byte[length];
+        journal.position(HEADER_SIZE + offset + RECORD_HEADER_SIZE);
+        journal.get(payload);
+
+        checksum.reset();
+        checksum.update(payload, 0, payload.length);
+        if ((int) checksum.getValue() != expected) {
+            return null;
+        }
+
+        return payload;
+    }
+
+    private static void unregister(String path) {
+        synchronized (OPEN_SPOOLS) {
+            OPEN_SPOOLS.remove(path);
+        }
+    }
+
+    private static FileLock lock(FileChannel channel, File file) throws IOException {
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+        }
+
+        if (lock == null) {
+            throw new IOException("Send spool " + file + " is already in use by another connection");
+        }
+
+        return lock;
+    }
+
+    private void storePositions() {
+        journal.putLong(READ_POSITION_OFFSET, readPosition);
+        journal.putLong(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    private int offsetOf(long position) {
+        return (int) (position % capacity);
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("The send spool is closed");
+        }
+    }
+
+    //----- Send encoding ----------------------------------------------------//
+
+    private void encode(JmsOutboundMessageDispatch envelope, DataOutputStream out) throws IOException, JMSException {
+        JmsMessage message = envelope.getMessage();
+        JmsMessageFacade facade = message.getFacade();
+
+        writeDestination(out, envelope.getDestination());
+
+        JmsMessageId messageId = facade.getMessageId();
+        writeString(out, messageId != null ? messageId.getValue() : null);
+        writeString(out, facade.getCorrelationId());
+        writeString(out, facade.getType());
+        writeString(out, facade.getUserId());
+        writeString(out, facade.getGroupId());
+        out.writeInt(facade.getGroupSequence());
+        out.writeBoolean(facade.isPersistent());
+        out.writeByte(facade.getPriority());
+        out.writeLong(facade.getTimestamp());
+        out.writeLong(facade.getExpiration());
+        writeDestination(out, facade.getReplyTo());
+        MarshallingSupport.marshalPrimitiveMap(facade.getProperties(), out);
+
+        if (message instanceof JmsTextMessage) {
+            out.writeByte(TEXT_MESSAGE_TYPE);
+            String text = ((JmsTextMessage) message).getText();
+            writeBytes(out, text != null ? text.getBytes("UTF-8") : null);
+        } else if (message instanceof JmsBytesMessage) {
+            out.writeByte(BYTES_MESSAGE_TYPE);
+            Buffer content = ((JmsBytesMessage) message).getContent();
+            writeBytes(out, content != null ? content.toByteArray() : null);
+        } else if (message instanceof JmsMapMessage) {
+            out.writeByte(MAP_MESSAGE_TYPE);
+            JmsMapMessage mapMessage = (JmsMapMessage) message;
+            List<String> names = new ArrayList<String>();
+            Enumeration<String> enumeration = mapMessage.getMapNames();
+            while (enumeration.hasMoreElements()) {
+                names.add(enumeration.nextElement());
+            }
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+                MarshallingSupport.marshalPrimitive(out, mapMessage.getObject(name));
+            }
+        } else if (message instanceof JmsStreamMessage) {
+            out.writeByte(STREAM_MESSAGE_TYPE);
+            JmsStreamMessage streamMessage = (JmsStreamMessage) message;
+            List<Object> elements = new ArrayList<Object>();
+            streamMessage.reset();
+            try {
+                while (true) {
+                    elements.add(streamMessage.readObject());
+                }
+            } catch (MessageEOFException eof) {
+            } finally {
+                streamMessage.reset();
+            }
+            MarshallingSupport.marshalPrimitiveList(elements, out);
+        } else if (message instanceof JmsObjectMessage) {
+            out.writeByte(OBJECT_MESSAGE_TYPE);
+            Serializable object = ((JmsObjectMessage) message).getObject();
+            byte[] serialized = null;
+            if (object != null) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream output = new ObjectOutputStream(bytes);
+                output.writeObject(object);
+                output.close();
+                serialized = bytes.toByteArray();
+            }
+            writeBytes(out, serialized);
+        } else {
+            out.writeByte(MESSAGE_TYPE);
+        }
+
+        out.flush();
+    }
+
+    private JmsOutboundMessageDispatch decode(DataInputStream in) throws IOException, JMSException {
+        JmsDestination destination = readDestination(in);
+
+        String messageId = readString(in);
+        String correlationId = readString(in);
+        String type = readString(in);
+        String userId = readString(in);
+        String groupId = readString(in);
+        int groupSequence = in.readInt();
+        boolean persistent = in.readBoolean();
+        byte priority = in.readByte();
+        long timestamp = in.readLong();
+        long expiration = in.readLong();
+        JmsDestination replyTo = readDestination(in);
+        Map<String, Object> properties = MarshallingSupport.unmarshalPrimitiveMap(in);
+
+        JmsMessage message = null;
+        switch (in.readByte()) {
+            case TEXT_MESSAGE_TYPE:
+                byte[] text = readBytes(in);
+                message = messageFactory.createTextMessage(text != null ? new String(text, "UTF-8") : null);
+                break;
+            case BYTES_MESSAGE_TYPE:
+                JmsBytesMessage bytesMessage = messageFactory.createBytesMessage();
+                byte[] content = readBytes(in);
+                if (content != null) {
+                    bytesMessage.writeBytes(content);
+                }
+                message = bytesMessage;
+                break;
+            case MAP_MESSAGE_TYPE:
+                JmsMapMessage mapMessage = messageFactory.createMapMessage();
+                int entries = in.readInt();
+                for (int i = 0; i < entries; ++i) {
+                    String name = in.readUTF();
+                    mapMessage.setObject(name, MarshallingSupport.unmarshalPrimitive(in));
+                }
+                message = mapMessage;
+                break;
+            case STREAM_MESSAGE_TYPE:
+                JmsStreamMessage streamMessage = messageFactory.createStreamMessage();
+                for (Object element : MarshallingSupport.unmarshalPrimitiveList(in)) {
+                    streamMessage.writeObject(element);
+                }
+                message = streamMessage;
+                break;
+            case OBJECT_MESSAGE_TYPE:
+                JmsObjectMessage objectMessage = messageFactory.createObjectMessage();
+                byte[] serialized = readBytes(in);
+                if (serialized != null) {
+                    ClassLoadingAwareObjectInputStream input =
+                        new ClassLoadingAwareObjectInputStream(new ByteArrayInputStream(serialized));
+                    try {
+                        objectMessage.setObject((Serializable) input.readObject());
+                    } catch (ClassNotFoundException e) {
+                        throw IOExceptionSupport.create(e);
+                    } finally {
+                        input.close();
+                    }
+                }
+                message = objectMessage;
+                break;
+            default:
+                message = messageFactory.createMessage();
+        }
+
+        JmsMessageFacade facade = message.getFacade();
+        if (messageId != null) {
+            facade.setMessageId(new JmsMessageId(messageId));
+        }
+        facade.setCorrelationId(correlationId);
+        facade.setType(type);
+        facade.setUserId(userId);
+        facade.setGroupId(groupId);
+        facade.setGroupSequence(groupSequence);
+        facade.setPersistent(persistent);
+        facade.setPriority(priority);
+        facade.setTimestamp(timestamp);
+        facade.setExpiration(expiration);
+        facade.setDestination(destination);
+        facade.setReplyTo(replyTo);
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            facade.setProperty(property.getKey(), property.getValue());
+        }
+        message.onSend();
+
+        JmsOutboundMessageDispatch envelope = new JmsOutboundMessageDispatch();
+        envelope.setMessage(message);
+        envelope.setDestination(destination);
+        return envelope;
+    }
+
+    private static void writeDestination(DataOutputStream out, JmsDestination destination) throws IOException {
+        if (destination == null) {
+            out.writeByte(NO_DESTINATION);
+            return;
+        }
+
+        if (destination.isQueue()) {
+            out.writeByte(destination.isTemporary() ? TEMP_QUEUE_DESTINATION : QUEUE_DESTINATION);
+        } else {
+            out.writeByte(destination.isTemporary() ? TEMP_TOPIC_DESTINATION : TOPIC_DESTINATION);
+        }
+        out.writeUTF(destination.getName());
+    }
+
+    private static JmsDestination readDestination(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case NO_DESTINATION:
+                return null;
+            case QUEUE_DESTINATION:
+                return new JmsQueue(in.readUTF());
+            case TOPIC_DESTINATION:
+                return new JmsTopic(in.readUTF());
+            case TEMP_QUEUE_DESTINATION:
+                return new JmsTemporaryQueue(in.readUTF());
+            case TEMP_TOPIC_DESTINATION:
+                return new JmsTemporaryTopic(in.readUTF());
+            default:
+                throw new IOException("Unknown destination type in send spool: " + kind);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value != null ? value.getBytes("UTF-8") : null);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+        return value != null ? new String(value, "UTF-8") : null;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+}
@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -40,6 +42,8 @@ public class FailoverUriPool {
     private final LinkedList<URI> uris;
     private final Map<String, String> nestedOptions;
     private boolean randomize;
+    private FailoverUriSelector selector;
+    private int returnedSinceOrdered;
 
     public FailoverUriPool() {
         this.uris = new LinkedList<URI>();
@@ -64,13 +68,20 @@ public class FailoverUriPool {
     /**
      * Returns the next URI in the pool of URIs.  The URI will be shifted to the
      * end of the list and not be attempted again until the full list has been
-     * returned once.
+     * returned once.  If a selector is set it orders the pool at the start of
+     * each pass through the list.
      *
      * @return the next URI that should be used for a connection attempt.
      */
-    public URI getNext() {
+    public synchronized URI getNext() {
         URI next = null;
         if (!uris.isEmpty()) {
+            if (selector != null && returnedSinceOrdered % uris.size() == 0) {
+                selector.order(uris);
+                returnedSinceOrdered = 0;
+            }
+            returnedSinceOrdered++;
+
             next = uris.removeFirst();
             uris.addLast(next);
         }
@@ -78,15 +89,83 @@ public class FailoverUriPool {
         return next;
     }
 
+    /**
+     * Returns the first URI in the pool that does not refer to the same host and port
+     * as the given URI.  Unlike {@link #getNext()} the order of the pool is not changed,
+     * if a selector is set the candidate is taken from a copy of the pool in the order
+     * the selector prefers.
+     *
+     * @param excluded
+     *        the URI that should be skipped, commonly the currently connected URI.
+     *
+     * @return the next URI that differs from the excluded one or null if there is none.
+     */
+    public synchronized URI peekNext(URI excluded) {
+        List<URI> candidates = uris;
+        if (selector != null) {
+            candidates = new ArrayList<URI>(uris);
+            selector.order(candidates);
+        }
+
+        for (URI uri : candidates) {
+            if (!compareURIs(uri, excluded)) {
+                return uri;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Reports that the Failover Provider connected to the last URI returned from
      * this pool.  If the Pool is set to randomize this will result in the Pool of
      * URIs being shuffled in preparation for the next connect cycle.
      */
-    public void connected() {
+    public synchronized void connected() {
         if (isRandomize()) {
             Collections.shuffle(uris);
         }
+        returnedSinceOrdered = 0;
+    }
+
+    /**
+     * Reports the outcome of a connection attempt to a URI returned from this pool
+     * so that the selector, if one is set, can take it into account.
+     *
+     * @param uri
+     *        the URI that was attempted.
+     * @param elapsed
+     *        the time in milliseconds the attempt took.
+     * @param success
+     *        true if the attempt connected.
+     */
+    public synchronized void connectAttempted(URI uri, long elapsed, boolean success) {
+        if (selector != null) {
+            if (success) {
+                selector.onConnectSuccess(uri, elapsed);
+            } else {
+                selector.onConnectFailure(uri, elapsed);
+            }
+        }
+    }
+
+    /**
+     * @return the selector used to order the pool, or null if the pool is in FIFO or random order.
+     */
+    public synchronized FailoverUriSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Sets the selector used to order the URIs in the pool before each pass through
+     * the list.  When set it takes precedence over the FIFO or random ordering.
+     *
+     * @param selector
+     *        the selector to use or null to return to FIFO or random order.
+     */
+    public synchronized void setSelector(FailoverUriSelector selector) {
+        this.selector = selector;
+        this.returnedSinceOrdered = 0;
     }
 
     /**
@@ -103,7 +182,7 @@ public class FailoverUriPool {
      * @param randomize
      *        true to have the URIs returned in a random order.
      */
-    public void setRandomize(boolean randomize) {
+    public synchronized void setRandomize(boolean randomize) {
         this.randomize = randomize;
         if (randomize) {
             Collections.shuffle(uris);
@@ -117,7 +196,7 @@ public class FailoverUriPool {
      * @param uri
      *        The new URI to add to the pool.
      */
-    public void add(URI uri) {
+    public synchronized void add(URI uri) {
         if (!contains(uri)) {
             if (!nestedOptions.isEmpty()) {
                 try {
@@ -137,8 +216,17 @@ public class FailoverUriPool {
      * @param uri
      *        The URI to attempt to remove from the pool.
      */
-    public void remove(URI uri) {
-        this.uris.remove(uri);
+    public synchronized void remove(URI uri) {
+        if (this.uris.remove(uri) && selector != null) {
+            selector.onRemoved(uri);
+        }
+    }
+
+    /**
+     * @return the number of URIs currently in the pool.
+     */
+    public synchronized int size() {
+        return uris.size();
     }
 
     /**
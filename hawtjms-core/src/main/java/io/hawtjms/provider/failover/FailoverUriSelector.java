@@ -0,0 +1,70 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Strategy used by the FailoverUriPool to decide the order in which the URIs in
+ * the pool are attempted.  The selector is told the outcome of each connection
+ * attempt so that it can favor the peers that have been responsive.
+ *
+ * Methods are called with the pool locked and so need no locking of their own.
+ */
+public interface FailoverUriSelector {
+
+    /**
+     * Orders the given URIs in place so that the URI which should be attempted
+     * first is at the head of the list.  Called at the start of each pass through
+     * the pool.
+     *
+     * @param uris
+     *        the current contents of the pool.
+     */
+    void order(List<URI> uris);
+
+    /**
+     * Records a connection attempt to the given URI that succeeded.
+     *
+     * @param uri
+     *        the URI that was connected to.
+     * @param elapsed
+     *        the time in milliseconds that the connect took.
+     */
+    void onConnectSuccess(URI uri, long elapsed);
+
+    /**
+     * Records a connection attempt to the given URI that failed.
+     *
+     * @param uri
+     *        the URI that could not be connected to.
+     * @param elapsed
+     *        the time in milliseconds that passed before the attempt failed.
+     */
+    void onConnectFailure(URI uri, long elapsed);
+
+    /**
+     * Called when a URI is removed from the pool so that any state kept for it
+     * can be dropped.
+     *
+     * @param uri
+     *        the URI that was removed.
+     */
+    void onRemoved(URI uri);
+
+}
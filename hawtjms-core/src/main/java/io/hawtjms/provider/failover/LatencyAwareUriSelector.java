@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FailoverUriSelector that orders the pool by how quickly and how reliably each
+ * URI has connected.  For every URI an exponentially weighted moving average is
+ * kept of the connect latency and of the failure rate of recent attempts, and the
+ * URIs are attempted in order of the score
+ *
+ *   score = latency + failurePenalty * failureRate
+ *
+ * with the lowest score first, both terms in milliseconds.  The penalty is added rather
+ * than scaled by latency so that a peer which refuses connections quickly still ranks
+ * behind healthy peers that are further away.  URIs that have not yet been attempted, for instance
+ * peers that were just found by discovery, score zero and so are attempted ahead of
+ * the rest, which serves as a probe of their latency.  URIs with equal scores keep
+ * their current relative order.
+ */
+public class LatencyAwareUriSelector implements FailoverUriSelector {
+
+    public static final double DEFAULT_SMOOTHING = 0.3;
+    public static final double DEFAULT_FAILURE_PENALTY = 1000;
+
+    private final Map<URI, Score> scores = new HashMap<URI, Score>();
+    private final double smoothing;
+    private final double failurePenalty;
+
+    public LatencyAwareUriSelector() {
+        this(DEFAULT_SMOOTHING, DEFAULT_FAILURE_PENALTY);
+    }
+
+    /**
+     * Creates a new selector.
+     *
+     * @param smoothing
+     *        the weight between 0 and 1 given to each new sample, higher values react faster.
+     * @param failurePenalty
+     *        the time in milliseconds added to the score of a URI whose attempts all fail.
+     */
+    public LatencyAwareUriSelector(double smoothing, double failurePenalty) {
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("Smoothing must be greater than 0 and at most 1: " + smoothing);
+        }
+        if (failurePenalty < 0) {
+            throw new IllegalArgumentException("Failure penalty cannot be negative: " + failurePenalty);
+        }
+
+        this.smoothing = smoothing;
+        this.failurePenalty = failurePenalty;
+    }
+
+    @Override
+    public void order(List<URI> uris) {
+        Collections.sort(uris, new Comparator<URI>() {
+
+            @Override
+            public int compare(URI first, URI second) {
+                return Double.compare(getScore(first), getScore(second));
+            }
+        });
+    }
+
+    @Override
+    public void onConnectSuccess(URI uri, long elapsed) {
+        Score score = getOrCreate(uri);
+        score.latency = score.samples == 0 ? elapsed : smooth(score.latency, elapsed);
+        score.failureRate = smooth(score.failureRate, 0);
+        score.samples++;
+    }
+
+    @Override
+    public void onConnectFailure(URI uri, long elapsed) {
+        Score score = getOrCreate(uri);
+
+        // A failure says nothing certain about latency, but a host that took longer to
+        // fail than it normally takes to connect has likely become slower to reach.
+        if (score.samples == 0) {
+            score.latency = elapsed;
+        } else if (elapsed > score.latency) {
+            score.latency = smooth(score.latency, elapsed);
+        }
+        score.failureRate = score.samples == 0 ? 1 : smooth(score.failureRate, 1);
+        score.samples++;
+    }
+
+    @Override
+    public void onRemoved(URI uri) {
+        scores.remove(uri);
+    }
+
+    /**
+     * @param uri
+     *        the URI whose score is requested.
+     *
+     * @return the current score of the URI, lower is better and zero if never attempted.
+     */
+    public double getScore(URI uri) {
+        Score score = scores.get(uri);
+        if (score == null) {
+            return 0;
+        }
+
+        return score.latency + failurePenalty * score.failureRate;
+    }
+
+    /**
+     * @param uri
+     *        the URI whose latency is requested.
+     *
+     * @return the smoothed connect latency in milliseconds of the URI, or -1 if never attempted.
+     */
+    public double getLatency(URI uri) {
+        Score score = scores.get(uri);
+        return score != null ? score.latency : -1;
+    }
+
+    /**
+     * @param uri
+     *        the URI whose failure rate is requested.
+     *
+     * @return the smoothed fraction of recent attempts on the URI that failed.
+     */
+    public double getFailureRate(URI uri) {
+        Score score = scores.get(uri);
+        return score != null ? score.failureRate : 0;
+    }
+
+    private double smooth(double average, double sample) {
+        return smoothing * sample + (1 - smoothing) * average;
+    }
+
+    private Score getOrCreate(URI uri) {
+        Score score = scores.get(uri);
+        if (score == null) {
+            score = new Score();
+            scores.put(uri, score);
+        }
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyAwareUriSelector { smoothing = " + smoothing + ", failurePenalty = " + failurePenalty + " }";
+    }
+
+    private static class Score {
+        private double latency;
+        private double failureRate;
+        private long samples;
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import io.hawtjms.util.IOExceptionSupport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single selector thread that is shared by all NioTransport instances in the JVM.
+ *
+ * The thread is started when the first transport acquires it and stopped once the
+ * last transport has released it.  All changes to the registered selection keys are
+ * done on the selector thread by way of tasks submitted to {@link #execute(Runnable)}.
+ *
+ * An error thrown while handling the events of one channel fails only the transport
+ * that owns it.  Should the thread itself stop on an error every registered transport
+ * is failed and the next transport to acquire the selector thread starts a new one.
+ */
+public final class NioSelectorThread implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioSelectorThread.class);
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final long REGISTER_CHECK_INTERVAL = 100;
+
+    private static NioSelectorThread instance;
+    private static int references;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Set<NioTransport> transports = new HashSet<NioTransport>();
+    private volatile boolean running = true;
+
+    private NioSelectorThread() throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, "hawtJMS NIO Selector");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Gets the shared selector thread, starting it if needed.
+     *
+     * @return the shared selector thread.
+     *
+     * @throws IOException if the selector could not be opened.
+     */
+    public static synchronized NioSelectorThread acquire() throws IOException {
+        if (instance == null || !instance.running) {
+            instance = new NioSelectorThread();
+            references = 0;
+        }
+
+        references++;
+        return instance;
+    }
+
+    /**
+     * Releases a reference to this selector thread, the thread is stopped when the last
+     * reference is released.  Releasing a thread that has already stopped does nothing.
+     */
+    public void release() {
+        synchronized (NioSelectorThread.class) {
+            if (instance != this || references == 0) {
+                return;
+            }
+
+            if (--references == 0) {
+                LOG.debug("Last reference to shared selector thread released, stopping it.");
+                running = false;
+                selector.wakeup();
+                instance = null;
+            }
+        }
+    }
+
+    /**
+     * Queues a task to run on the selector thread.
+     *
+     * @param task
+     *        the task to run.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * @return true if the calling thread is the selector thread.
+     */
+    public boolean isSelectorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Registers the given channel with the selector and waits for the registration
+     * to complete.
+     *
+     * @param channel
+     *        the non-blocking channel to register.
+     * @param interestOps
+     *        the initial interest set for the channel.
+     * @param transport
+     *        the transport that will handle the channel's events.
+     *
+     * @return the SelectionKey of the newly registered channel.
+     *
+     * @throws IOException if the channel could not be registered or the selector thread
+     *         has stopped.
+     */
+    SelectionKey register(final SocketChannel channel, final int interestOps, final NioTransport transport) throws IOException {
+        checkRunning();
+
+        final CountDownLatch registered = new CountDownLatch(1);
+        final AtomicReference<SelectionKey> result = new AtomicReference<SelectionKey>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    result.set(channel.register(selector, interestOps, transport));
+                    transports.add(transport);
+                } catch (Throwable e) {
+                    error.set(e);
+                } finally {
+                    registered.countDown();
+                }
+            }
+        });
+
+        // The thread may stop before it gets to the task, don't wait on it forever.
+        try {
+            while (!registered.await(REGISTER_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                checkRunning();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw IOExceptionSupport.create(e);
+        }
+
+        if (error.get() != null) {
+            throw IOExceptionSupport.create(error.get());
+        }
+
+        return result.get();
+    }
+
+    /**
+     * Cancels the selection key of a transport that is closing.
+     *
+     * @param key
+     *        the key to cancel.
+     */
+    void cancel(final SelectionKey key) {
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                key.cancel();
+                transports.remove(key.attachment());
+            }
+        });
+    }
+
+    /**
+     * @return a heap buffer owned by the selector thread for reading on behalf of
+     *         listeners that don't read the incoming data themselves.
+     */
+    ByteBuffer getReadBuffer() {
+        return readBuffer;
+    }
+
+    @Override
+    public void run() {
+        Throwable failure = null;
+        try {
+            while (running) {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    NioTransport transport = (NioTransport) key.attachment();
+                    try {
+                        if (key.isValid() && key.isWritable()) {
+                            transport.processWritable();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            transport.processReadable();
+                        }
+                    } catch (CancelledKeyException e) {
+                        LOG.trace("Selection key cancelled while processing: {}", key);
+                    } catch (Throwable error) {
+                        LOG.warn("Error while processing events for {}: {}", transport, error.getMessage());
+                        key.cancel();
+                        transports.remove(transport);
+                        transport.failed(error);
+                    }
+                }
+            }
+        } catch (Throwable error) {
+            LOG.warn("Selector thread terminated by error: {}", error.getMessage());
+            failure = error;
+        } finally {
+            terminated(failure);
+        }
+    }
+
+    /*
+     * Called on the selector thread as it stops, if it was stopped by an error all the
+     * transports still registered are failed as nothing will service them from now on.
+     */
+    private void terminated(Throwable failure) {
+        running = false;
+        synchronized (NioSelectorThread.class) {
+            if (instance == this) {
+                instance = null;
+                references = 0;
+            }
+        }
+
+        if (failure != null) {
+            for (NioTransport transport : new ArrayList<NioTransport>(transports)) {
+                transport.failed(failure);
+            }
+        }
+        transports.clear();
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOG.debug("Error while closing selector: {}", e.getMessage());
+        }
+    }
+
+    private void checkRunning() throws IOException {
+        if (!running || !thread.isAlive()) {
+            throw new IOException("The NIO selector thread is not running");
+        }
+    }
+
+    private void runTasks() {
+        Runnable task = null;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable error) {
+                LOG.warn("Selector task failed: {}", error.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import io.hawtjms.util.IOExceptionSupport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Plain java.nio based TCP transport for raw data packets.
+ *
+ * All NioTransport instances share a single {@link NioSelectorThread}.  Outbound data
+ * is gathered into a small set of reusable direct buffers and written to the channel
+ * with a single gathering write on flush, any data the socket can't accept right away
+ * is written from the selector thread once the channel becomes writable again.
+ *
+ * Listeners that implement {@link NioTransportListener} read the incoming data straight
+ * from the channel into their own buffers, other listeners are handed a copy of the
+ * data via the standard onData callback.
+ */
+public class NioTransport implements Transport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioTransport.class);
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private final TransportListener listener;
+    private final URI remoteLocation;
+    private final AtomicBoolean connected = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final ArrayDeque<ByteBuffer> pendingWrite = new ArrayDeque<ByteBuffer>();
+    private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>();
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+    private final Object writeLock = new Object();
+    private boolean writeInterest;
+
+    private SocketChannel channel;
+    private SelectionKey selectionKey;
+    private NioSelectorThread selectorThread;
+
+    private int socketBufferSize = 64 * 1024;
+    private int ioBufferSize = 64 * 1024;
+    private int soTimeout = -1;
+    private int soLinger = Integer.MIN_VALUE;
+    private int connectTimeout;
+    private boolean keepAlive;
+    private boolean tcpNoDelay = true;
+
+    /**
+     * Create a new instance of the transport.
+     *
+     * @param listener
+     *        The TransportListener that will receive data from this Transport instance.
+     * @param remoteLocation
+     *        The remote location where this transport should connection to.
+     */
+    public NioTransport(TransportListener listener, URI remoteLocation) {
+        this.listener = listener;
+        this.remoteLocation = remoteLocation;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        try {
+            channel = SocketChannel.open();
+            configureChannel(channel);
+            channel.socket().connect(
+                new InetSocketAddress(remoteLocation.getHost(), remoteLocation.getPort()), connectTimeout);
+            channel.configureBlocking(false);
+        } catch (Throwable reason) {
+            LOG.info("Failed to connect to target Broker: {}", reason);
+            closeChannel();
+            throw IOExceptionSupport.create(reason);
+        }
+
+        // Data can arrive as soon as the channel is registered so we must be marked
+        // as connected beforehand for the listener to be able to read it.
+        connected.set(true);
+
+        selectorThread = NioSelectorThread.acquire();
+        try {
+            selectionKey = selectorThread.register(channel, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            connected.set(false);
+            closeChannel();
+            selectorThread.release();
+            selectorThread = null;
+            throw e;
+        }
+
+        LOG.info("We have connected! Channel is {}", channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            connected.set(false);
+
+            if (selectorThread != null) {
+                selectorThread.cancel(selectionKey);
+                selectorThread.release();
+            }
+
+            closeChannel();
+
+            synchronized (writeLock) {
+                writeQueue.clear();
+                bufferPool.clear();
+            }
+            pendingWrite.clear();
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer output) throws IOException {
+        checkConnected();
+
+        while (output.hasRemaining()) {
+            ByteBuffer target = pendingWrite.peekLast();
+            if (target == null || !target.hasRemaining()) {
+                target = takeBuffer();
+                pendingWrite.addLast(target);
+            }
+
+            int length = Math.min(target.remaining(), output.remaining());
+            ByteBuffer slice = output.duplicate();
+            slice.limit(output.position() + length);
+            target.put(slice);
+            output.position(output.position() + length);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (pendingWrite.isEmpty()) {
+            return;
+        }
+
+        checkConnected();
+
+        synchronized (writeLock) {
+            ByteBuffer buffer = null;
+            while ((buffer = pendingWrite.pollFirst()) != null) {
+                buffer.flip();
+                writeQueue.addLast(buffer);
+            }
+
+            // If the selector is already waiting on writable the data goes out from there.
+            if (!writeInterest) {
+                writeQueued();
+            }
+        }
+    }
+
+    /**
+     * Reads incoming data directly from the channel into the given buffer, for use by
+     * NioTransportListener instances once they are told data is available.  If the
+     * remote end has closed or the read fails the listener is notified and -1 returned.
+     *
+     * @param destination
+     *        the buffer to read into.
+     *
+     * @return the number of bytes read, or -1 if the transport is no longer readable.
+     */
+    public int read(ByteBuffer destination) {
+        if (!connected.get()) {
+            return -1;
+        }
+
+        try {
+            int read = channel.read(destination);
+            if (read < 0) {
+                if (connected.compareAndSet(true, false)) {
+                    listener.onTransportClosed();
+                }
+            }
+            return read;
+        } catch (IOException e) {
+            if (connected.compareAndSet(true, false)) {
+                listener.onTransportError(e);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Restores read interest after a NioTransportListener has been notified that data
+     * is available and has finished reading it.
+     */
+    public void resumeReading() {
+        if (!connected.get()) {
+            return;
+        }
+
+        selectorThread.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                if (selectionKey.isValid()) {
+                    selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_READ);
+                }
+            }
+        });
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.connected.get();
+    }
+
+    /**
+     * Allows a subclass to configure the SocketChannel beyond what this transport might do.
+     *
+     * @throws IOException if an error occurs.
+     */
+    protected void configureChannel(SocketChannel channel) throws IOException {
+        channel.socket().setSendBufferSize(getSocketBufferSize());
+        channel.socket().setReceiveBufferSize(getSocketBufferSize());
+        if (soLinger != Integer.MIN_VALUE) {
+            channel.socket().setSoLinger(soLinger >= 0, Math.max(soLinger, 0));
+        }
+        if (soTimeout > 0) {
+            channel.socket().setSoTimeout(soTimeout);
+        }
+        channel.socket().setKeepAlive(keepAlive);
+        channel.socket().setTcpNoDelay(tcpNoDelay);
+    }
+
+    //----- Selector thread callbacks ----------------------------------------//
+
+    void processReadable() {
+        if (listener instanceof NioTransportListener) {
+            selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_READ);
+            ((NioTransportListener) listener).onDataAvailable(this);
+            return;
+        }
+
+        ByteBuffer buffer = selectorThread.getReadBuffer();
+        buffer.clear();
+        int read = read(buffer);
+        if (read > 0) {
+            byte[] incoming = new byte[read];
+            buffer.flip();
+            buffer.get(incoming);
+            listener.onData(new Buffer(incoming));
+        }
+    }
+
+    void processWritable() {
+        synchronized (writeLock) {
+            writeQueued();
+        }
+    }
+
+    /**
+     * Called from the selector thread when handling this transport's events threw, or
+     * when the selector thread itself stopped, the transport can no longer be serviced
+     * so the listener is told it has failed.
+     *
+     * @param cause
+     *        the error that caused the failure.
+     */
+    void failed(Throwable cause) {
+        if (connected.compareAndSet(true, false)) {
+            try {
+                listener.onTransportError(cause);
+            } catch (Throwable error) {
+                LOG.debug("Listener threw while handling transport failure: {}", error.getMessage());
+            }
+        }
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void writeQueued() {
+        if (writeQueue.isEmpty()) {
+            return;
+        }
+
+        try {
+            channel.write(writeQueue.toArray(new ByteBuffer[writeQueue.size()]));
+        } catch (IOException e) {
+            writeQueue.clear();
+            if (connected.compareAndSet(true, false)) {
+                listener.onTransportError(e);
+            }
+            return;
+        }
+
+        while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+            recycleBuffer(writeQueue.pollFirst());
+        }
+
+        boolean needsWriteInterest = !writeQueue.isEmpty();
+        if (needsWriteInterest != writeInterest) {
+            writeInterest = needsWriteInterest;
+            updateWriteInterest(needsWriteInterest);
+        }
+    }
+
+    private void updateWriteInterest(final boolean enable) {
+        Runnable update = new Runnable() {
+
+            @Override
+            public void run() {
+                if (selectionKey.isValid()) {
+                    if (enable) {
+                        selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_WRITE);
+                    } else {
+                        selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+                    }
+                }
+            }
+        };
+
+        if (selectorThread.isSelectorThread()) {
+            update.run();
+        } else {
+            selectorThread.execute(update);
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = null;
+        synchronized (writeLock) {
+            buffer = bufferPool.pollFirst();
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(ioBufferSize);
+        }
+
+        return buffer;
+    }
+
+    /*
+     * Must be called with the write lock held.
+     */
+    private void recycleBuffer(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS && buffer.capacity() == ioBufferSize) {
+            buffer.clear();
+            bufferPool.addLast(buffer);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Error while closing channel: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void checkConnected() throws IOException {
+        if (!connected.get()) {
+            throw new IOException("Cannot send to a non-connected transport.");
+        }
+    }
+
+    //----- Property Setters and Getters -------------------------------------//
+
+    public int getSocketBufferSize() {
+        return socketBufferSize;
+    }
+
+    public void setSocketBufferSize(int socketBufferSize) {
+        this.socketBufferSize = socketBufferSize;
+    }
+
+    public int getIoBufferSize() {
+        return ioBufferSize;
+    }
+
+    /**
+     * Sets the size of the direct buffers that outbound data is gathered into.
+     *
+     * @param ioBufferSize
+     *        the size of each outbound IO buffer.
+     */
+    public void setIoBufferSize(int ioBufferSize) {
+        this.ioBufferSize = ioBufferSize;
+    }
+
+    public int getSoTimeout() {
+        return soTimeout;
+    }
+
+    public void setSoTimeout(int soTimeout) {
+        this.soTimeout = soTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds to wait for the socket to connect, zero waits forever.
+     *
+     * @param connectTimeout
+     *        the time to wait for the connect to complete.
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public int getSoLinger() {
+        return soLinger;
+    }
+
+    public void setSoLinger(int soLinger) {
+        this.soLinger = soLinger;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+}
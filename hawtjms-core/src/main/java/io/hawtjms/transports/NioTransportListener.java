@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+/**
+ * Extended TransportListener for users of the NioTransport that want to read the
+ * incoming data themselves, directly into their own buffers, instead of receiving
+ * a copy of it via the onData callback.
+ */
+public interface NioTransportListener extends TransportListener {
+
+    /**
+     * Called from the selector thread when the NioTransport has incoming data ready
+     * to be read.  Read interest is suspended until the listener has read what it
+     * wants via {@link NioTransport#read(java.nio.ByteBuffer)} and then calls
+     * {@link NioTransport#resumeReading()}, so the read may be done from any thread.
+     *
+     * @param transport
+     *        the NioTransport that has data ready to be read.
+     */
+    void onDataAvailable(NioTransport transport);
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.impl.DefaultVertxFactory;
+
+/**
+ * Reference counted Vert.x instance that is shared by all Transports in the JVM
+ * so that connections share a single bounded group of event loops instead of
+ * each creating their own.
+ *
+ * Each connection's socket is registered with one event loop from the group for
+ * its lifetime, so all IO for a given connection stays on the same thread.  The
+ * instance is created on first use and stopped once the last user releases it.
+ */
+public final class SharedVertx {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedVertx.class);
+
+    private static final String EVENT_LOOP_POOL_SIZE = "vertx.pool.eventloop.size";
+
+    private static Vertx instance;
+    private static int references;
+    private static int eventLoopThreads;
+
+    private SharedVertx() {
+    }
+
+    /**
+     * Gets the shared Vert.x instance, creating it if needed.  The number of event
+     * loop threads is fixed by the first caller that creates the instance, later
+     * requests for a different size are ignored until the instance is released by
+     * all of its users and recreated.
+     *
+     * @param requestedEventLoops
+     *        the number of event loop threads to use, or zero for the Vert.x default.
+     *
+     * @return the shared Vert.x instance.
+     */
+    public static synchronized Vertx acquire(int requestedEventLoops) {
+        if (instance == null) {
+            instance = createVertx(requestedEventLoops);
+            eventLoopThreads = requestedEventLoops;
+        } else if (requestedEventLoops > 0 && requestedEventLoops != eventLoopThreads) {
+            LOG.debug("Shared event loop group already created, ignoring request for {} event loops",
+                      requestedEventLoops);
+        }
+
+        references++;
+        return instance;
+    }
+
+    /**
+     * Releases a reference to the shared Vert.x instance, when the last reference
+     * is released the instance is stopped and its threads are shut down.
+     */
+    public static synchronized void release() {
+        if (references == 0) {
+            return;
+        }
+
+        if (--references == 0) {
+            LOG.debug("Last reference to shared event loop group released, stopping it.");
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * @return the current number of Transports using the shared instance.
+     */
+    public static synchronized int getReferenceCount() {
+        return references;
+    }
+
+    /**
+     * Creates a new Vert.x instance, Vert.x reads the event loop pool size from a
+     * system property when it is constructed so we set it for the duration of the
+     * create call.
+     *
+     * @param eventLoops
+     *        the number of event loop threads to use, or zero for the Vert.x default.
+     *
+     * @return a new Vert.x instance.
+     */
+    static synchronized Vertx createVertx(int eventLoops) {
+        if (eventLoops <= 0) {
+            return new DefaultVertxFactory().createVertx();
+        }
+
+        String previous = System.getProperty(EVENT_LOOP_POOL_SIZE);
+        System.setProperty(EVENT_LOOP_POOL_SIZE, Integer.toString(eventLoops));
+        try {
+            return new DefaultVertxFactory().createVertx();
+        } finally {
+            if (previous != null) {
+                System.setProperty(EVENT_LOOP_POOL_SIZE, previous);
+            } else {
+                System.clearProperty(EVENT_LOOP_POOL_SIZE);
+            }
+        }
+    }
+}
@@ -17,8 +17,12 @@
 package io.hawtjms.transports;
 
 import io.hawtjms.util.IOExceptionSupport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
@@ -29,10 +33,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
-import org.vertx.java.core.impl.DefaultVertxFactory;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetSocket;
 
@@ -43,8 +47,8 @@ public class TcpTransport implements Transport {
 
     private static final Logger LOG = LoggerFactory.getLogger(TcpTransport.class);
 
-    private final Vertx vertx;
-    private final NetClient client;
+    private Vertx vertx;
+    private NetClient client;
     private final TransportListener listener;
     private final URI remoteLocation;
     private final AtomicBoolean connected = new AtomicBoolean();
@@ -52,12 +56,18 @@ public class TcpTransport implements Transport {
     private final AtomicReference<Throwable> connectionError = new AtomicReference<Throwable>();
 
     private NetSocket socket;
+    private Context context;
+    private ByteBuf pendingWrite;
+    private final Object writeLock = new Object();
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
 
     private int socketBufferSize = 64 * 1024;
     private int soTimeout = -1;
     private int soLinger = Integer.MIN_VALUE;
     private boolean keepAlive;
     private boolean tcpNoDelay = true;
+    private boolean shareEventLoops = true;
+    private int eventLoopThreads;
 
     /**
      * Create a new instance of the transport.
@@ -70,23 +80,28 @@ public class TcpTransport implements Transport {
     public TcpTransport(TransportListener listener, URI remoteLocation) {
         this.listener = listener;
         this.remoteLocation = remoteLocation;
-
-        this.vertx = new DefaultVertxFactory().createVertx();
-        this.client = vertx.createNetClient();
     }
 
     @Override
     public void connect() throws IOException {
         final CountDownLatch connectLatch = new CountDownLatch(1);
 
-        configureNetClient(client);
+        if (shareEventLoops) {
+            vertx = SharedVertx.acquire(eventLoopThreads);
+        } else {
+            vertx = SharedVertx.createVertx(eventLoopThreads);
+        }
 
         try {
+            client = vertx.createNetClient();
+            configureNetClient(client);
+
             client.connect(remoteLocation.getPort(), remoteLocation.getHost(), new AsyncResultHandler<NetSocket>() {
                 @Override
                 public void handle(AsyncResult<NetSocket> asyncResult) {
                     if (asyncResult.succeeded()) {
                         socket = asyncResult.result();
+                        context = vertx.currentContext();
                         LOG.info("We have connected! Socket is {}", socket);
 
                         connected.set(true);
@@ -103,6 +118,7 @@ public class TcpTransport implements Transport {
                             @Override
                             public void handle(Void event) {
                                 connected.set(false);
+                                signalWriters();
                                 listener.onTransportClosed();
                             }
                         });
@@ -111,10 +127,18 @@ public class TcpTransport implements Transport {
                             @Override
                             public void handle(Throwable event) {
                                 connected.set(false);
+                                signalWriters();
                                 listener.onTransportError(event);
                             }
                         });
 
+                        socket.drainHandler(new Handler<Void>() {
+                            @Override
+                            public void handle(Void event) {
+                                signalWriters();
+                            }
+                        });
+
                     } else {
                         connected.set(false);
                         connectionError.set(asyncResult.cause());
@@ -124,6 +148,7 @@ public class TcpTransport implements Transport {
             });
         } catch (Throwable reason) {
             LOG.info("Failed to connect to target Broker: {}", reason);
+            releaseVertx();
             throw IOExceptionSupport.create(reason);
         }
 
@@ -131,9 +156,12 @@ public class TcpTransport implements Transport {
             connectLatch.await();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            connectionError.compareAndSet(null, e);
         }
 
+        // Nothing closes a transport that failed to connect, so give up the event loops here.
         if (connectionError.get() != null) {
+            releaseVertx();
             throw IOExceptionSupport.create(connectionError.get());
         }
     }
@@ -146,7 +174,10 @@ public class TcpTransport implements Transport {
                 connected.set(false);
             }
 
-            vertx.stop();
+            signalWriters();
+
+            releasePendingWrite();
+            releaseVertx();
         }
     }
 
@@ -158,11 +189,103 @@ public class TcpTransport implements Transport {
             return;
         }
 
-        byte[] copy = new byte[length];
-        output.get(copy);
-        Buffer sendBuffer = new Buffer(copy);
+        if (pendingWrite == null) {
+            pendingWrite = allocator.directBuffer(length);
+        }
+
+        pendingWrite.writeBytes(output);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (pendingWrite == null) {
+            return;
+        }
+
+        if (!connected.get()) {
+            releasePendingWrite();
+            throw new IOException("Cannot send to a non-connected transport.");
+        }
+
+        final ByteBuf toWrite = pendingWrite;
+        pendingWrite = null;
+
+        // Writes are only made from the socket's own event loop thread.  The socket takes
+        // ownership of the pooled buffer and releases it once written.
+        if (vertx.currentContext() == context) {
+            socket.write(new Buffer(toWrite));
+            return;
+        }
+
+        try {
+            awaitWriteQueue();
+        } catch (IOException e) {
+            toWrite.release();
+            throw e;
+        }
+
+        context.runOnContext(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                if (connected.get()) {
+                    socket.write(new Buffer(toWrite));
+                } else {
+                    toWrite.release();
+                }
+            }
+        });
+    }
+
+    /*
+     * Holds the caller while the socket has more queued for writing than its write queue
+     * limit allows so that a fast sender cannot buffer without bound.  The drain handler
+     * wakes the caller, the timed wait covers a drain that lands between the check and
+     * the wait.
+     */
+    private void awaitWriteQueue() throws IOException {
+        synchronized (writeLock) {
+            while (socket.writeQueueFull()) {
+                if (!connected.get()) {
+                    throw new IOException("Cannot send to a non-connected transport.");
+                }
+
+                try {
+                    writeLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the socket to drain.");
+                }
+            }
+        }
+    }
+
+    private void signalWriters() {
+        synchronized (writeLock) {
+            writeLock.notifyAll();
+        }
+    }
+
+    private void releaseVertx() {
+        if (vertx != null) {
+            if (client != null) {
+                client.close();
+                client = null;
+            }
 
-        vertx.eventBus().send(socket.writeHandlerID(), sendBuffer);
+            if (shareEventLoops) {
+                SharedVertx.release();
+            } else {
+                vertx.stop();
+            }
+            vertx = null;
+        }
+    }
+
+    private void releasePendingWrite() {
+        if (pendingWrite != null) {
+            pendingWrite.release();
+            pendingWrite = null;
+        }
     }
 
     /**
@@ -221,6 +344,58 @@ public class TcpTransport implements Transport {
         this.soLinger = soLinger;
     }
 
+    /**
+     * @return the ByteBufAllocator used to create the buffers that outbound data is gathered into.
+     */
+    public ByteBufAllocator getAllocator() {
+        return allocator;
+    }
+
+    /**
+     * Sets the ByteBufAllocator used to create the buffers that outbound data is gathered
+     * into, by default a pooled direct buffer allocator is used.
+     *
+     * @param allocator
+     *        the allocator to use for outbound write buffers.
+     */
+    public void setAllocator(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * @return true if this transport uses the event loop group shared by all transports.
+     */
+    public boolean isShareEventLoops() {
+        return shareEventLoops;
+    }
+
+    /**
+     * Controls whether this transport runs on the event loop group that is shared by all
+     * transports in the JVM (the default) or creates its own private event loop group.
+     *
+     * @param shareEventLoops
+     *        true to use the shared event loop group.
+     */
+    public void setShareEventLoops(boolean shareEventLoops) {
+        this.shareEventLoops = shareEventLoops;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    /**
+     * Sets the number of event loop threads to create, when the shared event loop group
+     * is in use this only takes effect if this transport is the one that creates it.  A
+     * value of zero uses the Vert.x default.
+     *
+     * @param eventLoopThreads
+     *        the number of event loop threads to create.
+     */
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
     public boolean isKeepAlive() {
         return keepAlive;
     }
@@ -45,7 +45,10 @@ public interface Transport {
     void close() throws IOException;
 
     /**
-     * Sends a chunk of data over the Transport connection.
+     * Sends a chunk of data over the Transport connection.  The Transport is free
+     * to gather the data into a pending write which will not be written to the
+     * wire until the next call to {@link #flush()}.  The contents of the given
+     * buffer are consumed before this method returns so the caller may reuse it.
      *
      * @param output
      *        The buffer of data that is to be transmitted.
@@ -54,4 +57,13 @@ public interface Transport {
      */
     void send(ByteBuffer output) throws IOException;
 
+    /**
+     * Writes any data gathered by previous calls to {@link #send(ByteBuffer)} to
+     * the remote peer in a single write operation.  A transport may hold the caller
+     * here while its outbound queue is full.
+     *
+     * @throws IOException if an error occurs during the write operation.
+     */
+    void flush() throws IOException;
+
 }
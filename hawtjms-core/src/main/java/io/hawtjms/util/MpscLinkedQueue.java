@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded lock-free queue that supports many producer threads and a single
+ * consumer thread.
+ *
+ * Producers publish a new node with a single atomic swap of the tail and never
+ * block one another, the consumer walks the linked nodes without any atomic
+ * operations.  Only the consumer thread may call {@link #poll()} and
+ * {@link #isEmpty()}.
+ *
+ * @param <E> the type of element held in the queue.
+ */
+public class MpscLinkedQueue<E> {
+
+    private static final class Node<E> {
+
+        private E value;
+        private volatile Node<E> next;
+
+        public Node(E value) {
+            this.value = value;
+        }
+    }
+
+    private final AtomicReference<Node<E>> tail;
+    private Node<E> head;
+
+    public MpscLinkedQueue() {
+        Node<E> stub = new Node<E>(null);
+        this.head = stub;
+        this.tail = new AtomicReference<Node<E>>(stub);
+    }
+
+    /**
+     * Adds the given element to the end of the queue, safe to call from any thread.
+     *
+     * @param element
+     *        the element to add, cannot be null.
+     */
+    public void offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("Cannot add a null element");
+        }
+
+        Node<E> node = new Node<E>(element);
+        Node<E> previous = tail.getAndSet(node);
+        previous.next = node;
+    }
+
+    /**
+     * Removes and returns the element at the front of the queue, must only be called
+     * from the consumer thread.
+     *
+     * @return the next element or null if the queue is empty.
+     */
+    public E poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            if (head == tail.get()) {
+                return null;
+            }
+
+            // A producer has swapped the tail but not yet linked its node.
+            while ((next = head.next) == null) {
+            }
+        }
+
+        E value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+
+    /**
+     * @return true if there are no elements in the queue, must only be called
+     *         from the consumer thread.
+     */
+    public boolean isEmpty() {
+        return head.next == null && head == tail.get();
+    }
+}
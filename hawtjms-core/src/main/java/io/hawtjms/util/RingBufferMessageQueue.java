@@ -0,0 +1,321 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * First in / first out Message Queue backed by a bounded array ring buffer.
+ *
+ * The queue expects a single thread to enqueue messages, which for a consumer is the
+ * Provider's dispatch thread, and enqueue never takes a lock.  The reading side is
+ * guarded by a lock that only other readers contend on, so a blocked or busy reader
+ * never holds up delivery of new messages.  A reader waiting on an empty queue spins
+ * briefly and then parks until a message arrives or its timeout expires.
+ *
+ * Should the ring fill up, for instance when a peer sends past the granted credit,
+ * further messages spill into an unbounded overflow queue until the ring has drained
+ * so that no message is ever dropped or reordered.
+ *
+ * Messages placed back at the front of the queue with {@link #enqueueFirst} are held
+ * in a separate deque that the reading side always drains ahead of the ring.
+ */
+public final class RingBufferMessageQueue implements MessageQueue {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 64 * 1024;
+    private static final int SPIN_TRIES = 100;
+
+    private final AtomicReferenceArray<JmsInboundMessageDispatch> ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final ConcurrentLinkedQueue<JmsInboundMessageDispatch> overflow =
+        new ConcurrentLinkedQueue<JmsInboundMessageDispatch>();
+
+    // Not guarded by the reader lock since a reader can hold that while it waits, the
+    // count lets the read path skip the deque and its lock when nothing was returned.
+    private final LinkedBlockingDeque<JmsInboundMessageDispatch> returned =
+        new LinkedBlockingDeque<JmsInboundMessageDispatch>();
+    private final AtomicInteger returnedCount = new AtomicInteger();
+
+    private final Object lock = new Object();
+    private volatile Thread waiter;
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new queue whose ring can hold at least the given number of messages,
+     * the actual capacity is rounded up to a power of two.
+     *
+     * @param capacity
+     *        the number of messages the ring should hold, usually the consumer prefetch.
+     */
+    public RingBufferMessageQueue(int capacity) {
+        int size = MIN_CAPACITY;
+        while (size < capacity && size < MAX_CAPACITY) {
+            size <<= 1;
+        }
+
+        this.ring = new AtomicReferenceArray<JmsInboundMessageDispatch>(size);
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void enqueue(JmsInboundMessageDispatch envelope) {
+        if (!overflow.isEmpty() || !offer(envelope)) {
+            overflow.add(envelope);
+        }
+
+        Thread reader = waiter;
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    @Override
+    public void enqueueFirst(JmsInboundMessageDispatch envelope) {
+        returned.addFirst(envelope);
+        returnedCount.incrementAndGet();
+        wakeup();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return returnedCount.get() == 0 && head.get() == tail.get() && overflow.isEmpty();
+    }
+
+    @Override
+    public JmsInboundMessageDispatch peek() {
+        synchronized (lock) {
+            if (returnedCount.get() != 0) {
+                return returned.peekFirst();
+            }
+
+            JmsInboundMessageDispatch envelope = ring.get(index(head.get()));
+            if (envelope == null) {
+                envelope = overflow.peek();
+            }
+            return envelope;
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeue(long timeout) throws InterruptedException {
+        synchronized (lock) {
+            if (timeout == 0) {
+                return dequeueNoWait();
+            }
+
+            long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+            int spins = 0;
+
+            while (!closed) {
+                if (running) {
+                    JmsInboundMessageDispatch envelope = poll();
+                    if (envelope != null) {
+                        return envelope;
+                    }
+                }
+
+                if (spins < SPIN_TRIES) {
+                    spins++;
+                    continue;
+                }
+
+                long remaining = 0;
+                if (timeout > 0) {
+                    remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                }
+
+                waiter = Thread.currentThread();
+                try {
+                    // Check again now that the producer can see us waiting.
+                    if (running && !isEmpty() || closed) {
+                        continue;
+                    }
+
+                    if (timeout > 0) {
+                        LockSupport.parkNanos(this, remaining);
+                    } else {
+                        LockSupport.park(this);
+                    }
+                } finally {
+                    waiter = null;
+                }
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+
+            return null;
+        }
+    }
+
+    @Override
+    public JmsInboundMessageDispatch dequeueNoWait() {
+        synchronized (lock) {
+            if (closed || !running) {
+                return null;
+            }
+            return poll();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        wakeup();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        wakeup();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        closed = true;
+        wakeup();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return returnedCount.get() + (int) Math.max(0, size) + overflow.size();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            while (poll() != null) {
+            }
+        }
+    }
+
+    @Override
+    public List<JmsInboundMessageDispatch> removeAll() {
+        synchronized (lock) {
+            ArrayList<JmsInboundMessageDispatch> rc = new ArrayList<JmsInboundMessageDispatch>(size());
+            JmsInboundMessageDispatch envelope = null;
+            while ((envelope = poll()) != null) {
+                rc.add(envelope);
+            }
+            return rc;
+        }
+    }
+
+    /**
+     * @return the lock object that guards the reading side of this queue.
+     */
+    @Override
+    public Object getLock() {
+        return lock;
+    }
+
+    /**
+     * @return the number of messages the ring holds before spilling into overflow.
+     */
+    public int getCapacity() {
+        return ring.length();
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferMessageQueue { size = " + size() + ", capacity = " + getCapacity() + " }";
+    }
+
+    //----- Internal implementation ------------------------------------------//
+
+    /*
+     * Only ever called from the enqueuing thread.
+     */
+    private boolean offer(JmsInboundMessageDispatch envelope) {
+        long current = tail.get();
+        int index = index(current);
+        if (ring.get(index) != null) {
+            return false;
+        }
+
+        // The ordered write of the slot can't be seen after the tail update that follows
+        // it, and that update is a full volatile write so the check for a waiting reader
+        // made after it can't be reordered ahead of it and lose the wake up.
+        ring.lazySet(index, envelope);
+        tail.set(current + 1);
+        return true;
+    }
+
+    /*
+     * Must be called with the reader lock held.  Messages that were returned to the front
+     * of the queue come first, and everything in the ring was enqueued before anything in
+     * the overflow queue so the ring is always drained before it.
+     */
+    private JmsInboundMessageDispatch poll() {
+        if (returnedCount.get() != 0) {
+            returnedCount.decrementAndGet();
+            return returned.pollFirst();
+        }
+
+        long current = head.get();
+        int index = index(current);
+        JmsInboundMessageDispatch envelope = ring.get(index);
+        if (envelope != null) {
+            ring.lazySet(index, null);
+            head.lazySet(current + 1);
+            return envelope;
+        }
+
+        return overflow.poll();
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private void wakeup() {
+        Thread reader = waiter;
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executor that runs all submitted tasks in order on a single dedicated thread.
+ *
+ * Tasks are handed to the thread through a lock-free multi-producer single-consumer
+ * queue and the thread waits for new work using the configured {@link WaitStrategy}.
+ * The thread is created on the first call to {@link #execute(Runnable)}.  Delayed
+ * tasks are not supported, timers should be run elsewhere and hand their work back
+ * to this executor.
+ */
+public class SerialExecutor implements Executor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private static final int SPIN_TRIES = 1000;
+    private static final int YIELD_TRIES = 100;
+
+    private final MpscLinkedQueue<Runnable> queue = new MpscLinkedQueue<Runnable>();
+    private final ThreadFactory threadFactory;
+
+    private volatile WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private volatile boolean shutdown;
+    private volatile boolean waiting;
+    private boolean terminated;
+    private volatile Thread thread;
+
+    /**
+     * Creates a new executor whose thread is created by the given factory.
+     *
+     * @param threadFactory
+     *        the factory used to create the executor thread.
+     */
+    public SerialExecutor(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor has been shutdown");
+        }
+
+        queue.offer(task);
+
+        if (shutdown) {
+            // The executor thread may have seen an empty queue and exited before the task
+            // was added, in that case the task is run here instead of being lost.
+            runStrandedTasks();
+            return;
+        }
+
+        Thread consumer = thread;
+        if (consumer == null) {
+            consumer = start();
+        }
+
+        if (waiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Stops accepting new tasks, tasks that were already submitted are still run
+     * before the executor thread exits.  A task whose submission races with the
+     * shutdown and arrives after the executor thread has exited is run by the
+     * thread that submitted it.  Safe to call from the executor thread.
+     */
+    public void shutdown() {
+        shutdown = true;
+
+        Thread consumer = thread;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * @return true if {@link #shutdown()} has been called.
+     */
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * @return true if the calling thread is this executor's thread.
+     */
+    public boolean isExecutorThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Sets how the executor thread waits when there is no work, the change applies
+     * from the next time the thread runs out of work.
+     *
+     * @param waitStrategy
+     *        the wait strategy to use.
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+    }
+
+    private synchronized Thread start() {
+        if (thread == null) {
+            Thread consumer = threadFactory.newThread(new Runnable() {
+
+                @Override
+                public void run() {
+                    processTasks();
+                }
+            });
+            thread = consumer;
+            consumer.start();
+        }
+
+        return thread;
+    }
+
+    private void processTasks() {
+        int idleCount = 0;
+
+        while (true) {
+            Runnable task = queue.poll();
+            if (task != null) {
+                idleCount = 0;
+                try {
+                    task.run();
+                } catch (Throwable error) {
+                    LOG.warn("Task threw unexpected error: {}", error.getMessage());
+                    LOG.debug("Task error detail: ", error);
+                }
+                continue;
+            }
+
+            if (shutdown) {
+                // Pick up anything that was queued while the shutdown took place.
+                synchronized (this) {
+                    if (queue.isEmpty()) {
+                        terminated = true;
+                        break;
+                    }
+                }
+                continue;
+            }
+
+            idle(idleCount++);
+        }
+    }
+
+    /*
+     * Called by a producer that added a task after shutdown.  While the executor thread
+     * is still running it will find the task, once it has exited no other thread reads
+     * the queue, so the producers take turns emptying it under the lock.
+     */
+    private void runStrandedTasks() {
+        synchronized (this) {
+            if (thread == null) {
+                start();
+                return;
+            }
+
+            if (!terminated) {
+                return;
+            }
+
+            Runnable stranded = null;
+            while ((stranded = queue.poll()) != null) {
+                try {
+                    stranded.run();
+                } catch (Throwable error) {
+                    LOG.warn("Task threw unexpected error: {}", error.getMessage());
+                    LOG.debug("Task error detail: ", error);
+                }
+            }
+        }
+    }
+
+    private void idle(int idleCount) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case SPIN_THEN_PARK:
+                if (idleCount < SPIN_TRIES) {
+                    break;
+                } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                    Thread.yield();
+                    break;
+                }
+                park();
+                break;
+            default:
+                park();
+        }
+    }
+
+    private void park() {
+        waiting = true;
+        try {
+            // Producers check the waiting flag after adding work so we must check
+            // the queue again after setting it to be sure no wake up is missed.
+            if (queue.isEmpty() && !shutdown) {
+                LockSupport.park(this);
+            }
+        } finally {
+            waiting = false;
+        }
+    }
+}
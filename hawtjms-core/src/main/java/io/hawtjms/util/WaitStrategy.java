@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+/**
+ * Defines how the consumer thread of a {@link SerialExecutor} waits when it
+ * has no work to do.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Park the thread right away, lowest CPU use but each wake up costs a
+     * thread signal from the producer.
+     */
+    PARK,
+
+    /**
+     * Spin and then yield for a short time before parking, avoids the wake up
+     * cost when work arrives in quick succession.
+     */
+    SPIN_THEN_PARK,
+
+    /**
+     * Never park the thread, lowest latency at the cost of a fully used CPU core.
+     */
+    BUSY_SPIN
+}
@@ -91,6 +91,35 @@ public class JmsMapMessageTest {
         assertEquals(msg.getString("bigString"), bigString);
     }
 
+    @Test
+    public void testCopyOnWriteClearBodyDoesNotAffectOriginal() throws JMSException {
+        JmsMapMessage msg = factory.createMapMessage();
+        msg.setString(name.getMethodName(), "value");
+        msg.setReadOnlyBody(true);
+
+        JmsMapMessage copy = (JmsMapMessage) msg.copyOnWrite();
+        assertEquals("value", copy.getString(name.getMethodName()));
+        copy.clearBody();
+        copy.setString("other", "value");
+
+        assertEquals("value", msg.getString(name.getMethodName()));
+        assertFalse(msg.itemExists("other"));
+        assertFalse(copy.itemExists(name.getMethodName()));
+    }
+
+    @Test
+    public void testCopyOnWriteOfWritableBodyIsNotShared() throws JMSException {
+        JmsMapMessage msg = factory.createMapMessage();
+        msg.setString(name.getMethodName(), "value");
+
+        JmsMapMessage copy = (JmsMapMessage) msg.copyOnWrite();
+        msg.setString(name.getMethodName(), "changed");
+        msg.setString("other", "value");
+
+        assertEquals("value", copy.getString(name.getMethodName()));
+        assertFalse(copy.itemExists("other"));
+    }
+
     @Test
     public void testGetBoolean() throws JMSException {
         JmsMapMessage msg = factory.createMapMessage();
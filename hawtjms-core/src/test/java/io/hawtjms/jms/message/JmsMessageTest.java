@@ -124,6 +124,66 @@ public class JmsMessageTest {
         assertTrue(msg1 != msg2 && msg1.equals(msg2));
     }
 
+    @Test
+    public void testCopyOnWriteSharesFacadeUntilModified() throws Exception {
+        JmsMessage msg1 = factory.createMessage();
+        msg1.setJMSMessageID(jmsMessageID);
+        msg1.setStringProperty("property", "value");
+        msg1.setReadOnlyProperties(true);
+
+        JmsMessage msg2 = msg1.copyOnWrite();
+        assertTrue(msg1 != msg2 && msg1.equals(msg2));
+        assertTrue(msg1.getFacade() == msg2.getFacade());
+
+        msg2.setJMSType(jmsType);
+        assertTrue(msg1.getFacade() != msg2.getFacade());
+        assertEquals(jmsType, msg2.getJMSType());
+        assertNull(msg1.getJMSType());
+        assertEquals(jmsMessageID, msg2.getJMSMessageID());
+    }
+
+    @Test
+    public void testCopyOnWriteClearPropertiesDoesNotAffectOriginal() throws Exception {
+        JmsMessage msg1 = factory.createMessage();
+        msg1.setStringProperty("property", "value");
+        msg1.setReadOnlyProperties(true);
+
+        JmsMessage msg2 = msg1.copyOnWrite();
+        msg2.clearProperties();
+        msg2.setStringProperty("other", "value");
+
+        assertEquals("value", msg1.getStringProperty("property"));
+        assertFalse(msg1.propertyExists("other"));
+        assertFalse(msg2.propertyExists("property"));
+    }
+
+    @Test
+    public void testCopyOnWriteOriginalChangesNotVisibleInCopy() throws Exception {
+        JmsMessage msg1 = factory.createMessage();
+        JmsMessage msg2 = msg1.copyOnWrite();
+
+        msg1.incrementRedeliveryCount();
+        assertTrue(msg1.getJMSRedelivered());
+        assertFalse(msg2.getJMSRedelivered());
+    }
+
+    @Test
+    public void testCopyOnWriteForSendIsNotChangedByOriginal() throws Exception {
+        JmsMessage msg1 = factory.createMessage();
+        msg1.setJMSMessageID(jmsMessageID);
+        msg1.setStringProperty("property", "value");
+
+        JmsMessage msg2 = msg1.copyOnWrite();
+        msg2.onSend();
+        assertTrue(msg1.getFacade() == msg2.getFacade());
+
+        msg1.setJMSMessageID("ID:TEST-ID:0:0:0:2");
+        msg1.setStringProperty("property", "changed");
+
+        assertEquals(jmsMessageID, msg2.getJMSMessageID());
+        assertEquals("value", msg2.getStringProperty("property"));
+    }
+
     @Test
     public void testCopy() throws Exception {
         this.jmsMessageID = "testid";
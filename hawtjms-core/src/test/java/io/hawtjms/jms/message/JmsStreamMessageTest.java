@@ -36,6 +36,22 @@ public class JmsStreamMessageTest {
 
     private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
 
+    @Test
+    public void testCopyOnWriteClearBodyDoesNotAffectOriginal() throws JMSException {
+        JmsStreamMessage msg = factory.createStreamMessage();
+        msg.writeString("original");
+        msg.reset();
+
+        JmsStreamMessage copy = (JmsStreamMessage) msg.copyOnWrite();
+        assertEquals("original", copy.readString());
+        copy.clearBody();
+        copy.writeString("changed");
+        copy.reset();
+        assertEquals("changed", copy.readString());
+
+        assertEquals("original", msg.readString());
+    }
+
     @Test
     public void testReadBoolean() {
         JmsStreamMessage msg = factory.createStreamMessage();
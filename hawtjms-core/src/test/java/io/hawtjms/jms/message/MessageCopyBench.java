@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.jms.message;
+
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.meta.JmsMessageId;
+
+import java.lang.management.ManagementFactory;
+
+import javax.jms.JMSException;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare the bytes allocated per message when the consumer hands out, or the
+ * session sends, a full copy of each message against a copy on write view of it.
+ * Relies on the HotSpot specific ThreadMXBean extension to read per thread
+ * allocation counts.
+ */
+@Ignore
+public class MessageCopyBench {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MessageCopyBench.class);
+
+    private final int MSG_COUNT = 1000 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int NUM_PROPERTIES = 10;
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+
+    @Test
+    public void testFullCopy() throws Exception {
+        doTestCopy(false, false);
+    }
+
+    @Test
+    public void testCopyOnWrite() throws Exception {
+        doTestCopy(true, false);
+    }
+
+    @Test
+    public void testFullCopyOnSend() throws Exception {
+        doTestCopy(false, true);
+    }
+
+    @Test
+    public void testCopyOnWriteOnSend() throws Exception {
+        doTestCopy(true, true);
+    }
+
+    protected void doTestCopy(boolean copyOnWrite, boolean send) throws Exception {
+        JmsTextMessage message = factory.createTextMessage("hello");
+        message.setJMSMessageID(new JmsMessageId("ID:bench:1:1:1", 1));
+        message.setJMSDestination(new JmsQueue("bench"));
+        for (int i = 0; i < NUM_PROPERTIES; ++i) {
+            message.setIntProperty("property" + i, i);
+        }
+        if (!send) {
+            message.setReadOnlyBody(true);
+            message.setReadOnlyProperties(true);
+        }
+
+        // Warm up the JIT.
+        copyMessages(message, copyOnWrite, send);
+
+        long cumulativeBytes = 0;
+        long cumulativeTime = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long startBytes = getAllocatedBytes();
+            long startTime = System.currentTimeMillis();
+            copyMessages(message, copyOnWrite, send);
+            long time = System.currentTimeMillis() - startTime;
+            long bytes = getAllocatedBytes() - startBytes;
+
+            cumulativeBytes += bytes;
+            cumulativeTime += time;
+            LOG.info("Copied {} messages with copyOnWrite={}, send={} in {} ms, {} bytes per message",
+                new Object[] { MSG_COUNT, copyOnWrite, send, time, bytes / MSG_COUNT });
+        }
+
+        LOG.info("Smoothed results for copyOnWrite={}, send={}: {} ms per {} messages, {} bytes per message",
+            new Object[] { copyOnWrite, send, cumulativeTime / NUM_RUNS, MSG_COUNT,
+                           cumulativeBytes / NUM_RUNS / MSG_COUNT });
+    }
+
+    private long copyMessages(JmsMessage message, boolean copyOnWrite, boolean send) throws JMSException {
+        long checksum = 0;
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            if (send) {
+                // The session updates the original before taking the copy to send.
+                message.setJMSPriority(i % 10);
+            }
+            JmsMessage copy = copyOnWrite ? message.copyOnWrite() : message.copy();
+            if (send) {
+                copy.onSend();
+            }
+            checksum += copy.getJMSTimestamp();
+        }
+        return checksum;
+    }
+
+    private long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.hawtjms.jms.JmsDestination;
+import io.hawtjms.jms.JmsQueue;
+import io.hawtjms.jms.JmsTopic;
+import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsDefaultMessageFactory;
+import io.hawtjms.jms.message.JmsMapMessage;
+import io.hawtjms.jms.message.JmsMessage;
+import io.hawtjms.jms.message.JmsMessageFactory;
+import io.hawtjms.jms.message.JmsOutboundMessageDispatch;
+import io.hawtjms.jms.message.JmsTextMessage;
+import io.hawtjms.jms.meta.JmsMessageId;
+import io.hawtjms.provider.failover.FailoverSendSpool.SpooledSend;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import javax.jms.DeliveryMode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the FailoverSendSpool journal.
+ */
+public class FailoverSendSpoolTest {
+
+    private final JmsMessageFactory factory = new JmsDefaultMessageFactory();
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("send", ".spool");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testSendsReadBackInOrder() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(spool.append(createTextSend(i)));
+            }
+            assertEquals(10, spool.getCount());
+
+            long position = spool.getReadPosition();
+            for (int i = 0; i < 10; ++i) {
+                SpooledSend send = spool.read(position);
+                assertNotNull(send);
+                assertTextSend(send.getEnvelope(), i);
+                position = send.getNextPosition();
+            }
+            assertNull(spool.read(position));
+            assertEquals(10, spool.getCount());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testMessageTypesAreKept() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            JmsBytesMessage bytesMessage = factory.createBytesMessage();
+            bytesMessage.writeBytes(new byte[] { 1, 2, 3 });
+            assertTrue(spool.append(createSend(bytesMessage, new JmsTopic("topic"))));
+
+            JmsMapMessage mapMessage = factory.createMapMessage();
+            mapMessage.setInt("int", 42);
+            mapMessage.setString("string", "value");
+            assertTrue(spool.append(createSend(mapMessage, new JmsQueue("queue"))));
+
+            SpooledSend send = spool.read(spool.getReadPosition());
+            JmsBytesMessage bytesCopy = (JmsBytesMessage) send.getEnvelope().getMessage();
+            assertEquals(new JmsTopic("topic"), send.getEnvelope().getDestination());
+            assertEquals(3, bytesCopy.getBodyLength());
+
+            send = spool.read(send.getNextPosition());
+            JmsMapMessage mapCopy = (JmsMapMessage) send.getEnvelope().getMessage();
+            assertEquals(42, mapCopy.getInt("int"));
+            assertEquals("value", mapCopy.getString("string"));
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testUnreleasedSendsSurviveReopen() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        for (int i = 0; i < 5; ++i) {
+            spool.append(createTextSend(i));
+        }
+        SpooledSend first = spool.read(spool.getReadPosition());
+        spool.release(first.getNextPosition());
+        spool.close();
+
+        spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            assertEquals(4, spool.getCount());
+            long position = spool.getReadPosition();
+            for (int i = 1; i < 5; ++i) {
+                SpooledSend send = spool.read(position);
+                assertTextSend(send.getEnvelope(), i);
+                position = send.getNextPosition();
+            }
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testSpoolIsBoundedAndWrapsAround() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 4096, factory);
+        try {
+            int appended = 0;
+            while (spool.append(createTextSend(appended))) {
+                appended++;
+            }
+            int capacity = appended;
+            assertTrue(capacity > 1);
+            assertTrue(spool.getFillLevel() > 0.5);
+
+            // Cycle through the spool several times over, releasing only when it is full.
+            int next = 0;
+            long position = spool.getReadPosition();
+            while (appended < capacity * 5) {
+                if (spool.append(createTextSend(appended))) {
+                    appended++;
+                } else {
+                    SpooledSend send = spool.read(position);
+                    assertTextSend(send.getEnvelope(), next++);
+                    position = send.getNextPosition();
+                    spool.release(position);
+                }
+            }
+
+            assertEquals(appended - next, spool.getCount());
+            while (next < appended) {
+                SpooledSend send = spool.read(position);
+                assertTextSend(send.getEnvelope(), next++);
+                position = send.getNextPosition();
+                spool.release(position);
+            }
+            assertTrue(spool.isEmpty());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testIncompleteRecordIsDroppedOnRecovery() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        spool.append(createTextSend(0));
+        long second = spool.read(spool.getReadPosition()).getNextPosition();
+        spool.append(createTextSend(1));
+        spool.close();
+
+        damagePayload(second);
+
+        spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            assertEquals(1, spool.getCount());
+            assertTextSend(spool.read(spool.getReadPosition()).getEnvelope(), 0);
+            assertTrue(spool.append(createTextSend(2)));
+            assertTextSend(spool.read(second).getEnvelope(), 2);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testCorruptRecordIsDroppedOnRead() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            spool.append(createTextSend(0));
+            long second = spool.read(spool.getReadPosition()).getNextPosition();
+            spool.append(createTextSend(1));
+            spool.append(createTextSend(2));
+
+            damagePayload(second);
+
+            try {
+                spool.read(second);
+                fail("Should not be able to read a corrupt record");
+            } catch (IOException e) {
+            }
+
+            // The corrupt record and those after it are gone, the one before is kept.
+            assertEquals(1, spool.getCount());
+            assertNull(spool.read(second));
+            assertTextSend(spool.read(spool.getReadPosition()).getEnvelope(), 0);
+            assertTrue(spool.append(createTextSend(3)));
+            assertTextSend(spool.read(second).getEnvelope(), 3);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testUndecodableRecordCanBeReleased() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            spool.append(createTextSend(0));
+            spool.append(createTextSend(1));
+
+            // An intact record holding an unknown destination type.
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(32);
+                byte[] payload = new byte[raf.readInt()];
+                raf.seek(32 + 8);
+                raf.readFully(payload);
+                payload[0] = 0x7F;
+                CRC32 checksum = new CRC32();
+                checksum.update(payload, 0, payload.length);
+                raf.seek(32 + 4);
+                raf.writeInt((int) checksum.getValue());
+                raf.write(payload);
+            } finally {
+                raf.close();
+            }
+
+            SpooledSend send = spool.read(spool.getReadPosition());
+            assertNull(send.getEnvelope());
+            assertNotNull(send.getFailure());
+
+            spool.release(send.getNextPosition());
+            assertEquals(1, spool.getCount());
+            assertTextSend(spool.read(send.getNextPosition()).getEnvelope(), 1);
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testSpoolFileCanOnlyBeOpenedOnce() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        spool.append(createTextSend(0));
+
+        try {
+            new FailoverSendSpool(file, 64 * 1024, factory);
+            fail("Should not be able to open a spool file that is in use");
+        } catch (IOException e) {
+        }
+
+        // The failed open must not have touched the spool that holds the file.
+        assertTrue(spool.append(createTextSend(1)));
+        assertEquals(2, spool.getCount());
+        spool.close();
+
+        spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            assertEquals(2, spool.getCount());
+        } finally {
+            spool.close();
+        }
+    }
+
+    @Test
+    public void testReleaseEmptiesSpool() throws Exception {
+        FailoverSendSpool spool = new FailoverSendSpool(file, 64 * 1024, factory);
+        try {
+            spool.append(createTextSend(0));
+            assertFalse(spool.isEmpty());
+            spool.release(spool.read(spool.getReadPosition()).getNextPosition());
+            assertTrue(spool.isEmpty());
+            assertEquals(0, spool.getSize());
+            assertEquals(0, spool.getFillLevel(), 0);
+        } finally {
+            spool.close();
+        }
+    }
+
+    /*
+     * Flips a byte in the payload of the record at the given position, as a torn or
+     * stray write would.
+     */
+    private void damagePayload(long position) throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long offset = 32 + position + 8;
+            raf.seek(offset);
+            int value = raf.read();
+            raf.seek(offset);
+            raf.write(value ^ 0xFF);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private JmsOutboundMessageDispatch createTextSend(int index) throws Exception {
+        JmsTextMessage message = factory.createTextMessage("message " + index);
+        message.getFacade().setMessageId(new JmsMessageId("ID:spool:1:1:1", index));
+        message.setIntProperty("index", index);
+        message.setJMSPriority(7);
+        message.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+        return createSend(message, new JmsQueue("queue"));
+    }
+
+    private JmsOutboundMessageDispatch createSend(JmsMessage message, JmsDestination destination) throws Exception {
+        message.setJMSDestination(destination);
+        message.onSend();
+        JmsOutboundMessageDispatch envelope = new JmsOutboundMessageDispatch();
+        envelope.setMessage(message);
+        envelope.setDestination(destination);
+        return envelope;
+    }
+
+    private void assertTextSend(JmsOutboundMessageDispatch envelope, int index) throws Exception {
+        JmsTextMessage message = (JmsTextMessage) envelope.getMessage();
+        assertEquals("message " + index, message.getText());
+        assertEquals(index, message.getIntProperty("index"));
+        assertEquals(7, message.getJMSPriority());
+        assertEquals(DeliveryMode.PERSISTENT, message.getJMSDeliveryMode());
+        assertEquals(new JmsMessageId("ID:spool:1:1:1", index), message.getFacade().getMessageId());
+        assertEquals(new JmsQueue("queue"), envelope.getDestination());
+    }
+}
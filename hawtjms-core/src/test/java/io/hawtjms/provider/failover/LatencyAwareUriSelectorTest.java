@@ -0,0 +1,139 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.provider.failover;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for the LatencyAwareUriSelector and its use by the FailoverUriPool.
+ */
+public class LatencyAwareUriSelectorTest {
+
+    private final URI near = URI.create("amqp://127.0.0.1:5671");
+    private final URI far = URI.create("amqp://127.0.0.1:5672");
+    private final URI down = URI.create("amqp://127.0.0.1:5673");
+
+    @Test
+    public void testLowestLatencyIsAttemptedFirst() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, far, near);
+
+        selector.onConnectSuccess(far, 80);
+        selector.onConnectSuccess(near, 5);
+
+        assertEquals(near, pool.getNext());
+        assertEquals(far, pool.getNext());
+    }
+
+    @Test
+    public void testUnattemptedUriIsAttemptedFirst() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, near);
+
+        selector.onConnectSuccess(near, 5);
+        pool.add(far);
+
+        assertEquals(0, selector.getScore(far), 0);
+        assertEquals(far, pool.getNext());
+    }
+
+    @Test
+    public void testFailingUriRanksBehindSlowerHealthyUri() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, down, far);
+
+        selector.onConnectSuccess(far, 80);
+        selector.onConnectFailure(down, 2);
+
+        assertEquals(1, selector.getFailureRate(down), 0);
+        assertEquals(far, pool.getNext());
+        assertEquals(down, pool.getNext());
+    }
+
+    @Test
+    public void testFailureRateDecaysWithSuccess() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector(0.5, 1000);
+
+        selector.onConnectFailure(near, 5);
+        selector.onConnectSuccess(near, 5);
+        assertEquals(0.5, selector.getFailureRate(near), 0.001);
+        selector.onConnectSuccess(near, 5);
+        assertEquals(0.25, selector.getFailureRate(near), 0.001);
+        assertEquals(5, selector.getLatency(near), 0.001);
+    }
+
+    @Test
+    public void testEachUriReturnedOncePerPass() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, near, far, down);
+
+        selector.onConnectSuccess(near, 5);
+        selector.onConnectSuccess(far, 50);
+        selector.onConnectSuccess(down, 500);
+
+        for (int pass = 0; pass < 3; ++pass) {
+            Set<URI> returned = new HashSet<URI>();
+            for (int i = 0; i < 3; ++i) {
+                returned.add(pool.getNext());
+            }
+            assertEquals(3, returned.size());
+        }
+    }
+
+    @Test
+    public void testPeekNextDoesNotDisturbPass() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, near, far, down);
+
+        selector.onConnectSuccess(near, 5);
+        selector.onConnectSuccess(far, 50);
+        selector.onConnectSuccess(down, 500);
+
+        Set<URI> returned = new HashSet<URI>();
+        returned.add(pool.getNext());
+        assertEquals(far, pool.peekNext(near));
+        returned.add(pool.getNext());
+        returned.add(pool.getNext());
+        assertEquals(3, returned.size());
+    }
+
+    @Test
+    public void testRemovedUriStateIsDropped() throws Exception {
+        LatencyAwareUriSelector selector = new LatencyAwareUriSelector();
+        FailoverUriPool pool = createPool(selector, near, far);
+
+        pool.connectAttempted(near, 5, true);
+        assertTrue(selector.getLatency(near) >= 0);
+
+        pool.remove(near);
+        assertEquals(-1, selector.getLatency(near), 0);
+        assertEquals(far, pool.getNext());
+    }
+
+    private FailoverUriPool createPool(FailoverUriSelector selector, URI... uris) {
+        FailoverUriPool pool = new FailoverUriPool(uris, null);
+        pool.setSelector(selector);
+        return pool;
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Tests for the NioTransport and its shared selector thread.
+ */
+public class NioTransportTest {
+
+    private ServerSocket server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test(timeout=30000)
+    public void testListenerErrorOnlyFailsItsOwnTransport() throws Exception {
+        TestListener failing = new TestListener(true);
+        NioTransport failingTransport = new NioTransport(failing, getServerURI());
+        failingTransport.connect();
+        Socket failingPeer = server.accept();
+
+        TestListener healthy = new TestListener(false);
+        NioTransport healthyTransport = new NioTransport(healthy, getServerURI());
+        healthyTransport.connect();
+        Socket healthyPeer = server.accept();
+
+        try {
+            write(failingPeer);
+            assertTrue(failing.failed.await(10, TimeUnit.SECONDS));
+            assertFalse(failingTransport.isConnected());
+
+            // The selector thread is still servicing the other transport.
+            write(healthyPeer);
+            assertTrue(healthy.received.await(10, TimeUnit.SECONDS));
+            assertTrue(healthyTransport.isConnected());
+            assertEquals(1, healthy.failed.getCount());
+        } finally {
+            failingTransport.close();
+            healthyTransport.close();
+            failingPeer.close();
+            healthyPeer.close();
+        }
+    }
+
+    @Test(timeout=30000)
+    public void testNewTransportCanConnectAfterAnotherFailed() throws Exception {
+        TestListener failing = new TestListener(true);
+        NioTransport failingTransport = new NioTransport(failing, getServerURI());
+        failingTransport.connect();
+        Socket failingPeer = server.accept();
+
+        try {
+            write(failingPeer);
+            assertTrue(failing.failed.await(10, TimeUnit.SECONDS));
+        } finally {
+            failingTransport.close();
+            failingPeer.close();
+        }
+
+        TestListener healthy = new TestListener(false);
+        NioTransport healthyTransport = new NioTransport(healthy, getServerURI());
+        healthyTransport.connect();
+        Socket healthyPeer = server.accept();
+
+        try {
+            write(healthyPeer);
+            assertTrue(healthy.received.await(10, TimeUnit.SECONDS));
+        } finally {
+            healthyTransport.close();
+            healthyPeer.close();
+        }
+    }
+
+    private URI getServerURI() throws Exception {
+        return new URI("tcp://localhost:" + server.getLocalPort());
+    }
+
+    private void write(Socket peer) throws Exception {
+        OutputStream out = peer.getOutputStream();
+        out.write(new byte[] { 1, 2, 3 });
+        out.flush();
+    }
+
+    private static class TestListener implements TransportListener {
+
+        private final boolean throwOnData;
+        private final CountDownLatch received = new CountDownLatch(1);
+        private final CountDownLatch failed = new CountDownLatch(1);
+
+        public TestListener(boolean throwOnData) {
+            this.throwOnData = throwOnData;
+        }
+
+        @Override
+        public void onData(Buffer incoming) {
+            if (throwOnData) {
+                throw new IllegalStateException("Listener failure");
+            }
+            received.countDown();
+        }
+
+        @Override
+        public void onTransportClosed() {
+        }
+
+        @Override
+        public void onTransportError(Throwable cause) {
+            failed.countDown();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.AsyncResultHandler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.net.NetClient;
+import org.vertx.java.core.net.NetSocket;
+
+/**
+ * Collect some basic throughput and allocation data on the TcpTransport send path.
+ *
+ * Each send writes a number of fragments followed by a flush, which mirrors how the
+ * AMQP provider pumps the proton output buffer onto the wire.  A run is timed until the
+ * peer has read every byte sent, and each frame size is first run over the old send
+ * path that copied each fragment into a byte[] and sent it over the event bus.
+ */
+@Ignore
+public class TcpTransportSendBench {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TcpTransportSendBench.class);
+
+    private final int SEND_COUNT = 100 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int FRAGMENTS = 4;
+
+    private ServerSocket server;
+    private Thread sink;
+    private final AtomicLong received = new AtomicLong();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0);
+        sink = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = server.accept();
+                        Thread reader = new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                try {
+                                    InputStream in = socket.getInputStream();
+                                    byte[] buffer = new byte[64 * 1024];
+                                    int read = 0;
+                                    while ((read = in.read(buffer)) != -1) {
+                                        received.addAndGet(read);
+                                    }
+                                } catch (Exception e) {
+                                }
+                            }
+                        }, "TcpTransportSendBench: reader");
+                        reader.setDaemon(true);
+                        reader.start();
+                    }
+                } catch (Exception e) {
+                }
+            }
+        }, "TcpTransportSendBench: sink");
+        sink.setDaemon(true);
+        sink.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testSendSmallFrames() throws Exception {
+        doTestSendRate(64);
+    }
+
+    @Test
+    public void testSendMediumFrames() throws Exception {
+        doTestSendRate(1024);
+    }
+
+    @Test
+    public void testSendLargeFrames() throws Exception {
+        doTestSendRate(64 * 1024);
+    }
+
+    protected void doTestSendRate(int fragmentSize) throws Exception {
+        URI location = new URI("tcp://127.0.0.1:" + server.getLocalPort());
+
+        doTestSendRate("event bus", new EventBusTransport(location), fragmentSize);
+
+        final CountDownLatch closed = new CountDownLatch(1);
+        TcpTransport transport = new TcpTransport(new TransportListener() {
+
+            @Override
+            public void onData(Buffer incoming) {
+            }
+
+            @Override
+            public void onTransportClosed() {
+                closed.countDown();
+            }
+
+            @Override
+            public void onTransportError(Throwable cause) {
+                LOG.warn("Transport error during benchmark: {}", cause.getMessage());
+                closed.countDown();
+            }
+        }, location);
+
+        doTestSendRate("pooled buffer", transport, fragmentSize);
+        closed.await(5, TimeUnit.SECONDS);
+    }
+
+    protected void doTestSendRate(String path, Transport transport, int fragmentSize) throws Exception {
+        transport.connect();
+
+        ByteBuffer fragment = ByteBuffer.allocate(fragmentSize);
+
+        // Warm up the send path.
+        sendFragments(transport, fragment, SEND_COUNT);
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long allocatedBefore = getAllocatedBytes();
+            long result = sendFragments(transport, fragment, SEND_COUNT);
+            long allocated = getAllocatedBytes() - allocatedBefore;
+            cumulative += result;
+
+            long bytes = (long) SEND_COUNT * FRAGMENTS * fragmentSize;
+            LOG.info("Time to send {} batches of {} byte fragments over the {} path: {} ms, {} MB/s, {} bytes allocated per send",
+                new Object[] { SEND_COUNT, fragmentSize, path, result,
+                               result == 0 ? 0 : (bytes / result) / 1000, allocated / SEND_COUNT });
+        }
+
+        LOG.info("Smoothed send time for {} batches over the {} path: {}", new Object[] { SEND_COUNT, path, cumulative / NUM_RUNS });
+
+        transport.close();
+    }
+
+    /*
+     * The clock runs until the peer has read all the data so that a path which only
+     * queues its writes is not counted as faster than one that puts them on the wire.
+     */
+    protected long sendFragments(Transport transport, ByteBuffer fragment, int count) throws Exception {
+        long expected = received.get() + (long) count * FRAGMENTS * fragment.capacity();
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < count; ++i) {
+            for (int j = 0; j < FRAGMENTS; ++j) {
+                fragment.clear();
+                transport.send(fragment);
+            }
+            transport.flush();
+        }
+
+        while (received.get() < expected) {
+            if (!transport.isConnected()) {
+                throw new IOException("Transport closed before all data was received.");
+            }
+            Thread.yield();
+        }
+
+        return System.currentTimeMillis() - startTime;
+    }
+
+    private long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /*
+     * The send path TcpTransport used before it gathered writes into pooled buffers, each
+     * fragment is copied into a new byte[] and sent to the socket over the event bus.
+     */
+    private static class EventBusTransport implements Transport {
+
+        private final URI remoteLocation;
+        private Vertx vertx;
+        private NetClient client;
+        private volatile NetSocket socket;
+
+        public EventBusTransport(URI remoteLocation) {
+            this.remoteLocation = remoteLocation;
+        }
+
+        @Override
+        public void connect() throws IOException {
+            final CountDownLatch connectLatch = new CountDownLatch(1);
+
+            vertx = SharedVertx.acquire(0);
+            client = vertx.createNetClient();
+            client.setTCPNoDelay(true);
+            client.connect(remoteLocation.getPort(), remoteLocation.getHost(), new AsyncResultHandler<NetSocket>() {
+                @Override
+                public void handle(AsyncResult<NetSocket> asyncResult) {
+                    if (asyncResult.succeeded()) {
+                        socket = asyncResult.result();
+                    }
+                    connectLatch.countDown();
+                }
+            });
+
+            try {
+                connectLatch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (socket == null) {
+                close();
+                throw new IOException("Could not connect to " + remoteLocation);
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return socket != null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (socket != null) {
+                socket.close();
+                socket = null;
+            }
+            if (vertx != null) {
+                client.close();
+                SharedVertx.release();
+                vertx = null;
+            }
+        }
+
+        @Override
+        public void send(ByteBuffer output) throws IOException {
+            byte[] copy = new byte[output.remaining()];
+            output.get(copy);
+            vertx.eventBus().send(socket.writeHandlerID(), new Buffer(copy));
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+    }
+}
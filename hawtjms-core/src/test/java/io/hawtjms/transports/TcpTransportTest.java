@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.transports;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+/**
+ * Tests for the Vert.x based TcpTransport.
+ */
+public class TcpTransportTest {
+
+    @Test(timeout=30000)
+    public void testFailedConnectReleasesSharedEventLoops() throws Exception {
+        int before = SharedVertx.getReferenceCount();
+
+        for (int i = 0; i < 3; ++i) {
+            TcpTransport transport = new TcpTransport(new NoOpListener(), getClosedPortURI());
+            try {
+                transport.connect();
+                fail("Should not connect to a closed port");
+            } catch (IOException e) {
+            }
+        }
+
+        assertEquals(before, SharedVertx.getReferenceCount());
+    }
+
+    private URI getClosedPortURI() throws Exception {
+        ServerSocket server = new ServerSocket(0);
+        int port = server.getLocalPort();
+        server.close();
+        return new URI("tcp://localhost:" + port);
+    }
+
+    private static class NoOpListener implements TransportListener {
+
+        @Override
+        public void onData(Buffer incoming) {
+        }
+
+        @Override
+        public void onTransportClosed() {
+        }
+
+        @Override
+        public void onTransportError(Throwable cause) {
+        }
+    }
+}
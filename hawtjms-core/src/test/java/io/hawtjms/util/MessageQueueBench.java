@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare enqueue / dequeue throughput and hand off latency of the consumer
+ * MessageQueue implementations with one thread enqueuing and another thread
+ * blocked in dequeue, which is how a MessageConsumer uses them.
+ */
+@Ignore
+public class MessageQueueBench {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MessageQueueBench.class);
+
+    private final int MSG_COUNT = 1000 * 1000;
+    private final int NUM_RUNS = 10;
+    private final int PREFETCH = 1000;
+
+    @Test
+    public void testFifoMessageQueue() throws Exception {
+        doTestQueue("FifoMessageQueue", new QueueFactory() {
+
+            @Override
+            public MessageQueue create() {
+                return new FifoMessageQueue();
+            }
+        });
+    }
+
+    @Test
+    public void testPriorityMessageQueue() throws Exception {
+        doTestQueue("PriorityMessageQueue", new QueueFactory() {
+
+            @Override
+            public MessageQueue create() {
+                return new PriorityMessageQueue();
+            }
+        });
+    }
+
+    @Test
+    public void testRingBufferMessageQueue() throws Exception {
+        doTestQueue("RingBufferMessageQueue", new QueueFactory() {
+
+            @Override
+            public MessageQueue create() {
+                return new RingBufferMessageQueue(PREFETCH);
+            }
+        });
+    }
+
+    private interface QueueFactory {
+        MessageQueue create();
+    }
+
+    protected void doTestQueue(String name, QueueFactory factory) throws Exception {
+        final JmsInboundMessageDispatch[] envelopes = new JmsInboundMessageDispatch[MSG_COUNT];
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            envelopes[i] = new JmsInboundMessageDispatch();
+        }
+
+        // Warm up.
+        runOnce(factory.create(), envelopes, new long[MSG_COUNT]);
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            long[] latencies = new long[MSG_COUNT];
+            long result = runOnce(factory.create(), envelopes, latencies);
+            cumulative += result;
+
+            Arrays.sort(latencies);
+            LOG.info("{}: {} messages in {} ms, {} msg/s, latency p50: {} ns, p99: {} ns, max: {} ns",
+                new Object[] { name, MSG_COUNT, result, result == 0 ? 0 : (MSG_COUNT * 1000L) / result,
+                               latencies[MSG_COUNT / 2], latencies[(int) (MSG_COUNT * 0.99)],
+                               latencies[MSG_COUNT - 1] });
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("{}: smoothed time for {} messages: {} ms", new Object[] { name, MSG_COUNT, smoothed });
+    }
+
+    /*
+     * The producer stays within the prefetch window, as the provider would, and records
+     * when each message was queued so the consumer can work out how long the hand off took.
+     */
+    private long runOnce(final MessageQueue queue, final JmsInboundMessageDispatch[] envelopes, long[] latencies) throws Exception {
+        final long[] enqueueTimes = new long[envelopes.length];
+        final AtomicLong consumed = new AtomicLong();
+        queue.start();
+
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < envelopes.length; ++i) {
+                    while (i - consumed.get() >= PREFETCH) {
+                        Thread.yield();
+                    }
+                    enqueueTimes[i] = System.nanoTime();
+                    queue.enqueue(envelopes[i]);
+                }
+            }
+        });
+
+        long startTime = System.currentTimeMillis();
+        producer.start();
+
+        for (int i = 0; i < envelopes.length; ++i) {
+            if (queue.dequeue(-1) == null) {
+                throw new IllegalStateException("Failed to dequeue message " + i);
+            }
+            latencies[i] = System.nanoTime() - enqueueTimes[i];
+            consumed.lazySet(i + 1);
+        }
+
+        long result = System.currentTimeMillis() - startTime;
+        producer.join();
+        queue.close();
+        return result;
+    }
+}
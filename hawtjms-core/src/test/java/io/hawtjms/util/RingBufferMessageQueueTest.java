@@ -0,0 +1,232 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for the RingBufferMessageQueue.
+ */
+public class RingBufferMessageQueueTest {
+
+    @Test(timeout=30000)
+    public void testMessagesDequeuedInOrderPastCapacity() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        List<JmsInboundMessageDispatch> sent = createEnvelopes(100);
+        for (JmsInboundMessageDispatch envelope : sent) {
+            queue.enqueue(envelope);
+        }
+
+        assertEquals(100, queue.size());
+        for (JmsInboundMessageDispatch envelope : sent) {
+            assertSame(envelope, queue.dequeueNoWait());
+        }
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.dequeueNoWait());
+    }
+
+    @Test(timeout=30000)
+    public void testNothingDequeuedWhenStopped() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.enqueue(new JmsInboundMessageDispatch());
+
+        assertNull(queue.dequeueNoWait());
+        assertNull(queue.dequeue(10));
+
+        queue.start();
+        assertTrue(queue.dequeue(10) != null);
+    }
+
+    @Test(timeout=30000)
+    public void testDequeueTimesOut() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        long start = System.nanoTime();
+        assertNull(queue.dequeue(100));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+    }
+
+    @Test(timeout=30000)
+    public void testBlockedDequeueWokenByEnqueue() throws Exception {
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        final CountDownLatch received = new CountDownLatch(1);
+        final AtomicReference<JmsInboundMessageDispatch> result = new AtomicReference<JmsInboundMessageDispatch>();
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    result.set(queue.dequeue(-1));
+                } catch (InterruptedException e) {
+                }
+                received.countDown();
+            }
+        });
+        reader.start();
+
+        Thread.sleep(50);
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        queue.enqueue(envelope);
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertSame(envelope, result.get());
+    }
+
+    @Test(timeout=30000)
+    public void testBlockedDequeueReleasedByClose() throws Exception {
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    queue.dequeue(-1);
+                } catch (InterruptedException e) {
+                }
+                done.countDown();
+            }
+        });
+        reader.start();
+
+        Thread.sleep(50);
+        queue.close();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.isClosed());
+    }
+
+    @Test(timeout=30000)
+    public void testConcurrentProducerAndConsumerKeepOrder() throws Exception {
+        final int count = 100000;
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(64);
+        final List<JmsInboundMessageDispatch> sent = createEnvelopes(count);
+        queue.start();
+
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                for (JmsInboundMessageDispatch envelope : sent) {
+                    queue.enqueue(envelope);
+                }
+            }
+        });
+        producer.start();
+
+        for (int i = 0; i < count; ++i) {
+            assertSame("Out of order at: " + i, sent.get(i), queue.dequeue(5000));
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout=30000)
+    public void testRemoveAllDrainsRingAndOverflow() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        List<JmsInboundMessageDispatch> sent = createEnvelopes(40);
+        for (JmsInboundMessageDispatch envelope : sent) {
+            queue.enqueue(envelope);
+        }
+
+        assertEquals(sent, queue.removeAll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test(timeout=30000)
+    public void testEnqueueFirstIsDequeuedAheadOfRingAndOverflow() throws Exception {
+        RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        List<JmsInboundMessageDispatch> sent = createEnvelopes(40);
+        for (JmsInboundMessageDispatch envelope : sent) {
+            queue.enqueue(envelope);
+        }
+
+        JmsInboundMessageDispatch first = new JmsInboundMessageDispatch();
+        JmsInboundMessageDispatch second = new JmsInboundMessageDispatch();
+        queue.enqueueFirst(second);
+        queue.enqueueFirst(first);
+
+        assertEquals(42, queue.size());
+        assertSame(first, queue.peek());
+        assertSame(first, queue.dequeueNoWait());
+        assertSame(second, queue.dequeueNoWait());
+        for (JmsInboundMessageDispatch envelope : sent) {
+            assertSame(envelope, queue.dequeueNoWait());
+        }
+
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(timeout=30000)
+    public void testBlockedDequeueWokenByEnqueueFirst() throws Exception {
+        final RingBufferMessageQueue queue = new RingBufferMessageQueue(16);
+        queue.start();
+
+        final AtomicReference<JmsInboundMessageDispatch> received = new AtomicReference<JmsInboundMessageDispatch>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    received.set(queue.dequeue(-1));
+                } catch (InterruptedException e) {
+                }
+                done.countDown();
+            }
+        });
+        reader.start();
+
+        // The reader holds the lock while it waits, enqueueFirst must still get in.
+        Thread.sleep(50);
+        JmsInboundMessageDispatch envelope = new JmsInboundMessageDispatch();
+        queue.enqueueFirst(envelope);
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertSame(envelope, received.get());
+    }
+
+    private List<JmsInboundMessageDispatch> createEnvelopes(int count) {
+        List<JmsInboundMessageDispatch> result = new ArrayList<JmsInboundMessageDispatch>(count);
+        for (int i = 0; i < count; ++i) {
+            result.add(new JmsInboundMessageDispatch());
+        }
+        return result;
+    }
+}
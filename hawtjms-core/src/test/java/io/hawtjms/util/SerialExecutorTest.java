@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for the SerialExecutor and its wait strategies.
+ */
+public class SerialExecutorTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int TASKS_PER_PRODUCER = 10000;
+
+    @Test(timeout=30000)
+    public void testTasksRunInOrderWithPark() throws Exception {
+        doTestTasksRunInProducerOrder(WaitStrategy.PARK);
+    }
+
+    @Test(timeout=30000)
+    public void testTasksRunInOrderWithSpinThenPark() throws Exception {
+        doTestTasksRunInProducerOrder(WaitStrategy.SPIN_THEN_PARK);
+    }
+
+    @Test(timeout=30000)
+    public void testTasksRunInOrderWithBusySpin() throws Exception {
+        doTestTasksRunInProducerOrder(WaitStrategy.BUSY_SPIN);
+    }
+
+    @Test(timeout=30000)
+    public void testShutdownRunsQueuedTasks() throws Exception {
+        SerialExecutor executor = createExecutor(WaitStrategy.PARK);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(10);
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+
+        for (int i = 0; i < 10; ++i) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    done.countDown();
+                }
+            });
+        }
+
+        executor.shutdown();
+        blocker.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test(timeout=30000)
+    public void testExecuteAfterShutdownIsRejected() throws Exception {
+        SerialExecutor executor = createExecutor(WaitStrategy.PARK);
+        executor.shutdown();
+
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                }
+            });
+            fail("Should not accept tasks after shutdown");
+        } catch (RejectedExecutionException ex) {
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testTasksAcceptedDuringShutdownAreRun() throws Exception {
+        for (int i = 0; i < 500; ++i) {
+            final SerialExecutor executor = createExecutor(WaitStrategy.BUSY_SPIN);
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger completed = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(PRODUCERS);
+
+            Thread[] producers = new Thread[PRODUCERS];
+            for (int j = 0; j < PRODUCERS; ++j) {
+                producers[j] = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            while (true) {
+                                executor.execute(new Runnable() {
+
+                                    @Override
+                                    public void run() {
+                                        completed.incrementAndGet();
+                                    }
+                                });
+                                accepted.incrementAndGet();
+                            }
+                        } catch (RejectedExecutionException ex) {
+                        }
+                    }
+                });
+                producers[j].start();
+            }
+
+            started.await();
+            executor.shutdown();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            // A task lost to the race is never run, so wait a little for stragglers.
+            long deadline = System.currentTimeMillis() + 1000;
+            while (completed.get() != accepted.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+
+            assertEquals(accepted.get(), completed.get());
+        }
+    }
+
+    @Test(timeout=30000)
+    public void testTaskErrorDoesNotStopExecutor() throws Exception {
+        SerialExecutor executor = createExecutor(WaitStrategy.PARK);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                throw new RuntimeException("Expected");
+            }
+        });
+
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    private void doTestTasksRunInProducerOrder(WaitStrategy strategy) throws Exception {
+        final SerialExecutor executor = createExecutor(strategy);
+        final int[] lastSeen = new int[PRODUCERS];
+        final int[] outOfOrder = new int[1];
+        final CountDownLatch done = new CountDownLatch(PRODUCERS * TASKS_PER_PRODUCER);
+
+        for (int i = 0; i < PRODUCERS; ++i) {
+            lastSeen[i] = -1;
+        }
+
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int i = 0; i < PRODUCERS; ++i) {
+            final int producer = i;
+            producers[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < TASKS_PER_PRODUCER; ++j) {
+                        final int sequence = j;
+                        executor.execute(new Runnable() {
+
+                            @Override
+                            public void run() {
+                                // Only ever touched from the executor thread.
+                                if (lastSeen[producer] + 1 != sequence) {
+                                    outOfOrder[0]++;
+                                }
+                                lastSeen[producer] = sequence;
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            producers[i].start();
+        }
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(0, outOfOrder[0]);
+        for (int i = 0; i < PRODUCERS; ++i) {
+            assertEquals(TASKS_PER_PRODUCER - 1, lastSeen[i]);
+        }
+    }
+
+    private SerialExecutor createExecutor(WaitStrategy strategy) {
+        SerialExecutor executor = new SerialExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runner) {
+                Thread serial = new Thread(runner);
+                serial.setDaemon(true);
+                serial.setName("SerialExecutorTest");
+                return serial;
+            }
+        });
+        executor.setWaitStrategy(strategy);
+        return executor;
+    }
+}
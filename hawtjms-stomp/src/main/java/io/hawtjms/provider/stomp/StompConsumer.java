@@ -200,9 +200,14 @@ public class StompConsumer {
                 connection.send(credit);
             }
             request.onSuccess();
-        } else if (ackType.equals(ACK_TYPE.CONSUMED)) {
+        } else if (ackType.equals(ACK_TYPE.CONSUMED) || ackType.equals(ACK_TYPE.CUMULATIVE)) {
             LOG.debug("Consumed Ack of message: {}", messageId);
-            delivered.remove(envelope);
+            if (ackType.equals(ACK_TYPE.CUMULATIVE)) {
+                // The subscription uses client mode so this ACK covers everything before it.
+                removeDeliveredUpTo(envelope);
+            } else {
+                delivered.remove(envelope);
+            }
             StompFrame ack = new StompFrame(ACK);
             ack.setProperty(MESSAGE_ID, messageId.toString());
             ack.setProperty(SUBSCRIPTION, getConsumerId().toString());
@@ -228,6 +233,17 @@ public class StompConsumer {
         }
     }
 
+    private void removeDeliveredUpTo(JmsInboundMessageDispatch envelope) {
+        if (!delivered.contains(envelope)) {
+            return;
+        }
+
+        JmsInboundMessageDispatch removed = null;
+        do {
+            removed = delivered.removeFirst();
+        } while (removed != envelope);
+    }
+
     public JmsConsumerId getConsumerId() {
         return this.consumerInfo.getConsumerId();
     }
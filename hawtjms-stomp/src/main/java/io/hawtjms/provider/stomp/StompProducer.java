@@ -74,7 +74,10 @@ public class StompProducer {
      */
     public void send(JmsOutboundMessageDispatch envelope, AsyncResult<Void> request) throws IOException {
         StompJmsMessageFacade facade = (StompJmsMessageFacade) envelope.getMessage().getFacade();
-        StompFrame sendFrame = facade.getStompMessage();
+
+        // The facade can be shared with the message the application sent, so the receipt
+        // header must be added to a frame of our own.
+        StompFrame sendFrame = facade.getStompMessage().clone();
 
         // TODO - Get current TX Id and append it to the Frame.
 
@@ -87,6 +87,7 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
                         // TODO - We should wait, but for now lets just do it async.
                         StompFrame disconnect = new StompFrame(DISCONNECT);
                         transport.send(codec.encode(disconnect));
+                        transport.flush();
                     } catch (Exception e) {
                         LOG.debug("Caught exception while closing proton connection");
                     } finally {
@@ -443,6 +444,7 @@ public class StompProvider extends AbstractAsyncProvider implements TransportLis
     protected void send(StompFrame frame) throws IOException {
         ByteBuffer connect = codec.encode(frame);
         transport.send(connect);
+        transport.flush();
     }
 
     @Override
@@ -17,6 +17,7 @@
 package io.hawtjms.provider.stomp.message;
 
 import io.hawtjms.jms.message.JmsBytesMessage;
+import io.hawtjms.jms.message.JmsMessage;
 
 import javax.jms.JMSException;
 
@@ -37,6 +38,15 @@ public class StompJmsBytesMessage extends JmsBytesMessage {
         this.content = facade.getStompMessage().getContent();
     }
 
+    /**
+     * The content is written straight into the STOMP frame on send, which would bypass
+     * the copy on write handling of the facade, so a full copy is always made.
+     */
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        return copy();
+    }
+
     @Override
     public void onSend() throws JMSException {
         super.onSend();
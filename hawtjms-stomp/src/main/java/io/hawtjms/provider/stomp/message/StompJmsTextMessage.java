@@ -16,9 +16,12 @@
  */
 package io.hawtjms.provider.stomp.message;
 
+import io.hawtjms.jms.message.JmsMessage;
 import io.hawtjms.jms.message.JmsMessageFacade;
 import io.hawtjms.jms.message.JmsTextMessage;
 
+import javax.jms.JMSException;
+
 import org.fusesource.hawtbuf.UTF8Buffer;
 
 /**
@@ -37,6 +40,15 @@ public class StompJmsTextMessage extends JmsTextMessage {
         this.facade = (StompJmsMessageFacade) facade;
     }
 
+    /**
+     * The text is written straight into the STOMP frame, which would bypass the copy on
+     * write handling of the facade, so a full copy is always made.
+     */
+    @Override
+    public JmsMessage copyOnWrite() throws JMSException {
+        return copy();
+    }
+
     @Override
     protected void internalSetText(String text) {
         UTF8Buffer buffer = new UTF8Buffer(text);
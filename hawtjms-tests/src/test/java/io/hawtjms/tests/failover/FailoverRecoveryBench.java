@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.tests.failover;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.jms.JmsConnectionListener;
+import io.hawtjms.jms.message.JmsInboundMessageDispatch;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Measure how long a connection with many consumers takes to resume after the broker
+ * restarts, with the recovered resources re-created one request at a time and with
+ * the requests pipelined.
+ */
+@Ignore
+public class FailoverRecoveryBench extends AmqpTestSupport {
+
+    private final int NUM_CONSUMERS = 1000;
+    private final int NUM_SESSIONS = 50;
+    private final int NUM_RUNS = 5;
+
+    @Test
+    public void testSequentialRecovery() throws Exception {
+        doTestTimeToResume(false);
+    }
+
+    @Test
+    public void testPipelinedRecovery() throws Exception {
+        doTestTimeToResume(true);
+    }
+
+    protected void doTestTimeToResume(boolean pipeline) throws Exception {
+        URI brokerURI = new URI(getAmqpFailoverURI() + "?maxReconnectDelay=10&useExponentialBackOff=false" +
+                                "&pipelineRecovery=" + pipeline);
+        JmsConnection connection = (JmsConnection) createAmqpConnection(brokerURI);
+        this.connection = connection;
+        connection.start();
+
+        for (int i = 0; i < NUM_SESSIONS; ++i) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            for (int j = 0; j < NUM_CONSUMERS / NUM_SESSIONS; ++j) {
+                Queue queue = session.createQueue(getDestinationName() + j);
+                session.createConsumer(queue);
+            }
+        }
+
+        assertEquals(NUM_CONSUMERS, brokerService.getAdminView().getQueueSubscribers().length);
+
+        long cumulative = 0;
+        for (int i = 0; i < NUM_RUNS; ++i) {
+            RestoredListener listener = new RestoredListener();
+            connection.addConnectionListener(listener);
+
+            restartPrimaryBroker();
+            long startTime = System.currentTimeMillis();
+            assertTrue("Connection was not restored", listener.restored.await(5, TimeUnit.MINUTES));
+            long result = System.currentTimeMillis() - startTime;
+
+            connection.removeTransportListener(listener);
+            assertTrue("Consumers were not all recovered", Wait.waitFor(new Wait.Condition() {
+
+                @Override
+                public boolean isSatisified() throws Exception {
+                    return brokerService.getAdminView().getQueueSubscribers().length == NUM_CONSUMERS;
+                }
+            }));
+
+            cumulative += result;
+            LOG.info("Time to resume {} consumers with pipelineRecovery={}: {} ms",
+                new Object[] { NUM_CONSUMERS, pipeline, result });
+        }
+
+        long smoothed = cumulative / NUM_RUNS;
+        LOG.info("Smoothed time to resume {} consumers with pipelineRecovery={}: {} ms",
+            new Object[] { NUM_CONSUMERS, pipeline, smoothed });
+    }
+
+    private static class RestoredListener implements JmsConnectionListener {
+
+        private final CountDownLatch restored = new CountDownLatch(1);
+
+        @Override
+        public void onConnectionFailure(Throwable error) {
+        }
+
+        @Override
+        public void onConnectionInterrupted() {
+        }
+
+        @Override
+        public void onConnectionRestored() {
+            restored.countDown();
+        }
+
+        @Override
+        public void onMessage(JmsInboundMessageDispatch envelope) {
+        }
+    }
+}
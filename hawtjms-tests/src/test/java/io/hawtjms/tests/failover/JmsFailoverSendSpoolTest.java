@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hawtjms.tests.failover;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
+import io.hawtjms.provider.DefaultBlockingProvider;
+import io.hawtjms.provider.failover.FailoverProvider;
+import io.hawtjms.test.support.AmqpTestSupport;
+import io.hawtjms.test.support.Wait;
+
+import java.io.File;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that sends made while the FailoverProvider is offline are spooled to disk
+ * and forwarded once the connection recovers.
+ */
+public class JmsFailoverSendSpoolTest extends AmqpTestSupport {
+
+    private static final int MSG_COUNT = 100;
+
+    private File spoolFile;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        spoolFile = new File("target/spool/" + name.getMethodName() + ".spool");
+        spoolFile.delete();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        spoolFile.delete();
+    }
+
+    @Test(timeout=60000)
+    public void testSendsDuringOutageAreForwardedInOrder() throws Exception {
+        connection = createSpoolingConnection();
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+
+        stopPrimaryBroker();
+
+        // None of these should block waiting for the connection to recover.
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            Message message = session.createTextMessage("message " + i);
+            message.setIntProperty("index", i);
+            producer.send(message);
+        }
+
+        final FailoverProvider failover = getFailoverProvider(connection);
+        assertEquals(MSG_COUNT, failover.getSpoolCount());
+        assertTrue(failover.getSpoolFillLevel() > 0);
+
+        restartPrimaryBroker();
+
+        assertTrue("Spool should be drained", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return failover.getSpoolCount() == 0;
+            }
+        }));
+        assertEquals(0, failover.getSpoolFillLevel(), 0);
+
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            Message message = consumer.receive(5000);
+            assertNotNull("Missing message " + i, message);
+            assertEquals(i, message.getIntProperty("index"));
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testSpoolSurvivesConnectionRestart() throws Exception {
+        Connection first = createSpoolingConnection();
+        first.start();
+
+        Session session = first.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(queue);
+
+        stopPrimaryBroker();
+
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            Message message = session.createTextMessage("message " + i);
+            message.setIntProperty("index", i);
+            producer.send(message);
+        }
+
+        first.close();
+
+        restartPrimaryBroker();
+
+        // A new connection on the same spool file forwards what the first one left.
+        connection = createSpoolingConnection();
+        connection.start();
+
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < MSG_COUNT; ++i) {
+            Message message = consumer.receive(5000);
+            assertNotNull("Missing message " + i, message);
+            assertEquals(i, message.getIntProperty("index"));
+        }
+    }
+
+    @Test(timeout=60000)
+    public void testRefusedSpooledSendDoesNotHoldBackLaterSends() throws Exception {
+        // Guests may only write to the GUEST queues.
+        connection = createSpoolingConnection("guest", "password");
+
+        final CountDownLatch refused = new CountDownLatch(1);
+        connection.setExceptionListener(new ExceptionListener() {
+
+            @Override
+            public void onException(JMSException exception) {
+                refused.countDown();
+            }
+        });
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue allowed = session.createQueue("GUEST." + name.getMethodName());
+        Queue forbidden = session.createQueue(name.getMethodName());
+        MessageProducer producer = session.createProducer(null);
+
+        stopPrimaryBroker();
+
+        for (int i = 0; i < 3; ++i) {
+            Message message = session.createTextMessage("message " + i);
+            message.setIntProperty("index", i);
+            producer.send(i == 1 ? forbidden : allowed, message);
+        }
+
+        final FailoverProvider failover = getFailoverProvider(connection);
+        assertEquals(3, failover.getSpoolCount());
+
+        restartPrimaryBroker();
+
+        assertTrue("Refused send should be reported", refused.await(30, TimeUnit.SECONDS));
+        assertTrue("Spool should be drained", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return failover.getSpoolCount() == 0;
+            }
+        }));
+
+        MessageConsumer consumer = session.createConsumer(allowed);
+        for (int i = 0; i < 3; i += 2) {
+            Message message = consumer.receive(5000);
+            assertNotNull("Missing message " + i, message);
+            assertEquals(i, message.getIntProperty("index"));
+        }
+    }
+
+    private Connection createSpoolingConnection() throws Exception {
+        return createSpoolingConnection(null, null);
+    }
+
+    private Connection createSpoolingConnection(String username, String password) throws Exception {
+        URI brokerURI = new URI(getAmqpFailoverURI() + "?maxReconnectDelay=100" +
+                                "&spoolFile=" + spoolFile.getPath());
+        return createAmqpConnection(brokerURI, username, password);
+    }
+
+    private FailoverProvider getFailoverProvider(Connection connection) {
+        DefaultBlockingProvider provider = (DefaultBlockingProvider) ((JmsConnection) connection).getProvider();
+        return (FailoverProvider) provider.getNext();
+    }
+}
@@ -18,7 +18,9 @@ package io.hawtjms.tests.failover;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import io.hawtjms.jms.JmsConnection;
 import io.hawtjms.jms.JmsConnectionFactory;
 import io.hawtjms.test.support.AmqpTestSupport;
 import io.hawtjms.test.support.Wait;
@@ -37,6 +39,7 @@ import javax.jms.Queue;
 import javax.jms.Session;
 import javax.jms.Topic;
 
+import org.apache.activemq.broker.BrokerService;
 import org.apache.activemq.broker.jmx.QueueViewMBean;
 import org.junit.Test;
 
@@ -67,6 +70,58 @@ public class JmsFailoverTest extends AmqpTestSupport {
         connection.close();
     }
 
+    @Test(timeout=60000)
+    public void testFailoverConnectsWithParallelAttempts() throws Exception {
+        URI brokerURI = new URI("failover://(amqp://127.0.0.1:61616,amqp://localhost:5777," +
+                                getBrokerAmqpConnectionURI() + ")?maxReconnectDelay=500" +
+                                "&parallelConnectAttempts=3&connectAttemptStagger=10000");
+        Connection connection = createAmqpConnection(brokerURI);
+        connection.start();
+        connection.close();
+    }
+
+    @Test(timeout=60000)
+    public void testFailoverPromotesHotStandby() throws Exception {
+        startNewBroker();
+
+        URI brokerURI = new URI(getAmqpFailoverURI() + "?randomize=false&hotStandby=true");
+        Connection connection = createAmqpConnection(brokerURI);
+        connection.start();
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue(name.getMethodName());
+        MessageConsumer consumer = session.createConsumer(queue);
+        MessageProducer producer = session.createProducer(queue);
+
+        final BrokerService standbyBroker = brokers.get(0);
+        assertTrue("Standby connection should be opened", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return standbyBroker.getBroker().getClients().length == 1;
+            }
+        }));
+
+        final JmsConnection jmsConnection = (JmsConnection) connection;
+        final URI standbyURI = getBrokerURIs().get(1);
+
+        stopPrimaryBroker();
+
+        assertTrue("Should promote the standby connection", Wait.waitFor(new Wait.Condition() {
+
+            @Override
+            public boolean isSatisified() throws Exception {
+                return standbyURI.equals(jmsConnection.getProvider().getRemoteURI());
+            }
+        }));
+
+        producer.send(session.createTextMessage("test"));
+        assertNotNull(consumer.receive(5000));
+        assertEquals(1, standbyBroker.getBroker().getClients().length);
+
+        connection.close();
+    }
+
     @Test(timeout=60000, expected=JMSException.class)
     public void testStartupReconnectAttempts() throws Exception {
         URI brokerURI = new URI("failover://(amqp://localhost:61616)" +